@@ -250,8 +250,8 @@ public abstract class AbstractWriter<M extends TypedMetadata> extends
 		final SCIFIOConfig config) throws FormatException, IOException
 	{
 		getMetadata().setDatasetName(fileName);
-		setDest(new RandomAccessOutputStream(getContext(), fileName), imageIndex,
-			config);
+		setDest(new RandomAccessOutputStream(getContext(), fileName, config
+			.writerIsWriteBehind()), imageIndex, config);
 	}
 
 	@Override
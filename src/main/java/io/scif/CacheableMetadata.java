@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Optional interface for {@link Metadata} that can be stored in, and restored
+ * from, the persistent metadata cache instead of being parsed again.
+ * <p>
+ * The cache itself stores the {@link ImageMetadata} and the metadata tables;
+ * implementations only write the format-specific state their readers need.
+ * </p>
+ *
+ * @see io.scif.services.MetadataCacheService
+ */
+public interface CacheableMetadata {
+
+	/**
+	 * Returns true if the current state of this metadata can be cached. Some
+	 * datasets may need state which cannot be written compactly.
+	 */
+	boolean isCacheable();
+
+	/** Writes the format-specific state of this metadata. */
+	void writeCache(DataOutput out) throws IOException;
+
+	/**
+	 * Restores the format-specific state of this metadata, as written by
+	 * {@link #writeCache(DataOutput)}. The image metadata, tables and source of
+	 * this metadata have already been restored when this method is called.
+	 *
+	 * @throws FormatException If the dataset no longer matches the cached state.
+	 */
+	void readCache(DataInput in) throws IOException, FormatException;
+}
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+import io.scif.common.Constants;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A fixed byte pattern found at a fixed offset in every dataset of a format,
+ * such as a magic number.
+ *
+ * @see io.scif.HasSignatures
+ */
+public class FormatSignature {
+
+	// -- Fields --
+
+	private final int offset;
+
+	private final byte[] pattern;
+
+	// -- Constructors --
+
+	/**
+	 * Creates a signature matching the given bytes.
+	 *
+	 * @param offset Offset of the pattern from the start of the dataset.
+	 * @param pattern Bytes expected at that offset.
+	 */
+	public FormatSignature(final int offset, final byte... pattern) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("Negative offset: " + offset);
+		}
+		if (pattern.length == 0) {
+			throw new IllegalArgumentException("Empty signature pattern");
+		}
+		this.offset = offset;
+		this.pattern = pattern.clone();
+	}
+
+	/**
+	 * Creates a signature matching the given string, in UTF-8.
+	 *
+	 * @param offset Offset of the pattern from the start of the dataset.
+	 * @param pattern String expected at that offset.
+	 */
+	public FormatSignature(final int offset, final String pattern) {
+		this(offset, bytes(pattern));
+	}
+
+	// -- FormatSignature methods --
+
+	/** Gets the offset of the pattern from the start of the dataset. */
+	public int getOffset() {
+		return offset;
+	}
+
+	/** Gets the number of bytes in the pattern. */
+	public int getLength() {
+		return pattern.length;
+	}
+
+	/** Gets the byte of the pattern at the given index. */
+	public byte get(final int index) {
+		return pattern[index];
+	}
+
+	/**
+	 * Checks whether the given header matches this signature.
+	 *
+	 * @param header The first bytes of the dataset.
+	 * @param length Number of valid bytes in the header.
+	 */
+	public boolean matches(final byte[] header, final int length) {
+		if (offset + pattern.length > length) return false;
+		for (int i = 0; i < pattern.length; i++) {
+			if (header[offset + i] != pattern[i]) return false;
+		}
+		return true;
+	}
+
+	// -- Object methods --
+
+	@Override
+	public boolean equals(final Object o) {
+		if (!(o instanceof FormatSignature)) return false;
+		final FormatSignature that = (FormatSignature) o;
+		return offset == that.offset && Arrays.equals(pattern, that.pattern);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * offset + Arrays.hashCode(pattern);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(offset).append(':');
+		for (final byte b : pattern) {
+			sb.append(String.format(" %02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	// -- Helper methods --
+
+	private static byte[] bytes(final String s) {
+		try {
+			return s.getBytes(Constants.ENCODING);
+		}
+		catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+/**
+ * Interface for {@link Metadata} of images stored at several resolution
+ * levels, such as tiled pyramids. Level 0 is the full resolution image, and
+ * each following level is coarser than the previous one.
+ * <p>
+ * The {@link ImageMetadata} describes a single level, chosen when parsing
+ * according to {@link io.scif.config.SCIFIOConfig#parserGetResolutionScale()};
+ * planes read through the {@link Reader} API are read at that level.
+ * </p>
+ *
+ * @see io.scif.config.SCIFIOConfig#parserSetResolutionScale(double)
+ */
+public interface HasResolutions {
+
+	/**
+	 * @return The number of resolution levels of the given image, including the
+	 *         full resolution.
+	 */
+	int getResolutionCount(int imageIndex);
+
+	/**
+	 * @return The resolution level described by the {@link ImageMetadata} of
+	 *         the given image.
+	 */
+	int getResolution(int imageIndex);
+
+	/**
+	 * @return The lengths of the X and Y axes of the given image at the given
+	 *         resolution level.
+	 */
+	long[] getResolutionLengths(int imageIndex, int resolution);
+}
@@ -0,0 +1,56 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif;
+
+/**
+ * Optional interface for {@link Checker}s that recognize datasets by fixed
+ * byte patterns, such as magic numbers.
+ * <p>
+ * Declaring signatures lets the {@link io.scif.services.FormatService} read a
+ * dataset's header once and skip the content checks of every format whose
+ * signatures do not match it. Implementations must therefore guarantee that
+ * {@link Checker#isFormat(io.scif.io.RandomAccessInputStream)} returns false
+ * unless at least one of their signatures matches. In addition, they must
+ * combine suffix and content checks exactly as
+ * {@link AbstractChecker#isFormat(String, io.scif.config.SCIFIOConfig)} does,
+ * since the service may evaluate that combination itself, over a stream it
+ * shares between checkers.
+ * </p>
+ *
+ * @see FormatSignature
+ */
+public interface HasSignatures {
+
+	/**
+	 * Gets the signatures of this checker's format. A dataset may only be of
+	 * this format if it matches at least one of them.
+	 */
+	FormatSignature[] getSignatures();
+}
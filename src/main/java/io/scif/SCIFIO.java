@@ -41,8 +41,10 @@ import io.scif.io.NIOService;
 import io.scif.services.DatasetIOService;
 import io.scif.services.FilePatternService;
 import io.scif.services.FormatService;
+import io.scif.services.IOStatisticsService;
 import io.scif.services.InitializeService;
 import io.scif.services.LocationService;
+import io.scif.services.MetadataCacheService;
 import io.scif.services.TranslatorService;
 import io.scif.xml.XMLService;
 
@@ -168,6 +170,24 @@ public class SCIFIO extends AbstractGateway {
 		return get(InitializeService.class);
 	}
 
+	/**
+	 * Gets this application context's {@link IOStatisticsService}.
+	 *
+	 * @return The {@link IOStatisticsService} of this application context.
+	 */
+	public IOStatisticsService ioStatistics() {
+		return get(IOStatisticsService.class);
+	}
+
+	/**
+	 * Gets this application context's {@link MetadataCacheService}.
+	 *
+	 * @return The {@link MetadataCacheService} of this application context.
+	 */
+	public MetadataCacheService metadataCache() {
+		return get(MetadataCacheService.class);
+	}
+
 	/**
 	 * Gets this application context's {@link LocationService}.
 	 *
@@ -79,6 +79,10 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 	// Checker
 	private boolean openDataset = true;
 
+	private boolean signatureIndex = true;
+
+	private boolean parallelCheck = false;
+
 	// Parser
 	private MetadataLevel level;
 
@@ -86,9 +90,22 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 
 	private boolean saveOriginalMetadata;
 
+	private double resolutionScale = 1;
+
+	// Reader
+	private boolean parallelDecode = false;
+
+	private long tileCacheSize = 0;
+
 	// Writer
 	private boolean writeSequential = false;
 
+	private boolean writeBehind = false;
+
+	private boolean parallelCompress = false;
+
+	private int pyramidLevels = 0;
+
 	private ColorModel model = null;
 
 	private int fps = 10;
@@ -163,10 +180,18 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 	public SCIFIOConfig(final SCIFIOConfig config) {
 		super(config);
 		openDataset = config.openDataset;
+		signatureIndex = config.signatureIndex;
+		parallelCheck = config.parallelCheck;
 		level = config.level;
 		filterMetadata = config.filterMetadata;
 		saveOriginalMetadata = config.saveOriginalMetadata;
+		resolutionScale = config.resolutionScale;
+		parallelDecode = config.parallelDecode;
+		tileCacheSize = config.tileCacheSize;
 		writeSequential = config.writeSequential;
+		writeBehind = config.writeBehind;
+		parallelCompress = config.parallelCompress;
+		pyramidLevels = config.pyramidLevels;
 		model = config.model;
 		fps = config.fps;
 		compression = config.compression;
@@ -192,6 +217,44 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 		return openDataset;
 	}
 
+	/**
+	 * @param index Whether format detection may skip checkers whose declared
+	 *          signatures do not match the dataset's header.
+	 * @return This SCIFIOConfig for method chaining.
+	 * @see io.scif.HasSignatures
+	 */
+	public SCIFIOConfig checkerSetSignatureIndex(final boolean index) {
+		signatureIndex = index;
+		return this;
+	}
+
+	/**
+	 * @return True if format detection may skip checkers whose declared
+	 *         signatures do not match the dataset's header.
+	 */
+	public boolean checkerIsSignatureIndex() {
+		return signatureIndex;
+	}
+
+	/**
+	 * @param parallel Whether format detection may run the checkers of several
+	 *          formats concurrently. The detected formats are the same as when
+	 *          checking sequentially.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig checkerSetParallel(final boolean parallel) {
+		parallelCheck = parallel;
+		return this;
+	}
+
+	/**
+	 * @return True if format detection may run the checkers of several formats
+	 *         concurrently.
+	 */
+	public boolean checkerIsParallel() {
+		return parallelCheck;
+	}
+
 	// -- Parser methods --
 
 	/**
@@ -244,6 +307,67 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 		return this;
 	}
 
+	/**
+	 * @return The fraction of the full resolution at which parsers should
+	 *         describe images stored at several resolution levels.
+	 */
+	public double parserGetResolutionScale() {
+		return resolutionScale;
+	}
+
+	/**
+	 * @param scale Fraction of the full resolution at which parsers should
+	 *          describe images stored at several resolution levels. The coarsest
+	 *          level whose width and height are at least this fraction of the
+	 *          full resolution is used, so that opening an overview reads only
+	 *          that level. Defaults to 1, the full resolution.
+	 * @return This SCIFIOConfig for method chaining.
+	 * @see io.scif.HasResolutions
+	 */
+	public SCIFIOConfig parserSetResolutionScale(final double scale) {
+		resolutionScale = scale;
+		return this;
+	}
+
+	// -- Reader methods --
+
+	/**
+	 * @param parallel Whether readers may decode the tiles or strips of a plane
+	 *          concurrently. The decoded pixels are the same as when decoding
+	 *          sequentially.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig readerSetParallelDecode(final boolean parallel) {
+		parallelDecode = parallel;
+		return this;
+	}
+
+	/**
+	 * @return True if readers may decode the tiles or strips of a plane
+	 *         concurrently.
+	 */
+	public boolean readerIsParallelDecode() {
+		return parallelDecode;
+	}
+
+	/**
+	 * @param bytes Maximum number of bytes of decoded tiles which readers may
+	 *          keep, so that reading neighbouring regions does not decode the
+	 *          same tiles again. 0 disables the cache.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig readerSetTileCacheSize(final long bytes) {
+		tileCacheSize = bytes;
+		return this;
+	}
+
+	/**
+	 * @return Maximum number of bytes of decoded tiles which readers may keep.
+	 */
+	public long readerGetTileCacheSize() {
+		return tileCacheSize;
+	}
+
 	// -- Writer methods --
 
 	/**
@@ -266,6 +390,66 @@ public class SCIFIOConfig extends HashMap<String, Object> {
 		return writeSequential;
 	}
 
+	/**
+	 * Sets whether writers should coalesce their output into large buffers
+	 * which are written to disk in the background. This can greatly speed up
+	 * writing large datasets, but the written file is only complete once the
+	 * writer has been closed.
+	 *
+	 * @param writeBehind Flag for buffering output in the background.
+	 * @return This SCIFIOConfig for method chaining.
+	 * @see io.scif.io.WriteBehindHandle
+	 */
+	public SCIFIOConfig writerSetWriteBehind(final boolean writeBehind) {
+		this.writeBehind = writeBehind;
+		return this;
+	}
+
+	/**
+	 * @return True if writers should buffer their output in the background.
+	 */
+	public boolean writerIsWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * @param parallel Whether writers may compress the tiles or strips of a
+	 *          plane concurrently. The written file is the same as when
+	 *          compressing sequentially.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig writerSetParallelCompress(final boolean parallel) {
+		parallelCompress = parallel;
+		return this;
+	}
+
+	/**
+	 * @return True if writers may compress the tiles or strips of a plane
+	 *         concurrently.
+	 */
+	public boolean writerIsParallelCompress() {
+		return parallelCompress;
+	}
+
+	/**
+	 * @param levels Number of reduced resolution levels writers should add to
+	 *          each plane, each downsampled 2x2 from the previous one. Writers
+	 *          which do not support pyramids ignore this setting; 0 disables
+	 *          it.
+	 * @return This SCIFIOConfig for method chaining.
+	 */
+	public SCIFIOConfig writerSetPyramidLevels(final int levels) {
+		pyramidLevels = levels;
+		return this;
+	}
+
+	/**
+	 * @return The number of reduced resolution levels to write for each plane.
+	 */
+	public int writerGetPyramidLevels() {
+		return pyramidLevels;
+	}
+
 	/**
 	 * @param cm ColorModel to use for writing.
 	 * @return This SCIFIOConfig for method chaining.
@@ -40,6 +40,8 @@ import io.scif.Field;
 import io.scif.FieldPrinter;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.Plane;
 import io.scif.Translator;
@@ -351,7 +353,7 @@ public class APNGFormat extends AbstractFormat {
 	 * File format SCIFIO Checker for Animated Portable Network Graphics (APNG)
 	 * images.
 	 */
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Checker API Methods --
 
@@ -378,6 +380,14 @@ public class APNGFormat extends AbstractFormat {
 			}
 			return true;
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, new byte[] {
+				(byte) 0x89, 0x50, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a }) };
+		}
 	}
 
 	/**
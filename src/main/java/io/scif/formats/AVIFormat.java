@@ -39,7 +39,9 @@ import io.scif.ByteArrayPlane;
 import io.scif.ByteArrayReader;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
 import io.scif.HasColorTable;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.MetaTable;
 import io.scif.Plane;
@@ -422,7 +424,7 @@ public class AVIFormat extends AbstractFormat {
 		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Constants --
 
@@ -447,6 +449,13 @@ public class AVIFormat extends AbstractFormat {
 			return type.equals(AVI_MAGIC_STRING) && format.equals("AVI ");
 		}
 
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, AVI_MAGIC_STRING) };
+		}
+
 	}
 
 	public static class Parser extends AbstractParser<Metadata> {
@@ -37,7 +37,9 @@ import io.scif.ByteArrayPlane;
 import io.scif.ByteArrayReader;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
 import io.scif.HasColorTable;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.MetaTable;
 import io.scif.MetadataLevel;
@@ -203,7 +205,7 @@ public class BMPFormat extends AbstractFormat {
 		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		@Override
 		public boolean isFormat(final RandomAccessInputStream stream)
@@ -213,6 +215,13 @@ public class BMPFormat extends AbstractFormat {
 			if (!FormatTools.validStream(stream, blockLen, false)) return false;
 			return stream.readString(blockLen).startsWith(BMP_MAGIC_STRING);
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, BMP_MAGIC_STRING) };
+		}
 	}
 
 	public static class Parser extends AbstractParser<Metadata> {
@@ -37,7 +37,9 @@ import io.scif.ByteArrayPlane;
 import io.scif.ByteArrayReader;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
 import io.scif.HasColorTable;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.config.SCIFIOConfig;
 import io.scif.io.RandomAccessInputStream;
@@ -345,7 +347,7 @@ public class GIFFormat extends AbstractFormat {
 
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Checker API methods --
 
@@ -357,6 +359,13 @@ public class GIFFormat extends AbstractFormat {
 			if (!FormatTools.validStream(in, blockLen, false)) return false;
 			return in.readString(blockLen).startsWith(GIF_MAGIC_STRING);
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, GIF_MAGIC_STRING) };
+		}
 	}
 
 	public static class Parser extends AbstractParser<Metadata> {
@@ -32,6 +32,8 @@ package io.scif.formats;
 import io.scif.AbstractChecker;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
+import io.scif.HasSignatures;
 import io.scif.config.SCIFIOConfig;
 import io.scif.io.ByteArrayHandle;
 import io.scif.io.RandomAccessInputStream;
@@ -80,7 +82,7 @@ public class JPEGFormat extends ImageIOFormat {
 		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Constants --
 
@@ -144,6 +146,14 @@ public class JPEGFormat extends ImageIOFormat {
 
 			return true;
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, (byte) 0xff,
+				(byte) 0xd8, (byte) 0xff) };
+		}
 	}
 
 	public static class Parser extends ImageIOFormat.Parser<Metadata> {
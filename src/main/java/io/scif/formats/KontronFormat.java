@@ -38,6 +38,8 @@ import io.scif.ByteArrayReader;
 import io.scif.Field;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.config.SCIFIOConfig;
 import io.scif.io.RandomAccessInputStream;
@@ -132,7 +134,7 @@ public class KontronFormat extends AbstractFormat {
 		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		@Override
 		public boolean suffixSufficient() {
@@ -162,6 +164,13 @@ public class KontronFormat extends AbstractFormat {
 
 			return true;
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, KONTRON_ID) };
+		}
 	}
 
 	public static class Reader extends ByteArrayReader<Metadata> {
@@ -36,6 +36,8 @@ import io.scif.AbstractParser;
 import io.scif.BufferedImagePlane;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
+import io.scif.HasSignatures;
 import io.scif.config.SCIFIOConfig;
 import io.scif.gui.AWTImageTools;
 import io.scif.gui.BufferedImageReader;
@@ -134,7 +136,7 @@ public class MNGFormat extends AbstractFormat {
 		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Constants --
 
@@ -150,6 +152,14 @@ public class MNGFormat extends AbstractFormat {
 			if (!FormatTools.validStream(stream, blockLen, false)) return false;
 			return stream.readLong() == MNG_MAGIC_BYTES;
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, new byte[] {
+				(byte) 0x8a, 0x4d, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a }) };
+		}
 	}
 
 	public static class Parser extends AbstractParser<Metadata> {
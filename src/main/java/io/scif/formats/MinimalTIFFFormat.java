@@ -35,9 +35,13 @@ import io.scif.AbstractMetadata;
 import io.scif.AbstractParser;
 import io.scif.ByteArrayPlane;
 import io.scif.ByteArrayReader;
+import io.scif.CacheableMetadata;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
 import io.scif.HasColorTable;
+import io.scif.HasResolutions;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.codec.JPEG2000CodecOptions;
 import io.scif.config.SCIFIOConfig;
@@ -45,14 +49,21 @@ import io.scif.formats.tiff.IFD;
 import io.scif.formats.tiff.IFDList;
 import io.scif.formats.tiff.PhotoInterp;
 import io.scif.formats.tiff.TiffCompression;
+import io.scif.formats.tiff.TiffConstants;
 import io.scif.formats.tiff.TiffParser;
 import io.scif.io.RandomAccessInputStream;
 import io.scif.services.FormatService;
 import io.scif.util.FormatTools;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.imagej.axis.Axes;
 import net.imglib2.display.ColorTable;
@@ -87,7 +98,7 @@ public class MinimalTIFFFormat extends AbstractFormat {
 	// -- Nested classes --
 
 	public static class Metadata extends AbstractMetadata implements
-		HasColorTable
+		HasColorTable, HasResolutions, CacheableMetadata
 	{
 
 		// -- Fields --
@@ -102,7 +113,10 @@ public class MinimalTIFFFormat extends AbstractFormat {
 		 * List of sub-resolution IFDs for each IFD in the current TIFF with the
 		 * same order as {@code ifds}.
 		 */
-		private List<IFDList> subResolutionIFDs;
+		private List<IFDList> subResolutionIFDs = new ArrayList<>();
+
+		/** Resolution level described by the image metadata. */
+		private int resolution = 0;
 
 		private TiffParser tiffParser;
 
@@ -146,6 +160,19 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			this.subResolutionIFDs = subResolutionIFDs;
 		}
 
+		public void setResolution(final int resolution) {
+			this.resolution = resolution;
+		}
+
+		/**
+		 * Gets the IFD of the given plane at the given resolution level, as
+		 * counted by {@link #getResolutionCount(int)}.
+		 */
+		public IFD getResolutionIFD(final int planeIndex, final int resolution) {
+			if (resolution == 0) return ifds.get(planeIndex);
+			return subResolutionIFDs.get(planeIndex).get(resolution - 1);
+		}
+
 		public TiffParser getTiffParser() {
 			return tiffParser;
 		}
@@ -219,8 +246,9 @@ public class MinimalTIFFFormat extends AbstractFormat {
 				int planarAxes = 2;
 				ms0.setLittleEndian(firstIFD.isLittleEndian());
 
-				ms0.setAxisLength(Axes.X, (int) firstIFD.getImageWidth());
-				ms0.setAxisLength(Axes.Y, (int) firstIFD.getImageLength());
+				final IFD levelIFD = getResolutionIFD(0, resolution);
+				ms0.setAxisLength(Axes.X, (int) levelIFD.getImageWidth());
+				ms0.setAxisLength(Axes.Y, (int) levelIFD.getImageLength());
 				if (thumbnailIFDs != null && thumbnailIFDs.size() > 0) {
 					ms0.setThumbSizeX(thumbnailIFDs.get(0).getImageWidth());
 					ms0.setThumbSizeY(thumbnailIFDs.get(0).getImageLength());
@@ -296,6 +324,7 @@ public class MinimalTIFFFormat extends AbstractFormat {
 				ifds = null;
 				thumbnailIFDs = null;
 				subResolutionIFDs = new ArrayList<>();
+				resolution = 0;
 				lastPlane = 0;
 				tiffParser = null;
 				resolutionLevels = null;
@@ -303,6 +332,101 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			}
 		}
 
+		// -- HasResolutions API methods --
+
+		@Override
+		public int getResolutionCount(final int imageIndex) {
+			// NB: JPEG 2000 sub-resolutions are not resolution levels of the image.
+			if (resolutionLevels != null || subResolutionIFDs.isEmpty()) return 1;
+			return subResolutionIFDs.get(0).size() + 1;
+		}
+
+		@Override
+		public int getResolution(final int imageIndex) {
+			return resolution;
+		}
+
+		@Override
+		public long[] getResolutionLengths(final int imageIndex,
+			final int resolution)
+		{
+			if (resolution < 0 || resolution >= getResolutionCount(imageIndex)) {
+				throw new IllegalArgumentException("Invalid resolution level: " +
+					resolution);
+			}
+			final IFD ifd = getResolutionIFD(0, resolution);
+			try {
+				return new long[] { ifd.getImageWidth(), ifd.getImageLength() };
+			}
+			catch (final FormatException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		// -- CacheableMetadata API methods --
+
+		@Override
+		public boolean isCacheable() {
+			// NB: JPEG 2000 sub-resolutions and synthetic IFDs cannot be re-read.
+			if (ifds == null || resolutionLevels != null || !hasOffsets(ifds) ||
+				thumbnailIFDs != null && !hasOffsets(thumbnailIFDs))
+			{
+				return false;
+			}
+			for (final IFDList levels : subResolutionIFDs) {
+				if (!hasOffsets(levels)) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public void writeCache(final DataOutput out) throws IOException {
+			out.writeBoolean(use64Bit);
+			out.writeBoolean(equalStrips);
+			writeOffsets(out, ifds);
+			writeOffsets(out, thumbnailIFDs == null ? new IFDList() : thumbnailIFDs);
+			out.writeInt(subResolutionIFDs.size());
+			for (final IFDList levels : subResolutionIFDs) {
+				writeOffsets(out, levels);
+			}
+			out.writeInt(resolution);
+		}
+
+		@Override
+		public void readCache(final DataInput in) throws IOException,
+			FormatException
+		{
+			use64Bit = in.readBoolean();
+			equalStrips = in.readBoolean();
+
+			tiffParser = new TiffParser(getContext(), getSource());
+			tiffParser.setDoCaching(false);
+			tiffParser.setUse64BitOffsets(use64Bit);
+			final Boolean littleEndian = tiffParser.checkHeader();
+			if (littleEndian == null) {
+				throw new FormatException("Invalid TIFF file");
+			}
+			getSource().order(littleEndian.booleanValue());
+			tiffParser.setAssumeEqualStrips(equalStrips);
+
+			// NB: The IFDs are read, and filled in, on first access.
+			ifds = readIFDs(in);
+			thumbnailIFDs = readIFDs(in);
+			subResolutionIFDs = new ArrayList<>();
+			final int planes = in.readInt();
+			for (int i = 0; i < planes; i++) {
+				subResolutionIFDs.add(readIFDs(in));
+			}
+			resolution = in.readInt();
+			final boolean indexed = getImageCount() > 0 && get(0).isIndexed();
+			if (indexed) {
+				for (final IFD ifd : ifds) {
+					ifd.putIFDValue(IFD.PHOTOMETRIC_INTERPRETATION,
+						PhotoInterp.RGB_PALETTE);
+				}
+			}
+		}
+
 		// -- HasColorTable API methods --
 
 		@Override
@@ -371,9 +495,41 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			}
 			return table;
 		}
+
+		// -- Helper methods --
+
+		private boolean hasOffsets(final IFDList list) {
+			for (final IFD ifd : list) {
+				if (ifd.getOffset() < 0) return false;
+			}
+			return true;
+		}
+
+		private void writeOffsets(final DataOutput out, final IFDList list)
+			throws IOException
+		{
+			out.writeInt(list.size());
+			for (final IFD ifd : list) {
+				out.writeLong(ifd.getOffset());
+			}
+		}
+
+		private IFDList readIFDs(final DataInput in) throws IOException,
+			FormatException
+		{
+			final IFDList list = new IFDList();
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				final long offset = in.readLong();
+				final IFD ifd = tiffParser.getLazyIFD(offset);
+				if (ifd == null) throw new FormatException("Invalid IFD: " + offset);
+				list.add(ifd);
+			}
+			return list;
+		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Checker API Methods --
 
@@ -386,6 +542,20 @@ public class MinimalTIFFFormat extends AbstractFormat {
 		public boolean isFormat(final RandomAccessInputStream stream) {
 			return new TiffParser(getContext(), stream).isValidHeader();
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			final byte ii = TiffConstants.LITTLE, mm = TiffConstants.BIG;
+			final byte magic = TiffConstants.MAGIC_NUMBER;
+			final byte bigMagic = TiffConstants.BIG_TIFF_MAGIC_NUMBER;
+			return new FormatSignature[] {
+				new FormatSignature(0, new byte[] { ii, ii, magic, 0 }),
+				new FormatSignature(0, new byte[] { ii, ii, bigMagic, 0 }),
+				new FormatSignature(0, new byte[] { mm, mm, 0, magic }),
+				new FormatSignature(0, new byte[] { mm, mm, 0, bigMagic }) };
+		}
 	}
 
 	public static class Parser<M extends Metadata> extends AbstractParser<M> {
@@ -414,6 +584,10 @@ public class MinimalTIFFFormat extends AbstractFormat {
 
 			log().debug("Reading IFDs");
 
+			// NB: ImageJ writes its stacks with equally spaced IFDs.
+			final String comment = tiffParser.getComment();
+			tiffParser.setInferUniformIFDs(comment != null && comment.startsWith(
+				"ImageJ="));
 			final IFDList allIFDs = tiffParser.getIFDs();
 
 			if (allIFDs == null || allIFDs.size() == 0) {
@@ -426,15 +600,35 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			meta.setIfds(ifds);
 			meta.setThumbnailIFDs(thumbnailIFDs);
 
-			for (final IFD ifd : allIFDs) {
-				final Number subfile = (Number) ifd.getIFDValue(IFD.NEW_SUBFILE_TYPE);
-				final int subfileType = subfile == null ? 0 : subfile.intValue();
-				if (subfileType != 1 || allIFDs.size() <= 1) {
-					ifds.add(ifd);
+			// NB: Reduced resolution SubIFDs are resolution levels of their IFD,
+			// provided that all planes have the same number of levels.
+			final Map<Long, IFDList> levels =
+				findResolutionLevels(tiffParser, allIFDs);
+			final Set<Long> levelOffsets = new HashSet<>();
+			for (final IFDList list : levels.values()) {
+				for (final IFD level : list) {
+					levelOffsets.add(level.getOffset());
 				}
-				else if (subfileType == 1) {
-					thumbnailIFDs.add(ifd);
+			}
+			classifyIFDs(allIFDs, levelOffsets, ifds, thumbnailIFDs);
+			int levelCount = -1;
+			for (final IFD ifd : ifds) {
+				final IFDList list = levels.get(ifd.getOffset());
+				final int count = list == null ? 0 : list.size();
+				if (levelCount < 0) levelCount = count;
+				else if (count != levelCount) levelCount = 0;
+			}
+			if (levelCount > 0) {
+				for (final IFD ifd : ifds) {
+					meta.getSubResolutionIFDs().add(levels.get(ifd.getOffset()));
 				}
+				meta.setResolution(selectResolution(ifds.get(0), meta
+					.getSubResolutionIFDs().get(0), config.parserGetResolutionScale()));
+			}
+			else if (!levelOffsets.isEmpty()) {
+				ifds.clear();
+				thumbnailIFDs.clear();
+				classifyIFDs(allIFDs, new HashSet<Long>(), ifds, thumbnailIFDs);
 			}
 
 			log().debug("Populating metadata");
@@ -527,6 +721,96 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			}
 		}
 
+		// -- Helper methods --
+
+		/**
+		 * Splits the given IFDs into planes and thumbnails, skipping the given
+		 * resolution levels.
+		 */
+		private void classifyIFDs(final IFDList allIFDs,
+			final Set<Long> levelOffsets, final IFDList ifds,
+			final IFDList thumbnailIFDs)
+		{
+			for (final IFD ifd : allIFDs) {
+				if (levelOffsets.contains(ifd.getOffset())) continue;
+				final Number subfile = (Number) ifd.getIFDValue(IFD.NEW_SUBFILE_TYPE);
+				final int subfileType = subfile == null ? 0 : subfile.intValue();
+				if (subfileType != 1 || allIFDs.size() <= 1) {
+					ifds.add(ifd);
+				}
+				else if (subfileType == 1) {
+					thumbnailIFDs.add(ifd);
+				}
+			}
+		}
+
+		/**
+		 * Finds the resolution levels of the given IFDs: their SubIFDs which are
+		 * flagged as reduced resolution images, have the same samples, and are
+		 * each smaller than the previous level.
+		 *
+		 * @return The resolution levels, by offset of their IFD.
+		 */
+		private Map<Long, IFDList> findResolutionLevels(
+			final TiffParser tiffParser, final IFDList allIFDs)
+			throws FormatException, IOException
+		{
+			final Map<Long, IFD> byOffset = new HashMap<>();
+			for (final IFD ifd : allIFDs) {
+				byOffset.put(ifd.getOffset(), ifd);
+			}
+			final Map<Long, IFDList> levels = new HashMap<>();
+			for (final IFD ifd : allIFDs) {
+				final long[] subOffsets = ifd.getIFDLongArray(IFD.SUB_IFD);
+				final TiffCompression compression = ifd.getCompression();
+				// NB: JPEG 2000 sub-resolutions are handled separately.
+				if (subOffsets == null || compression == TiffCompression.JPEG_2000 ||
+					compression == TiffCompression.JPEG_2000_LOSSY) continue;
+				final IFDList list = new IFDList();
+				IFD previous = ifd;
+				for (final long subOffset : subOffsets) {
+					final IFD sub = byOffset.get(subOffset);
+					if (sub == null) break;
+					tiffParser.fillInIFD(sub);
+					final Number subfile =
+						(Number) sub.getIFDValue(IFD.NEW_SUBFILE_TYPE);
+					if (subfile == null || (subfile.intValue() & 1) == 0 ||
+						sub.getImageWidth() > previous.getImageWidth() ||
+						sub.getImageLength() > previous.getImageLength() ||
+						sub.getImageWidth() == previous.getImageWidth() &&
+							sub.getImageLength() == previous.getImageLength() ||
+						sub.getSamplesPerPixel() != ifd.getSamplesPerPixel() ||
+						sub.getPixelType() != ifd.getPixelType())
+					{
+						break;
+					}
+					list.add(sub);
+					previous = sub;
+				}
+				if (!list.isEmpty()) levels.put(ifd.getOffset(), list);
+			}
+			return levels;
+		}
+
+		/**
+		 * Selects the coarsest resolution level whose width and height are at
+		 * least the given fraction of those of the full resolution image.
+		 */
+		private int selectResolution(final IFD ifd, final IFDList levels,
+			final double scale) throws FormatException
+		{
+			final double width = scale * ifd.getImageWidth();
+			final double height = scale * ifd.getImageLength();
+			for (int l = levels.size(); l > 0; l--) {
+				final IFD level = levels.get(l - 1);
+				if (level.getImageWidth() >= width && level.getImageLength() >= height)
+				{
+					return l;
+				}
+			}
+			return 0;
+		}
+
 	}
 
 	public static class Reader<M extends Metadata> extends ByteArrayReader<M> {
@@ -592,6 +876,51 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			final long planeIndex, final ByteArrayPlane plane, final long[] planeMin,
 			final long[] planeMax, final SCIFIOConfig config) throws FormatException,
 			IOException
+		{
+			final Metadata meta = getMetadata();
+			FormatTools.checkPlaneForReading(meta, imageIndex, planeIndex, plane
+				.getBytes().length, planeMin, planeMax);
+			return readPlane(imageIndex, planeIndex, meta.getResolution(imageIndex),
+				plane, planeMin, planeMax, config);
+		}
+
+		/**
+		 * Reads a region of the given plane at the given resolution level, rather
+		 * than at the level described by the image metadata. The region is given
+		 * in pixels of that level.
+		 *
+		 * @see HasResolutions
+		 */
+		public ByteArrayPlane openPlane(final int imageIndex,
+			final long planeIndex, final int resolution, final long[] planeMin,
+			final long[] planeMax, final SCIFIOConfig config)
+			throws FormatException, IOException
+		{
+			final Metadata meta = getMetadata();
+			final long[] lengths = meta.getResolutionLengths(imageIndex, resolution);
+			final int xAxis = meta.get(imageIndex).getAxisIndex(Axes.X);
+			final int yAxis = meta.get(imageIndex).getAxisIndex(Axes.Y);
+			if (planeIndex < 0 ||
+				planeIndex >= meta.get(imageIndex).getPlaneCount())
+			{
+				throw new FormatException("Invalid plane index: " + planeIndex);
+			}
+			if (planeMin[xAxis] < 0 || planeMin[yAxis] < 0 || planeMax[xAxis] < 1 ||
+				planeMax[yAxis] < 1 || planeMin[xAxis] + planeMax[xAxis] > lengths[0] ||
+				planeMin[yAxis] + planeMax[yAxis] > lengths[1])
+			{
+				throw new FormatException("Invalid region for resolution level " +
+					resolution);
+			}
+			return readPlane(imageIndex, planeIndex, resolution, createPlane(
+				planeMin, planeMax), planeMin, planeMax, config);
+		}
+
+		/** Reads a region of the given plane at the given resolution level. */
+		private ByteArrayPlane readPlane(final int imageIndex,
+			final long planeIndex, final int resolution, final ByteArrayPlane plane,
+			final long[] planeMin, final long[] planeMax, final SCIFIOConfig config)
+			throws FormatException, IOException
 		{
 			final Metadata meta = getMetadata();
 			plane.setColorTable(meta.getColorTable(imageIndex, planeIndex));
@@ -602,12 +931,10 @@ public class MinimalTIFFFormat extends AbstractFormat {
 			final int yAxis = meta.get(imageIndex).getAxisIndex(Axes.Y);
 			final int x = (int) planeMin[xAxis], y = (int) planeMin[yAxis], w =
 				(int) planeMax[xAxis], h = (int) planeMax[yAxis];
-			FormatTools.checkPlaneForReading(meta, imageIndex, planeIndex,
-				buf.length, planeMin, planeMax);
 
 			final IFD firstIFD = ifds.get(0);
 			meta.setLastPlane(planeIndex);
-			final IFD ifd = ifds.get((int) planeIndex);
+			final IFD ifd = meta.getResolutionIFD((int) planeIndex, resolution);
 			if ((firstIFD.getCompression() == TiffCompression.JPEG_2000 || firstIFD
 				.getCompression() == TiffCompression.JPEG_2000_LOSSY) &&
 				meta.getResolutionLevels() != null)
@@ -619,6 +946,8 @@ public class MinimalTIFFFormat extends AbstractFormat {
 				setResolutionLevel(ifd);
 			}
 
+			tiffParser.setParallelDecoding(config.readerIsParallelDecode());
+			tiffParser.setTileCacheSize(config.readerGetTileCacheSize());
 			tiffParser.getSamples(ifd, buf, x, y, w, h);
 
 			final boolean float16 =
@@ -681,7 +1010,9 @@ public class MinimalTIFFFormat extends AbstractFormat {
 		public long getOptimalTileWidth(final int imageIndex) {
 			FormatTools.assertId(getStream().getFileName(), true, 1);
 			try {
-				return getMetadata().getIfds().get(0).getTileWidth();
+				final Metadata meta = getMetadata();
+				return meta.getResolutionIFD(0, meta.getResolution(imageIndex))
+					.getTileWidth();
 			}
 			catch (final FormatException e) {
 				log().debug("Could not retrieve tile width", e);
@@ -693,7 +1024,9 @@ public class MinimalTIFFFormat extends AbstractFormat {
 		public long getOptimalTileHeight(final int imageIndex) {
 			FormatTools.assertId(getStream().getFileName(), true, 1);
 			try {
-				return getMetadata().getIfds().get(0).getTileLength();
+				final Metadata meta = getMetadata();
+				return meta.getResolutionIFD(0, meta.getResolution(imageIndex))
+					.getTileLength();
 			}
 			catch (final FormatException e) {
 				log().debug("Could not retrieve tile height", e);
@@ -37,6 +37,8 @@ import io.scif.ByteArrayPlane;
 import io.scif.ByteArrayReader;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
+import io.scif.HasSignatures;
 import io.scif.ImageMetadata;
 import io.scif.config.SCIFIOConfig;
 import io.scif.io.ByteArrayHandle;
@@ -118,7 +120,7 @@ public class PGMFormat extends AbstractFormat {
 		}
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		// -- Constants --
 
@@ -141,6 +143,14 @@ public class PGMFormat extends AbstractFormat {
 				Character.isDigit((char) stream.read());
 		}
 
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0,
+				(byte) PGM_MAGIC_CHAR) };
+		}
+
 	}
 
 	public static class Parser extends AbstractParser<Metadata> {
@@ -113,7 +113,7 @@ public class ScancoISQFormat extends AbstractFormat {
 		return new String[] { "isq" };
 	}
 
-	public static class Checker extends AbstractChecker {
+	public static class Checker extends AbstractChecker implements HasSignatures {
 
 		@Override
 		public boolean suffixSufficient() {
@@ -129,6 +129,13 @@ public class ScancoISQFormat extends AbstractFormat {
 			final String fileStart = new String(firstBytes);
 			return ISQ_ID.equals(fileStart);
 		}
+
+		// -- HasSignatures API methods --
+
+		@Override
+		public FormatSignature[] getSignatures() {
+			return new FormatSignature[] { new FormatSignature(0, ISQ_ID) };
+		}
 	}
 
 	public static class Metadata extends AbstractMetadata {
@@ -58,6 +58,8 @@ import io.scif.io.RandomAccessOutputStream;
 import io.scif.util.FormatTools;
 import io.scif.xml.XMLService;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -297,8 +299,19 @@ public class TIFFFormat extends AbstractFormat {
 			// set the X and Y pixel dimensions
 
 			try {
-				final Double pixX = getIfds().get(0).getXResolution();
-				final Double pixY = getIfds().get(0).getYResolution();
+				Double pixX = getIfds().get(0).getXResolution();
+				Double pixY = getIfds().get(0).getYResolution();
+				if (getResolution(0) > 0) {
+					// NB: The pixels of a reduced resolution level are larger.
+					final IFD ifd = getIfds().get(0);
+					final IFD level = getResolutionIFD(0, getResolution(0));
+					if (pixX != null) {
+						pixX *= (double) ifd.getImageWidth() / level.getImageWidth();
+					}
+					if (pixY != null) {
+						pixY *= (double) ifd.getImageLength() / level.getImageLength();
+					}
+				}
 
 				if (pixX == null) {
 					// NB: Ignore undefined value.
@@ -324,6 +337,62 @@ public class TIFFFormat extends AbstractFormat {
 			}
 		}
 
+		// -- CacheableMetadata API methods --
+
+		@Override
+		public void writeCache(final DataOutput out) throws IOException {
+			super.writeCache(out);
+			out.writeBoolean(populateImageMetadata);
+			writeString(out, creationDate);
+			writeString(out, experimenterFirstName);
+			writeString(out, experimenterLastName);
+			writeString(out, experimenterEmail);
+			writeString(out, imageDescription);
+			writeString(out, companionFile);
+			writeString(out, description);
+			writeString(out, calibrationUnit);
+			out.writeBoolean(timeIncrement != null);
+			if (timeIncrement != null) out.writeDouble(timeIncrement);
+			out.writeBoolean(xOrigin != null);
+			if (xOrigin != null) out.writeInt(xOrigin);
+			out.writeBoolean(yOrigin != null);
+			if (yOrigin != null) out.writeInt(yOrigin);
+			out.writeInt(lut == null ? -1 : lut.length);
+			if (lut != null) {
+				for (final byte[] table : lut) {
+					out.writeInt(table.length);
+					out.write(table);
+				}
+			}
+		}
+
+		@Override
+		public void readCache(final DataInput in) throws IOException,
+			FormatException
+		{
+			super.readCache(in);
+			populateImageMetadata = in.readBoolean();
+			creationDate = readString(in);
+			experimenterFirstName = readString(in);
+			experimenterLastName = readString(in);
+			experimenterEmail = readString(in);
+			imageDescription = readString(in);
+			companionFile = readString(in);
+			description = readString(in);
+			calibrationUnit = readString(in);
+			timeIncrement = in.readBoolean() ? in.readDouble() : null;
+			xOrigin = in.readBoolean() ? in.readInt() : null;
+			yOrigin = in.readBoolean() ? in.readInt() : null;
+			final int lutCount = in.readInt();
+			if (lutCount >= 0) {
+				lut = new byte[lutCount][];
+				for (int i = 0; i < lutCount; i++) {
+					lut[i] = new byte[in.readInt()];
+					in.readFully(lut[i]);
+				}
+			}
+		}
+
 		@Override
 		public void close(final boolean fileOnly) throws IOException {
 			super.close(fileOnly);
@@ -336,6 +405,25 @@ public class TIFFFormat extends AbstractFormat {
 				yOrigin = null;
 			}
 		}
+
+		// -- Helper methods --
+
+		private void writeString(final DataOutput out, final String s)
+			throws IOException
+		{
+			// NB: Descriptions may exceed the 64 KiB limit of writeUTF.
+			final byte[] bytes = s == null ? null : s.getBytes(Constants.ENCODING);
+			out.writeInt(bytes == null ? -1 : bytes.length);
+			if (bytes != null) out.write(bytes);
+		}
+
+		private String readString(final DataInput in) throws IOException {
+			final int length = in.readInt();
+			if (length < 0) return null;
+			final byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, Constants.ENCODING);
+		}
 	}
 
 	public static class Parser extends BaseTIFFParser {
@@ -1382,6 +1470,9 @@ public class TIFFFormat extends AbstractFormat {
 		/** Whether or not to check the parameters passed to saveBytes. */
 		private final boolean checkParams = true;
 
+		/** Number of reduced resolution levels to write for each plane. */
+		private int pyramidLevels;
+
 		// -- AbstractWriter Methods --
 
 		@Override
@@ -1434,9 +1525,17 @@ public class TIFFFormat extends AbstractFormat {
 				}
 			}
 
-			tiffSaver.writeImage(buf, ifd, index, type, x, y, w, h,
+			final boolean last =
 				planeIndex == getMetadata().get(imageIndex).getPlaneCount() - 1 &&
-					imageIndex == getMetadata().getImageCount() - 1);
+					imageIndex == getMetadata().getImageCount() - 1;
+			if (pyramidLevels > 0) {
+				if (x != 0 || w != ifd.getImageWidth()) {
+					throw new FormatException(
+						"Pyramids must be written in full-width bands");
+				}
+				tiffSaver.writePyramidRows(buf, ifd, type, y, h, pyramidLevels, last);
+			}
+			else tiffSaver.writeImage(buf, ifd, index, type, x, y, w, h, last);
 		}
 
 		// -- AbstractWriter Methods --
@@ -1452,6 +1551,8 @@ public class TIFFFormat extends AbstractFormat {
 			synchronized (this) {
 				if (!isInitialized(imageIndex, (int) planeIndex)) {
 
+					// NB: Make sure the data written so far is visible to the reader.
+					getStream().flush();
 					final RandomAccessInputStream tmp =
 						new RandomAccessInputStream(getContext(), getMetadata()
 							.getDatasetName());
@@ -1476,6 +1577,8 @@ public class TIFFFormat extends AbstractFormat {
 			super.setDest(dest, imageIndex, config);
 			synchronized (this) {
 				setupTiffSaver(dest, imageIndex);
+				tiffSaver.setParallelCompression(config.writerIsParallelCompress());
+				pyramidLevels = config.writerGetPyramidLevels();
 			}
 
 			// Check if a bigTIFF setting was requested
@@ -45,6 +45,7 @@ import io.scif.gui.BufferedImageReader;
 import io.scif.io.FileHandle;
 import io.scif.io.IRandomAccess;
 import io.scif.io.RandomAccessInputStream;
+import io.scif.io.StreamTools;
 import io.scif.services.FormatService;
 import io.scif.services.LocationService;
 import io.scif.util.FormatTools;
@@ -183,7 +184,8 @@ public class TIFFJAIFormat extends AbstractFormat {
 			log().info("Reading movie dimensions");
 
 			// map Location to File or RandomAccessFile, if possible
-			final IRandomAccess ira = locationService.getMappedFile(id);
+			final IRandomAccess ira = StreamTools.unwrap(locationService
+				.getMappedFile(id));
 			if (ira != null) {
 				if (ira instanceof FileHandle) {
 					final FileHandle fh = (FileHandle) ira;
@@ -51,8 +51,6 @@ import io.scif.util.FormatTools;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import net.imglib2.display.ColorTable;
 
@@ -287,20 +285,16 @@ public class ZipFormat extends AbstractFormat {
 			final RandomAccessInputStream stream, final List<String> mappedFiles)
 			throws IOException
 		{
-			final ZipInputStream zip = new ZipInputStream(stream);
-			ZipEntry ze = null;
-
-			while (true) {
-				ze = zip.getNextEntry();
-				if (ze == null) break;
-				final ZipHandle handle =
-					new ZipHandle(locationService.getContext(), stream.getFileName(), ze);
-				locationService.mapFile(ze.getName(), handle);
-				if (mappedFiles != null) mappedFiles.add(ze.getName());
-			}
-
 			final ZipHandle base =
 				new ZipHandle(locationService.getContext(), stream.getFileName());
+
+			// NB: Entries share the central directory read by the base handle.
+			for (final String name : base.getEntryNames()) {
+				final ZipHandle handle = new ZipHandle(base, name);
+				locationService.mapFile(name, handle);
+				if (mappedFiles != null) mappedFiles.add(name);
+			}
+
 			final String id = base.getEntryName();
 			base.close();
 
@@ -33,22 +33,44 @@ import io.scif.FormatException;
 import io.scif.util.FormatTools;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.scijava.log.LogService;
 import org.scijava.util.DebugUtils;
 
 /**
  * Data structure for working with TIFF Image File Directories (IFDs).
+ * <p>
+ * Directory entries are kept in a compact table sorted by tag, rather than in
+ * a hash map: tags are stored as unsigned 16-bit values, and boxed integer and
+ * boolean values are stored unboxed. Keys which are not TIFF tags, such as
+ * null or negative keys, are kept in a hash map beside the table. Strip offsets
+ * read on demand from the file are cached once decoded.
+ * </p>
+ * <p>
+ * An IFD may also be created lazily, from its offset and a {@link Loader}
+ * which reads its entries when any of them is first accessed.
+ * </p>
  *
  * @author Curtis Rueden
  * @author Eric Kjellman
  * @author Melissa Linkert
  * @author Chris Allan
  */
-public class IFD extends HashMap<Integer, Object> {
+public class IFD extends AbstractMap<Integer, Object> implements Cloneable,
+	Serializable
+{
 
 	// -- Constants --
 
@@ -321,9 +343,62 @@ public class IFD extends HashMap<Integer, Object> {
 
 	public static final int SUBJECT_DISTANCE_RANGE = 41996;
 
+	private static final long serialVersionUID = 1L;
+
+	private static final short[] NO_TAGS = {};
+
+	/** Initial capacity of the entry table. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	// NB: Kinds of value slots. Values of the other kinds are stored unboxed.
+	private static final byte OBJECT = 0;
+
+	private static final byte BOOLEAN = 1;
+
+	private static final byte SHORT = 2;
+
+	private static final byte INTEGER = 3;
+
+	private static final byte LONG = 4;
+
 	// -- Fields --
 
-	private final LogService log;
+	private final transient LogService log;
+
+	/** Offset of this IFD in its file, or -1 if unknown. */
+	private long offset = -1;
+
+	/** Tags of the directory entries, in ascending unsigned order. */
+	private short[] tags = NO_TAGS;
+
+	/** Kind of value in each slot. */
+	private byte[] kinds;
+
+	/** Unboxed values of the other slots. */
+	private long[] scalars;
+
+	/** Values of the {@link #OBJECT} slots. */
+	private Object[] objects;
+
+	private int size;
+
+	/** Entries whose keys are not TIFF tags, or null if there are none. */
+	private HashMap<Integer, Object> otherEntries;
+
+	/** Number of insertions and removals, to detect concurrent modification. */
+	private transient int modCount;
+
+	private transient Set<Entry<Integer, Object>> entrySet;
+
+	/**
+	 * Strip offsets decoded from an {@link OnDemandLongArray}, discarded whenever
+	 * this IFD is modified. NB: Values decoded from arrays are not cached, since
+	 * the owner of an array may change it at any time.
+	 */
+	private transient volatile long[] stripOffsets;
+
+	/** Reads the entries of this IFD on first access, or null once read. */
+	private transient volatile Loader loader;
 
 	// -- Constructors --
 
@@ -333,8 +408,32 @@ public class IFD extends HashMap<Integer, Object> {
 	}
 
 	public IFD(final IFD ifd, final LogService log) {
-		super(ifd);
+		super();
 		this.log = log;
+		ifd.load();
+		size = ifd.size;
+		if (size > 0) {
+			tags = Arrays.copyOf(ifd.tags, size);
+			kinds = Arrays.copyOf(ifd.kinds, size);
+			scalars = Arrays.copyOf(ifd.scalars, size);
+			objects = Arrays.copyOf(ifd.objects, size);
+		}
+		if (ifd.otherEntries != null) {
+			otherEntries = new HashMap<>(ifd.otherEntries);
+		}
+	}
+
+	/**
+	 * Creates an IFD whose entries are read by the given loader when any of them
+	 * is first accessed.
+	 *
+	 * @param offset Offset of the IFD in its file.
+	 * @param loader Reads the IFD at the given offset.
+	 */
+	public IFD(final LogService log, final long offset, final Loader loader) {
+		this(log);
+		this.offset = offset;
+		this.loader = loader;
 	}
 
 	// -- Tag retrieval methods --
@@ -351,7 +450,11 @@ public class IFD extends HashMap<Integer, Object> {
 
 	/** Gets the given directory entry value from this IFD. */
 	public Object getIFDValue(final int tag) {
-		return get(new Integer(tag));
+		if (!isTag(tag)) {
+			return otherEntries == null ? null : otherEntries.get(tag);
+		}
+		final int index = indexOf(tag);
+		return index < 0 ? null : value(index);
 	}
 
 	/**
@@ -361,7 +464,7 @@ public class IFD extends HashMap<Integer, Object> {
 	public Object getIFDValue(final int tag, final Class<?> checkClass)
 		throws FormatException
 	{
-		Object value = get(new Integer(tag));
+		Object value = getIFDValue(tag);
 		if (checkClass != null && value != null && !checkClass.isInstance(value)) {
 			// wrap object in array of length 1, if appropriate
 			final Class<?> cType = checkClass.getComponentType();
@@ -423,6 +526,8 @@ public class IFD extends HashMap<Integer, Object> {
 	public long getIFDLongValue(final int tag, final long defaultValue)
 		throws FormatException
 	{
+		final int index = indexOf(tag);
+		if (index >= 0 && kinds[index] > BOOLEAN) return scalars[index];
 		long value = defaultValue;
 		final Number number = (Number) getIFDValue(tag, Number.class);
 		if (number != null) value = number.longValue();
@@ -449,6 +554,8 @@ public class IFD extends HashMap<Integer, Object> {
 	public int getIFDIntValue(final int tag, final int defaultValue)
 		throws FormatException
 	{
+		final int index = indexOf(tag);
+		if (index >= 0 && kinds[index] > BOOLEAN) return (int) scalars[index];
 		int value = defaultValue;
 		final Number number = (Number) getIFDValue(tag, Number.class);
 		if (number != null) value = number.intValue();
@@ -654,9 +761,8 @@ public class IFD extends HashMap<Integer, Object> {
 	}
 
 	public boolean isTiled() {
-		final Object offsets = get(new Integer(STRIP_OFFSETS));
-		final Object tileWidth = get(new Integer(TILE_WIDTH));
-		return offsets == null && tileWidth != null;
+		return getIFDValue(STRIP_OFFSETS) == null &&
+			getIFDValue(TILE_WIDTH) != null;
 	}
 
 	/**
@@ -704,8 +810,11 @@ public class IFD extends HashMap<Integer, Object> {
 
 		final int samplesPerPixel = getSamplesPerPixel();
 		if (bitsPerSample.length < samplesPerPixel) {
-			log.debug("BitsPerSample length (" + bitsPerSample.length +
-				") does not match SamplesPerPixel (" + samplesPerPixel + ")");
+			// NB: Deserialized IFDs have no log service.
+			if (log != null) {
+				log.debug("BitsPerSample length (" + bitsPerSample.length +
+					") does not match SamplesPerPixel (" + samplesPerPixel + ")");
+			}
 			final int bits = bitsPerSample[0];
 			bitsPerSample = new int[samplesPerPixel];
 			Arrays.fill(bitsPerSample, bits);
@@ -879,15 +988,142 @@ public class IFD extends HashMap<Integer, Object> {
 	 * @see #getRowsPerStrip()
 	 */
 	public long[] getStripOffsets() throws FormatException {
+		final long[] offsets = decodedStripOffsets();
+		// NB: Copy the cached offsets, so that callers cannot corrupt them.
+		return offsets != null && offsets == stripOffsets ? offsets.clone()
+			: offsets;
+	}
+
+	/**
+	 * Gets the offset of the given strip or tile, without copying the strip
+	 * offsets.
+	 *
+	 * @see #getStripOffsets()
+	 */
+	public long getStripOffset(final int index) throws FormatException {
+		final OnDemandLongArray onDemandOffsets = getOnDemandStripOffsets();
+		if (onDemandOffsets != null && stripOffsets == null) {
+			try {
+				return onDemandOffsets.get(index);
+			}
+			catch (final IOException e) {
+				throw new FormatException("Failed to retrieve offset", e);
+			}
+		}
+		final Object value = getStripArray(TILE_OFFSETS, STRIP_OFFSETS);
+		if (value instanceof long[]) {
+			final long offset = ((long[]) value)[index];
+			return offset < 0 ? offset + 0x100000000L : offset;
+		}
+		final long[] offsets = decodedStripOffsets();
+		if (offsets == null) throw new FormatException("No strip offsets");
+		return offsets[index];
+	}
+
+	/** Gets the number of strips or tiles, without copying the strip offsets. */
+	public long getStripCount() throws FormatException {
+		final OnDemandLongArray onDemandOffsets = getOnDemandStripOffsets();
+		if (onDemandOffsets != null) return onDemandOffsets.size();
+		final long[] offsets = decodedStripOffsets();
+		return offsets == null ? 0 : offsets.length;
+	}
+
+	public OnDemandLongArray getOnDemandStripOffsets() {
+		final int tag = isTiled() ? TILE_OFFSETS : STRIP_OFFSETS;
+		final Object offsets = getIFDValue(tag);
+		if (offsets instanceof OnDemandLongArray) {
+			return (OnDemandLongArray) offsets;
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves strip byte counts for the image (TIFF tag StripByteCounts) from
+	 * this IFD.
+	 *
+	 * @return the byte counts for each strip. The length of the array is equal to
+	 *         the number of strips per image. <i>StripsPerImage =
+	 *         floor((ImageLength + RowsPerStrip - 1) / RowsPerStrip)</i>.
+	 * @throws FormatException if there is a problem parsing the IFD metadata.
+	 * @see #getStripOffsets()
+	 */
+	public long[] getStripByteCounts() throws FormatException {
+		return decodeStripByteCounts();
+	}
+
+	/**
+	 * Gets the byte count of the given strip or tile, without copying the strip
+	 * byte counts.
+	 *
+	 * @see #getStripByteCounts()
+	 */
+	public long getStripByteCount(final int index) throws FormatException {
+		final Object value = getStripArray(TILE_BYTE_COUNTS, STRIP_BYTE_COUNTS);
+		final long byteCount;
+		if (value instanceof long[]) byteCount = ((long[]) value)[index];
+		else if (value instanceof int[]) byteCount = ((int[]) value)[index];
+		else {
+			final long[] byteCounts = decodeStripByteCounts();
+			if (byteCounts == null) {
+				throw new FormatException("No strip byte counts");
+			}
+			return byteCounts[index];
+		}
+		return isDoubledByteCounts() ? 2 * byteCount : byteCount;
+	}
+
+	/**
+	 * Retrieves the number of rows per strip for image (TIFF tag RowsPerStrip)
+	 * from this IFD.
+	 *
+	 * @return the number of rows per strip.
+	 * @throws FormatException if there is a problem parsing the IFD metadata.
+	 */
+	public long[] getRowsPerStrip() throws FormatException {
+		return decodeRowsPerStrip();
+	}
+
+	/**
+	 * Gets the strip offsets, decoding them if needed. Offsets read on demand
+	 * are cached; the result must not be modified.
+	 */
+	private long[] decodedStripOffsets() throws FormatException {
+		long[] offsets = stripOffsets;
+		if (offsets == null) {
+			offsets = decodeStripOffsets();
+			if (getOnDemandStripOffsets() != null) stripOffsets = offsets;
+		}
+		return offsets;
+	}
+
+	/**
+	 * Gets the stored value of the given tile tag if this IFD is tiled and has
+	 * it, or else of the given strip tag.
+	 */
+	private Object getStripArray(final int tileTag, final int stripTag)
+		throws FormatException
+	{
+		final Object value = isTiled() ? getIFDValue(tileTag) : null;
+		return value == null ? getIFDValue(stripTag) : value;
+	}
+
+	/**
+	 * Gets whether the stored strip byte counts are half the actual ones, as
+	 * written by some LZW encoders.
+	 */
+	private boolean isDoubledByteCounts() throws FormatException {
+		return getCompression() == TiffCompression.LZW && (!containsKey(
+			ROWS_PER_STRIP) || getImageLength() % getRowsPerStrip()[0] != 0);
+	}
+
+	private long[] decodeStripOffsets() throws FormatException {
 		final int tag = isTiled() ? TILE_OFFSETS : STRIP_OFFSETS;
 		long[] offsets = null;
 		final OnDemandLongArray compressedOffsets = getOnDemandStripOffsets();
 		if (compressedOffsets != null) {
 			offsets = new long[(int) compressedOffsets.size()];
 			try {
-				for (int q = 0; q < offsets.length; q++) {
-					offsets[q] = compressedOffsets.get(q);
-				}
+				compressedOffsets.get(offsets, 0, offsets.length);
 			}
 			catch (final IOException e) {
 				throw new FormatException("Failed to retrieve offset", e);
@@ -900,6 +1136,8 @@ public class IFD extends HashMap<Integer, Object> {
 			offsets = getIFDLongArray(STRIP_OFFSETS);
 		}
 		if (offsets == null) return null;
+		// NB: Do not modify the stored entry value.
+		if (compressedOffsets == null) offsets = offsets.clone();
 
 		for (int i = 0; i < offsets.length; i++) {
 			if (offsets[i] < 0) {
@@ -918,26 +1156,7 @@ public class IFD extends HashMap<Integer, Object> {
 		return offsets;
 	}
 
-	public OnDemandLongArray getOnDemandStripOffsets() {
-		final int tag = isTiled() ? TILE_OFFSETS : STRIP_OFFSETS;
-		final Object offsets = getIFDValue(tag);
-		if (offsets instanceof OnDemandLongArray) {
-			return (OnDemandLongArray) offsets;
-		}
-		return null;
-	}
-
-	/**
-	 * Retrieves strip byte counts for the image (TIFF tag StripByteCounts) from
-	 * this IFD.
-	 *
-	 * @return the byte counts for each strip. The length of the array is equal to
-	 *         the number of strips per image. <i>StripsPerImage =
-	 *         floor((ImageLength + RowsPerStrip - 1) / RowsPerStrip)</i>.
-	 * @throws FormatException if there is a problem parsing the IFD metadata.
-	 * @see #getStripOffsets()
-	 */
-	public long[] getStripByteCounts() throws FormatException {
+	private long[] decodeStripByteCounts() throws FormatException {
 		final int tag = isTiled() ? TILE_BYTE_COUNTS : STRIP_BYTE_COUNTS;
 		long[] byteCounts = getIFDLongArray(tag);
 		if (isTiled() && byteCounts == null) {
@@ -969,9 +1188,7 @@ public class IFD extends HashMap<Integer, Object> {
 
 		final long[] counts = new long[byteCounts.length];
 
-		if (getCompression() == TiffCompression.LZW &&
-			(!containsKey(ROWS_PER_STRIP) || ((imageLength % getRowsPerStrip()[0])) != 0))
-		{
+		if (isDoubledByteCounts()) {
 			for (int i = 0; i < byteCounts.length; i++) {
 				counts[i] = byteCounts[i] * 2;
 			}
@@ -992,19 +1209,14 @@ public class IFD extends HashMap<Integer, Object> {
 		return counts;
 	}
 
-	/**
-	 * Retrieves the number of rows per strip for image (TIFF tag RowsPerStrip)
-	 * from this IFD.
-	 *
-	 * @return the number of rows per strip.
-	 * @throws FormatException if there is a problem parsing the IFD metadata.
-	 */
-	public long[] getRowsPerStrip() throws FormatException {
-		final long[] rowsPerStrip = getIFDLongArray(ROWS_PER_STRIP);
+	private long[] decodeRowsPerStrip() throws FormatException {
+		long[] rowsPerStrip = getIFDLongArray(ROWS_PER_STRIP);
 		if (rowsPerStrip == null) {
 			// create a fake RowsPerStrip entry if one is not present
 			return new long[] { getImageLength() };
 		}
+		// NB: Do not modify the stored entry value.
+		rowsPerStrip = rowsPerStrip.clone();
 
 		// rowsPerStrip should never be more than the total number of rows
 		final long imageLength = getImageLength();
@@ -1090,30 +1302,307 @@ public class IFD extends HashMap<Integer, Object> {
 
 	// -- IFD population methods --
 
+	/** Gets the offset of this IFD in its file, or -1 if unknown. */
+	public long getOffset() {
+		return offset;
+	}
+
+	/** Sets the offset of this IFD in its file. */
+	public void setOffset(final long offset) {
+		this.offset = offset;
+	}
+
 	/** Adds a directory entry to this IFD. */
 	public void putIFDValue(final int tag, final Object value) {
-		put(new Integer(tag), value);
+		put(tag, value);
 	}
 
 	/** Adds a directory entry of type BYTE to this IFD. */
 	public void putIFDValue(final int tag, final short value) {
-		putIFDValue(tag, new Short(value));
+		if (isTag(tag)) set(insert(tag), SHORT, value);
+		else putOther(tag, value);
 	}
 
 	/** Adds a directory entry of type SHORT to this IFD. */
 	public void putIFDValue(final int tag, final int value) {
-		putIFDValue(tag, new Integer(value));
+		if (isTag(tag)) set(insert(tag), INTEGER, value);
+		else putOther(tag, value);
 	}
 
 	/** Adds a directory entry of type LONG to this IFD. */
 	public void putIFDValue(final int tag, final long value) {
-		putIFDValue(tag, new Long(value));
+		if (isTag(tag)) set(insert(tag), LONG, value);
+		else putOther(tag, value);
+	}
+
+	/**
+	 * Releases the unused capacity of this IFD. Worthwhile once an IFD has been
+	 * populated, when many IFDs are kept in memory.
+	 */
+	public void trimToSize() {
+		load();
+		if (size == tags.length) return;
+		tags = Arrays.copyOf(tags, size);
+		kinds = Arrays.copyOf(kinds, size);
+		scalars = Arrays.copyOf(scalars, size);
+		objects = Arrays.copyOf(objects, size);
+	}
+
+	// -- Map API methods --
+
+	/** Gets whether the entries of this IFD have been read. */
+	public boolean isLoaded() {
+		return loader == null;
+	}
+
+	@Override
+	public int size() {
+		load();
+		return otherEntries == null ? size : size + otherEntries.size();
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		if (isTag(key)) return indexOf((Integer) key) >= 0;
+		return otherEntries != null && otherEntries.containsKey(key);
+	}
+
+	@Override
+	public Object get(final Object key) {
+		if (isTag(key)) return getIFDValue((Integer) key);
+		return otherEntries == null ? null : otherEntries.get(key);
+	}
+
+	@Override
+	public Object put(final Integer key, final Object value) {
+		if (!isTag(key)) return putOther(key, value);
+		final int index = insert(key);
+		final Object previous = value(index);
+		set(index, value);
+		return previous;
+	}
+
+	@Override
+	public Object remove(final Object key) {
+		if (!isTag(key)) {
+			if (otherEntries == null || !otherEntries.containsKey(key)) return null;
+			modCount++;
+			return otherEntries.remove(key);
+		}
+		final int index = indexOf((Integer) key);
+		if (index < 0) return null;
+		final Object previous = value(index);
+		removeAt(index);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		loader = null;
+		modCount++;
+		size = 0;
+		tags = NO_TAGS;
+		kinds = null;
+		scalars = null;
+		objects = null;
+		otherEntries = null;
+		invalidate();
+	}
+
+	@Override
+	public Set<Entry<Integer, Object>> entrySet() {
+		if (entrySet == null) entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	// -- Object API methods --
+
+	/**
+	 * Copies this IFD. The copy has its own entry table, so that modifying
+	 * either IFD does not affect the other; the values themselves are shared.
+	 */
+	@Override
+	public IFD clone() {
+		load();
+		final IFD ifd;
+		try {
+			ifd = (IFD) super.clone();
+		}
+		catch (final CloneNotSupportedException e) {
+			throw new InternalError(e);
+		}
+		ifd.entrySet = null;
+		if (tags.length > 0) {
+			ifd.tags = tags.clone();
+			ifd.kinds = kinds.clone();
+			ifd.scalars = scalars.clone();
+			ifd.objects = objects.clone();
+		}
+		if (otherEntries != null) ifd.otherEntries = new HashMap<>(otherEntries);
+		// NB: The decoded strip offsets are never modified, so may be shared.
+		return ifd;
+	}
+
+	// -- Helper methods --
+
+	/** Gets whether the given key is a TIFF tag, so is kept in the table. */
+	private static boolean isTag(final Object key) {
+		if (!(key instanceof Integer)) return false;
+		final int tag = (Integer) key;
+		return tag >= 0 && tag <= 0xffff;
+	}
+
+	/** Maps a key which is not a TIFF tag to the given value. */
+	private Object putOther(final Integer key, final Object value) {
+		load();
+		if (otherEntries == null) otherEntries = new HashMap<>();
+		if (!otherEntries.containsKey(key)) modCount++;
+		return otherEntries.put(key, value);
+	}
+
+	/**
+	 * Gets the slot of the given tag, or {@code -(insertionPoint + 1)} if there
+	 * is no such entry.
+	 */
+	private int indexOf(final int tag) {
+		load();
+		int lo = 0, hi = size - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final int t = tags[mid] & 0xffff;
+			if (t < tag) lo = mid + 1;
+			else if (t > tag) hi = mid - 1;
+			else return mid;
+		}
+		return -(lo + 1);
+	}
+
+	/** Gets the slot of the given tag, inserting an empty slot if needed. */
+	private int insert(final int tag) {
+		int index = indexOf(tag);
+		if (index >= 0) return index;
+		index = -(index + 1);
+		if (size == tags.length) {
+			final int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+			tags = Arrays.copyOf(tags, capacity);
+			kinds = Arrays.copyOf(kinds == null ? new byte[0] : kinds, capacity);
+			scalars = Arrays.copyOf(scalars == null ? new long[0] : scalars,
+				capacity);
+			objects = Arrays.copyOf(objects == null ? new Object[0] : objects,
+				capacity);
+		}
+		final int tail = size - index;
+		System.arraycopy(tags, index, tags, index + 1, tail);
+		System.arraycopy(kinds, index, kinds, index + 1, tail);
+		System.arraycopy(scalars, index, scalars, index + 1, tail);
+		System.arraycopy(objects, index, objects, index + 1, tail);
+		tags[index] = (short) tag;
+		kinds[index] = OBJECT;
+		objects[index] = null;
+		size++;
+		modCount++;
+		return index;
+	}
+
+	private void removeAt(final int index) {
+		final int tail = size - index - 1;
+		System.arraycopy(tags, index + 1, tags, index, tail);
+		System.arraycopy(kinds, index + 1, kinds, index, tail);
+		System.arraycopy(scalars, index + 1, scalars, index, tail);
+		System.arraycopy(objects, index + 1, objects, index, tail);
+		size--;
+		objects[size] = null;
+		modCount++;
+		invalidate();
+	}
+
+	/** Gets the value of the given slot, boxing it if needed. */
+	private Object value(final int index) {
+		switch (kinds[index]) {
+			case BOOLEAN:
+				return Boolean.valueOf(scalars[index] != 0);
+			case SHORT:
+				return Short.valueOf((short) scalars[index]);
+			case INTEGER:
+				return Integer.valueOf((int) scalars[index]);
+			case LONG:
+				return Long.valueOf(scalars[index]);
+			default:
+				return objects[index];
+		}
+	}
+
+	/** Sets the value of the given slot, unboxing it if possible. */
+	private void set(final int index, final Object value) {
+		if (value instanceof Boolean) {
+			set(index, BOOLEAN, ((Boolean) value).booleanValue() ? 1 : 0);
+		}
+		else if (value instanceof Short) {
+			set(index, SHORT, ((Short) value).shortValue());
+		}
+		else if (value instanceof Integer) {
+			set(index, INTEGER, ((Integer) value).intValue());
+		}
+		else if (value instanceof Long) {
+			set(index, LONG, ((Long) value).longValue());
+		}
+		else {
+			kinds[index] = OBJECT;
+			objects[index] = value;
+			invalidate();
+		}
+	}
+
+	private void set(final int index, final byte kind, final long value) {
+		kinds[index] = kind;
+		scalars[index] = value;
+		objects[index] = null;
+		invalidate();
+	}
+
+	/** Reads the entries of a lazily created IFD, if not done yet. */
+	private void load() {
+		if (loader == null) return;
+		synchronized (this) {
+			final Loader l = loader;
+			if (l == null) return;
+			final IFD ifd;
+			try {
+				ifd = l.load();
+			}
+			catch (final IOException e) {
+				throw new UncheckedIOException("Failed to read IFD at offset " +
+					offset, e);
+			}
+			if (ifd != null && ifd.size > 0) {
+				ifd.trimToSize();
+				tags = ifd.tags;
+				kinds = ifd.kinds;
+				scalars = ifd.scalars;
+				objects = ifd.objects;
+				size = ifd.size;
+			}
+			// NB: Publishes the entries to threads which see the loader unset.
+			loader = null;
+		}
+	}
+
+	/** Reads the entries of a lazily created IFD before writing them. */
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		load();
+		out.defaultWriteObject();
+	}
+
+	/** Discards the decoded strip offsets, after a modification. */
+	private void invalidate() {
+		stripOffsets = null;
 	}
 
 	// -- Debugging --
 
 	/** Prints the contents of this IFD. */
 	public void printIFD() {
+		if (log == null) return;
 		log.trace("IFD directory entry values:");
 
 		for (final Integer tag : keySet()) {
@@ -1160,4 +1649,98 @@ public class IFD extends HashMap<Integer, Object> {
 		return DebugUtils.getFieldName(IFD.class, value);
 	}
 
+	// -- Helper classes --
+
+	/** Reads the entries of a lazily created IFD. */
+	public interface Loader {
+
+		/**
+		 * Reads the IFD.
+		 *
+		 * @return The IFD, or null if it has no entries.
+		 */
+		IFD load() throws IOException;
+	}
+
+	/** The entries of this IFD, in ascending tag order. */
+	private class EntrySet extends AbstractSet<Entry<Integer, Object>> {
+
+		@Override
+		public int size() {
+			return IFD.this.size();
+		}
+
+		@Override
+		public void clear() {
+			IFD.this.clear();
+		}
+
+		@Override
+		public Iterator<Entry<Integer, Object>> iterator() {
+			load();
+			return new Iterator<Entry<Integer, Object>>() {
+
+				private int next;
+
+				private int last = -1;
+
+				private int expectedModCount = modCount;
+
+				/** Iterates the other entries, once the table has been iterated. */
+				private Iterator<Entry<Integer, Object>> others;
+
+				@Override
+				public boolean hasNext() {
+					if (next < size) return true;
+					if (others == null) {
+						return otherEntries != null && !otherEntries.isEmpty();
+					}
+					return others.hasNext();
+				}
+
+				@Override
+				public Entry<Integer, Object> next() {
+					if (modCount != expectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+					if (next >= size) {
+						if (others == null) {
+							if (otherEntries == null) throw new NoSuchElementException();
+							others = otherEntries.entrySet().iterator();
+						}
+						last = -1;
+						return others.next();
+					}
+					last = next++;
+					final Integer tag = tags[last] & 0xffff;
+					return new SimpleEntry<Integer, Object>(tag, value(last)) {
+
+						@Override
+						public Object setValue(final Object value) {
+							put(tag, value);
+							return super.setValue(value);
+						}
+					};
+				}
+
+				@Override
+				public void remove() {
+					if (modCount != expectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+					if (others != null) {
+						others.remove();
+						expectedModCount = ++modCount;
+						return;
+					}
+					if (last < 0) throw new IllegalStateException();
+					removeAt(last);
+					next = last;
+					last = -1;
+					expectedModCount = modCount;
+				}
+			};
+		}
+	}
+
 }
@@ -32,45 +32,158 @@ package io.scif.formats.tiff;
 import io.scif.io.RandomAccessInputStream;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.scijava.util.Bytes;
 
 /**
+ * An array of unsigned integers stored in a file, such as the strip offsets of
+ * a large TIFF, which are read only when needed.
+ * <p>
+ * Entries are read in blocks, and the most recently used blocks are kept in
+ * memory, so that neighboring entries do not each cost a seek.
+ * </p>
+ *
  * @author Melissa Linkert
  */
 public class OnDemandLongArray {
 
+	// -- Constants --
+
+	/** Number of entries read at once. */
+	private static final int BLOCK_SIZE = 4096;
+
+	/** Maximum number of blocks kept in memory. */
+	private static final int MAX_BLOCKS = 16;
+
+	// -- Fields --
+
 	private RandomAccessInputStream stream;
 
 	private int size;
 
 	private long start;
 
+	/** Width of each entry in bytes: 4 or 8. */
+	private final int bytesPerEntry;
+
+	private final boolean littleEndian;
+
+	/** Recently used blocks, by block index. */
+	private final LinkedHashMap<Integer, long[]> blocks = new LinkedHashMap<
+		Integer, long[]>(16, 0.75f, true)
+	{
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Integer, long[]> e) {
+			return size() > MAX_BLOCKS;
+		}
+	};
+
+	// -- Constructors --
+
+	/**
+	 * Creates an array of 8-byte entries, starting at the stream's current
+	 * position.
+	 */
 	public OnDemandLongArray(final RandomAccessInputStream in) throws IOException
 	{
+		this(in, 8);
+	}
+
+	/**
+	 * Creates an array of entries of the given width, starting at the stream's
+	 * current position. Entries are read in the stream's current byte order.
+	 *
+	 * @param bytesPerEntry Width of each entry: 4 or 8 bytes.
+	 */
+	public OnDemandLongArray(final RandomAccessInputStream in,
+		final int bytesPerEntry) throws IOException
+	{
+		if (bytesPerEntry != 4 && bytesPerEntry != 8) {
+			throw new IllegalArgumentException("Invalid entry width: " +
+				bytesPerEntry);
+		}
 		stream = in;
 		start = stream.getFilePointer();
+		this.bytesPerEntry = bytesPerEntry;
+		littleEndian = stream.isLittleEndian();
 	}
 
-	public void setSize(final int size) {
+	// -- OnDemandLongArray methods --
+
+	public synchronized void setSize(final int size) {
 		this.size = size;
+		blocks.clear();
 	}
 
-	public long get(final int index) throws IOException {
-		final long fp = stream.getFilePointer();
-		stream.seek(start + index * 8);
-		final long value = stream.readLong();
-		stream.seek(fp);
-		return value;
+	public synchronized long get(final int index) throws IOException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Entry " + index + " of " + size);
+		}
+		final int block = index / BLOCK_SIZE;
+		long[] values = blocks.get(block);
+		if (values == null) {
+			final int first = block * BLOCK_SIZE;
+			values = new long[Math.min(BLOCK_SIZE, size - first)];
+			read(first, values, 0, values.length);
+			blocks.put(block, values);
+		}
+		return values[index % BLOCK_SIZE];
+	}
+
+	/**
+	 * Reads consecutive entries at once.
+	 *
+	 * @param dst Array into which the entries are copied, starting at index 0.
+	 * @param from Index of the first entry to read.
+	 * @param count Number of entries to read.
+	 */
+	public synchronized void get(final long[] dst, final int from,
+		final int count) throws IOException
+	{
+		if (from < 0 || count < 0 || from + count > size) {
+			throw new IndexOutOfBoundsException("Entries " + from + "-" + (from +
+				count) + " of " + size);
+		}
+		// NB: Large ranges bypass the block cache, which they would only flush.
+		for (int i = 0; i < count; i += BLOCK_SIZE) {
+			read(from + i, dst, i, Math.min(BLOCK_SIZE, count - i));
+		}
 	}
 
 	public long size() {
 		return size;
 	}
 
-	public void close() throws IOException {
+	public synchronized void close() throws IOException {
 		stream.close();
 		stream = null;
 		size = 0;
 		start = 0;
+		blocks.clear();
+	}
+
+	// -- Helper methods --
+
+	/** Reads the given entries, leaving the stream's position unchanged. */
+	private void read(final int from, final long[] dst, final int offset,
+		final int count) throws IOException
+	{
+		final byte[] bytes = new byte[count * bytesPerEntry];
+		final long fp = stream.getFilePointer();
+		try {
+			stream.seek(start + (long) from * bytesPerEntry);
+			stream.readFully(bytes);
+		}
+		finally {
+			stream.seek(fp);
+		}
+		for (int i = 0; i < count; i++) {
+			dst[offset + i] = Bytes.toLong(bytes, i * bytesPerEntry, bytesPerEntry,
+				littleEndian);
+		}
 	}
 
 }
@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import io.scif.util.FormatTools;
+
+import java.util.List;
+
+import org.scijava.util.Bytes;
+
+/**
+ * One resolution level of a tiled pyramid written by {@link TiffSaver}. Rows
+ * of the level are received top to bottom and buffered until a full row of
+ * tiles is available, which is then cut into tiles. Each pair of rows is
+ * averaged 2x2 into a row of the next, coarser, level as soon as it is
+ * complete, so that no level ever holds more than a row of tiles in memory.
+ */
+final class PyramidLevel {
+
+	// -- Fields --
+
+	/** The IFD describing this level. */
+	final IFD ifd;
+
+	final int width;
+
+	final int height;
+
+	/** Number of bytes per row of this level. */
+	final int rowBytes;
+
+	/** Offsets of the tiles of this level, as they are written. */
+	final long[] offsets;
+
+	/** Byte counts of the tiles of this level, as they are written. */
+	final long[] byteCounts;
+
+	/** The next, coarser, level; null for the coarsest one. */
+	final PyramidLevel next;
+
+	private final int tileWidth;
+
+	private final int tileHeight;
+
+	private final int tilesPerRow;
+
+	private final int pixelType;
+
+	private final int bytesPerSample;
+
+	private final int channels;
+
+	private final int pixelBytes;
+
+	private final boolean little;
+
+	/** The rows of the current row of tiles. */
+	private final byte[] band;
+
+	/** Number of rows received so far. */
+	private int rows;
+
+	/** The last even row, waiting to be averaged with the following one. */
+	private final byte[] pending;
+
+	/** Buffer for the rows of the next level. */
+	private final byte[] reduced;
+
+	// -- Constructor --
+
+	PyramidLevel(final IFD ifd, final int width, final int height,
+		final int tileWidth, final int tileHeight, final int pixelType,
+		final int channels, final boolean little, final PyramidLevel next)
+	{
+		this.ifd = ifd;
+		this.width = width;
+		this.height = height;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.pixelType = pixelType;
+		this.channels = channels;
+		this.little = little;
+		this.next = next;
+		tilesPerRow = (width + tileWidth - 1) / tileWidth;
+		final int tileRows = (height + tileHeight - 1) / tileHeight;
+		offsets = new long[tilesPerRow * tileRows];
+		byteCounts = new long[tilesPerRow * tileRows];
+		bytesPerSample = FormatTools.getBytesPerPixel(pixelType);
+		pixelBytes = bytesPerSample * channels;
+		rowBytes = width * pixelBytes;
+		band = new byte[tileHeight * rowBytes];
+		pending = next == null ? null : new byte[rowBytes];
+		reduced = next == null ? null : new byte[next.rowBytes];
+	}
+
+	// -- PyramidLevel methods --
+
+	/** Gets the number of rows received so far. */
+	int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Adds the next row of this level, and passes the rows it completes on to
+	 * the coarser levels.
+	 *
+	 * @param src Buffer holding the row's interleaved samples.
+	 * @param offset Offset of the row within the buffer.
+	 * @param ready List to which the tiles completed by this row, at any level,
+	 *          are added.
+	 */
+	void addRow(final byte[] src, final int offset, final List<Tile> ready) {
+		final int bandRow = rows % tileHeight;
+		System.arraycopy(src, offset, band, bandRow * rowBytes, rowBytes);
+		rows++;
+		if (bandRow == tileHeight - 1 || rows == height) {
+			cutTiles((rows - 1) / tileHeight, bandRow + 1, ready);
+		}
+		if (next == null) return;
+		if ((rows & 1) == 1) {
+			if (rows < height) {
+				System.arraycopy(src, offset, pending, 0, rowBytes);
+				return;
+			}
+			// NB: The last row of an odd height is paired with itself.
+			reduce(src, offset, src, offset);
+		}
+		else reduce(pending, 0, src, offset);
+		next.addRow(reduced, 0, ready);
+	}
+
+	// -- Helper methods --
+
+	/** Cuts the buffered rows into tiles, padding them with zeroes. */
+	private void cutTiles(final int tileRow, final int bandRows,
+		final List<Tile> ready)
+	{
+		final int tileRowBytes = tileWidth * pixelBytes;
+		for (int t = 0; t < tilesPerRow; t++) {
+			final int x = t * tileWidth;
+			final int count = Math.min(tileWidth, width - x) * pixelBytes;
+			final byte[] data = new byte[tileHeight * tileRowBytes];
+			for (int r = 0; r < bandRows; r++) {
+				System.arraycopy(band, r * rowBytes + x * pixelBytes, data, r *
+					tileRowBytes, count);
+			}
+			ready.add(new Tile(this, tileRow * tilesPerRow + t, data));
+		}
+	}
+
+	/**
+	 * Averages two rows of this level 2x2 into the buffer for the next level.
+	 * The last column of an odd width is paired with itself.
+	 */
+	private void reduce(final byte[] a, final int aOff, final byte[] b,
+		final int bOff)
+	{
+		for (int x = 0; x < next.width; x++) {
+			final int left = 2 * x * pixelBytes;
+			final int right = 2 * x + 1 < width ? left + pixelBytes : left;
+			for (int c = 0; c < channels; c++) {
+				final int s = c * bytesPerSample;
+				final int dst = x * pixelBytes + s;
+				if (pixelType == FormatTools.UINT8) {
+					final int sum = (a[aOff + left + s] & 0xff) +
+						(a[aOff + right + s] & 0xff) + (b[bOff + left + s] & 0xff) +
+						(b[bOff + right + s] & 0xff);
+					reduced[dst] = (byte) ((sum + 2) >> 2);
+				}
+				else {
+					final double sum = sample(a, aOff + left + s) +
+						sample(a, aOff + right + s) + sample(b, bOff + left + s) +
+						sample(b, bOff + right + s);
+					setSample(reduced, dst, sum / 4);
+				}
+			}
+		}
+	}
+
+	private double sample(final byte[] buf, final int off) {
+		switch (pixelType) {
+			case FormatTools.INT8:
+				return buf[off];
+			case FormatTools.INT16:
+				return (short) Bytes.toInt(buf, off, 2, little);
+			case FormatTools.INT32:
+				return Bytes.toInt(buf, off, 4, little);
+			case FormatTools.FLOAT:
+				return Float.intBitsToFloat(Bytes.toInt(buf, off, 4, little));
+			case FormatTools.DOUBLE:
+				return Double.longBitsToDouble(Bytes.toLong(buf, off, 8, little));
+			default:
+				return Bytes.toLong(buf, off, bytesPerSample, little) &
+					(-1L >>> (64 - 8 * bytesPerSample));
+		}
+	}
+
+	private void setSample(final byte[] buf, final int off, final double value) {
+		switch (pixelType) {
+			case FormatTools.FLOAT:
+				Bytes.unpack(Float.floatToIntBits((float) value), buf, off, 4, little);
+				break;
+			case FormatTools.DOUBLE:
+				Bytes.unpack(Double.doubleToLongBits(value), buf, off, 8, little);
+				break;
+			default:
+				Bytes.unpack(Math.round(value), buf, off, bytesPerSample, little);
+		}
+	}
+
+	// -- Helper classes --
+
+	/** An uncompressed tile of a level, ready to be compressed and written. */
+	static final class Tile {
+
+		final PyramidLevel level;
+
+		final int index;
+
+		byte[] data;
+
+		Tile(final PyramidLevel level, final int index, final byte[] data) {
+			this.level = level;
+			this.index = index;
+			this.data = data;
+		}
+	}
+
+}
@@ -38,12 +38,22 @@ import io.scif.enumeration.EnumException;
 import io.scif.io.RandomAccessInputStream;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.Vector;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.scijava.AbstractContextual;
 import org.scijava.Context;
 import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 import org.scijava.util.Bytes;
 import org.scijava.util.IntRect;
 
@@ -57,6 +67,31 @@ import org.scijava.util.IntRect;
  */
 public class TiffParser extends AbstractContextual {
 
+	// -- Constants --
+
+	/**
+	 * Compression schemes whose codecs may decode several tiles concurrently.
+	 */
+	private static final Set<TiffCompression> PARALLEL_COMPRESSIONS = EnumSet
+		.of(TiffCompression.DEFAULT_UNCOMPRESSED, TiffCompression.UNCOMPRESSED,
+			TiffCompression.LZW, TiffCompression.PACK_BITS, TiffCompression.DEFLATE,
+			TiffCompression.PROPRIETARY_DEFLATE);
+
+	/** Largest gap between tiles which are read together. */
+	private static final int MAX_READ_GAP = 64 * 1024;
+
+	/** Largest span of tiles which are read together. */
+	private static final int MAX_READ_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Number of equally spaced IFDs after which the rest of the IFD chain is
+	 * assumed to continue with the same spacing, until shown otherwise.
+	 */
+	private static final int UNIFORM_IFDS = 4;
+
+	/** Number of IFDs checked to confirm a run of equally spaced IFDs. */
+	private static final int UNIFORM_SAMPLES = 32;
+
 	// -- Fields --
 
 	/** Input source from which to parse TIFF data. */
@@ -65,6 +100,9 @@ public class TiffParser extends AbstractContextual {
 	/** Cached tile buffer to avoid re-allocations when reading tiles. */
 	private byte[] cachedTileBuffer;
 
+	/** Decoded tiles kept for reuse. */
+	private final TileCache tileCache = new TileCache();
+
 	/** Whether or not the TIFF file contains BigTIFF data. */
 	private boolean bigTiff;
 
@@ -77,12 +115,22 @@ public class TiffParser extends AbstractContextual {
 
 	private boolean doCaching;
 
+	private boolean parallelDecoding = false;
+
+	private boolean inferUniformIFDs = false;
+
 	/** Cached list of IFDs in the current file. */
 	private IFDList ifdList;
 
 	/** Cached first IFD in the current file. */
 	private IFD firstIFD;
 
+	/** Last IFD whose pixel data layout was examined. */
+	private IFD contiguousIFD;
+
+	/** Offset of the last examined IFD's contiguous pixel data, or -1. */
+	private long contiguousOffset;
+
 	private final SCIFIO scifio;
 
 	private final LogService log;
@@ -90,6 +138,9 @@ public class TiffParser extends AbstractContextual {
 	/** Codec options to be used when decoding compressed pixel data. */
 	private CodecOptions codecOptions = CodecOptions.getDefaultOptions();
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// -- Constructors --
 
 	/** Constructs a new TIFF parser from the given file name. */
@@ -132,6 +183,7 @@ public class TiffParser extends AbstractContextual {
 	 */
 	public void setCodecOptions(final CodecOptions codecOptions) {
 		this.codecOptions = codecOptions;
+		tileCache.clear();
 	}
 
 	/**
@@ -157,6 +209,62 @@ public class TiffParser extends AbstractContextual {
 	/** Sets whether or not YCbCr color correction is allowed. */
 	public void setYCbCrCorrection(final boolean correctionAllowed) {
 		ycbcrCorrection = correctionAllowed;
+		tileCache.clear();
+	}
+
+	/**
+	 * Sets whether or not the tiles of a region may be decoded concurrently.
+	 * This only applies to compression schemes whose codecs are thread-safe, and
+	 * yields the same samples as decoding the tiles one after another.
+	 */
+	public void setParallelDecoding(final boolean parallel) {
+		parallelDecoding = parallel;
+	}
+
+	/** Gets whether or not the tiles of a region may be decoded concurrently. */
+	public boolean isParallelDecoding() {
+		return parallelDecoding;
+	}
+
+	/**
+	 * Sets whether or not {@link #getIFDOffsets()} may infer the offsets of
+	 * equally spaced IFDs, as in the stacks written by ImageJ, rather than
+	 * following every link. Only a sample of the inferred IFDs is checked, so
+	 * this must not be enabled for files whose IFDs may have been relinked, e.g.
+	 * files edited in place. The default is false.
+	 */
+	public void setInferUniformIFDs(final boolean infer) {
+		inferUniformIFDs = infer;
+	}
+
+	/** Gets whether or not the offsets of equally spaced IFDs may be inferred. */
+	public boolean isInferUniformIFDs() {
+		return inferUniformIFDs;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of decoded tiles to keep, so that reading
+	 * neighbouring or overlapping regions does not decode the same tiles again.
+	 * The least recently used tiles are discarded first. The default, 0,
+	 * disables the cache.
+	 */
+	public void setTileCacheSize(final long bytes) {
+		tileCache.setMaxBytes(bytes);
+	}
+
+	/** Gets the maximum number of bytes of decoded tiles to keep. */
+	public long getTileCacheSize() {
+		return tileCache.getMaxBytes();
+	}
+
+	/** Gets the number of tiles which were found in the tile cache. */
+	public long getTileCacheHits() {
+		return tileCache.getHits();
+	}
+
+	/** Gets the number of tiles which were looked up in vain in the tile cache. */
+	public long getTileCacheMisses() {
+		return tileCache.getMisses();
 	}
 
 	/** Gets the stream from which TIFF data is being parsed. */
@@ -289,30 +397,70 @@ public class TiffParser extends AbstractContextual {
 		return exif;
 	}
 
-	/** Gets the offsets to every IFD in the file. */
+	/**
+	 * Gets the offsets to every IFD in the file.
+	 * <p>
+	 * If {@link #setInferUniformIFDs inference} is enabled, once several
+	 * consecutive IFDs are equally spaced, the extent of the run of equally
+	 * spaced IFDs is found by bisection, and a sample of its IFDs is checked,
+	 * rather than visiting each of them.
+	 * </p>
+	 */
 	public long[] getIFDOffsets() throws IOException {
-		// check TIFF header
-		final int bytesPerEntry =
-			bigTiff ? TiffConstants.BIG_TIFF_BYTES_PER_ENTRY
-				: TiffConstants.BYTES_PER_ENTRY;
-
-		final Vector<Long> offsets = new Vector<>();
+		final long length = in.length();
+		long[] offsets = new long[16];
+		int count = 0;
+		boolean uniform = inferUniformIFDs;
 		long offset = getFirstOffset();
-		while (offset > 0 && offset < in.length()) {
+		while (offset > 0 && offset < length) {
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, 2 * count);
+			}
+			offsets[count++] = offset;
 			in.seek(offset);
-			offsets.add(offset);
-			final int nEntries =
-				bigTiff ? (int) in.readLong() : in.readUnsignedShort();
-			in.skipBytes(nEntries * bytesPerEntry);
-			offset = getNextOffset(offset);
-		}
+			final long nEntries = readEntryCount();
+			in.skipBytes((int) (nEntries * getBytesPerEntry()));
+			long next = getNextOffset(offset);
 
-		final long[] f = new long[offsets.size()];
-		for (int i = 0; i < f.length; i++) {
-			f[i] = offsets.get(i).longValue();
+			final long spacing = next - offset;
+			if (uniform && spacing > 0 && count > UNIFORM_IFDS &&
+				isUniform(offsets, count, spacing))
+			{
+				final int run = countUniformIFDs(next, spacing, nEntries);
+				if (run == 0) uniform = false;
+				if (count + run > offsets.length) {
+					offsets = Arrays.copyOf(offsets, Math.max(2 * count, count + run));
+				}
+				for (int i = 0; i < run; i++) {
+					offsets[count++] = next;
+					next += spacing;
+				}
+			}
+			offset = next;
 		}
+		return Arrays.copyOf(offsets, count);
+	}
 
-		return f;
+	/**
+	 * Gets the IFD stored at the given offset, without reading it yet. Its
+	 * entries, including those stored elsewhere in the file, are read when any
+	 * of them is first accessed.
+	 *
+	 * @return The IFD, or null if the offset is outside of the file.
+	 */
+	public IFD getLazyIFD(final long offset) throws IOException {
+		if (offset < 0 || offset >= in.length()) return null;
+		return new IFD(log, offset, () -> {
+			final long fp = in.getFilePointer();
+			try {
+				final IFD ifd = getIFD(offset);
+				if (ifd != null) fillInIFD(ifd);
+				return ifd;
+			}
+			finally {
+				in.seek(fp);
+			}
+		});
 	}
 
 	/**
@@ -374,6 +522,7 @@ public class TiffParser extends AbstractContextual {
 	public IFD getIFD(final long offset) throws IOException {
 		if (offset < 0 || offset >= in.length()) return null;
 		final IFD ifd = new IFD(log);
+		ifd.setOffset(offset);
 
 		// save little-endian flag to internal LITTLE_ENDIAN tag
 		ifd.put(new Integer(IFD.LITTLE_ENDIAN), Boolean.valueOf(in.isLittleEndian()));
@@ -438,6 +587,7 @@ public class TiffParser extends AbstractContextual {
 		}
 
 		in.seek(offset + baseOffset + bytesPerEntry * numEntries);
+		ifd.trimToSize();
 
 		return ifd;
 	}
@@ -528,6 +678,13 @@ public class TiffParser extends AbstractContextual {
 		else if (type == IFDType.LONG || type == IFDType.IFD) {
 			// 32-bit (4-byte) unsigned integer
 			if (count == 1) return new Long(in.readInt());
+			if (equalStrips && (entry.getTag() == IFD.STRIP_OFFSETS ||
+				entry.getTag() == IFD.TILE_OFFSETS))
+			{
+				final OnDemandLongArray offsets = new OnDemandLongArray(in, 4);
+				offsets.setSize(count);
+				return offsets;
+			}
 			final long[] longs = new long[count];
 			for (int j = 0; j < count; j++) {
 				if (in.getFilePointer() + 4 <= in.length()) {
@@ -634,99 +791,24 @@ public class TiffParser extends AbstractContextual {
 		getTile(final IFD ifd, byte[] buf, final int row, final int col)
 			throws FormatException, IOException
 	{
-		final byte[] jpegTable = (byte[]) ifd.getIFDValue(IFD.JPEG_TABLES);
-
 		codecOptions.interleaved = true;
 		codecOptions.littleEndian = ifd.isLittleEndian();
 
-		final long tileWidth = ifd.getTileWidth();
-		final long tileLength = ifd.getTileLength();
-		final int samplesPerPixel = ifd.getSamplesPerPixel();
-		final int planarConfig = ifd.getPlanarConfiguration();
-		final TiffCompression compression = ifd.getCompression();
-
-		final long numTileCols = ifd.getTilesPerRow();
-
-		final int pixel = ifd.getBytesPerSample()[0];
-		final int effectiveChannels = planarConfig == 2 ? 1 : samplesPerPixel;
-
-		final long[] stripByteCounts = ifd.getStripByteCounts();
-		final long[] rowsPerStrip = ifd.getRowsPerStrip();
-
-		final int offsetIndex = (int) (row * numTileCols + col);
-		int countIndex = offsetIndex;
-		if (equalStrips) {
-			countIndex = 0;
-		}
-		if (stripByteCounts[countIndex] == (rowsPerStrip[0] * tileWidth) &&
-			pixel > 1)
-		{
-			stripByteCounts[countIndex] *= pixel;
-		}
-
-		long stripOffset = 0;
-		long nStrips = 0;
-
-		if (ifd.getOnDemandStripOffsets() != null) {
-			final OnDemandLongArray stripOffsets = ifd.getOnDemandStripOffsets();
-			stripOffset = stripOffsets.get(offsetIndex);
-			nStrips = stripOffsets.size();
-		}
-		else {
-			final long[] stripOffsets = ifd.getStripOffsets();
-			stripOffset = stripOffsets[offsetIndex];
-			nStrips = stripOffsets.length;
-		}
-
-		final int size = (int) (tileWidth * tileLength * pixel * effectiveChannels);
+		final long[] range = getTileRange(ifd, row, col);
+		final long stripOffset = range[0];
+		final long byteCount = range[1];
 
-		if (buf == null) buf = new byte[size];
-		if (stripByteCounts[countIndex] == 0 || stripOffset >= in.length()) {
+		if (buf == null) buf = new byte[getTileSize(ifd)];
+		if (byteCount == 0 || stripOffset >= in.length()) {
 			return buf;
 		}
-		byte[] tile = new byte[(int) stripByteCounts[countIndex]];
+		final byte[] tile = new byte[(int) byteCount];
 
 		log.debug("Reading tile Length " + tile.length + " Offset " + stripOffset);
 		in.seek(stripOffset);
 		in.read(tile);
 
-		codecOptions.maxBytes = Math.max(size, tile.length);
-		codecOptions.ycbcr =
-			ifd.getPhotometricInterpretation() == PhotoInterp.Y_CB_CR &&
-				ifd.getIFDIntValue(IFD.Y_CB_CR_SUB_SAMPLING) == 1 && ycbcrCorrection;
-
-		if (jpegTable != null) {
-			final byte[] q = new byte[jpegTable.length + tile.length - 4];
-			System.arraycopy(jpegTable, 0, q, 0, jpegTable.length - 2);
-			System.arraycopy(tile, 2, q, jpegTable.length - 2, tile.length - 2);
-			tile = compression.decompress(scifio.codec(), q, codecOptions);
-		}
-		else tile = compression.decompress(scifio.codec(), tile, codecOptions);
-		scifio.tiff().undifference(tile, ifd);
-		unpackBytes(buf, 0, tile, ifd);
-
-		if (planarConfig == 2 && !ifd.isTiled() && ifd.getSamplesPerPixel() > 1) {
-			final int channel = (int) (row % nStrips);
-			if (channel < ifd.getBytesPerSample().length) {
-				final int realBytes = ifd.getBytesPerSample()[channel];
-				if (realBytes != pixel) {
-					// re-pack pixels to account for differing bits per sample
-
-					final boolean littleEndian = ifd.isLittleEndian();
-					final int[] samples = new int[buf.length / pixel];
-					for (int i = 0; i < samples.length; i++) {
-						samples[i] =
-							Bytes.toInt(buf, i * realBytes, realBytes, littleEndian);
-					}
-
-					for (int i = 0; i < samples.length; i++) {
-						Bytes.unpack(samples[i], buf, i * pixel, pixel,
-							littleEndian);
-					}
-				}
-			}
-		}
-
+		decodeTile(ifd, buf, tile, row, ifd.getStripCount(), codecOptions);
 		return buf;
 	}
 
@@ -764,7 +846,6 @@ public class TiffParser extends AbstractContextual {
 			tileLength = height;
 		}
 
-		long numTileRows = ifd.getTilesPerColumn();
 		final long numTileCols = ifd.getTilesPerRow();
 
 		final PhotoInterp photoInterp = ifd.getPhotometricInterpretation();
@@ -796,6 +877,15 @@ public class TiffParser extends AbstractContextual {
 		log.trace("reading image data (samplesPerPixel=" + samplesPerPixel +
 			"; numSamples=" + numSamples + ")");
 
+		// special case: if the rows are stored uncompressed, one after another,
+		// in the layout we return, then we can read them all at once
+		final long rowsOffset = getContiguousOffset(ifd, x, y, width, height);
+		if (rowsOffset >= 0 && overlapX == 0 && overlapY == 0) {
+			in.seek(rowsOffset);
+			in.readFully(buf, 0, Math.min(buf.length, numSamples * pixel));
+			return adjustFillOrder(ifd, buf);
+		}
+
 		final TiffCompression compression = ifd.getCompression();
 
 		if (compression == TiffCompression.JPEG_2000 ||
@@ -844,21 +934,9 @@ public class TiffParser extends AbstractContextual {
 			return adjustFillOrder(ifd, buf);
 		}
 
-		final long nrows = numTileRows;
-		if (planarConfig == 2) numTileRows *= samplesPerPixel;
-
-		final IntRect imageBounds = new IntRect(x, y, (int) width, (int) height);
-
-		final int endX = (int) width + x;
-		final int endY = (int) height + y;
-
-		final long w = tileWidth;
-		final long h = tileLength;
-		final int rowLen = pixel * (int) w;// tileWidth;
-		final int tileSize = (int) (rowLen * h);// tileLength);
-
-		final int planeSize = (int) (width * height * pixel);
-		final int outputRowLen = (int) (pixel * width);
+		final Region region = new Region(ifd, x, y, width, height, tileLength,
+			overlapX, overlapY);
+		List<int[]> tiles = region.getTiles();
 
 		int bufferSizeSamplesPerPixel = samplesPerPixel;
 		if (ifd.getPlanarConfiguration() == 2) bufferSizeSamplesPerPixel = 1;
@@ -866,85 +944,59 @@ public class TiffParser extends AbstractContextual {
 		final int bufferSize =
 			(int) tileWidth * (int) tileLength * bufferSizeSamplesPerPixel * bpp;
 
-		cachedTileBuffer = new byte[bufferSize];
-
-		final IntRect tileBounds =
-			new IntRect(0, 0, (int) tileWidth, (int) tileLength);
-
-		for (int row = 0; row < numTileRows; row++) {
-			// make the first row shorter to account for row overlap
-			if (row == 0) {
-				tileBounds.height = (int) (tileLength - overlapY);
-			}
-
-			for (int col = 0; col < numTileCols; col++) {
-				// make the first column narrower to account for column overlap
-				if (col == 0) {
-					tileBounds.width = (int) (tileWidth - overlapX);
-				}
-
-				tileBounds.x = col * (int) (tileWidth - overlapX);
-				tileBounds.y = row * (int) (tileLength - overlapY);
-
-				if (planarConfig == 2) {
-					tileBounds.y = (int) ((row % nrows) * (tileLength - overlapY));
-				}
-
-				if (!imageBounds.intersects(tileBounds)) continue;
-
-				getTile(ifd, cachedTileBuffer, row, col);
-
-				// adjust tile bounds, if necessary
-
-				final int tileX = Math.max(tileBounds.x, x);
-				final int tileY = Math.max(tileBounds.y, y);
-				int realX = tileX % (int) (tileWidth - overlapX);
-				int realY = tileY % (int) (tileLength - overlapY);
-
-				int twidth = (int) Math.min(endX - tileX, tileWidth - realX);
-				if (twidth <= 0) {
-					twidth = (int) Math.max(endX - tileX, tileWidth - realX);
-				}
-				int theight = (int) Math.min(endY - tileY, tileLength - realY);
-				if (theight <= 0) {
-					theight = (int) Math.max(endY - tileY, tileLength - realY);
-				}
-
-				// copy appropriate portion of the tile to the output buffer
-
-				final int copy = pixel * twidth;
+		// copy cached tiles first; without overlap, the order does not matter
+		final boolean caching = overlapX == 0 && overlapY == 0 &&
+			tileLength == ifd.getTileLength() && tileCache.accepts(ifd);
+		if (caching) {
+			tiles = copyCachedTiles(ifd, buf, region, tiles);
+			if (tiles.isEmpty()) return adjustFillOrder(ifd, buf);
+		}
 
-				realX *= pixel;
-				realY *= rowLen;
+		if (parallelDecoding && threadService != null && tiles.size() > 1 &&
+			overlapX == 0 && overlapY == 0 && PARALLEL_COMPRESSIONS.contains(
+				compression) && getTilesParallel(ifd, buf, region, tiles, bufferSize,
+					caching))
+		{
+			return adjustFillOrder(ifd, buf);
+		}
 
-				for (int q = 0; q < effectiveChannels; q++) {
-					int src = q * tileSize + realX + realY;
-					int dest =
-						q * planeSize + pixel * (tileX - x) + outputRowLen * (tileY - y);
-					if (planarConfig == 2) dest += (planeSize * (row / nrows));
+		if (cachedTileBuffer == null || cachedTileBuffer.length != bufferSize) {
+			cachedTileBuffer = new byte[bufferSize];
+		}
+		else Arrays.fill(cachedTileBuffer, (byte) 0);
 
-					// copying the tile directly will only work if there is no
-					// overlap;
-					// otherwise, we may be overwriting a previous tile
-					// (or the current tile may be overwritten by a subsequent
-					// tile)
-					if (rowLen == outputRowLen && overlapX == 0 && overlapY == 0) {
-						System.arraycopy(cachedTileBuffer, src, buf, dest, copy * theight);
-					}
-					else {
-						for (int tileRow = 0; tileRow < theight; tileRow++) {
-							System.arraycopy(cachedTileBuffer, src, buf, dest, copy);
-							src += rowLen;
-							dest += outputRowLen;
-						}
-					}
-				}
+		for (final int[] tile : tiles) {
+			getTile(ifd, cachedTileBuffer, tile[0], tile[1]);
+			region.copyTile(cachedTileBuffer, buf, tile);
+			if (caching && hasTileData(ifd, tile[0], tile[1])) {
+				tileCache.put(ifd, tile[0], tile[1], cachedTileBuffer);
 			}
 		}
 
 		return adjustFillOrder(ifd, buf);
 	}
 
+	/**
+	 * Gets a read-only view of the given rows of samples, if they are stored
+	 * uncompressed and contiguously, in the layout returned by
+	 * {@link #getSamples(IFD, byte[], int, int, long, long)}. Where the stream is
+	 * backed by a file, the view is memory mapped rather than copied.
+	 *
+	 * @return The view, in the byte order of the IFD, or null if the rows must
+	 *         be read with {@link #getSamples}.
+	 */
+	public ByteBuffer getSamplesBuffer(final IFD ifd, final int y,
+		final long height) throws FormatException, IOException
+	{
+		final long width = ifd.getImageWidth();
+		final long offset = getContiguousOffset(ifd, 0, y, width, height);
+		if (offset < 0 || ifd.getFillOrder() == FillOrder.REVERSED) return null;
+		final long len = width * height * ifd.getBytesPerSample()[0];
+		if (len > Integer.MAX_VALUE) return null;
+		return in.getView(offset, (int) len).order(ifd.isLittleEndian()
+			? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+	}
+
 	public TiffIFDEntry readTiffIFDEntry() throws IOException {
 		final int entryTag = in.readUnsignedShort();
 
@@ -972,6 +1024,248 @@ public class TiffParser extends AbstractContextual {
 		return new TiffIFDEntry(entryTag, entryType, valueCount, offset);
 	}
 
+	// -- Helper methods - tile decoding --
+
+	/** Gets the file offset and byte count of the given tile. */
+	private long[] getTileRange(final IFD ifd, final int row, final int col)
+		throws FormatException
+	{
+		final long tileWidth = ifd.getTileWidth();
+		final long numTileCols = ifd.getTilesPerRow();
+		final int pixel = ifd.getBytesPerSample()[0];
+		final long rowsPerStrip = ifd.getRowsPerStrip()[0];
+
+		final int offsetIndex = (int) (row * numTileCols + col);
+		final int countIndex = equalStrips ? 0 : offsetIndex;
+		long byteCount = ifd.getStripByteCount(countIndex);
+		if (byteCount == rowsPerStrip * tileWidth && pixel > 1) {
+			byteCount *= pixel;
+		}
+		return new long[] { ifd.getStripOffset(offsetIndex), byteCount };
+	}
+
+	/**
+	 * Gets the file offset of the given region, if it spans whole rows which are
+	 * stored uncompressed, one after another, in exactly the layout returned by
+	 * {@link #getSamples}. Otherwise, returns -1.
+	 */
+	private long getContiguousOffset(final IFD ifd, final int x, final int y,
+		final long width, final long height) throws FormatException, IOException
+	{
+		final long imageWidth = ifd.getImageWidth();
+		if (x != 0 || width != imageWidth || y < 0 ||
+			y + height > ifd.getImageLength())
+		{
+			return -1;
+		}
+		if (ifd != contiguousIFD) {
+			contiguousOffset = findContiguousOffset(ifd);
+			contiguousIFD = ifd;
+		}
+		if (contiguousOffset < 0) return -1;
+		return contiguousOffset + y * imageWidth * ifd.getBytesPerSample()[0];
+	}
+
+	/**
+	 * Gets the file offset of the first row of the given IFD's pixel data, if it
+	 * needs no decoding and its strips (or full width tiles) follow one another.
+	 * Otherwise, returns -1.
+	 */
+	private long findContiguousOffset(final IFD ifd) throws FormatException,
+		IOException
+	{
+		final PhotoInterp photoInterp = ifd.getPhotometricInterpretation();
+		final int bits = ifd.getBitsPerSample()[0];
+		if (ifd.getCompression() != TiffCompression.UNCOMPRESSED ||
+			ifd.getSamplesPerPixel() != 1 || bits % 8 != 0 ||
+			ifd.getIFDIntValue(IFD.PREDICTOR, 1) != 1 ||
+			ifd.getTileWidth() != ifd.getImageWidth() ||
+			photoInterp == PhotoInterp.WHITE_IS_ZERO ||
+			photoInterp == PhotoInterp.CMYK || photoInterp == PhotoInterp.Y_CB_CR)
+		{
+			return -1;
+		}
+		final long[] offsets = ifd.getStripOffsets();
+		if (offsets == null || offsets.length == 0) return -1;
+		final long rowBytes = ifd.getImageWidth() * (bits / 8);
+		final long imageLength = ifd.getImageLength();
+		final long stripRows = Math.min(ifd.getTileLength(), imageLength);
+		if (stripRows <= 0 ||
+			offsets.length < (imageLength + stripRows - 1) / stripRows)
+		{
+			return -1;
+		}
+		final long stripBytes = stripRows * rowBytes;
+		for (int i = 1; i < offsets.length; i++) {
+			if (offsets[i] != offsets[i - 1] + stripBytes) return -1;
+		}
+		if (offsets[0] + imageLength * rowBytes > in.length()) return -1;
+		return offsets[0];
+	}
+
+	/** Gets whether the given tile has any data in the file. */
+	private boolean hasTileData(final IFD ifd, final int row, final int col)
+		throws FormatException, IOException
+	{
+		final long[] range = getTileRange(ifd, row, col);
+		return range[1] != 0 && range[0] < in.length();
+	}
+
+	/** Gets the number of bytes of a single decoded tile. */
+	private int getTileSize(final IFD ifd) throws FormatException {
+		final int pixel = ifd.getBytesPerSample()[0];
+		final int effectiveChannels = ifd.getPlanarConfiguration() == 2 ? 1 : ifd
+			.getSamplesPerPixel();
+		return (int) (ifd.getTileWidth() * ifd.getTileLength() * pixel *
+			effectiveChannels);
+	}
+
+	/**
+	 * Decompresses, undifferences and unpacks the given tile into the given
+	 * buffer. Does not touch the input stream, and is thus safe to call
+	 * concurrently with distinct buffers and codec options.
+	 */
+	private void decodeTile(final IFD ifd, final byte[] buf, byte[] tile,
+		final int row, final long nStrips, final CodecOptions options)
+		throws FormatException
+	{
+		final byte[] jpegTable = (byte[]) ifd.getIFDValue(IFD.JPEG_TABLES);
+		final TiffCompression compression = ifd.getCompression();
+		final int planarConfig = ifd.getPlanarConfiguration();
+		final int pixel = ifd.getBytesPerSample()[0];
+
+		options.maxBytes = Math.max(getTileSize(ifd), tile.length);
+		options.ycbcr =
+			ifd.getPhotometricInterpretation() == PhotoInterp.Y_CB_CR &&
+				ifd.getIFDIntValue(IFD.Y_CB_CR_SUB_SAMPLING) == 1 && ycbcrCorrection;
+
+		if (jpegTable != null) {
+			final byte[] q = new byte[jpegTable.length + tile.length - 4];
+			System.arraycopy(jpegTable, 0, q, 0, jpegTable.length - 2);
+			System.arraycopy(tile, 2, q, jpegTable.length - 2, tile.length - 2);
+			tile = compression.decompress(scifio.codec(), q, options);
+		}
+		else tile = compression.decompress(scifio.codec(), tile, options);
+		scifio.tiff().undifference(tile, ifd);
+		unpackBytes(buf, 0, tile, ifd);
+
+		if (planarConfig == 2 && !ifd.isTiled() && ifd.getSamplesPerPixel() > 1) {
+			final int channel = (int) (row % nStrips);
+			if (channel < ifd.getBytesPerSample().length) {
+				final int realBytes = ifd.getBytesPerSample()[channel];
+				if (realBytes != pixel) {
+					// re-pack pixels to account for differing bits per sample
+
+					final boolean littleEndian = ifd.isLittleEndian();
+					final int[] samples = new int[buf.length / pixel];
+					for (int i = 0; i < samples.length; i++) {
+						samples[i] =
+							Bytes.toInt(buf, i * realBytes, realBytes, littleEndian);
+					}
+
+					for (int i = 0; i < samples.length; i++) {
+						Bytes.unpack(samples[i], buf, i * pixel, pixel,
+							littleEndian);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the given tiles of a region, then decodes them concurrently into the
+	 * region's buffer. Neighbouring tiles are fetched with a single read.
+	 *
+	 * @return False if some tile has no data, in which case nothing is read and
+	 *         the tiles must be read sequentially.
+	 */
+	private boolean getTilesParallel(final IFD ifd, final byte[] buf,
+		final Region region, final List<int[]> tiles, final int bufferSize,
+		final boolean caching) throws FormatException, IOException
+	{
+		final int count = tiles.size();
+		final long length = in.length();
+		final long[][] ranges = new long[count][];
+		for (int i = 0; i < count; i++) {
+			ranges[i] = getTileRange(ifd, tiles.get(i)[0], tiles.get(i)[1]);
+			// NB: Tiles without data keep the previous tile's samples when read
+			// sequentially, which cannot be reproduced concurrently.
+			if (ranges[i][1] == 0 || ranges[i][0] >= length) return false;
+		}
+
+		// read tiles in file order, coalescing neighbours into single reads
+		final Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(ranges[a][0], ranges[b][0]));
+		final byte[][] data = new byte[count][];
+		int first = 0;
+		while (first < count) {
+			final long start = ranges[order[first]][0];
+			long end = start + ranges[order[first]][1];
+			int last = first + 1;
+			while (last < count) {
+				final long[] range = ranges[order[last]];
+				final long rangeEnd = Math.max(end, range[0] + range[1]);
+				if (range[0] - end > MAX_READ_GAP || rangeEnd - start > MAX_READ_SIZE) {
+					break;
+				}
+				end = rangeEnd;
+				last++;
+			}
+			final byte[] chunk = new byte[(int) (Math.min(end, length) - start)];
+			in.seek(start);
+			in.readFully(chunk);
+			for (int i = first; i < last; i++) {
+				final long[] range = ranges[order[i]];
+				final int offset = (int) (range[0] - start);
+				// NB: Like a sequential read, pads tiles truncated by the end of file.
+				data[order[i]] =
+					Arrays.copyOfRange(chunk, offset, offset + (int) range[1]);
+			}
+			first = last;
+		}
+
+		// decode tiles concurrently, each worker into its own tile buffer
+		final long nStrips = ifd.getStripCount();
+		final AtomicInteger next = new AtomicInteger();
+		final Callable<Void> worker = () -> {
+			final byte[] tileBuffer = new byte[bufferSize];
+			final CodecOptions options = new CodecOptions(codecOptions);
+			int i;
+			while ((i = next.getAndIncrement()) < count) {
+				final int[] tile = tiles.get(i);
+				decodeTile(ifd, tileBuffer, data[i], tile[0], nStrips, options);
+				data[i] = null;
+				region.copyTile(tileBuffer, buf, tile);
+				if (caching) tileCache.put(ifd, tile[0], tile[1], tileBuffer);
+			}
+			return null;
+		};
+		Workers.run(threadService, Math.min(count, Runtime.getRuntime()
+			.availableProcessors()), worker);
+		return true;
+	}
+
+	/**
+	 * Copies the given tiles of a region which are in the tile cache into the
+	 * region's buffer.
+	 *
+	 * @return The tiles which are not cached.
+	 */
+	private List<int[]> copyCachedTiles(final IFD ifd, final byte[] buf,
+		final Region region, final List<int[]> tiles)
+	{
+		final List<int[]> misses = new ArrayList<>();
+		for (final int[] tile : tiles) {
+			final byte[] decoded = tileCache.get(ifd, tile[0], tile[1]);
+			if (decoded == null) misses.add(tile);
+			else region.copyTile(decoded, buf, tile);
+		}
+		return misses;
+	}
+
 	// -- Helper methods - byte stream decoding --
 
 	/**
@@ -1167,6 +1461,69 @@ public class TiffParser extends AbstractContextual {
 		return offset;
 	}
 
+	private long readEntryCount() throws IOException {
+		return bigTiff ? in.readLong() : in.readUnsignedShort();
+	}
+
+	private int getBytesPerEntry() {
+		return bigTiff ? TiffConstants.BIG_TIFF_BYTES_PER_ENTRY
+			: TiffConstants.BYTES_PER_ENTRY;
+	}
+
+	/** Gets whether the last IFDs are separated by the given spacing. */
+	private boolean isUniform(final long[] offsets, final int count,
+		final long spacing)
+	{
+		for (int i = count - UNIFORM_IFDS; i < count; i++) {
+			if (offsets[i] - offsets[i - 1] != spacing) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the IFDs, starting at the given offset, which link to an IFD at the
+	 * given spacing after them.
+	 *
+	 * @return The number of such IFDs, or 0 if a sample of them disagrees.
+	 */
+	private int countUniformIFDs(final long start, final long spacing,
+		final long nEntries) throws IOException
+	{
+		// gallop to an IFD which does not link uniformly, then bisect
+		int lo = 0, hi = 1;
+		while (isUniformIFD(start, spacing, nEntries, hi - 1)) {
+			lo = hi;
+			if (hi > Integer.MAX_VALUE / 2) break;
+			hi *= 2;
+		}
+		while (hi - lo > 1) {
+			final int mid = (lo + hi) >>> 1;
+			if (isUniformIFD(start, spacing, nEntries, mid - 1)) lo = mid;
+			else hi = mid;
+		}
+		// NB: Guard against a chain which only appears uniform at the probes.
+		for (int i = 0; i < UNIFORM_SAMPLES && lo > 0; i++) {
+			final int index = (int) ((long) i * lo / UNIFORM_SAMPLES);
+			if (!isUniformIFD(start, spacing, nEntries, index)) return 0;
+		}
+		return lo;
+	}
+
+	/**
+	 * Gets whether the given IFD of a run has the given number of entries, and
+	 * links to the next IFD of the run.
+	 */
+	private boolean isUniformIFD(final long start, final long spacing,
+		final long nEntries, final int index) throws IOException
+	{
+		final long offset = start + index * spacing;
+		if (offset + spacing >= in.length()) return false;
+		in.seek(offset);
+		if (readEntryCount() != nEntries) return false;
+		in.skipBytes((int) (nEntries * getBytesPerEntry()));
+		return getNextOffset(offset) == offset + spacing;
+	}
+
 	/** Bit order mapping for reversed fill order. */
 	private static final byte[] REVERSE = { 0x00, -0x80, 0x40, -0x40, 0x20,
 		-0x60, 0x60, -0x20, 0x10, -0x70, 0x50, -0x30, 0x30, -0x50, 0x70, -0x10,
@@ -1205,4 +1562,134 @@ public class TiffParser extends AbstractContextual {
 		return buf;
 	}
 
+	// -- Helper classes --
+
+	/** Layout of a region of an image, and of the tiles it intersects. */
+	private static final class Region {
+
+		private final int x, y, endX, endY;
+
+		private final long tileWidth, tileLength;
+
+		private final int overlapX, overlapY;
+
+		private final int pixel, effectiveChannels;
+
+		private final boolean planar;
+
+		private final long nrows, numTileRows, numTileCols;
+
+		private final int rowLen, tileSize, planeSize, outputRowLen;
+
+		private Region(final IFD ifd, final int x, final int y, final long width,
+			final long height, final long tileLength, final int overlapX,
+			final int overlapY) throws FormatException
+		{
+			this.x = x;
+			this.y = y;
+			endX = (int) width + x;
+			endY = (int) height + y;
+			tileWidth = ifd.getTileWidth();
+			this.tileLength = tileLength;
+			this.overlapX = overlapX;
+			this.overlapY = overlapY;
+
+			final int samplesPerPixel = ifd.getSamplesPerPixel();
+			pixel = ifd.getBytesPerSample()[0];
+			planar = ifd.getPlanarConfiguration() == 2;
+			effectiveChannels = planar ? 1 : samplesPerPixel;
+
+			nrows = ifd.getTilesPerColumn();
+			numTileRows = planar ? nrows * samplesPerPixel : nrows;
+			numTileCols = ifd.getTilesPerRow();
+
+			rowLen = pixel * (int) tileWidth;
+			tileSize = (int) (rowLen * tileLength);
+			planeSize = (int) (width * height * pixel);
+			outputRowLen = (int) (pixel * width);
+		}
+
+		/**
+		 * Gets the tiles intersecting this region, as {row, column, x, y} with the
+		 * position of the tile in the image.
+		 */
+		private List<int[]> getTiles() {
+			final IntRect imageBounds = new IntRect(x, y, endX - x, endY - y);
+
+			// make the tiles smaller to account for row and column overlap
+			final IntRect tileBounds = new IntRect(0, 0, (int) (tileWidth -
+				overlapX), (int) (tileLength - overlapY));
+
+			final List<int[]> tiles = new ArrayList<>();
+			for (int row = 0; row < numTileRows; row++) {
+				for (int col = 0; col < numTileCols; col++) {
+					tileBounds.x = col * (int) (tileWidth - overlapX);
+					tileBounds.y = row * (int) (tileLength - overlapY);
+
+					if (planar) {
+						tileBounds.y = (int) ((row % nrows) * (tileLength - overlapY));
+					}
+
+					if (imageBounds.intersects(tileBounds)) {
+						tiles.add(new int[] { row, col, tileBounds.x, tileBounds.y });
+					}
+				}
+			}
+			return tiles;
+		}
+
+		/** Copies the appropriate portion of a decoded tile to the output. */
+		private void copyTile(final byte[] tileBuffer, final byte[] buf,
+			final int[] tile)
+		{
+			final int row = tile[0];
+
+			// adjust tile bounds, if necessary
+
+			final int tileX = Math.max(tile[2], x);
+			final int tileY = Math.max(tile[3], y);
+			int realX = tileX % (int) (tileWidth - overlapX);
+			int realY = tileY % (int) (tileLength - overlapY);
+
+			int twidth = (int) Math.min(endX - tileX, tileWidth - realX);
+			if (twidth <= 0) {
+				twidth = (int) Math.max(endX - tileX, tileWidth - realX);
+			}
+			int theight = (int) Math.min(endY - tileY, tileLength - realY);
+			if (theight <= 0) {
+				theight = (int) Math.max(endY - tileY, tileLength - realY);
+			}
+
+			// copy appropriate portion of the tile to the output buffer
+
+			final int copy = pixel * twidth;
+
+			realX *= pixel;
+			realY *= rowLen;
+
+			for (int q = 0; q < effectiveChannels; q++) {
+				int src = q * tileSize + realX + realY;
+				int dest =
+					q * planeSize + pixel * (tileX - x) + outputRowLen * (tileY - y);
+				if (planar) dest += (planeSize * (row / nrows));
+
+				// copying the tile directly will only work if there is no
+				// overlap;
+				// otherwise, we may be overwriting a previous tile
+				// (or the current tile may be overwritten by a subsequent
+				// tile)
+				if (rowLen == outputRowLen && overlapX == 0 && overlapY == 0) {
+					System.arraycopy(tileBuffer, src, buf, dest, copy * theight);
+				}
+				else {
+					for (int tileRow = 0; tileRow < theight; tileRow++) {
+						System.arraycopy(tileBuffer, src, buf, dest, copy);
+						src += rowLen;
+						dest += outputRowLen;
+					}
+				}
+			}
+		}
+	}
+
 }
@@ -33,21 +33,27 @@ import io.scif.FormatException;
 import io.scif.SCIFIO;
 import io.scif.codec.CodecOptions;
 import io.scif.io.ByteArrayHandle;
+import io.scif.io.ChunkedByteHandle;
 import io.scif.io.RandomAccessInputStream;
 import io.scif.io.RandomAccessOutputStream;
 import io.scif.util.FormatTools;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.scijava.AbstractContextual;
 import org.scijava.Context;
 import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Writes TIFF data to an output location.
@@ -59,6 +65,23 @@ import org.scijava.log.LogService;
  */
 public class TiffSaver extends AbstractContextual {
 
+	// -- Constants --
+
+	/**
+	 * Compression schemes whose codecs may encode several strips concurrently.
+	 */
+	private static final Set<TiffCompression> PARALLEL_COMPRESSIONS = EnumSet
+		.of(TiffCompression.DEFAULT_UNCOMPRESSED, TiffCompression.UNCOMPRESSED,
+			TiffCompression.LZW, TiffCompression.DEFLATE,
+			TiffCompression.PROPRIETARY_DEFLATE, TiffCompression.OLD_JPEG,
+			TiffCompression.JPEG, TiffCompression.ALT_JPEG);
+
+	/** Tile size of pyramids whose IFD does not specify one. */
+	private static final long PYRAMID_TILE_SIZE = 256;
+
+	/** Maximum number of bytes of strip buffers to keep for reuse. */
+	private static final int MAX_SPARE_STRIP_BYTES = 16 * 1024 * 1024;
+
 	// -- Fields --
 
 	/** Output stream to use when saving TIFF data. */
@@ -75,13 +98,27 @@ public class TiffSaver extends AbstractContextual {
 
 	private boolean sequentialWrite = false;
 
+	private boolean parallelCompression = false;
+
 	/** The codec options if set. */
 	private CodecOptions options;
 
+	/** Full resolution level of the pyramid being written, if any. */
+	private PyramidLevel pyramid;
+
+	/** Offset of the IFD of the pyramid being written. */
+	private long pyramidOffset;
+
+	/** Strip buffers of the last written strip size, kept for reuse. */
+	private final ArrayDeque<byte[]> spareStrips = new ArrayDeque<>();
+
 	private SCIFIO scifio;
 
 	private LogService log;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// -- Constructors --
 
 	/**
@@ -151,6 +188,24 @@ public class TiffSaver extends AbstractContextual {
 		sequentialWrite = sequential;
 	}
 
+	/**
+	 * Sets whether or not the strips or tiles of an image may be compressed
+	 * concurrently. This only applies to compression schemes whose codecs are
+	 * thread-safe. Strips are still written in order, so the written file is the
+	 * same as when compressing sequentially.
+	 */
+	public void setParallelCompression(final boolean parallel) {
+		parallelCompression = parallel;
+	}
+
+	/**
+	 * Gets whether or not the strips or tiles of an image may be compressed
+	 * concurrently.
+	 */
+	public boolean isParallelCompression() {
+		return parallelCompression;
+	}
+
 	/** Gets the stream from which TIFF data is being saved. */
 	public RandomAccessOutputStream getStream() {
 		return out;
@@ -292,9 +347,9 @@ public class TiffSaver extends AbstractContextual {
 
 		// These operations are synchronized
 		TiffCompression compression;
-		int tileWidth, tileHeight, nStrips;
+		int tileWidth, tileHeight, nStrips, stripSize;
 		boolean interleaved;
-		ByteArrayOutputStream[] stripBuf;
+		byte[][] packed;
 		synchronized (this) {
 			final int bytesPerPixel = FormatTools.getBytesPerPixel(pixelType);
 			final int blockSize = w * h * bytesPerPixel;
@@ -311,61 +366,31 @@ public class TiffSaver extends AbstractContextual {
 			tileWidth = (int) ifd.getTileWidth();
 			tileHeight = (int) ifd.getTileLength();
 			final int tilesPerRow = (int) ifd.getTilesPerRow();
-			final int rowsPerStrip = (int) ifd.getRowsPerStrip()[0];
-			int stripSize = rowsPerStrip * tileWidth * bytesPerPixel;
+			stripSize = tileHeight * tileWidth * bytesPerPixel;
 			nStrips =
 				((w + tileWidth - 1) / tileWidth) * ((h + tileHeight - 1) / tileHeight);
 
 			if (interleaved) stripSize *= nChannels;
 			else nStrips *= nChannels;
 
-			stripBuf = new ByteArrayOutputStream[nStrips];
-			final DataOutputStream[] stripOut = new DataOutputStream[nStrips];
-			for (int strip = 0; strip < nStrips; strip++) {
-				stripBuf[strip] = new ByteArrayOutputStream(stripSize);
-				stripOut[strip] = new DataOutputStream(stripBuf[strip]);
-			}
-			final int[] bps = ifd.getBitsPerSample();
-			int off;
-
-			// write pixel strips to output buffers
+			// copy pixel strips to output buffers, a row at a time
+			packed = new byte[nStrips][];
 			final int effectiveStrips = !interleaved ? nStrips / nChannels : nStrips;
 			if (effectiveStrips == 1 && copyDirectly) {
-				stripOut[0].write(buf);
+				packed[0] = buf.clone();
+				for (int strip = 1; strip < nStrips; strip++) {
+					packed[strip] = new byte[0];
+				}
 			}
 			else {
-				for (int strip = 0; strip < effectiveStrips; strip++) {
-					final int xOffset = (strip % tilesPerRow) * tileWidth;
-					final int yOffset = (strip / tilesPerRow) * tileHeight;
-					for (int row = 0; row < tileHeight; row++) {
-						for (int col = 0; col < tileWidth; col++) {
-							final int ndx =
-								((row + yOffset) * w + col + xOffset) * bytesPerPixel;
-							for (int c = 0; c < nChannels; c++) {
-								for (int n = 0; n < bps[c] / 8; n++) {
-									if (interleaved) {
-										off = ndx * nChannels + c * bytesPerPixel + n;
-										if (row >= h || col >= w) {
-											stripOut[strip].writeByte(0);
-										}
-										else {
-											stripOut[strip].writeByte(buf[off]);
-										}
-									}
-									else {
-										off = c * blockSize + ndx + n;
-										if (row >= h || col >= w) {
-											stripOut[strip].writeByte(0);
-										}
-										else {
-											stripOut[c * (nStrips / nChannels) + strip]
-												.writeByte(buf[off]);
-										}
-									}
-								}
-							}
-						}
-					}
+				final int pixelBytes =
+					interleaved ? nChannels * bytesPerPixel : bytesPerPixel;
+				for (int strip = 0; strip < nStrips; strip++) {
+					final int tile = strip % effectiveStrips;
+					packed[strip] = takeStripBuffer(stripSize);
+					packStrip(buf, strip / effectiveStrips * blockSize, w, h,
+						(tile % tilesPerRow) * tileWidth, (tile / tilesPerRow) *
+							tileHeight, pixelBytes, packed[strip], tileWidth, tileHeight);
 				}
 			}
 		}
@@ -375,28 +400,180 @@ public class TiffSaver extends AbstractContextual {
 		// this operation is NOT synchronized and is the ONLY portion of the
 		// TiffWriter.saveBytes() --> TiffSaver.writeImage() stack that is NOT
 		// synchronized.
-		final byte[][] strips = new byte[nStrips][];
-		for (int strip = 0; strip < nStrips; strip++) {
-			strips[strip] = stripBuf[strip].toByteArray();
-			scifio.tiff().difference(strips[strip], ifd);
-			final CodecOptions codecOptions =
-				compression.getCompressionCodecOptions(ifd, options);
-			codecOptions.height = tileHeight;
-			codecOptions.width = tileWidth;
-			codecOptions.channels = interleaved ? nChannels : 1;
-
-			strips[strip] =
-				compression.compress(scifio.codec(), strips[strip], codecOptions);
-			if (log.isDebug()) {
-				log.debug(String.format("Compressed strip %d/%d length %d", strip + 1,
-					nStrips, strips[strip].length));
-			}
-		}
+		final byte[][] strips = packed.clone();
+		compressStrips(strips, ifd, compression, tileWidth, tileHeight,
+			interleaved ? nChannels : 1);
 
 		// This operation is synchronized
 		synchronized (this) {
 			writeImageIFD(ifd, planeIndex, strips, nChannels, last, x, y);
+			recycleStripBuffers(packed, stripSize);
+		}
+	}
+
+	/**
+	 * Writes an image as a tiled pyramid: the full resolution image, followed by
+	 * the given number of reduced resolution levels, each downsampled 2x2 from
+	 * the previous one. The reduced levels are stored as SubIFDs of the image's
+	 * IFD. The image must be interleaved, and is always appended to the file.
+	 *
+	 * @param buf The image to write.
+	 * @param ifd The IFD of the image. If it specifies no tile size, tiles of
+	 *          256x256 pixels are used.
+	 * @param pixelType The type of pixels.
+	 * @param levels The number of reduced resolution levels.
+	 * @param last Pass {@code true} if it is the last image,
+	 *          {@code false} otherwise.
+	 * @throws FormatException
+	 * @throws IOException
+	 */
+	public void writePyramid(final byte[] buf, final IFD ifd,
+		final int pixelType, final int levels, final boolean last)
+		throws FormatException, IOException
+	{
+		if (ifd == null) {
+			throw new FormatException("IFD cannot be null");
+		}
+		writePyramidRows(buf, ifd, pixelType, 0, (int) ifd.getImageLength(),
+			levels, last);
+	}
+
+	/**
+	 * Writes a band of full-width rows of an image as a tiled pyramid, as
+	 * {@link #writePyramid} does for a whole image. Bands must be written top
+	 * to bottom; the pyramid is complete once the last row has been written.
+	 * Tiles are compressed and written as soon as they are complete, so that
+	 * no more than a row of tiles per level is held in memory. The IFD, number
+	 * of levels and last flag of the first band apply to the whole pyramid.
+	 * If a band cannot be written, the pyramid is abandoned and the next band
+	 * must start a new one.
+	 *
+	 * @param buf The rows to write.
+	 * @param ifd The IFD of the image.
+	 * @param pixelType The type of pixels.
+	 * @param y The index of the first row to write.
+	 * @param h The number of rows to write.
+	 * @param levels The number of reduced resolution levels.
+	 * @param last Pass {@code true} if it is the last image,
+	 *          {@code false} otherwise.
+	 * @throws FormatException
+	 * @throws IOException
+	 */
+	public synchronized void writePyramidRows(final byte[] buf, final IFD ifd,
+		final int pixelType, final int y, final int h, final int levels,
+		final boolean last) throws FormatException, IOException
+	{
+		if (buf == null) {
+			throw new FormatException("Image data cannot be null");
+		}
+		if (ifd == null) {
+			throw new FormatException("IFD cannot be null");
+		}
+		try {
+			if (pyramid == null) {
+				if (y != 0) {
+					throw new FormatException("Pyramid rows must be written in order");
+				}
+				startPyramid(buf, ifd, pixelType, h, levels);
+			}
+			final PyramidLevel base = pyramid;
+			if (y != base.getRows() || y + h > base.height) {
+				throw new FormatException("Pyramid rows must be written in order");
+			}
+			if (buf.length < (long) h * base.rowBytes) {
+				throw new FormatException("Image data is too short");
+			}
+
+			final TiffCompression compression = base.ifd.getCompression();
+			final int tileWidth = (int) base.ifd.getTileWidth();
+			final int tileHeight = (int) base.ifd.getTileLength();
+			final int channels = base.ifd.getSamplesPerPixel();
+			final List<PyramidLevel.Tile> ready = new ArrayList<>();
+			for (int row = 0; row < h; row++) {
+				base.addRow(buf, row * base.rowBytes, ready);
+				if (ready.isEmpty()) continue;
+
+				// compress the tiles of all levels at once, then write them in order
+				final byte[][] tiles = new byte[ready.size()][];
+				final IFD[] ifds = new IFD[tiles.length];
+				for (int t = 0; t < tiles.length; t++) {
+					tiles[t] = ready.get(t).data;
+					ifds[t] = ready.get(t).level.ifd;
+				}
+				compressStrips(tiles, ifds, compression, tileWidth, tileHeight,
+					channels);
+				for (int t = 0; t < tiles.length; t++) {
+					final PyramidLevel.Tile tile = ready.get(t);
+					out.seek(out.length());
+					tile.level.offsets[tile.index] = out.getFilePointer();
+					tile.level.byteCounts[tile.index] = tiles[t].length;
+					out.write(tiles[t]);
+				}
+				ready.clear();
+			}
+			if (base.getRows() == base.height) finishPyramid(last);
 		}
+		catch (final FormatException | IOException | RuntimeException exc) {
+			// NB: Abandon the pyramid, so that the next band starts a new one.
+			pyramid = null;
+			throw exc;
+		}
+	}
+
+	/**
+	 * Differences and compresses the given strips in place. If parallel
+	 * compression is enabled and the codec allows it, several strips are
+	 * compressed at once.
+	 */
+	private void compressStrips(final byte[][] strips, final IFD ifd,
+		final TiffCompression compression, final int tileWidth,
+		final int tileHeight, final int channels) throws FormatException,
+		IOException
+	{
+		final IFD[] ifds = new IFD[strips.length];
+		Arrays.fill(ifds, ifd);
+		compressStrips(strips, ifds, compression, tileWidth, tileHeight,
+			channels);
+	}
+
+	/**
+	 * Differences and compresses the given strips in place, each according to
+	 * its own IFD.
+	 */
+	private void compressStrips(final byte[][] strips, final IFD[] ifds,
+		final TiffCompression compression, final int tileWidth,
+		final int tileHeight, final int channels) throws FormatException,
+		IOException
+	{
+		final AtomicInteger next = new AtomicInteger();
+		final Callable<Void> worker = () -> {
+			int strip;
+			while ((strip = next.getAndIncrement()) < strips.length) {
+				final IFD ifd = ifds[strip];
+				scifio.tiff().difference(strips[strip], ifd);
+				final CodecOptions codecOptions =
+					compression.getCompressionCodecOptions(ifd, options);
+				codecOptions.height = tileHeight;
+				codecOptions.width = tileWidth;
+				codecOptions.channels = channels;
+
+				strips[strip] =
+					compression.compress(scifio.codec(), strips[strip], codecOptions);
+				if (log.isDebug()) {
+					log.debug(String.format("Compressed strip %d/%d length %d", strip +
+						1, strips.length, strips[strip].length));
+				}
+			}
+			return null;
+		};
+		int threads = 1;
+		if (parallelCompression && threadService != null &&
+			PARALLEL_COMPRESSIONS.contains(compression))
+		{
+			threads = Math.min(strips.length, Runtime.getRuntime()
+				.availableProcessors());
+		}
+		Workers.run(threadService, threads, worker);
 	}
 
 	/**
@@ -426,6 +603,8 @@ public class TiffSaver extends AbstractContextual {
 		if (!sequentialWrite) {
 			RandomAccessInputStream in = null;
 			if (filename != null) {
+				// NB: Make sure the data written so far is visible to the reader.
+				out.flush();
 				in = new RandomAccessInputStream(getContext(), filename);
 			}
 			else if (bytes != null) {
@@ -464,9 +643,7 @@ public class TiffSaver extends AbstractContextual {
 		if (ifd.containsKey(IFD.STRIP_BYTE_COUNTS) ||
 			ifd.containsKey(IFD.TILE_BYTE_COUNTS))
 		{
-			final long[] ifdByteCounts =
-				isTiled ? ifd.getIFDLongArray(IFD.TILE_BYTE_COUNTS) : ifd
-					.getStripByteCounts();
+			final long[] ifdByteCounts = ifd.getStripByteCounts();
 			for (final long stripByteCount : ifdByteCounts) {
 				byteCounts.add(stripByteCount);
 			}
@@ -482,8 +659,8 @@ public class TiffSaver extends AbstractContextual {
 			(tileOrStripOffsetY * tilesPerRow) + tileOrStripOffsetX;
 		if (ifd.containsKey(IFD.STRIP_OFFSETS) || ifd.containsKey(IFD.TILE_OFFSETS))
 		{
-			final long[] ifdOffsets =
-				isTiled ? ifd.getIFDLongArray(IFD.TILE_OFFSETS) : ifd.getStripOffsets();
+			// NB: Handles offsets read on demand, as well as arrays.
+			final long[] ifdOffsets = ifd.getStripOffsets();
 			for (final long ifdOffset : ifdOffsets) {
 				offsets.add(ifdOffset);
 			}
@@ -564,7 +741,8 @@ public class TiffSaver extends AbstractContextual {
 		if (bigTiff) out.writeLong(keyCount);
 		else out.writeShort(keyCount);
 
-		final ByteArrayHandle extra = new ByteArrayHandle();
+		// NB: Small chunks, since most IFDs need only a few bytes of extra space.
+		final ChunkedByteHandle extra = new ChunkedByteHandle(64 * 1024, false);
 		final RandomAccessOutputStream extraStream =
 			new RandomAccessOutputStream(extra);
 
@@ -577,7 +755,7 @@ public class TiffSaver extends AbstractContextual {
 		}
 		if (bigTiff) out.seek(out.getFilePointer());
 		writeIntValue(out, nextOffset);
-		out.write(extra.getBytes(), 0, (int) extra.length());
+		extra.writeTo(out);
 	}
 
 	/**
@@ -924,6 +1102,150 @@ public class TiffSaver extends AbstractContextual {
 		}
 	}
 
+	/**
+	 * Copies a tile of the given image into a strip buffer, a row at a time,
+	 * padding with zeros where the tile extends past the image.
+	 *
+	 * @param offset The offset of the image's first pixel in the buffer.
+	 * @param pixelBytes The number of bytes per pixel, of all channels if the
+	 *          image is interleaved.
+	 */
+	private static void packStrip(final byte[] buf, final int offset,
+		final int w, final int h, final int x, final int y, final int pixelBytes,
+		final byte[] strip, final int tileWidth, final int tileHeight)
+	{
+		final int rowBytes = tileWidth * pixelBytes;
+		final int copyBytes = Math.max(0, Math.min(tileWidth, w - x)) * pixelBytes;
+		final int rows = Math.max(0, Math.min(tileHeight, h - y));
+		for (int row = 0; row < rows; row++) {
+			final int dest = row * rowBytes;
+			System.arraycopy(buf, offset + ((y + row) * w + x) * pixelBytes, strip,
+				dest, copyBytes);
+			Arrays.fill(strip, dest + copyBytes, dest + rowBytes, (byte) 0);
+		}
+		Arrays.fill(strip, rows * rowBytes, tileHeight * rowBytes, (byte) 0);
+	}
+
+	/** Gets a spare strip buffer of the given size, or allocates one. */
+	private byte[] takeStripBuffer(final int size) {
+		final byte[] spare = spareStrips.poll();
+		if (spare != null && spare.length == size) return spare;
+		spareStrips.clear();
+		return new byte[size];
+	}
+
+	/** Keeps the given strip buffers for reuse, up to a limit. */
+	private void recycleStripBuffers(final byte[][] strips, final int size) {
+		final byte[] spare = spareStrips.peek();
+		if (spare != null && spare.length != size) spareStrips.clear();
+		for (final byte[] strip : strips) {
+			if (strip.length != size ||
+				(long) (spareStrips.size() + 1) * size > MAX_SPARE_STRIP_BYTES)
+			{
+				continue;
+			}
+			spareStrips.push(strip);
+		}
+	}
+
+	/**
+	 * Sets up the levels of a new pyramid, and writes a placeholder for its IFD
+	 * at the end of the file.
+	 */
+	private void startPyramid(final byte[] buf, final IFD ifd,
+		final int pixelType, final int h, final int levels)
+		throws FormatException, IOException
+	{
+		if (levels < 1) {
+			throw new FormatException("Invalid number of pyramid levels: " +
+				levels);
+		}
+		final int w = (int) ifd.getImageWidth();
+		final int height = (int) ifd.getImageLength();
+		final int nChannels =
+			buf.length / (w * h * FormatTools.getBytesPerPixel(pixelType));
+		if (nChannels > 1 && ifd.getPlanarConfiguration() != 1) {
+			throw new FormatException("Pyramids must be interleaved");
+		}
+		if (ifd.get(IFD.TILE_WIDTH) == null) {
+			ifd.putIFDValue(IFD.TILE_WIDTH, PYRAMID_TILE_SIZE);
+			ifd.putIFDValue(IFD.TILE_LENGTH, PYRAMID_TILE_SIZE);
+		}
+		ifd.remove(IFD.STRIP_OFFSETS);
+		ifd.remove(IFD.STRIP_BYTE_COUNTS);
+		makeValidIFD(ifd, pixelType, nChannels);
+
+		final int tileWidth = (int) ifd.getTileWidth();
+		final int tileHeight = (int) ifd.getTileLength();
+		final boolean little = ifd.isLittleEndian();
+		PyramidLevel level = null;
+		for (int l = levels; l >= 0; l--) {
+			final int lw = (int) ((w + (1L << l) - 1) >> l);
+			final int lh = (int) ((height + (1L << l) - 1) >> l);
+			final IFD levelIFD = l == 0 ? ifd : reduceIFD(ifd, l, lw, lh);
+			level = new PyramidLevel(levelIFD, lw, lh, tileWidth, tileHeight,
+				pixelType, nChannels, little, level);
+			levelIFD.putIFDValue(IFD.TILE_OFFSETS, level.offsets);
+			levelIFD.putIFDValue(IFD.TILE_BYTE_COUNTS, level.byteCounts);
+		}
+		ifd.putIFDValue(IFD.SUB_IFD, new long[levels]);
+
+		out.seek(out.length());
+		pyramidOffset = out.getFilePointer();
+		writeIFD(ifd, 0);
+		pyramid = level;
+	}
+
+	/**
+	 * Writes the IFDs of the reduced levels of the current pyramid, and
+	 * rewrites its main IFD with the final tile offsets.
+	 */
+	private void finishPyramid(final boolean last) throws FormatException,
+		IOException
+	{
+		final PyramidLevel base = pyramid;
+		pyramid = null;
+		final List<Long> subIFDs = new ArrayList<>();
+		for (PyramidLevel level = base.next; level != null; level = level.next) {
+			out.seek(out.length());
+			subIFDs.add(out.getFilePointer());
+			level.ifd.putIFDValue(IFD.TILE_OFFSETS, level.offsets);
+			level.ifd.putIFDValue(IFD.TILE_BYTE_COUNTS, level.byteCounts);
+			writeIFD(level.ifd, 0);
+		}
+		final long endFP = out.length();
+		base.ifd.putIFDValue(IFD.SUB_IFD, toPrimitiveArray(subIFDs));
+		base.ifd.putIFDValue(IFD.TILE_OFFSETS, base.offsets);
+		base.ifd.putIFDValue(IFD.TILE_BYTE_COUNTS, base.byteCounts);
+		out.seek(pyramidOffset);
+		writeIFD(base.ifd, last ? 0 : endFP);
+		out.seek(endFP);
+	}
+
+	/**
+	 * Derives the IFD of a reduced resolution level from that of the full
+	 * resolution image.
+	 */
+	private IFD reduceIFD(final IFD ifd, final int level, final long width,
+		final long height)
+	{
+		final IFD reduced = new IFD(ifd, log);
+		reduced.remove(IFD.SUB_IFD);
+		reduced.remove(IFD.IMAGE_DESCRIPTION);
+		reduced.putIFDValue(IFD.NEW_SUBFILE_TYPE, 1L);
+		reduced.putIFDValue(IFD.IMAGE_WIDTH, width);
+		reduced.putIFDValue(IFD.IMAGE_LENGTH, height);
+		for (final int tag : new int[] { IFD.X_RESOLUTION, IFD.Y_RESOLUTION }) {
+			final Object resolution = ifd.get(tag);
+			if (resolution instanceof TiffRational) {
+				final TiffRational r = (TiffRational) resolution;
+				reduced.putIFDValue(tag, new TiffRational(r.getNumerator(), r
+					.getDenominator() << level));
+			}
+		}
+		return reduced;
+	}
+
 	/**
 	 * Makes a valid IFD.
 	 *
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decoded tiles, keyed by the offset of their IFD and their row
+ * and column, which keeps the most recently used tiles within a byte budget.
+ * Cached tiles are shared, and must not be modified. All methods are
+ * thread-safe.
+ */
+final class TileCache {
+
+	// -- Fields --
+
+	/** Cached tiles, in order of last use. */
+	private final LinkedHashMap<Key, byte[]> tiles = new LinkedHashMap<>(16,
+		0.75f, true);
+
+	private long maxBytes;
+
+	private long bytes;
+
+	private long hits;
+
+	private long misses;
+
+	// -- TileCache methods --
+
+	/**
+	 * Sets the maximum number of bytes of cached tiles, evicting the least
+	 * recently used tiles as needed. 0 disables the cache.
+	 */
+	synchronized void setMaxBytes(final long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/** Whether tiles of the given IFD can be cached. */
+	synchronized boolean accepts(final IFD ifd) {
+		return maxBytes > 0 && ifd.getOffset() >= 0;
+	}
+
+	/**
+	 * Gets the given tile, counting a hit or a miss.
+	 *
+	 * @return The decoded tile, or null if not cached.
+	 */
+	synchronized byte[] get(final IFD ifd, final int row, final int col) {
+		final byte[] tile = tiles.get(new Key(ifd.getOffset(), row, col));
+		if (tile == null) misses++;
+		else hits++;
+		return tile;
+	}
+
+	/** Caches a copy of the given decoded tile. */
+	synchronized void put(final IFD ifd, final int row, final int col,
+		final byte[] tile)
+	{
+		if (tile.length > maxBytes) return;
+		final byte[] previous = tiles.put(new Key(ifd.getOffset(), row, col), tile
+			.clone());
+		if (previous != null) bytes -= previous.length;
+		bytes += tile.length;
+		evict();
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	/** Discards all cached tiles. */
+	synchronized void clear() {
+		tiles.clear();
+		bytes = 0;
+	}
+
+	// -- Helper methods --
+
+	private void evict() {
+		final Iterator<Map.Entry<Key, byte[]>> iter = tiles.entrySet().iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			bytes -= iter.next().getValue().length;
+			iter.remove();
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Location of a tile in a file. */
+	private static final class Key {
+
+		private final long offset;
+
+		private final int row, col;
+
+		private Key(final long offset, final int row, final int col) {
+			this.offset = offset;
+			this.row = row;
+			this.col = col;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key key = (Key) o;
+			return offset == key.offset && row == key.row && col == key.col;
+		}
+
+		@Override
+		public int hashCode() {
+			return (Long.hashCode(offset) * 31 + row) * 31 + col;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import io.scif.FormatException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Runs the workers of a task which is split over several threads, such as
+ * decoding or encoding the tiles of an image.
+ */
+final class Workers {
+
+	private Workers() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/**
+	 * Runs the given worker on the calling thread, and on {@code threads - 1}
+	 * threads of the given service. Waits for all of them to finish, even if
+	 * some fail.
+	 *
+	 * @throws FormatException If a worker failed; the first failure is rethrown
+	 *           as is if possible.
+	 * @throws IOException If a worker failed with an I/O error.
+	 */
+	static void run(final ThreadService threadService, final int threads,
+		final Callable<Void> worker) throws FormatException, IOException
+	{
+		final List<Future<Void>> futures = new ArrayList<>();
+		for (int t = 1; t < threads; t++) {
+			futures.add(threadService.run(worker));
+		}
+		Throwable failure = null;
+		try {
+			worker.call();
+		}
+		catch (final Exception e) {
+			failure = e;
+		}
+		// NB: Wait for all workers, as they may write into the caller's buffers.
+		for (final Future<Void> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final ExecutionException e) {
+				if (failure == null) failure = e.getCause();
+			}
+			catch (final InterruptedException e) {
+				if (failure == null) failure = e;
+			}
+		}
+		if (failure instanceof FormatException) throw (FormatException) failure;
+		if (failure instanceof IOException) throw (IOException) failure;
+		if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+		if (failure instanceof Error) throw (Error) failure;
+		if (failure != null) throw new FormatException(failure);
+	}
+
+}
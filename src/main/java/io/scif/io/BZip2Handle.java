@@ -34,16 +34,39 @@ import io.scif.common.Constants;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.scijava.Context;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * StreamHandle implementation for reading from BZip2-compressed files or byte
  * arrays. Instances of BZip2Handle are read-only.
+ * <p>
+ * BZip2 data consists of independently decodable blocks, each introduced by a
+ * 48-bit magic number at an arbitrary bit position. When a file is opened,
+ * BZip2Handle indexes the compressed bit offset and uncompressed offset of
+ * every block, so that seeking only requires decoding the block containing
+ * the target position. Recently decoded blocks are kept in a small LRU cache,
+ * and sequential reads decode the following blocks ahead of time on the
+ * {@link ThreadService}, when one is available.
+ * </p>
  *
  * @see StreamHandle
  * @author Melissa Linkert
@@ -51,9 +74,45 @@ import org.scijava.plugin.Plugin;
 @Plugin(type = IStreamAccess.class)
 public class BZip2Handle extends StreamHandle {
 
+	// -- Constants --
+
+	/** Default number of decoded blocks to keep in memory. */
+	public static final int DEFAULT_BLOCK_CACHE_SIZE = 8;
+
+	/** The 48-bit magic number introducing each compressed block. */
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+
+	private static final long MAGIC_MASK = 0xffffffffffffL;
+
+	/** Bit offset of the first block, following the "BZh?" header. */
+	private static final long FIRST_BLOCK_BIT = 32;
+
+	/** Size of the buffer used when reading compressed data. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// -- Fields --
+
 	@Parameter
 	private LogService log;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	/** Block size (1-9, in units of 100k) declared in the stream header. */
+	private int blockSize100k;
+
+	/** Compressed bit offset of each block. */
+	private long[] blockBits;
+
+	/** Uncompressed offset of each block. */
+	private long[] blockStarts;
+
+	/** Recently decoded blocks, in access order. */
+	private final LinkedHashMap<Integer, Future<byte[]>> blockCache =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private int blockCacheSize = DEFAULT_BLOCK_CACHE_SIZE;
+
 	// -- Constructor --
 
 	/**
@@ -81,6 +140,31 @@ public class BZip2Handle extends StreamHandle {
 		setFile(file);
 	}
 
+	// -- BZip2Handle API methods --
+
+	/** Returns the number of compressed blocks, or -1 if not indexed. */
+	public int getBlockCount() {
+		return blockStarts == null ? -1 : blockStarts.length;
+	}
+
+	/**
+	 * Sets the number of decoded blocks to keep in memory. Each block holds up to
+	 * 900 KB of uncompressed data, and sequential reads decode up to this many
+	 * blocks ahead.
+	 */
+	public void setBlockCacheSize(final int blockCacheSize) {
+		if (blockCacheSize < 1) {
+			throw new IllegalArgumentException("Invalid block cache size: " +
+				blockCacheSize);
+		}
+		this.blockCacheSize = blockCacheSize;
+		trimCache();
+	}
+
+	public int getBlockCacheSize() {
+		return blockCacheSize;
+	}
+
 	// -- IStreamAccess API methods --
 
 	@Override
@@ -96,6 +180,10 @@ public class BZip2Handle extends StreamHandle {
 
 	@Override
 	public void resetStream() throws IOException {
+		if (blockStarts != null) {
+			setStream(new DataInputStream(new BlockInputStream(0)));
+			return;
+		}
 		final BufferedInputStream bis =
 			new BufferedInputStream(new FileInputStream(getFile()),
 				RandomAccessInputStream.MAX_OVERHEAD);
@@ -115,6 +203,21 @@ public class BZip2Handle extends StreamHandle {
 			throw new HandleException(file + " is not a BZip2 file.");
 		}
 
+		clearIndex();
+		try {
+			setLength(buildIndex());
+		}
+		catch (final IOException e) {
+			// NB: Fall back to sequential decoding of the whole stream.
+			if (log != null) log.debug("Could not index BZip2 blocks", e);
+			clearIndex();
+		}
+
+		if (blockStarts != null) {
+			resetStream();
+			return;
+		}
+
 		resetStream();
 
 		int length = 0;
@@ -128,4 +231,385 @@ public class BZip2Handle extends StreamHandle {
 
 		resetStream();
 	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (blockStarts == null) {
+			super.seek(pos);
+			return;
+		}
+		setFp(pos);
+		setStream(new DataInputStream(new BlockInputStream(pos)));
+	}
+
+	@Override
+	public void close() throws IOException {
+		super.close();
+		clearIndex();
+	}
+
+	// -- Helper methods --
+
+	private void clearIndex() {
+		blockBits = null;
+		blockStarts = null;
+		for (final Future<byte[]> f : blockCache.values()) {
+			f.cancel(false);
+		}
+		blockCache.clear();
+	}
+
+	/**
+	 * Indexes the blocks of the current file. Candidate block positions are
+	 * found by scanning for the block magic number; since the magic may also
+	 * occur by chance inside compressed data, the candidates are only trusted
+	 * when they coincide with the end of the preceding block.
+	 *
+	 * @return the total uncompressed length.
+	 */
+	private long buildIndex() throws IOException {
+		final FileInputStream header = new FileInputStream(getFile());
+		final byte[] b = new byte[4];
+		final int n;
+		try {
+			n = header.read(b);
+		}
+		finally {
+			header.close();
+		}
+		if (n < 4 || b[2] != 'h' || b[3] < '1' || b[3] > '9') {
+			throw new IOException("Invalid BZip2 header");
+		}
+		blockSize100k = b[3] - '0';
+
+		// decode the candidate blocks in parallel batches
+		final long[] candidates = findBlockMagic();
+		final Map<Long, DecodedBlock> decoded = new HashMap<>();
+		final int batchSize = threadService == null ? 1 : Runtime.getRuntime()
+			.availableProcessors();
+		if (batchSize > 1) {
+			for (int c = 0; c < candidates.length; c += batchSize) {
+				final List<Future<DecodedBlock>> batch = new ArrayList<>();
+				for (int i = c; i < Math.min(c + batchSize, candidates.length); i++) {
+					batch.add(threadService.run(decoder(candidates[i],
+						i < blockCacheSize)));
+				}
+				for (final Future<DecodedBlock> f : batch) {
+					final DecodedBlock block = get(f);
+					if (block != null) decoded.put(block.bitOffset, block);
+				}
+			}
+		}
+
+		// follow the chain of blocks from the start of the stream
+		final List<DecodedBlock> blocks = new ArrayList<>();
+		long bit = FIRST_BLOCK_BIT;
+		while (true) {
+			DecodedBlock block = decoded.get(bit);
+			if (block == null) {
+				block = decodeBlock(bit, blocks.size() < blockCacheSize);
+			}
+			if (block.length == 0) break;
+			blocks.add(block);
+			bit = block.endBit;
+		}
+
+		blockBits = new long[blocks.size()];
+		blockStarts = new long[blocks.size()];
+		long offset = 0;
+		for (int i = 0; i < blockBits.length; i++) {
+			final DecodedBlock block = blocks.get(i);
+			blockBits[i] = block.bitOffset;
+			blockStarts[i] = offset;
+			offset += block.length;
+			if (block.data != null && i < blockCacheSize) cache(i, done(block.data));
+		}
+		return offset;
+	}
+
+	/** Returns the bit offsets of every occurrence of the block magic. */
+	private long[] findBlockMagic() throws IOException {
+		long[] offsets = new long[16];
+		int count = 0;
+		final InputStream in = new BufferedInputStream(new FileInputStream(
+			getFile()), BUFFER_SIZE);
+		try {
+			final byte[] buf = new byte[BUFFER_SIZE];
+			long bitPos = 0;
+			long bits = 0;
+			int r;
+			while ((r = in.read(buf)) > 0) {
+				for (int i = 0; i < r; i++) {
+					final int v = buf[i] & 0xff;
+					for (int shift = 7; shift >= 0; shift--) {
+						bits = (bits << 1) | ((v >>> shift) & 1);
+						bitPos++;
+						if ((bits & MAGIC_MASK) == BLOCK_MAGIC && bitPos >= 48) {
+							if (count == offsets.length) {
+								offsets = Arrays.copyOf(offsets, count * 2);
+							}
+							offsets[count++] = bitPos - 48;
+						}
+					}
+				}
+			}
+		}
+		finally {
+			in.close();
+		}
+		return Arrays.copyOf(offsets, count);
+	}
+
+	private Callable<DecodedBlock> decoder(final long bitOffset,
+		final boolean keepData)
+	{
+		return () -> {
+			try {
+				return decodeBlock(bitOffset, keepData);
+			}
+			catch (final IOException e) {
+				// NB: Not a real block boundary.
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Decodes the single block starting at the given bit offset.
+	 *
+	 * @param keepData whether to retain the decoded bytes, or only their count.
+	 */
+	private DecodedBlock decodeBlock(final long bitOffset,
+		final boolean keepData) throws IOException
+	{
+		final FileInputStream fis = new FileInputStream(getFile());
+		try {
+			final long start = bitOffset >>> 3;
+			long skipped = 0;
+			while (skipped < start) {
+				final long s = fis.skip(start - skipped);
+				if (s <= 0) throw new IOException("Invalid block offset " + bitOffset);
+				skipped += s;
+			}
+			final CountingInputStream counter = new CountingInputStream(
+				new BufferedInputStream(fis, BUFFER_SIZE));
+			final CBZip2InputStream bzip = new CBZip2InputStream(counter,
+				blockSize100k, (int) (bitOffset & 7), log);
+			final long endBit = (start + counter.count) * 8 - bzip
+				.getBufferedBits();
+
+			byte[] data = new byte[blockSize100k * 100000];
+			int length = 0;
+			while (true) {
+				if (length == data.length) data = Arrays.copyOf(data, length * 2);
+				final int r = bzip.read(data, length, data.length - length);
+				if (r < 0) break;
+				length += r;
+			}
+			return new DecodedBlock(bitOffset, endBit, length, keepData ? Arrays
+				.copyOf(data, length) : null);
+		}
+		finally {
+			fis.close();
+		}
+	}
+
+	/** Gets the decoded contents of the given block. */
+	private byte[] getBlock(final int index) throws IOException {
+		Future<byte[]> f = blockCache.get(index);
+		if (f == null) {
+			final FutureTask<byte[]> task = new FutureTask<>(() -> decodeBlock(
+				blockBits[index], true).data);
+			cache(index, task);
+			task.run();
+			f = task;
+		}
+		try {
+			return get(f);
+		}
+		catch (final IOException e) {
+			blockCache.remove(index);
+			throw e;
+		}
+	}
+
+	/** Starts decoding the blocks following the given one in the background. */
+	private void prefetch(final int index) {
+		if (threadService == null) return;
+		final int last = Math.min(index + blockCacheSize - 1, blockStarts.length);
+		for (int i = index + 1; i < last; i++) {
+			if (blockCache.containsKey(i)) continue;
+			final long bitOffset = blockBits[i];
+			final Future<byte[]> f = threadService.run(() -> decodeBlock(
+				bitOffset, true).data);
+			cache(i, f);
+		}
+	}
+
+	private void cache(final int index, final Future<byte[]> block) {
+		blockCache.put(index, block);
+		trimCache();
+	}
+
+	private void trimCache() {
+		final Iterator<Future<byte[]>> iter = blockCache.values().iterator();
+		while (blockCache.size() > blockCacheSize && iter.hasNext()) {
+			iter.next().cancel(false);
+			iter.remove();
+		}
+	}
+
+	private static <T> Future<T> done(final T value) {
+		final FutureTask<T> task = new FutureTask<>(() -> value);
+		task.run();
+		return task;
+	}
+
+	private static <T> T get(final Future<T> future) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException e) {
+			throw new IOException(e);
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	// -- Helper classes --
+
+	private static class DecodedBlock {
+
+		private final long bitOffset;
+
+		private final long endBit;
+
+		private final int length;
+
+		private final byte[] data;
+
+		private DecodedBlock(final long bitOffset, final long endBit,
+			final int length, final byte[] data)
+		{
+			this.bitOffset = bitOffset;
+			this.endBit = endBit;
+			this.length = length;
+			this.data = data;
+		}
+	}
+
+	/** Counts the bytes read from the wrapped stream. */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		private CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b >= 0) count++;
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			final int r = super.read(b, off, len);
+			if (r > 0) count += r;
+			return r;
+		}
+	}
+
+	/** Reads the uncompressed data from the indexed blocks. */
+	private class BlockInputStream extends InputStream {
+
+		/** Index of the current block. */
+		private int block;
+
+		/** Position within the current block. */
+		private long pos;
+
+		/** Decoded contents of the current block, or null if not yet needed. */
+		private byte[] data;
+
+		/** Whether the current block was reached by reading sequentially. */
+		private boolean sequential;
+
+		private BlockInputStream(final long offset) {
+			int index = Arrays.binarySearch(blockStarts, offset);
+			if (index < 0) index = -index - 2;
+			block = Math.max(index, 0);
+			pos = blockStarts.length == 0 ? 0 : offset - blockStarts[block];
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill()) return -1;
+			return data[(int) pos++] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			int n = 0;
+			while (n < len && fill()) {
+				final int count = (int) Math.min(len - n, data.length - pos);
+				System.arraycopy(data, (int) pos, b, off + n, count);
+				pos += count;
+				n += count;
+			}
+			return n == 0 && len > 0 ? -1 : n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			if (n <= 0 || block >= blockStarts.length) return 0;
+			final long offset = blockStarts[block] + pos;
+			final long target = Math.min(offset + n, length());
+			int index = Arrays.binarySearch(blockStarts, target);
+			if (index < 0) index = -index - 2;
+			if (index != block) {
+				data = null;
+				sequential = false;
+			}
+			block = index;
+			pos = target - blockStarts[block];
+			return target - offset;
+		}
+
+		@Override
+		public int available() {
+			return data == null ? 0 : (int) (data.length - pos);
+		}
+
+		/**
+		 * Ensures the current block is decoded and has bytes remaining.
+		 *
+		 * @return false if the end of the stream has been reached.
+		 */
+		private boolean fill() throws IOException {
+			while (block < blockStarts.length) {
+				if (data == null) {
+					data = getBlock(block);
+					if (sequential) prefetch(block);
+				}
+				if (pos < data.length) return true;
+				pos -= data.length;
+				data = null;
+				block++;
+				sequential = true;
+			}
+			return false;
+		}
+	}
 }
@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe, size-bounded cache of fixed-size file blocks, shared between
+ * handles. Blocks are keyed by file path and block index, and additionally by
+ * the file's size and modification time when the block was read, so that
+ * blocks of a file which has since changed are never returned. Least recently
+ * used blocks are evicted once the byte budget is exceeded.
+ *
+ * @see BlockCacheHandle
+ */
+public class BlockCache {
+
+	// -- Constants --
+
+	/** Default size of each cached block. */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	// -- Fields --
+
+	private final int blockSize;
+
+	private long budget;
+
+	/** Total number of bytes currently cached. */
+	private long size;
+
+	private final LinkedHashMap<Key, byte[]> blocks = new LinkedHashMap<>(16,
+		0.75f, true);
+
+	// -- Constructors --
+
+	/** Creates a cache of {@link #DEFAULT_BLOCK_SIZE} blocks. */
+	public BlockCache(final long budget) {
+		this(DEFAULT_BLOCK_SIZE, budget);
+	}
+
+	/**
+	 * Creates a cache of blocks of the given size.
+	 *
+	 * @param blockSize The size in bytes of each block.
+	 * @param budget The maximum number of bytes to cache.
+	 */
+	public BlockCache(final int blockSize, final long budget) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.blockSize = blockSize;
+		setBudget(budget);
+	}
+
+	// -- BlockCache API methods --
+
+	/** Gets the size in bytes of each block. */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/** Gets the maximum number of bytes to cache. */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/** Sets the maximum number of bytes to cache, evicting blocks as needed. */
+	public synchronized void setBudget(final long budget) {
+		if (budget < 0) {
+			throw new IllegalArgumentException("Invalid budget: " + budget);
+		}
+		this.budget = budget;
+		evict();
+	}
+
+	/** Gets the number of bytes currently cached. */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets a cached block.
+	 *
+	 * @param path The canonical path of the file.
+	 * @param length The current length of the file.
+	 * @param lastModified The current modification time of the file.
+	 * @param block The index of the block.
+	 * @return The block's contents, or null if not cached. The returned array
+	 *         must not be modified.
+	 */
+	public synchronized byte[] get(final String path, final long length,
+		final long lastModified, final long block)
+	{
+		return blocks.get(new Key(path, length, lastModified, block));
+	}
+
+	/**
+	 * Caches a block. The given array must not be modified afterwards.
+	 *
+	 * @see #get(String, long, long, long)
+	 */
+	public synchronized void put(final String path, final long length,
+		final long lastModified, final long block, final byte[] data)
+	{
+		final byte[] old = blocks.put(new Key(path, length, lastModified, block),
+			data);
+		if (old != null) size -= old.length;
+		size += data.length;
+		evict();
+	}
+
+	/** Removes all blocks of the given file. */
+	public synchronized void invalidate(final String path) {
+		final Iterator<Map.Entry<Key, byte[]>> iter = blocks.entrySet().iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, byte[]> entry = iter.next();
+			if (entry.getKey().path.equals(path)) {
+				size -= entry.getValue().length;
+				iter.remove();
+			}
+		}
+	}
+
+	/** Removes all blocks. */
+	public synchronized void clear() {
+		blocks.clear();
+		size = 0;
+	}
+
+	// -- Helper methods --
+
+	private void evict() {
+		final Iterator<byte[]> iter = blocks.values().iterator();
+		while (size > budget && iter.hasNext()) {
+			size -= iter.next().length;
+			iter.remove();
+		}
+	}
+
+	// -- Helper classes --
+
+	private static final class Key {
+
+		private final String path;
+
+		private final long length;
+
+		private final long lastModified;
+
+		private final long block;
+
+		private Key(final String path, final long length, final long lastModified,
+			final long block)
+		{
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.block = block;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key k = (Key) o;
+			return block == k.block && length == k.length &&
+				lastModified == k.lastModified && path.equals(k.path);
+		}
+
+		@Override
+		public int hashCode() {
+			int h = path.hashCode();
+			h = 31 * h + (int) (block ^ (block >>> 32));
+			h = 31 * h + (int) (length ^ (length >>> 32));
+			return 31 * h + (int) (lastModified ^ (lastModified >>> 32));
+		}
+	}
+}
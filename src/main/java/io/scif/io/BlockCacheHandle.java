@@ -0,0 +1,432 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+
+/**
+ * Read-only {@link IRandomAccess} which reads through a shared
+ * {@link BlockCache}. Blocks missing from the cache are read from the wrapped
+ * handle and then cached, so repeatedly opening the same file (e.g., to read
+ * its header) is served from memory.
+ * <p>
+ * The wrapped handle is assumed not to change while this handle is open; the
+ * length and modification time given at construction are used to validate
+ * cached blocks.
+ * </p>
+ *
+ * @see BlockCache
+ */
+public class BlockCacheHandle implements IRandomAccess {
+
+	// -- Fields --
+
+	private final BlockCache cache;
+
+	/** Opens the wrapped handle, when it is first needed. */
+	private final Callable<IRandomAccess> opener;
+
+	private IRandomAccess handle;
+
+	private final String path;
+
+	private final long length;
+
+	private final long lastModified;
+
+	/** Current position within the handle. */
+	private long fp;
+
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	/** Scratch buffer for decoding primitive values. */
+	private final byte[] scratch = new byte[8];
+
+	// -- Constructors --
+
+	/**
+	 * Wraps the given handle.
+	 *
+	 * @param cache The cache to read through.
+	 * @param handle The handle to read missing blocks from.
+	 * @param path Unique (e.g., canonical) path identifying the handle's data.
+	 * @param lastModified Modification time of the handle's data.
+	 */
+	public BlockCacheHandle(final BlockCache cache, final IRandomAccess handle,
+		final String path, final long lastModified) throws IOException
+	{
+		this(cache, () -> handle, path, handle.length(), lastModified);
+		this.handle = handle;
+	}
+
+	/**
+	 * Wraps a handle which is only opened once a block is missing from the
+	 * cache, so that reads served entirely from the cache do not touch the file
+	 * system at all.
+	 *
+	 * @param cache The cache to read through.
+	 * @param opener Opens the handle to read missing blocks from.
+	 * @param path Unique (e.g., canonical) path identifying the handle's data.
+	 * @param length Length of the handle's data.
+	 * @param lastModified Modification time of the handle's data.
+	 */
+	public BlockCacheHandle(final BlockCache cache,
+		final Callable<IRandomAccess> opener, final String path, final long length,
+		final long lastModified)
+	{
+		this.cache = cache;
+		this.opener = opener;
+		this.path = path;
+		this.length = length;
+		this.lastModified = lastModified;
+	}
+
+	// -- BlockCacheHandle API methods --
+
+	/** Gets the wrapped handle, opening it if necessary. */
+	public IRandomAccess getHandle() throws IOException {
+		if (handle == null) {
+			try {
+				handle = opener.call();
+			}
+			catch (final IOException e) {
+				throw e;
+			}
+			catch (final Exception e) {
+				throw new HandleException("Cannot open " + path, e);
+			}
+		}
+		return handle;
+	}
+
+	/**
+	 * Gets the file channel backing the wrapped handle, opening it if necessary.
+	 * Reads through the channel bypass the cache.
+	 *
+	 * @return The channel, or null if the wrapped handle is not backed by a
+	 *         file.
+	 */
+	public FileChannel getFileChannel() throws IOException {
+		return StreamTools.getFileChannel(getHandle());
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void close() throws IOException {
+		if (handle != null) handle.close();
+		handle = null;
+	}
+
+	@Override
+	public long getFilePointer() {
+		return fp;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public ByteOrder getOrder() {
+		return order;
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		this.order = order;
+	}
+
+	@Override
+	public int read(final byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		final int blockSize = cache.getBlockSize();
+		int n = 0;
+		while (n < len && fp < length) {
+			final long block = fp / blockSize;
+			final byte[] data = getBlock(block);
+			final int start = (int) (fp - block * blockSize);
+			final int count = Math.min(len - n, data.length - start);
+			System.arraycopy(data, start, b, off + n, count);
+			fp += count;
+			n += count;
+		}
+		return n;
+	}
+
+	@Override
+	public int read(final ByteBuffer buffer) throws IOException {
+		return read(buffer, 0, buffer.capacity());
+	}
+
+	@Override
+	public int read(final ByteBuffer buffer, final int off, final int len)
+		throws IOException
+	{
+		if (buffer.hasArray()) {
+			return read(buffer.array(), buffer.arrayOffset() + off, len);
+		}
+		final byte[] b = new byte[len];
+		final int n = read(b);
+		buffer.position(off);
+		buffer.put(b, 0, n);
+		return n;
+	}
+
+	@Override
+	public void seek(final long pos) {
+		fp = pos;
+	}
+
+	@Override
+	public void write(final ByteBuffer buf) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void write(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		throw readOnly();
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		if (read(b, off, len) < len) {
+			throw new EOFException(AbstractNIOHandle.EOF_ERROR_MSG);
+		}
+	}
+
+	@Override
+	public int skipBytes(final int n) {
+		if (n <= 0) return 0;
+		final int skipped = (int) Math.max(0, Math.min(n, length - fp));
+		fp += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return primitive(1).get();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return primitive(2).getShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return primitive(2).getChar();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return primitive(4).getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return primitive(8).getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return primitive(4).getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return primitive(8).getDouble();
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		if (fp >= length) return null;
+		final StringBuilder line = new StringBuilder();
+		while (fp < length) {
+			final int c = readUnsignedByte();
+			if (c == '\n') break;
+			if (c == '\r') {
+				if (fp < length && readUnsignedByte() != '\n') fp--;
+				break;
+			}
+			line.append((char) c);
+		}
+		return line.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	// -- DataOutput API methods --
+
+	@Override
+	public void write(final int b) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		throw readOnly();
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		throw readOnly();
+	}
+
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		throw readOnly();
+	}
+
+	// -- Helper methods --
+
+	/** Gets the given block, from the cache if possible. */
+	private byte[] getBlock(final long block) throws IOException {
+		byte[] data = cache.get(path, length, lastModified, block);
+		if (data == null) {
+			final long start = block * cache.getBlockSize();
+			data = new byte[(int) Math.min(cache.getBlockSize(), length - start)];
+			final IRandomAccess handle = getHandle();
+			handle.seek(start);
+			int n = 0;
+			while (n < data.length) {
+				final int r = handle.read(data, n, data.length - n);
+				if (r <= 0) throw new EOFException(AbstractNIOHandle.EOF_ERROR_MSG);
+				n += r;
+			}
+			cache.put(path, length, lastModified, block, data);
+		}
+		return data;
+	}
+
+	/** Reads the given number of bytes for decoding a primitive value. */
+	private ByteBuffer primitive(final int size) throws IOException {
+		readFully(scratch, 0, size);
+		return ByteBuffer.wrap(scratch, 0, size).order(order);
+	}
+
+	private HandleException readOnly() {
+		return new HandleException("This handle is read-only.");
+	}
+}
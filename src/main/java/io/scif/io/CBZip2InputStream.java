@@ -187,6 +187,9 @@ public class CBZip2InputStream extends InputStream {
 
 	private final LogService log;
 
+	/** Whether decoding stops after the first block. */
+	private final boolean singleBlock;
+
 	private int currentChar = -1;
 
 	private static final int EOF = 0;
@@ -257,9 +260,57 @@ public class CBZip2InputStream extends InputStream {
 
 		this.in = in;
 		this.log = log;
+		this.singleBlock = false;
 		init();
 	}
 
+	/**
+	 * Constructs a new CBZip2InputStream which decompresses exactly one block of
+	 * a BZip2 stream. BZip2 blocks are not byte aligned, so the given stream must
+	 * be positioned at the byte containing the first bit of the 48-bit block
+	 * magic, and {@code bitOffset} gives the number of leading bits of that byte
+	 * which belong to the previous block.
+	 * <p>
+	 * The block is fully Huffman-decoded by this constructor, so
+	 * {@link #getBufferedBits()} can be used afterwards to locate the end of the
+	 * block in the compressed stream. If the given position holds the
+	 * end-of-stream marker instead of a block, the resulting stream is empty.
+	 * </p>
+	 *
+	 * @param blockSize100k the block size (1-9) from the stream header.
+	 * @param bitOffset the number of bits (0-7) to discard before the block.
+	 * @throws IOException if the block is malformed or an I/O error occurs.
+	 */
+	CBZip2InputStream(final InputStream in, final int blockSize100k,
+		final int bitOffset, final LogService log) throws IOException
+	{
+		super();
+
+		if ((blockSize100k < 1) || (blockSize100k > 9)) {
+			throw new IOException("Illegal BZip2 block size " + blockSize100k);
+		}
+		if ((bitOffset < 0) || (bitOffset > 7)) {
+			throw new IllegalArgumentException("Illegal bit offset " + bitOffset);
+		}
+
+		this.in = in;
+		this.log = log;
+		this.singleBlock = true;
+		this.blockSize100k = blockSize100k;
+		if (bitOffset > 0) bsR(bitOffset);
+
+		initBlock();
+		setupBlock();
+	}
+
+	/**
+	 * Returns the number of bits which have been read from the underlying stream
+	 * but not yet consumed by the decoder.
+	 */
+	int getBufferedBits() {
+		return this.bsLive;
+	}
+
 	@Override
 	public int read() throws IOException {
 		if (this.in != null) return read0();
@@ -414,7 +465,10 @@ public class CBZip2InputStream extends InputStream {
 		this.currentState = EOF;
 		this.data = null;
 
-		if (this.storedCombinedCRC != this.computedCombinedCRC) {
+		// NB: The combined CRC cannot be checked when decoding a single block.
+		if (!this.singleBlock &&
+			this.storedCombinedCRC != this.computedCombinedCRC)
+		{
 			reportCRCError();
 		}
 	}
@@ -844,6 +898,22 @@ public class CBZip2InputStream extends InputStream {
 		else setupNoRandPartA();
 	}
 
+	/**
+	 * Finishes the current block and moves on to the next one, or to
+	 * {@link #EOF} if this stream only decodes a single block.
+	 */
+	private void nextBlock() throws IOException {
+		endBlock();
+		if (this.singleBlock) {
+			this.currentState = EOF;
+			this.data = null;
+		}
+		else {
+			initBlock();
+			setupBlock();
+		}
+	}
+
 	private void setupRandPartA() throws IOException {
 		if (this.suI2 <= this.last) {
 			this.suChPrev = this.suCh2;
@@ -860,11 +930,7 @@ public class CBZip2InputStream extends InputStream {
 			this.currentState = RAND_PART_B_STATE;
 			this.crc.updateCRC(suCh2Shadow);
 		}
-		else {
-			endBlock();
-			initBlock();
-			setupBlock();
-		}
+		else nextBlock();
 	}
 
 	private void setupNoRandPartA() throws IOException {
@@ -880,9 +946,7 @@ public class CBZip2InputStream extends InputStream {
 		}
 		else {
 			this.currentState = NO_RAND_PART_A_STATE;
-			endBlock();
-			initBlock();
-			setupBlock();
+			nextBlock();
 		}
 	}
 
@@ -0,0 +1,614 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import io.scif.common.Constants;
+
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An in-memory {@link IRandomAccess} backed by a list of fixed-size chunks,
+ * which may be allocated on or off the Java heap. Unlike
+ * {@link ByteArrayHandle}, growing the handle never copies existing data, and
+ * its length is not limited to 2 GB. Chunks are only allocated once they are
+ * written to; unwritten regions read as zeros.
+ *
+ * @see ByteArrayHandle
+ */
+public class ChunkedByteHandle extends AbstractNIOHandle {
+
+	// -- Constants --
+
+	/** Default size of each chunk. */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	// -- Fields --
+
+	private final int chunkShift;
+
+	private final int chunkMask;
+
+	private final boolean direct;
+
+	private final boolean readOnly;
+
+	/** Backing chunks; null entries have never been written to. */
+	private final ArrayList<ByteBuffer> chunks;
+
+	private long length;
+
+	/** Current position within the handle. */
+	private long fp;
+
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	/** Scratch buffer for values which span two chunks. */
+	private final ByteBuffer scratch = ByteBuffer.allocate(8);
+
+	/** Whether a value put into the scratch buffer still needs copying. */
+	private boolean scratchPending;
+
+	// -- Constructors --
+
+	/** Creates an empty handle of {@link #DEFAULT_CHUNK_SIZE} heap chunks. */
+	public ChunkedByteHandle() {
+		this(DEFAULT_CHUNK_SIZE, false);
+	}
+
+	/**
+	 * Creates an empty handle.
+	 *
+	 * @param chunkSize The size in bytes of each chunk; must be a power of two.
+	 * @param direct Whether to allocate chunks outside of the Java heap.
+	 */
+	public ChunkedByteHandle(final int chunkSize, final boolean direct) {
+		if (chunkSize < 1 || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+		chunkMask = chunkSize - 1;
+		this.direct = direct;
+		readOnly = false;
+		chunks = new ArrayList<>();
+	}
+
+	/** Creates a read-only view of the given handle's chunks. */
+	private ChunkedByteHandle(final ChunkedByteHandle source) {
+		chunkShift = source.chunkShift;
+		chunkMask = source.chunkMask;
+		direct = source.direct;
+		readOnly = true;
+		length = source.length;
+		chunks = new ArrayList<>(source.chunks.size());
+		for (final ByteBuffer chunk : source.chunks) {
+			chunks.add(chunk == null ? null : chunk.asReadOnlyBuffer());
+		}
+		setOrder(source.order);
+	}
+
+	// -- ChunkedByteHandle API methods --
+
+	/**
+	 * Gets a read-only view of this handle's current contents, with its own file
+	 * pointer starting at 0. No data is copied: the view shares this handle's
+	 * chunks. Its length is fixed to this handle's current length, and data
+	 * written to this handle after the view was created may or may not be
+	 * visible through it.
+	 */
+	public ChunkedByteHandle asReadOnly() {
+		return new ChunkedByteHandle(this);
+	}
+
+	/** Returns true if this handle cannot be written to. */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/** Gets the size in bytes of each chunk. */
+	public int getChunkSize() {
+		return chunkMask + 1;
+	}
+
+	/** Returns true if chunks are allocated outside of the Java heap. */
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Writes the entire contents of this handle to the given output, chunk by
+	 * chunk. The file pointer is not changed.
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		final byte[] zeros = new byte[Math.min(getChunkSize(), 8192)];
+		byte[] copy = null;
+		long pos = 0;
+		while (pos < length) {
+			final int index = (int) (pos >>> chunkShift);
+			final int n = (int) Math.min(getChunkSize(), length - pos);
+			final ByteBuffer chunk = chunk(index);
+			if (chunk == null) {
+				for (int off = 0; off < n; off += zeros.length) {
+					out.write(zeros, 0, Math.min(zeros.length, n - off));
+				}
+			}
+			else if (chunk.hasArray()) {
+				out.write(chunk.array(), chunk.arrayOffset(), n);
+			}
+			else {
+				if (copy == null) copy = new byte[getChunkSize()];
+				chunk.position(0);
+				chunk.get(copy, 0, n);
+				out.write(copy, 0, n);
+			}
+			pos += n;
+		}
+	}
+
+	// -- AbstractNIOHandle API methods --
+
+	@Override
+	public void setLength(final long length) throws IOException {
+		checkWritable();
+		if (length < 0) throw new IOException("Invalid length: " + length);
+		if (length < this.length) {
+			// release whole chunks past the end, and clear the rest of the last
+			final int count = (int) ((length + chunkMask) >>> chunkShift);
+			while (chunks.size() > count) {
+				chunks.remove(chunks.size() - 1);
+			}
+			final int p = (int) (length & chunkMask);
+			final ByteBuffer last = p == 0 ? null : chunk(count - 1);
+			if (last != null) {
+				final int end = (int) Math.min(getChunkSize(), this.length -
+					(length - p));
+				for (int i = p; i < end; i++) {
+					last.put(i, (byte) 0);
+				}
+			}
+		}
+		this.length = length;
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void close() {}
+
+	@Override
+	public long getFilePointer() {
+		return fp;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public ByteOrder getOrder() {
+		return order;
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		this.order = order;
+		scratch.order(order);
+		for (final ByteBuffer chunk : chunks) {
+			if (chunk != null) chunk.order(order);
+		}
+	}
+
+	@Override
+	public int read(final byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, int len) throws IOException {
+		if (fp + len > length) len = (int) Math.max(0, length - fp);
+		get(fp, b, off, len);
+		fp += len;
+		return len;
+	}
+
+	@Override
+	public int read(final ByteBuffer buf) throws IOException {
+		return read(buf, 0, buf.capacity());
+	}
+
+	@Override
+	public int read(final ByteBuffer buf, final int off, int len)
+		throws IOException
+	{
+		if (fp + len > length) len = (int) Math.max(0, length - fp);
+		if (buf.hasArray()) {
+			get(fp, buf.array(), buf.arrayOffset() + off, len);
+		}
+		else {
+			buf.position(off);
+			for (int done = 0; done < len;) {
+				final long pos = fp + done;
+				final int p = (int) (pos & chunkMask);
+				final int n = Math.min(len - done, getChunkSize() - p);
+				final ByteBuffer chunk = chunk((int) (pos >>> chunkShift));
+				if (chunk == null) {
+					for (int i = 0; i < n; i++) {
+						buf.put((byte) 0);
+					}
+				}
+				else {
+					chunk.limit(p + n).position(p);
+					buf.put(chunk);
+					chunk.limit(chunk.capacity());
+				}
+				done += n;
+			}
+		}
+		fp += len;
+		return len;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (pos < 0) throw new IOException("Invalid offset: " + pos);
+		if (pos > length && !readOnly) setLength(pos);
+		fp = pos;
+	}
+
+	@Override
+	public void write(final ByteBuffer buf) throws IOException {
+		write(buf, 0, buf.capacity());
+	}
+
+	@Override
+	public void write(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		checkWritable();
+		validateLength(len);
+		buf.position(off);
+		buf.limit(off + len);
+		while (buf.hasRemaining()) {
+			final int p = (int) (fp & chunkMask);
+			final int n = Math.min(buf.remaining(), getChunkSize() - p);
+			final ByteBuffer chunk = writableChunk((int) (fp >>> chunkShift));
+			chunk.position(p);
+			final int limit = buf.limit();
+			buf.limit(buf.position() + n);
+			chunk.put(buf);
+			buf.limit(limit);
+			fp += n;
+		}
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return readBuffer(1).get();
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return readBuffer(2).getChar();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return readBuffer(8).getDouble();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return readBuffer(4).getFloat();
+	}
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		if (fp + len > length) throw new EOFException(EOF_ERROR_MSG);
+		get(fp, b, off, len);
+		fp += len;
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return readBuffer(4).getInt();
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		if (fp >= length) return null;
+		final StringBuilder sb = new StringBuilder();
+		while (fp < length) {
+			final int c = readUnsignedByte();
+			if (c == '\n') break;
+			if (c == '\r') {
+				if (fp < length && readUnsignedByte() != '\n') fp--;
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return readBuffer(8).getLong();
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return readBuffer(2).getShort();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		final int length = readUnsignedShort();
+		final byte[] b = new byte[length];
+		read(b);
+		return new String(b, Constants.ENCODING);
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.min(n, length - fp);
+		if (skipped < 0) return 0;
+		seek(fp + skipped);
+		return skipped;
+	}
+
+	// -- DataOutput API methods --
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		checkWritable();
+		validateLength(len);
+		put(fp, b, off, len);
+		fp += len;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		writeBuffer(1).put((byte) b);
+		flushScratch(1);
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		write(v);
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		write(s.getBytes(Constants.ENCODING));
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		writeBuffer(2).putChar((char) v);
+		flushScratch(2);
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			writeChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		writeBuffer(8).putDouble(v);
+		flushScratch(8);
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		writeBuffer(4).putFloat(v);
+		flushScratch(4);
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		writeBuffer(4).putInt(v);
+		flushScratch(4);
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		writeBuffer(8).putLong(v);
+		flushScratch(8);
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		writeBuffer(2).putShort((short) v);
+		flushScratch(2);
+	}
+
+	@Override
+	public void writeUTF(final String str) throws IOException {
+		final byte[] b = str.getBytes(Constants.ENCODING);
+		writeShort(b.length);
+		write(b);
+	}
+
+	// -- Helper methods --
+
+	private void checkWritable() throws IOException {
+		if (readOnly) throw new HandleException("This handle is read-only.");
+	}
+
+	/** Gets the chunk with the given index, or null if never written to. */
+	private ByteBuffer chunk(final int index) {
+		return index < chunks.size() ? chunks.get(index) : null;
+	}
+
+	/** Gets the chunk with the given index, allocating it if needed. */
+	private ByteBuffer writableChunk(final int index) {
+		while (chunks.size() <= index) {
+			chunks.add(null);
+		}
+		ByteBuffer chunk = chunks.get(index);
+		if (chunk == null) {
+			chunk = direct ? ByteBuffer.allocateDirect(getChunkSize()) : ByteBuffer
+				.allocate(getChunkSize());
+			chunk.order(order);
+			chunks.set(index, chunk);
+		}
+		return chunk;
+	}
+
+	/** Copies bytes starting at the given offset into the given array. */
+	private void get(long pos, final byte[] b, int off, int len) {
+		while (len > 0) {
+			final int p = (int) (pos & chunkMask);
+			final int n = Math.min(len, getChunkSize() - p);
+			final ByteBuffer chunk = chunk((int) (pos >>> chunkShift));
+			if (chunk == null) Arrays.fill(b, off, off + n, (byte) 0);
+			else {
+				chunk.position(p);
+				chunk.get(b, off, n);
+			}
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/** Copies bytes from the given array to the given offset. */
+	private void put(long pos, final byte[] b, int off, int len) {
+		while (len > 0) {
+			final int p = (int) (pos & chunkMask);
+			final int n = Math.min(len, getChunkSize() - p);
+			final ByteBuffer chunk = writableChunk((int) (pos >>> chunkShift));
+			chunk.position(p);
+			chunk.put(b, off, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Gets a buffer positioned at the next {@code size} bytes of this handle,
+	 * and advances the file pointer past them.
+	 */
+	private ByteBuffer readBuffer(final int size) throws IOException {
+		if (fp + size > length) throw new EOFException(EOF_ERROR_MSG);
+		final int p = (int) (fp & chunkMask);
+		final ByteBuffer chunk = chunk((int) (fp >>> chunkShift));
+		final ByteBuffer buf;
+		if (chunk != null && p + size <= getChunkSize()) {
+			chunk.position(p);
+			buf = chunk;
+		}
+		else {
+			// NB: The value spans two chunks, or has never been written.
+			get(fp, scratch.array(), 0, size);
+			scratch.clear();
+			buf = scratch;
+		}
+		fp += size;
+		return buf;
+	}
+
+	/**
+	 * Gets a buffer positioned where the next {@code size} bytes of this handle
+	 * are to be written, and advances the file pointer past them. If the
+	 * returned buffer is the scratch buffer, {@link #flushScratch} must be
+	 * called once the value has been put.
+	 */
+	private ByteBuffer writeBuffer(final int size) throws IOException {
+		checkWritable();
+		validateLength(size);
+		final int p = (int) (fp & chunkMask);
+		final ByteBuffer buf;
+		if (p + size <= getChunkSize()) {
+			buf = writableChunk((int) (fp >>> chunkShift));
+			buf.position(p);
+		}
+		else {
+			scratch.clear();
+			scratchPending = true;
+			buf = scratch;
+		}
+		fp += size;
+		return buf;
+	}
+
+	/** Copies a value put into the scratch buffer to its chunks. */
+	private void flushScratch(final int size) {
+		if (scratchPending) {
+			put(fp - size, scratch.array(), 0, size);
+			scratchPending = false;
+		}
+	}
+}
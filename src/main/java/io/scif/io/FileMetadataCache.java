@@ -0,0 +1,396 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * A bounded cache of file system metadata: whether files exist, whether they
+ * are directories or regular files, their length and modification time, and
+ * directory listings. Listing a directory reads the attributes of all of its
+ * entries in the same pass, so that subsequent queries about them do not touch
+ * the file system.
+ * <p>
+ * Entries expire after a timeout. In addition, where the file system supports
+ * it and a {@link ThreadService} is available, the directories of cached
+ * entries are watched with a {@link WatchService}, so that changes made to
+ * them invalidate the affected entries right away.
+ * </p>
+ *
+ * @see io.scif.services.LocationService#getFileMetadataCache()
+ */
+public class FileMetadataCache {
+
+	// -- Constants --
+
+	/** Default maximum number of cached entries. */
+	public static final int DEFAULT_MAX_ENTRIES = 65536;
+
+	/** Maximum number of directories to watch for changes. */
+	private static final int MAX_WATCHED_DIRECTORIES = 256;
+
+	// -- Fields --
+
+	private final ThreadService threadService;
+
+	private volatile long timeoutNanos;
+
+	private final int maxEntries;
+
+	/** Cached attributes, by absolute path. */
+	private final LinkedHashMap<String, Entry<Attributes>> attributes =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Cached directory listings, by absolute path. */
+	private final LinkedHashMap<String, Entry<String[]>> listings =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private WatchService watcher;
+
+	private boolean closed;
+
+	private final Map<Path, WatchKey> watched = new HashMap<>();
+
+	// -- Constructors --
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param threadService Service used to watch for changes, or null to rely on
+	 *          the timeout alone.
+	 * @param timeoutNanos Time after which entries expire.
+	 * @param maxEntries Maximum number of cached entries.
+	 */
+	public FileMetadataCache(final ThreadService threadService,
+		final long timeoutNanos, final int maxEntries)
+	{
+		this.threadService = threadService;
+		this.timeoutNanos = timeoutNanos;
+		this.maxEntries = maxEntries;
+	}
+
+	// -- FileMetadataCache API methods --
+
+	/** Sets the time after which entries expire. */
+	public void setTimeout(final long timeoutNanos) {
+		this.timeoutNanos = timeoutNanos;
+	}
+
+	/** Gets the time after which entries expire. */
+	public long getTimeout() {
+		return timeoutNanos;
+	}
+
+	/** Gets the number of cached entries. */
+	public synchronized int size() {
+		return attributes.size() + listings.size();
+	}
+
+	/** Gets the attributes of the given file, reading them on a cache miss. */
+	public Attributes getAttributes(final File file) {
+		final String key = file.getAbsolutePath();
+		synchronized (this) {
+			final Attributes cached = get(attributes, key);
+			if (cached != null) return cached;
+		}
+		final Attributes attrs = Attributes.read(file.toPath());
+		synchronized (this) {
+			put(attributes, key, attrs);
+			watch(file.getAbsoluteFile().getParentFile());
+		}
+		return attrs;
+	}
+
+	/**
+	 * Lists the given directory, reading the listing and the attributes of all
+	 * its entries on a cache miss.
+	 *
+	 * @return The names of the directory's entries, or null if it is not a
+	 *         directory or cannot be read. The returned array must not be
+	 *         modified.
+	 */
+	public String[] list(final File dir) {
+		final String key = dir.getAbsolutePath();
+		synchronized (this) {
+			final Entry<String[]> cached = listings.get(key);
+			if (cached != null && !expired(cached)) return cached.value;
+		}
+		final Path path = dir.toPath();
+		final List<String> names = new ArrayList<>();
+		final Map<String, Attributes> entries = new HashMap<>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+			for (final Path child : stream) {
+				final String name = child.getFileName().toString();
+				names.add(name);
+				entries.put(new File(dir, name).getAbsolutePath(), Attributes.read(
+					child));
+			}
+		}
+		catch (final IOException | SecurityException e) {
+			return null;
+		}
+		final String[] listing = names.toArray(new String[names.size()]);
+		synchronized (this) {
+			put(listings, key, listing);
+			for (final Map.Entry<String, Attributes> e : entries.entrySet()) {
+				put(attributes, e.getKey(), e.getValue());
+			}
+			watch(dir.getAbsoluteFile());
+		}
+		return listing;
+	}
+
+	/**
+	 * Discards the cached attributes and listing of the given file, and the
+	 * listing of its parent directory.
+	 */
+	public synchronized void invalidate(final File file) {
+		final File abs = file.getAbsoluteFile();
+		attributes.remove(abs.getPath());
+		listings.remove(abs.getPath());
+		final File parent = abs.getParentFile();
+		if (parent != null) listings.remove(parent.getPath());
+	}
+
+	/** Discards all cached entries. */
+	public synchronized void clear() {
+		attributes.clear();
+		listings.clear();
+	}
+
+	/** Discards all cached entries, and stops watching for changes. */
+	public synchronized void close() {
+		clear();
+		closed = true;
+		watched.clear();
+		if (watcher != null) {
+			try {
+				watcher.close();
+			}
+			catch (final IOException e) {
+				// NB: Nothing else to release.
+			}
+			watcher = null;
+		}
+	}
+
+	// -- Helper methods --
+
+	private boolean expired(final Entry<?> entry) {
+		return System.nanoTime() - entry.time > timeoutNanos;
+	}
+
+	private <T> T get(final Map<String, Entry<T>> map, final String key) {
+		final Entry<T> entry = map.get(key);
+		if (entry == null) return null;
+		if (expired(entry)) {
+			map.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+
+	private <T> void put(final LinkedHashMap<String, Entry<T>> map,
+		final String key, final T value)
+	{
+		map.put(key, new Entry<>(value));
+		// evict the least recently used entries of the larger map
+		while (size() > maxEntries) {
+			final Iterator<?> iter = attributes.size() >= listings.size()
+				? attributes.keySet().iterator() : listings.keySet().iterator();
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/** Starts watching the given directory for changes, if possible. */
+	private void watch(final File dir) {
+		if (dir == null || threadService == null || closed) return;
+		final Path path = dir.toPath();
+		if (watched.containsKey(path) ||
+			watched.size() >= MAX_WATCHED_DIRECTORIES) return;
+		try {
+			if (watcher == null) {
+				watcher = path.getFileSystem().newWatchService();
+				final WatchService service = watcher;
+				threadService.run(() -> poll(service));
+			}
+			watched.put(path, path.register(watcher,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE,
+				StandardWatchEventKinds.ENTRY_MODIFY));
+		}
+		catch (final IOException | UnsupportedOperationException
+				| SecurityException e)
+		{
+			// NB: Fall back to the timeout for this directory.
+			watched.put(path, null);
+		}
+	}
+
+	/** Invalidates entries as changes are reported, until closed. */
+	private void poll(final WatchService service) {
+		try {
+			while (true) {
+				final WatchKey key = service.take();
+				final Path dir = (Path) key.watchable();
+				synchronized (this) {
+					listings.remove(dir.toString());
+					for (final WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							invalidateChildren(dir);
+						}
+						else {
+							final String child = dir.resolve((Path) event.context())
+								.toString();
+							attributes.remove(child);
+							listings.remove(child);
+						}
+					}
+					if (!key.reset()) {
+						watched.remove(dir);
+						invalidateChildren(dir);
+					}
+				}
+			}
+		}
+		catch (final InterruptedException | ClosedWatchServiceException e) {
+			// NB: The cache was closed; stop polling.
+		}
+	}
+
+	/** Discards the cached entries of all files in the given directory. */
+	private void invalidateChildren(final Path dir) {
+		for (final Iterator<String> iter = attributes.keySet().iterator(); iter
+			.hasNext();)
+		{
+			final Path parent = new File(iter.next()).toPath().getParent();
+			if (dir.equals(parent)) iter.remove();
+		}
+	}
+
+	// -- Helper classes --
+
+	/** The cached attributes of a single file. */
+	public static final class Attributes {
+
+		private static final Attributes MISSING = new Attributes(false, false,
+			false, 0, 0);
+
+		private final boolean exists;
+
+		private final boolean directory;
+
+		private final boolean regularFile;
+
+		private final long length;
+
+		private final long lastModified;
+
+		private Attributes(final boolean exists, final boolean directory,
+			final boolean regularFile, final long length, final long lastModified)
+		{
+			this.exists = exists;
+			this.directory = directory;
+			this.regularFile = regularFile;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		/** Reads the attributes of the given path, following symbolic links. */
+		private static Attributes read(final Path path) {
+			try {
+				final BasicFileAttributes attrs = Files.readAttributes(path,
+					BasicFileAttributes.class);
+				return new Attributes(true, attrs.isDirectory(), attrs.isRegularFile(),
+					attrs.size(), attrs.lastModifiedTime().toMillis());
+			}
+			catch (final IOException | SecurityException e) {
+				// NB: As with java.io.File, dangling symbolic links do not exist.
+				return MISSING;
+			}
+		}
+
+		/** @see File#exists() */
+		public boolean exists() {
+			return exists;
+		}
+
+		/** @see File#isDirectory() */
+		public boolean isDirectory() {
+			return directory;
+		}
+
+		/** @see File#isFile() */
+		public boolean isFile() {
+			return regularFile;
+		}
+
+		/** @see File#length() */
+		public long length() {
+			return length;
+		}
+
+		/** @see File#lastModified() */
+		public long lastModified() {
+			return lastModified;
+		}
+	}
+
+	/** A cached value and the time it was read. */
+	private static final class Entry<T> {
+
+		private final T value;
+
+		private final long time = System.nanoTime();
+
+		private Entry(final T value) {
+			this.value = value;
+		}
+	}
+}
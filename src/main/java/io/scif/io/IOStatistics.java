@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of I/O counters for a single location: bytes read and written, the
+ * number of read, write and seek calls, a histogram of read sizes, time spent
+ * blocked in reads and writes, and the number of buffer refills performed by
+ * the underlying handle. All counters are thread-safe.
+ *
+ * @see InstrumentedHandle
+ * @see io.scif.services.IOStatisticsService
+ */
+public class IOStatistics {
+
+	// -- Constants --
+
+	/**
+	 * Number of read size histogram bins. Bin 0 counts empty reads; bin
+	 * {@code i > 0} counts reads of {@code 2^(i-1)} to {@code 2^i - 1} bytes.
+	 */
+	public static final int HISTOGRAM_BINS = 33;
+
+	// -- Fields --
+
+	private final String id;
+
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	private final AtomicLong readCount = new AtomicLong();
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+	private final AtomicLong seekCount = new AtomicLong();
+
+	private final AtomicLong blockedNanos = new AtomicLong();
+
+	private final AtomicLong bufferRefills = new AtomicLong();
+
+	private final AtomicLongArray readSizes = new AtomicLongArray(
+		HISTOGRAM_BINS);
+
+	// -- Constructors --
+
+	/** Creates an empty set of counters for the given location. */
+	public IOStatistics(final String id) {
+		this.id = id;
+	}
+
+	// -- IOStatistics API methods --
+
+	/** Gets the location these counters belong to. */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Records a read call.
+	 *
+	 * @param bytes The number of bytes actually read.
+	 * @param nanos The time spent in the call.
+	 */
+	public void countRead(final long bytes, final long nanos) {
+		readCount.incrementAndGet();
+		blockedNanos.addAndGet(nanos);
+		if (bytes <= 0) {
+			readSizes.incrementAndGet(0);
+			return;
+		}
+		bytesRead.addAndGet(bytes);
+		final int bin = 64 - Long.numberOfLeadingZeros(bytes);
+		readSizes.incrementAndGet(Math.min(bin, HISTOGRAM_BINS - 1));
+	}
+
+	/**
+	 * Records a write call.
+	 *
+	 * @param bytes The number of bytes written.
+	 * @param nanos The time spent in the call.
+	 */
+	public void countWrite(final long bytes, final long nanos) {
+		writeCount.incrementAndGet();
+		blockedNanos.addAndGet(nanos);
+		bytesWritten.addAndGet(bytes);
+	}
+
+	/** Records a seek call. */
+	public void countSeek() {
+		seekCount.incrementAndGet();
+	}
+
+	/** Records a refill of the underlying handle's buffer. */
+	public void countBufferRefill() {
+		bufferRefills.incrementAndGet();
+	}
+
+	/** Gets the total number of bytes read. */
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	/** Gets the total number of bytes written. */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	/** Gets the number of read calls. */
+	public long getReadCount() {
+		return readCount.get();
+	}
+
+	/** Gets the number of write calls. */
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+
+	/** Gets the number of seek calls. */
+	public long getSeekCount() {
+		return seekCount.get();
+	}
+
+	/** Gets the total time in nanoseconds spent in read and write calls. */
+	public long getBlockedNanos() {
+		return blockedNanos.get();
+	}
+
+	/** Gets the number of buffer refills of the underlying handle. */
+	public long getBufferRefills() {
+		return bufferRefills.get();
+	}
+
+	/**
+	 * Gets a snapshot of the read size histogram.
+	 *
+	 * @see #HISTOGRAM_BINS
+	 */
+	public long[] getReadSizeHistogram() {
+		final long[] histogram = new long[HISTOGRAM_BINS];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = readSizes.get(i);
+		}
+		return histogram;
+	}
+
+	/** Resets all counters to zero. */
+	public void reset() {
+		bytesRead.set(0);
+		bytesWritten.set(0);
+		readCount.set(0);
+		writeCount.set(0);
+		seekCount.set(0);
+		blockedNanos.set(0);
+		bufferRefills.set(0);
+		for (int i = 0; i < HISTOGRAM_BINS; i++) {
+			readSizes.set(i, 0);
+		}
+	}
+
+	/** Gets these counters as a JSON object. */
+	public String toJSON() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\"id\":");
+		appendString(sb, id);
+		sb.append(",\"bytesRead\":").append(getBytesRead());
+		sb.append(",\"bytesWritten\":").append(getBytesWritten());
+		sb.append(",\"readCount\":").append(getReadCount());
+		sb.append(",\"writeCount\":").append(getWriteCount());
+		sb.append(",\"seekCount\":").append(getSeekCount());
+		sb.append(",\"blockedNanos\":").append(getBlockedNanos());
+		sb.append(",\"bufferRefills\":").append(getBufferRefills());
+		sb.append(",\"readSizeHistogram\":[");
+		final long[] histogram = getReadSizeHistogram();
+		for (int i = 0; i < histogram.length; i++) {
+			if (i > 0) sb.append(',');
+			sb.append(histogram[i]);
+		}
+		sb.append("]}");
+		return sb.toString();
+	}
+
+	// -- Object API methods --
+
+	@Override
+	public String toString() {
+		return toJSON();
+	}
+
+	// -- Helper methods --
+
+	/** Appends the given string to the builder as a quoted JSON string. */
+	public static void appendString(final StringBuilder sb, final String s) {
+		if (s == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+					else sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,415 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link IRandomAccess} decorator which records every read, write and seek
+ * of the wrapped handle in an {@link IOStatistics} instance. Handles are only
+ * wrapped while instrumentation is enabled, so that uninstrumented handles pay
+ * nothing for it.
+ *
+ * @see io.scif.services.IOStatisticsService
+ */
+public class InstrumentedHandle implements IRandomAccess {
+
+	// -- Fields --
+
+	private final IRandomAccess handle;
+
+	private final IOStatistics statistics;
+
+	// -- Constructors --
+
+	/**
+	 * Wraps the given handle.
+	 *
+	 * @param handle The handle to instrument.
+	 * @param statistics The counters to record into.
+	 */
+	public InstrumentedHandle(final IRandomAccess handle,
+		final IOStatistics statistics)
+	{
+		this.handle = handle;
+		this.statistics = statistics;
+	}
+
+	// -- InstrumentedHandle API methods --
+
+	/** Gets the wrapped handle. */
+	public IRandomAccess getHandle() {
+		return handle;
+	}
+
+	/** Gets the counters this handle records into. */
+	public IOStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Gets the file channel backing the wrapped handle. Reads and writes
+	 * through the channel are not counted.
+	 *
+	 * @return The channel, or null if the wrapped handle is not backed by a
+	 *         file.
+	 * @see StreamTools#getFileChannel(IRandomAccess)
+	 */
+	public FileChannel getFileChannel() throws IOException {
+		return StreamTools.getFileChannel(handle);
+	}
+
+	/**
+	 * Flushes any data buffered by the wrapped handle, and forces it to the
+	 * storage device if the handle writes to a file.
+	 *
+	 * @see StreamTools#force(IRandomAccess)
+	 */
+	public void force() throws IOException {
+		StreamTools.force(handle);
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void close() throws IOException {
+		handle.close();
+	}
+
+	@Override
+	public long getFilePointer() throws IOException {
+		return handle.getFilePointer();
+	}
+
+	@Override
+	public long length() throws IOException {
+		return handle.length();
+	}
+
+	@Override
+	public ByteOrder getOrder() {
+		return handle.getOrder();
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		handle.setOrder(order);
+	}
+
+	@Override
+	public int read(final byte[] b) throws IOException {
+		final long start = System.nanoTime();
+		final int n = handle.read(b);
+		statistics.countRead(n, System.nanoTime() - start);
+		return n;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		final long start = System.nanoTime();
+		final int n = handle.read(b, off, len);
+		statistics.countRead(n, System.nanoTime() - start);
+		return n;
+	}
+
+	@Override
+	public int read(final ByteBuffer buffer) throws IOException {
+		final long start = System.nanoTime();
+		final int n = handle.read(buffer);
+		statistics.countRead(n, System.nanoTime() - start);
+		return n;
+	}
+
+	@Override
+	public int read(final ByteBuffer buffer, final int offset, final int len)
+		throws IOException
+	{
+		final long start = System.nanoTime();
+		final int n = handle.read(buffer, offset, len);
+		statistics.countRead(n, System.nanoTime() - start);
+		return n;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		statistics.countSeek();
+		handle.seek(pos);
+	}
+
+	@Override
+	public void write(final ByteBuffer buf) throws IOException {
+		final int n = buf.remaining();
+		final long start = System.nanoTime();
+		handle.write(buf);
+		statistics.countWrite(n, System.nanoTime() - start);
+	}
+
+	@Override
+	public void write(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		final long start = System.nanoTime();
+		handle.write(buf, off, len);
+		statistics.countWrite(len, System.nanoTime() - start);
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		final long start = System.nanoTime();
+		handle.readFully(b);
+		statistics.countRead(b.length, System.nanoTime() - start);
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		final long start = System.nanoTime();
+		handle.readFully(b, off, len);
+		statistics.countRead(len, System.nanoTime() - start);
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		statistics.countSeek();
+		return handle.skipBytes(n);
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		final long start = System.nanoTime();
+		final boolean v = handle.readBoolean();
+		statistics.countRead(1, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		final long start = System.nanoTime();
+		final byte v = handle.readByte();
+		statistics.countRead(1, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		final long start = System.nanoTime();
+		final int v = handle.readUnsignedByte();
+		statistics.countRead(1, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		final long start = System.nanoTime();
+		final short v = handle.readShort();
+		statistics.countRead(2, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		final long start = System.nanoTime();
+		final int v = handle.readUnsignedShort();
+		statistics.countRead(2, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		final long start = System.nanoTime();
+		final char v = handle.readChar();
+		statistics.countRead(2, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		final long start = System.nanoTime();
+		final int v = handle.readInt();
+		statistics.countRead(4, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		final long start = System.nanoTime();
+		final long v = handle.readLong();
+		statistics.countRead(8, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		final long start = System.nanoTime();
+		final float v = handle.readFloat();
+		statistics.countRead(4, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		final long start = System.nanoTime();
+		final double v = handle.readDouble();
+		statistics.countRead(8, System.nanoTime() - start);
+		return v;
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		final long start = System.nanoTime();
+		final long fp = handle.getFilePointer();
+		final String v = handle.readLine();
+		statistics.countRead(handle.getFilePointer() - fp, System.nanoTime() -
+			start);
+		return v;
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		final long start = System.nanoTime();
+		final long fp = handle.getFilePointer();
+		final String v = handle.readUTF();
+		statistics.countRead(handle.getFilePointer() - fp, System.nanoTime() -
+			start);
+		return v;
+	}
+
+	// -- DataOutput API methods --
+
+	@Override
+	public void write(final int b) throws IOException {
+		final long start = System.nanoTime();
+		handle.write(b);
+		statistics.countWrite(1, System.nanoTime() - start);
+	}
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		final long start = System.nanoTime();
+		handle.write(b);
+		statistics.countWrite(b.length, System.nanoTime() - start);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		final long start = System.nanoTime();
+		handle.write(b, off, len);
+		statistics.countWrite(len, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeBoolean(v);
+		statistics.countWrite(1, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeByte(v);
+		statistics.countWrite(1, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeShort(v);
+		statistics.countWrite(2, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeChar(v);
+		statistics.countWrite(2, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeInt(v);
+		statistics.countWrite(4, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeLong(v);
+		statistics.countWrite(8, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeFloat(v);
+		statistics.countWrite(4, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeDouble(v);
+		statistics.countWrite(8, System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeBytes(s);
+		statistics.countWrite(s.length(), System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		final long start = System.nanoTime();
+		handle.writeChars(s);
+		statistics.countWrite(2L * s.length(), System.nanoTime() - start);
+	}
+
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		final long start = System.nanoTime();
+		final long fp = handle.getFilePointer();
+		handle.writeUTF(s);
+		statistics.countWrite(handle.getFilePointer() - fp, System.nanoTime() -
+			start);
+	}
+}
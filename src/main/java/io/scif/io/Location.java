@@ -119,12 +119,6 @@ public class Location extends AbstractSCIFIOPlugin {
 	 */
 	public String[] list(final boolean noHiddenFiles) {
 		final String path = getAbsolutePath();
-		final String key = path + Boolean.toString(noHiddenFiles);
-		String[] result = null;
-
-		result = locationService.getCachedListing(key);
-		if (result != null) return result;
-
 		final ArrayList<String> files = new ArrayList<>();
 		if (isURL) {
 			try {
@@ -163,7 +157,8 @@ public class Location extends AbstractSCIFIOPlugin {
 		}
 		else {
 			if (file == null) return null;
-			final String[] f = file.list();
+			final FileMetadataCache cache = locationService.getFileMetadataCache();
+			final String[] f = cache == null ? file.list() : cache.list(file);
 			if (f == null) return null;
 			for (final String name : f) {
 				if (!noHiddenFiles ||
@@ -177,11 +172,7 @@ public class Location extends AbstractSCIFIOPlugin {
 
 		if (files.size() == 0) return null;
 
-		result = files.toArray(new String[files.size()]);
-
-		locationService.putCachedListing(key, result);
-
-		return result;
+		return files.toArray(new String[files.size()]);
 	}
 
 	// -- File API methods --
@@ -220,7 +211,9 @@ public class Location extends AbstractSCIFIOPlugin {
 	 */
 	public boolean createNewFile() throws IOException {
 		if (isURL) throw new IOException("Unimplemented");
-		return file.createNewFile();
+		final boolean created = file.createNewFile();
+		invalidate();
+		return created;
 	}
 
 	/**
@@ -231,7 +224,10 @@ public class Location extends AbstractSCIFIOPlugin {
 	 * @see java.io.File#delete()
 	 */
 	public boolean delete() {
-		return isURL ? false : file.delete();
+		if (isURL) return false;
+		final boolean deleted = file.delete();
+		invalidate();
+		return deleted;
 	}
 
 	/**
@@ -285,7 +281,8 @@ public class Location extends AbstractSCIFIOPlugin {
 				return false;
 			}
 		}
-		if (file.exists()) return true;
+		final FileMetadataCache.Attributes attrs = attributes();
+		if (attrs == null ? file.exists() : attrs.exists()) return true;
 		if (locationService.getMappedFile(file.getPath()) != null) return true;
 
 		final String mappedId = locationService.getMappedId(file.getPath());
@@ -374,7 +371,8 @@ public class Location extends AbstractSCIFIOPlugin {
 			final String[] list = list();
 			return list != null;
 		}
-		return file.isDirectory();
+		final FileMetadataCache.Attributes attrs = attributes();
+		return attrs == null ? file.isDirectory() : attrs.isDirectory();
 	}
 
 	/**
@@ -383,7 +381,9 @@ public class Location extends AbstractSCIFIOPlugin {
 	 * @see java.io.File#exists()
 	 */
 	public boolean isFile() {
-		return isURL ? (!isDirectory() && exists()) : file.isFile();
+		if (isURL) return !isDirectory() && exists();
+		final FileMetadataCache.Attributes attrs = attributes();
+		return attrs == null ? file.isFile() : attrs.isFile();
 	}
 
 	/**
@@ -413,7 +413,8 @@ public class Location extends AbstractSCIFIOPlugin {
 				return 0;
 			}
 		}
-		return file.lastModified();
+		final FileMetadataCache.Attributes attrs = attributes();
+		return attrs == null ? file.lastModified() : attrs.lastModified();
 	}
 
 	/**
@@ -430,7 +431,8 @@ public class Location extends AbstractSCIFIOPlugin {
 				return 0;
 			}
 		}
-		return file.length();
+		final FileMetadataCache.Attributes attrs = attributes();
+		return attrs == null ? file.length() : attrs.length();
 	}
 
 	/**
@@ -475,4 +477,21 @@ public class Location extends AbstractSCIFIOPlugin {
 		return isURL ? url.toString() : file.toString();
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Gets the cached attributes of this file, or null if file metadata is not
+	 * cached.
+	 */
+	private FileMetadataCache.Attributes attributes() {
+		final FileMetadataCache cache = locationService.getFileMetadataCache();
+		return cache == null ? null : cache.getAttributes(file);
+	}
+
+	/** Discards any cached metadata of this file, before it is changed. */
+	private void invalidate() {
+		final FileMetadataCache cache = locationService.getFileMetadataCache();
+		if (cache != null) cache.invalidate(file);
+	}
+
 }
@@ -88,6 +88,9 @@ public class NIOFileHandle extends AbstractNIOHandle {
 	/** Service which provides NIO byte buffers, allocated or memory mapped. */
 	private final NIOService nioService;
 
+	/** Counters to record buffer refills into, or null if not instrumented. */
+	private IOStatistics statistics;
+
 	// -- Constructors --
 
 	/**
@@ -166,6 +169,15 @@ public class NIOFileHandle extends AbstractNIOHandle {
 		return bufferSize;
 	}
 
+	/**
+	 * Sets the counters to record buffer refills into.
+	 *
+	 * @param statistics The counters to use, or null to stop recording.
+	 */
+	public void setStatistics(final IOStatistics statistics) {
+		this.statistics = statistics;
+	}
+
 	// -- AbstractNIOHandle API methods --
 
 	@Override
@@ -523,6 +535,7 @@ public class NIOFileHandle extends AbstractNIOHandle {
 		if (newPosition < bufferStartPosition ||
 			newPosition > bufferStartPosition + bufferSize || buffer == null)
 		{
+			if (statistics != null) statistics.countBufferRefill();
 			bufferStartPosition = offset;
 			long currentLength = length();
 			if (currentLength > 0 && currentLength - 1 < bufferStartPosition) {
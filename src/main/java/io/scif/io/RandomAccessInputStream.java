@@ -38,6 +38,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.scijava.Context;
 import org.scijava.log.LogService;
@@ -264,74 +269,57 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	public String findString(final boolean saveString, final int blockSize,
 		final String... terminators) throws IOException
 	{
-		final StringBuilder out = new StringBuilder();
-		final long startPos = getFilePointer();
-		long bytesDropped = 0;
-		final long inputLen = length();
-		long maxLen = inputLen - startPos;
-		final boolean tooLong = saveString && maxLen > MAX_SEARCH_SIZE;
-		if (tooLong) maxLen = MAX_SEARCH_SIZE;
-		boolean match = false;
-		int maxTermLen = 0;
-		for (final String term : terminators) {
-			final int len = term.length();
-			if (len > maxTermLen) maxTermLen = len;
+		final byte[][] terms = encode(terminators);
+		if (terms == null) {
+			return findDecodedString(saveString, blockSize, terminators);
 		}
+		final Match match = search(terms, blockSize, saveString);
+		if (!saveString) return null;
+		return new String(match.bytes, 0, match.length, encoding);
+	}
 
-		final InputStreamReader in = new InputStreamReader(this, encoding);
-		final char[] buf = new char[blockSize];
-		long loc = 0;
-		while (loc < maxLen && getFilePointer() < length() - 1) {
-			// if we're not saving the string, drop any old, unnecessary output
-			if (!saveString) {
-				final int outLen = out.length();
-				if (outLen >= maxTermLen) {
-					final int dropIndex = outLen - maxTermLen + 1;
-					final String last = out.substring(dropIndex, outLen);
-					out.setLength(0);
-					out.append(last);
-					bytesDropped += dropIndex;
-				}
-			}
-
-			// read block from stream
-			final int r = in.read(buf, 0, blockSize);
-			if (r <= 0) throw new IOException("Cannot read from stream: " + r);
-
-			// append block to output
-			out.append(buf, 0, r);
+	/**
+	 * Skips past the next occurrence of one of the given terminating substrings,
+	 * without collecting or decoding the skipped bytes.
+	 *
+	 * @param terminators The strings for which to search.
+	 * @return The offset at which the terminating sequence starts, or -1 if no
+	 *         terminating sequence is found, in which case the stream is
+	 *         positioned at its end.
+	 */
+	public long findStringOffset(final String... terminators)
+		throws IOException
+	{
+		return findStringOffset(DEFAULT_BLOCK_SIZE, terminators);
+	}
 
-			// check output, returning smallest possible string
-			int min = Integer.MAX_VALUE, tagLen = 0;
+	/**
+	 * Skips past the next occurrence of one of the given terminating substrings,
+	 * using the specified block size for buffering.
+	 *
+	 * @param blockSize The block size to use when reading bytes in chunks.
+	 * @param terminators The strings for which to search.
+	 * @return The offset at which the terminating sequence starts, or -1 if no
+	 *         terminating sequence is found, in which case the stream is
+	 *         positioned at its end.
+	 * @see #findStringOffset(String...)
+	 */
+	public long findStringOffset(final int blockSize,
+		final String... terminators) throws IOException
+	{
+		final byte[][] terms = encode(terminators);
+		if (terms == null) {
+			final long startPos = getFilePointer();
+			final String s = findDecodedString(true, blockSize, terminators);
 			for (final String t : terminators) {
-				final int len = t.length();
-				final int start = (int) (loc - bytesDropped - len);
-				final int value = out.indexOf(t, start < 0 ? 0 : start);
-				if (value >= 0 && value < min) {
-					match = true;
-					min = value;
-					tagLen = len;
-				}
-			}
-
-			if (match) {
-				// reset stream to proper location
-				seek(startPos + bytesDropped + min + tagLen);
-
-				// trim output string
-				if (saveString) {
-					out.setLength(min + tagLen);
-					return out.toString();
+				if (s.endsWith(t)) {
+					final String prefix = s.substring(0, s.length() - t.length());
+					return startPos + prefix.getBytes(encoding).length;
 				}
-				return null;
 			}
-
-			loc += r;
+			return -1;
 		}
-
-		// no match
-		if (tooLong) throw new IOException("Maximum search length reached.");
-		return saveString ? out.toString() : null;
+		return search(terms, blockSize, false).offset;
 	}
 
 	// -- DataInput API methods --
@@ -464,6 +452,34 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 		return raf.read(buf, offset, n);
 	}
 
+	/**
+	 * Gets a read-only view of n bytes of the stream, starting at the given
+	 * offset. Where the stream is backed by a file channel, the region is memory
+	 * mapped rather than copied; where it is backed by a byte array, the array is
+	 * shared. Either way, the stream pointer is left at the end of the region,
+	 * and the view is big-endian.
+	 */
+	public ByteBuffer getView(final long pos, final int n) throws IOException {
+		final FileChannel channel = StreamTools.getFileChannel(raf);
+		final IRandomAccess handle = StreamTools.unwrap(raf);
+		final ByteBuffer view;
+		if (channel != null) {
+			view = channel.map(FileChannel.MapMode.READ_ONLY, pos, n);
+		}
+		else if (handle instanceof ByteArrayHandle) {
+			view = ((ByteArrayHandle) handle).getByteBuffer().duplicate();
+			view.limit((int) (pos + n)).position((int) pos);
+		}
+		else {
+			final byte[] bytes = new byte[n];
+			seek(pos);
+			readFully(bytes);
+			return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		}
+		seek(pos + n);
+		return view.slice().asReadOnlyBuffer();
+	}
+
 	/** Read bytes from the stream into the given array. */
 	@Override
 	public void readFully(final byte[] array) throws IOException {
@@ -520,4 +536,235 @@ public class RandomAccessInputStream extends InputStream implements DataInput {
 	public String getFileName() {
 		return this.file;
 	}
+
+	// -- Helper methods --
+
+	/**
+	 * Encodes the given terminators for a byte-level search, or returns null if
+	 * the stream's encoding does not allow one. A byte-level search finds the
+	 * same matches as a search over the decoded characters as long as every
+	 * character is encoded by one byte, or the encoding is UTF-8, in which no
+	 * encoded character occurs within another one's encoding.
+	 */
+	private byte[][] encode(final String... terminators) {
+		final Charset charset;
+		try {
+			charset = Charset.forName(encoding);
+		}
+		catch (final IllegalArgumentException e) {
+			return null;
+		}
+		final CharsetEncoder encoder = charset.newEncoder();
+		if (!charset.equals(StandardCharsets.UTF_8) &&
+			encoder.maxBytesPerChar() != 1f)
+		{
+			return null;
+		}
+		final byte[][] terms = new byte[terminators.length][];
+		for (int i = 0; i < terms.length; i++) {
+			if (!encoder.canEncode(terminators[i])) return null;
+			terms[i] = terminators[i].getBytes(charset);
+		}
+		return terms;
+	}
+
+	/**
+	 * Searches the raw bytes of the stream for the first occurrence of one of
+	 * the given byte sequences, and positions the stream just past it. Where
+	 * several sequences match at the same offset, the first one given wins. If
+	 * none is found, the stream is positioned at its end.
+	 *
+	 * @param terms The byte sequences for which to search.
+	 * @param blockSize The block size to use when reading bytes in chunks.
+	 * @param save Whether to collect the bytes through the end of the match.
+	 * @throws IOException If save is set and the maximum search length is
+	 *           exceeded.
+	 */
+	private Match search(final byte[][] terms, final int blockSize,
+		final boolean save) throws IOException
+	{
+		final Match match = new Match();
+		final long startPos = getFilePointer();
+		final long inputLen = length();
+		long maxLen = inputLen - startPos;
+		final boolean tooLong = save && maxLen > MAX_SEARCH_SIZE;
+		if (tooLong) maxLen = MAX_SEARCH_SIZE;
+
+		int maxTermLen = 0;
+		boolean empty = false;
+		final boolean[] first = new boolean[256];
+		for (final byte[] t : terms) {
+			if (t.length > maxTermLen) maxTermLen = t.length;
+			if (t.length == 0) empty = true;
+			else first[t[0] & 0xff] = true;
+		}
+
+		// NB: Like the decoding search, never consume the last byte alone.
+		if (startPos >= inputLen - 1) return match;
+		if (empty) {
+			match.offset = startPos;
+			return match;
+		}
+
+		final int block = Math.max(1, blockSize);
+		byte[] buf = new byte[save ? block : block + maxTermLen];
+		int len = 0; // number of valid bytes in buf
+		int scan = 0; // next index of buf to try as the start of a match
+		long bufStart = startPos; // stream offset of buf[0]
+		long remaining = maxLen;
+		while (remaining > 0) {
+			if (!save && len > 0) {
+				// drop the bytes which can no longer be part of a match
+				final int drop = Math.min(scan, len);
+				System.arraycopy(buf, drop, buf, 0, len - drop);
+				len -= drop;
+				scan -= drop;
+				bufStart += drop;
+			}
+			final int n = (int) Math.min(block, remaining);
+			if (len + n > buf.length) {
+				buf = Arrays.copyOf(buf, (int) Math.min(Math.max(2L * buf.length,
+					len + n), Integer.MAX_VALUE - 8));
+			}
+			final int r = read(buf, len, n);
+			if (r <= 0) throw new IOException("Cannot read from stream: " + r);
+			len += r;
+			remaining -= r;
+
+			// check the new bytes, returning the earliest possible match
+			final boolean eof = remaining <= 0;
+			for (; scan < len; scan++) {
+				if (!first[buf[scan] & 0xff]) continue;
+				int found = -1;
+				boolean pending = false;
+				for (int t = 0; t < terms.length && found < 0 && !pending; t++) {
+					final byte[] term = terms[t];
+					final int avail = Math.min(term.length, len - scan);
+					if (!regionMatches(buf, scan, term, avail)) continue;
+					if (avail == term.length) found = t;
+					else if (!eof) pending = true;
+				}
+				if (pending) break; // wait for more bytes
+				if (found >= 0) {
+					final int end = scan + terms[found].length;
+					seek(bufStart + end);
+					match.offset = bufStart + scan;
+					match.bytes = buf;
+					match.length = end;
+					return match;
+				}
+			}
+		}
+
+		// no match
+		if (tooLong) throw new IOException("Maximum search length reached.");
+		match.bytes = buf;
+		match.length = len;
+		return match;
+	}
+
+	/** Checks whether the first len bytes of term occur in buf at offset. */
+	private static boolean regionMatches(final byte[] buf, final int offset,
+		final byte[] term, final int len)
+	{
+		for (int i = 0; i < len; i++) {
+			if (buf[offset + i] != term[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads or skips a string ending with one of the given terminating
+	 * substrings, by decoding the stream and searching the decoded characters.
+	 * Used for encodings which do not allow a byte-level search.
+	 *
+	 * @see #findString(boolean, int, String...)
+	 */
+	private String findDecodedString(final boolean saveString,
+		final int blockSize, final String... terminators) throws IOException
+	{
+		final StringBuilder out = new StringBuilder();
+		final long startPos = getFilePointer();
+		long bytesDropped = 0;
+		final long inputLen = length();
+		long maxLen = inputLen - startPos;
+		final boolean tooLong = saveString && maxLen > MAX_SEARCH_SIZE;
+		if (tooLong) maxLen = MAX_SEARCH_SIZE;
+		boolean match = false;
+		int maxTermLen = 0;
+		for (final String term : terminators) {
+			final int len = term.length();
+			if (len > maxTermLen) maxTermLen = len;
+		}
+
+		final InputStreamReader in = new InputStreamReader(this, encoding);
+		final char[] buf = new char[blockSize];
+		long loc = 0;
+		while (loc < maxLen && getFilePointer() < length() - 1) {
+			// if we're not saving the string, drop any old, unnecessary output
+			if (!saveString) {
+				final int outLen = out.length();
+				if (outLen >= maxTermLen) {
+					final int dropIndex = outLen - maxTermLen + 1;
+					final String last = out.substring(dropIndex, outLen);
+					out.setLength(0);
+					out.append(last);
+					bytesDropped += dropIndex;
+				}
+			}
+
+			// read block from stream
+			final int r = in.read(buf, 0, blockSize);
+			if (r <= 0) throw new IOException("Cannot read from stream: " + r);
+
+			// append block to output
+			out.append(buf, 0, r);
+
+			// check output, returning smallest possible string
+			int min = Integer.MAX_VALUE, tagLen = 0;
+			for (final String t : terminators) {
+				final int len = t.length();
+				final int start = (int) (loc - bytesDropped - len);
+				final int value = out.indexOf(t, start < 0 ? 0 : start);
+				if (value >= 0 && value < min) {
+					match = true;
+					min = value;
+					tagLen = len;
+				}
+			}
+
+			if (match) {
+				// reset stream to proper location
+				seek(startPos + bytesDropped + min + tagLen);
+
+				// trim output string
+				if (saveString) {
+					out.setLength(min + tagLen);
+					return out.toString();
+				}
+				return null;
+			}
+
+			loc += r;
+		}
+
+		// no match
+		if (tooLong) throw new IOException("Maximum search length reached.");
+		return saveString ? out.toString() : null;
+	}
+
+	// -- Helper classes --
+
+	/** Result of a byte-level search. */
+	private static final class Match {
+
+		/** Offset of the matched terminator, or -1 if none was found. */
+		private long offset = -1;
+
+		/** Collected bytes, if requested. */
+		private byte[] bytes = new byte[0];
+
+		/** Number of valid collected bytes. */
+		private int length;
+	}
 }
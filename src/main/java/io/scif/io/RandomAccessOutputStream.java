@@ -30,8 +30,10 @@
 package io.scif.io;
 
 import io.scif.SCIFIO;
+import io.scif.services.LocationService;
 
 import java.io.DataOutput;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
@@ -66,6 +68,29 @@ public class RandomAccessOutputStream extends OutputStream implements
 		outputFile = scifio.location().getHandle(file, true);
 	}
 
+	/**
+	 * Constructs a random access stream around the given file, optionally
+	 * writing it through a {@link WriteBehindHandle}. Handles mapped with
+	 * {@link io.scif.services.LocationService#mapFile} are always written
+	 * directly.
+	 *
+	 * @param file Filename to open the stream for.
+	 * @param writeBehind Whether to coalesce writes into large buffers which
+	 *          are written in the background.
+	 * @throws IOException If there is a problem opening the file.
+	 */
+	public RandomAccessOutputStream(final Context context, final String file,
+		final boolean writeBehind) throws IOException
+	{
+		final SCIFIO scifio = new SCIFIO(context);
+		final LocationService location = scifio.location();
+		if (writeBehind && location.getMappedFile(file) == null) {
+			outputFile = new WriteBehindHandle(scifio.thread(), new File(location
+				.getMappedId(file)));
+		}
+		else outputFile = location.getHandle(file, true);
+	}
+
 	/**
 	 * Constructs a random access stream around the given handle.
 	 *
@@ -108,6 +133,14 @@ public class RandomAccessOutputStream extends OutputStream implements
 		return outputFile.getOrder() == ByteOrder.LITTLE_ENDIAN;
 	}
 
+	/**
+	 * Flushes any buffered data, and forces it to the storage device if the
+	 * stream writes to a file.
+	 */
+	public void force() throws IOException {
+		StreamTools.force(outputFile);
+	}
+
 	/** Writes the given string followed by a newline character. */
 	public void writeLine(final String s) throws IOException {
 		writeBytes(s);
@@ -218,6 +251,11 @@ public class RandomAccessOutputStream extends OutputStream implements
 	}
 
 	@Override
-	public void flush() throws IOException {}
+	public void flush() throws IOException {
+		final IRandomAccess handle = StreamTools.unwrap(outputFile);
+		if (handle instanceof WriteBehindHandle) {
+			((WriteBehindHandle) handle).flush();
+		}
+	}
 
 }
@@ -30,6 +30,7 @@
 package io.scif.io;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 /**
  * A utility class for RandomAccess Input/Output streams.
@@ -47,4 +48,58 @@ public class StreamTools {
 		stream.order(littleEndian);
 		return stream.length() >= len;
 	}
+
+	/**
+	 * Gets the file channel backing the given handle, looking through handles
+	 * which wrap another one.
+	 *
+	 * @return The channel, or null if the handle is not backed by a file.
+	 */
+	public static FileChannel getFileChannel(final IRandomAccess handle)
+		throws IOException
+	{
+		if (handle instanceof NIOFileHandle) {
+			return ((NIOFileHandle) handle).getFileChannel();
+		}
+		if (handle instanceof FileHandle) {
+			return ((FileHandle) handle).getRandomAccessFile().getChannel();
+		}
+		if (handle instanceof BlockCacheHandle) {
+			return ((BlockCacheHandle) handle).getFileChannel();
+		}
+		if (handle instanceof InstrumentedHandle) {
+			return ((InstrumentedHandle) handle).getFileChannel();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the handle wrapped by any {@link InstrumentedHandle}s around the
+	 * given one, so that it can be checked for a particular handle type.
+	 */
+	public static IRandomAccess unwrap(final IRandomAccess handle) {
+		IRandomAccess unwrapped = handle;
+		while (unwrapped instanceof InstrumentedHandle) {
+			unwrapped = ((InstrumentedHandle) unwrapped).getHandle();
+		}
+		return unwrapped;
+	}
+
+	/**
+	 * Flushes any data buffered by the given handle, and forces it to the
+	 * storage device if the handle writes to a file. Handles which wrap another
+	 * one are looked through.
+	 */
+	public static void force(final IRandomAccess handle) throws IOException {
+		if (handle instanceof WriteBehindHandle) {
+			((WriteBehindHandle) handle).force();
+		}
+		else if (handle instanceof InstrumentedHandle) {
+			((InstrumentedHandle) handle).force();
+		}
+		else {
+			final FileChannel channel = getFileChannel(handle);
+			if (channel != null) channel.force(true);
+		}
+	}
 }
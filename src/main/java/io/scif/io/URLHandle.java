@@ -31,16 +31,37 @@ package io.scif.io;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.scijava.Context;
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Provides random access to URLs using the IRandomAccess interface. Instances
  * of URLHandle are read-only.
+ * <p>
+ * If an HTTP server advertises support for byte ranges, URLHandle reads the
+ * resource in fixed-size blocks using HTTP {@code Range} requests, keeping
+ * recently used blocks in an LRU cache. Seeking is then free, and reads
+ * spanning several missing blocks fetch them in parallel on the
+ * {@link ThreadService}, when one is available. Otherwise, the resource is
+ * streamed, and seeking backwards reopens the connection.
+ * </p>
  *
  * @see IRandomAccess
  * @see StreamHandle
@@ -54,14 +75,37 @@ public class URLHandle extends StreamHandle {
 
 	private static final String[] SUPPORTED_PROTOCOLS = { "http:", "https:", "file:" };
 
+	/** Default size of the blocks fetched by range requests. */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	/** Default maximum number of blocks held in the cache. */
+	public static final int DEFAULT_CACHE_CAPACITY = 256;
+
+	/** Maximum number of range requests issued concurrently. */
+	private static final int MAX_PARALLEL_FETCHES = 8;
+
 	// -- Fields --
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	/** URL of open socket */
 	private String url;
 
 	/** Socket underlying this stream */
 	private URLConnection conn;
 
+	/** Whether the resource is read through range requests. */
+	private boolean ranged;
+
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	private int cacheCapacity = DEFAULT_CACHE_CAPACITY;
+
+	/** Recently fetched blocks, in access order. */
+	private final LinkedHashMap<Long, Future<byte[]>> blockCache =
+		new LinkedHashMap<>(16, 0.75f, true);
+
 	// -- Constructors --
 
 	/**
@@ -110,14 +154,57 @@ public class URLHandle extends StreamHandle {
 		}
 
 		this.url = url;
+		clearCache();
+		ranged = probeRanges();
 		resetStream();
 	}
 
+	/** Returns true if the resource is read through HTTP range requests. */
+	public boolean isRanged() {
+		return ranged;
+	}
+
+	/**
+	 * Sets the size of the blocks fetched by range requests. Changing the block
+	 * size discards all cached blocks.
+	 */
+	public void setBlockSize(final int blockSize) throws IOException {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		if (blockSize == this.blockSize) return;
+		this.blockSize = blockSize;
+		clearCache();
+		if (ranged) seek(getFp());
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/** Sets the maximum number of blocks held in the cache. */
+	public void setCacheCapacity(final int cacheCapacity) {
+		if (cacheCapacity < 1) {
+			throw new IllegalArgumentException("Invalid cache capacity: " +
+				cacheCapacity);
+		}
+		this.cacheCapacity = cacheCapacity;
+		trimCache();
+	}
+
+	public int getCacheCapacity() {
+		return cacheCapacity;
+	}
+
 	// -- IRandomAccess API methods --
 
 	@Override
 	public void seek(final long pos) throws IOException {
-		if (pos < getFp() && pos >= getMark()) {
+		if (ranged) {
+			setFp(pos);
+			setStream(new DataInputStream(new RangeInputStream(pos)));
+		}
+		else if (pos < getFp() && pos >= getMark()) {
 			getStream().reset();
 			setFp(getMark());
 			skip(pos - getFp());
@@ -125,6 +212,13 @@ public class URLHandle extends StreamHandle {
 		else super.seek(pos);
 	}
 
+	@Override
+	public void close() throws IOException {
+		super.close();
+		clearCache();
+		ranged = false;
+	}
+
 	// -- IStreamAccess API methods --
 
 	@Override
@@ -148,6 +242,12 @@ public class URLHandle extends StreamHandle {
 
 	@Override
 	public void resetStream() throws IOException {
+		if (ranged) {
+			setFp(0);
+			setMark(0);
+			setStream(new DataInputStream(new RangeInputStream(0)));
+			return;
+		}
 		conn = (new URL(url)).openConnection();
 		setStream(new DataInputStream(new BufferedInputStream(
 			conn.getInputStream(), RandomAccessInputStream.MAX_OVERHEAD)));
@@ -172,4 +272,196 @@ public class URLHandle extends StreamHandle {
 			skipped += n;
 		}
 	}
+
+	/**
+	 * Issues a HEAD request to learn the content length, and whether the server
+	 * accepts byte range requests.
+	 */
+	private boolean probeRanges() throws IOException {
+		final URLConnection c = new URL(url).openConnection();
+		if (!(c instanceof HttpURLConnection)) return false;
+		final HttpURLConnection http = (HttpURLConnection) c;
+		try {
+			http.setRequestMethod("HEAD");
+			if (http.getResponseCode() != HttpURLConnection.HTTP_OK) return false;
+			final long length = http.getContentLengthLong();
+			if (length < 0 || !"bytes".equalsIgnoreCase(http.getHeaderField(
+				"Accept-Ranges")))
+			{
+				return false;
+			}
+			setLength(length);
+			return true;
+		}
+		finally {
+			http.disconnect();
+		}
+	}
+
+	/** Fetches the given block using a range request. */
+	private byte[] fetchBlock(final long block) throws IOException {
+		final long start = block * blockSize;
+		final int size = (int) Math.min(blockSize, getLength() - start);
+		final HttpURLConnection http = (HttpURLConnection) new URL(url)
+			.openConnection();
+		http.setRequestProperty("Range", "bytes=" + start + "-" + (start + size -
+			1));
+		try {
+			final int code = http.getResponseCode();
+			final InputStream in = http.getInputStream();
+			try {
+				// NB: Servers may ignore the range and send everything.
+				if (code != HttpURLConnection.HTTP_PARTIAL) skipFully(in, start);
+				final byte[] data = new byte[size];
+				int n = 0;
+				while (n < size) {
+					final int r = in.read(data, n, size - n);
+					if (r < 0) throw new EOFException("Truncated response from " + url);
+					n += r;
+				}
+				return data;
+			}
+			finally {
+				in.close();
+			}
+		}
+		finally {
+			http.disconnect();
+		}
+	}
+
+	private static void skipFully(final InputStream in, final long n)
+		throws IOException
+	{
+		long skipped = 0;
+		while (skipped < n) {
+			final long s = in.skip(n - skipped);
+			if (s <= 0) {
+				if (in.read() < 0) throw new EOFException();
+				skipped++;
+			}
+			else skipped += s;
+		}
+	}
+
+	/**
+	 * Gets the given block, starting a fetch if it is not cached. The fetch
+	 * runs in the background if {@code async} is set and a ThreadService is
+	 * available.
+	 */
+	private Future<byte[]> getBlock(final long block, final boolean async) {
+		Future<byte[]> f = blockCache.get(block);
+		if (f == null) {
+			if (async && threadService != null) {
+				f = threadService.run(() -> fetchBlock(block));
+			}
+			else {
+				final FutureTask<byte[]> task = new FutureTask<>(() -> fetchBlock(
+					block));
+				task.run();
+				f = task;
+			}
+			blockCache.put(block, f);
+			trimCache();
+		}
+		return f;
+	}
+
+	private byte[] get(final long block, final Future<byte[]> future)
+		throws IOException
+	{
+		try {
+			return future.get();
+		}
+		catch (final CancellationException e) {
+			// NB: The block was evicted before it was read; fetch it again.
+			return fetchBlock(block);
+		}
+		catch (final InterruptedException e) {
+			throw new IOException(e);
+		}
+		catch (final ExecutionException e) {
+			blockCache.remove(block);
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	private void trimCache() {
+		final Iterator<Future<byte[]>> iter = blockCache.values().iterator();
+		while (blockCache.size() > cacheCapacity && iter.hasNext()) {
+			// NB: Stop prefetches of evicted blocks, as nobody will read them.
+			iter.next().cancel(true);
+			iter.remove();
+		}
+	}
+
+	private void clearCache() {
+		for (final Future<byte[]> f : blockCache.values()) {
+			f.cancel(false);
+		}
+		blockCache.clear();
+	}
+
+	// -- Helper classes --
+
+	/** Reads the resource through the block cache. */
+	private class RangeInputStream extends InputStream {
+
+		private long pos;
+
+		private RangeInputStream(final long pos) {
+			this.pos = pos;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (pos >= getLength()) return -1;
+			final long block = pos / blockSize;
+			final byte[] data = get(block, getBlock(block, false));
+			return data[(int) (pos++ - block * blockSize)] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			if (len == 0) return 0;
+			if (pos >= getLength()) return -1;
+			final long end = Math.min(pos + len, getLength());
+			int n = 0;
+			while (pos < end) {
+				// request the next few blocks of the range at once
+				final long first = pos / blockSize;
+				final long last = Math.min((end - 1) / blockSize, first +
+					MAX_PARALLEL_FETCHES - 1);
+				final List<Future<byte[]>> blocks = new ArrayList<>();
+				for (long block = first; block <= last; block++) {
+					blocks.add(getBlock(block, last > first));
+				}
+				for (long block = first; block <= last; block++) {
+					final byte[] data = get(block, blocks.get((int) (block - first)));
+					final int start = (int) (pos - block * blockSize);
+					final int count = (int) Math.min(end - pos, data.length - start);
+					System.arraycopy(data, start, b, off + n, count);
+					pos += count;
+					n += count;
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) {
+			final long skipped = Math.max(0, Math.min(n, getLength() - pos));
+			pos += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getLength() - pos));
+		}
+	}
 }
@@ -0,0 +1,638 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import io.scif.common.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * A write-optimized file handle. Sequential writes are coalesced into large
+ * buffers whose boundaries are aligned to the buffer size; full buffers are
+ * written to disk by a background thread of the {@link ThreadService}, when
+ * one is available, while the caller fills the next one. At most a bounded
+ * number of buffers are in flight at any time.
+ * <p>
+ * Writes behind the current buffer, such as header fields patched once the
+ * data following them is known, are kept in a small overlay which is applied
+ * once the buffers preceding it have reached the disk. Seeking forward past
+ * the written data simply starts a new buffer.
+ * </p>
+ * <p>
+ * Other handles opened on the same file do not see written data until
+ * {@link #flush()}, {@link #force()} or {@link #close()} is called. Reading
+ * from this handle flushes it first. By default, {@link #close()} does not
+ * force the data to the storage device; see {@link #setForceOnClose}.
+ * </p>
+ *
+ * @see RandomAccessOutputStream
+ */
+public class WriteBehindHandle implements IRandomAccess {
+
+	// -- Constants --
+
+	/** Default size of each write buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	/** Default maximum number of buffers being written in the background. */
+	public static final int DEFAULT_MAX_PENDING = 4;
+
+	/** Number of overlay bytes above which patches are applied right away. */
+	private static final int MAX_OVERLAY_SIZE = 1024 * 1024;
+
+	// -- Fields --
+
+	private final RandomAccessFile raf;
+
+	private final FileChannel channel;
+
+	private final ThreadService threadService;
+
+	private final int bufferSize;
+
+	private final int maxPending;
+
+	/** Buffers being written in the background, oldest first. */
+	private final ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+
+	/** Buffers available for reuse. */
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+	/**
+	 * Buffer currently being filled. Its position marks the end of the data
+	 * written to it, and its limit the next aligned boundary.
+	 */
+	private ByteBuffer active;
+
+	/** File offset of the first byte of the active buffer. */
+	private long activeStart;
+
+	/** Writes behind the active buffer, in the order they were made. */
+	private final ArrayList<Patch> overlay = new ArrayList<>();
+
+	private int overlaySize;
+
+	private boolean forceOnClose;
+
+	/** Current position within the file. */
+	private long fp;
+
+	private long length;
+
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	/** Scratch buffer for encoding and decoding primitive values. */
+	private final ByteBuffer scratch = ByteBuffer.allocate(8);
+
+	// -- Constructors --
+
+	/**
+	 * Opens the given file for writing, with default buffer settings.
+	 *
+	 * @param threadService Service used to write buffers in the background, or
+	 *          null to write them on the calling thread.
+	 */
+	public WriteBehindHandle(final ThreadService threadService, final File file)
+		throws IOException
+	{
+		this(threadService, file, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_PENDING);
+	}
+
+	/**
+	 * Opens the given file for writing.
+	 *
+	 * @param threadService Service used to write buffers in the background, or
+	 *          null to write them on the calling thread.
+	 * @param file The file to write to.
+	 * @param bufferSize Size of each write buffer; should be a multiple of the
+	 *          file system's block size.
+	 * @param maxPending Maximum number of buffers being written in the
+	 *          background at once.
+	 */
+	public WriteBehindHandle(final ThreadService threadService, final File file,
+		final int bufferSize, final int maxPending) throws IOException
+	{
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		this.threadService = threadService;
+		this.bufferSize = bufferSize;
+		this.maxPending = Math.max(1, maxPending);
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		length = channel.size();
+		active = ByteBuffer.allocateDirect(bufferSize);
+		startBuffer(0);
+	}
+
+	// -- WriteBehindHandle API methods --
+
+	/**
+	 * Writes all buffered data, including the overlay, to the file, without
+	 * forcing it to the storage device.
+	 */
+	public void flush() throws IOException {
+		if (active.position() > 0) {
+			final long end = activeStart + active.position();
+			submit();
+			startBuffer(end);
+		}
+		while (!pending.isEmpty()) {
+			free.add(await(pending.poll()));
+		}
+		for (final Patch patch : overlay) {
+			writeFully(ByteBuffer.wrap(patch.data), patch.offset);
+		}
+		overlay.clear();
+		overlaySize = 0;
+	}
+
+	/**
+	 * Writes all buffered data to the file, and forces it and the file's
+	 * metadata to the storage device.
+	 */
+	public void force() throws IOException {
+		flush();
+		channel.force(true);
+	}
+
+	/** Sets whether {@link #close()} forces the data to the storage device. */
+	public void setForceOnClose(final boolean forceOnClose) {
+		this.forceOnClose = forceOnClose;
+	}
+
+	/** Returns true if {@link #close()} forces the data to the storage device. */
+	public boolean isForceOnClose() {
+		return forceOnClose;
+	}
+
+	/** Gets the size of each write buffer. */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	// -- IRandomAccess API methods --
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (forceOnClose) force();
+			else flush();
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	@Override
+	public long getFilePointer() {
+		return fp;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public ByteOrder getOrder() {
+		return order;
+	}
+
+	@Override
+	public void setOrder(final ByteOrder order) {
+		this.order = order;
+		scratch.order(order);
+	}
+
+	@Override
+	public int read(final byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		return read(ByteBuffer.wrap(b), off, len);
+	}
+
+	@Override
+	public int read(final ByteBuffer buf) throws IOException {
+		return read(buf, 0, buf.capacity());
+	}
+
+	@Override
+	public int read(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		flush();
+		if (fp >= length) return -1;
+		buf.limit(off + (int) Math.min(len, length - fp));
+		buf.position(off);
+		int n = 0;
+		while (buf.hasRemaining()) {
+			final int r = channel.read(buf, fp + n);
+			if (r < 0) break;
+			n += r;
+		}
+		fp += n;
+		return n;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (pos < 0) throw new IOException("Invalid offset: " + pos);
+		fp = pos;
+	}
+
+	@Override
+	public void write(final ByteBuffer buf) throws IOException {
+		write(buf, 0, buf.capacity());
+	}
+
+	@Override
+	public void write(final ByteBuffer buf, final int off, final int len)
+		throws IOException
+	{
+		if (buf.hasArray()) {
+			write(buf.array(), buf.arrayOffset() + off, len);
+			return;
+		}
+		final byte[] b = new byte[len];
+		buf.position(off);
+		buf.get(b);
+		write(b);
+	}
+
+	// -- DataInput API methods --
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return readScratch(1).get();
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return readScratch(2).getChar();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return readScratch(8).getDouble();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return readScratch(4).getFloat();
+	}
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		flush();
+		if (fp + len > length) {
+			throw new EOFException(AbstractNIOHandle.EOF_ERROR_MSG);
+		}
+		read(b, off, len);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return readScratch(4).getInt();
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		flush();
+		if (fp >= length) return null;
+		final StringBuilder sb = new StringBuilder();
+		while (fp < length) {
+			final int c = readUnsignedByte();
+			if (c == '\n') break;
+			if (c == '\r') {
+				if (fp < length && readUnsignedByte() != '\n') fp--;
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return readScratch(8).getLong();
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return readScratch(2).getShort();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.min(n, length - fp);
+		if (skipped < 0) return 0;
+		fp += skipped;
+		return skipped;
+	}
+
+	// -- DataOutput API methods --
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			final long end = activeStart + active.position();
+			final int n;
+			if (fp < activeStart) {
+				// behind the active buffer: patch via the overlay
+				n = (int) Math.min(len, activeStart - fp);
+				addPatch(b, off, n);
+			}
+			else if (fp > end) {
+				// ahead of the written data: start a new buffer there
+				if (active.position() > 0) submit();
+				startBuffer(fp);
+				continue;
+			}
+			else if (fp == activeStart + active.limit()) {
+				// the active buffer is full
+				submit();
+				startBuffer(fp);
+				continue;
+			}
+			else {
+				final int index = (int) (fp - activeStart);
+				n = Math.min(len, active.limit() - index);
+				final int position = active.position();
+				active.position(index);
+				active.put(b, off, n);
+				if (active.position() < position) active.position(position);
+			}
+			fp += n;
+			off += n;
+			len -= n;
+		}
+		if (fp > length) length = fp;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		scratch.clear();
+		scratch.put((byte) b);
+		writeScratch();
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		write(v);
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		write(s.getBytes(Constants.ENCODING));
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		scratch.clear();
+		scratch.putChar((char) v);
+		writeScratch();
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		write(s.getBytes("UTF-16BE"));
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		scratch.clear();
+		scratch.putDouble(v);
+		writeScratch();
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		scratch.clear();
+		scratch.putFloat(v);
+		writeScratch();
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		scratch.clear();
+		scratch.putInt(v);
+		writeScratch();
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		scratch.clear();
+		scratch.putLong(v);
+		writeScratch();
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		scratch.clear();
+		scratch.putShort((short) v);
+		writeScratch();
+	}
+
+	@Override
+	public void writeUTF(final String str) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DataOutputStream(bytes).writeUTF(str);
+		write(bytes.toByteArray());
+	}
+
+	// -- Helper methods --
+
+	/** Resets the active buffer to start at the given offset. */
+	private void startBuffer(final long offset) {
+		activeStart = offset;
+		active.clear();
+		// NB: End the buffer on an aligned boundary.
+		active.limit(bufferSize - (int) (offset % bufferSize));
+	}
+
+	/**
+	 * Hands the active buffer off to be written, and replaces it with a free
+	 * one, waiting for the oldest pending write if too many are in flight.
+	 */
+	private void submit() throws IOException {
+		final ByteBuffer buf = active;
+		final long offset = activeStart;
+		buf.flip();
+		if (threadService == null) {
+			writeFully(buf, offset);
+			active = buf;
+			return;
+		}
+		while (pending.size() >= maxPending) {
+			free.add(await(pending.poll()));
+		}
+		pending.add(threadService.run(() -> {
+			writeFully(buf, offset);
+			return buf;
+		}));
+		active = free.isEmpty() ? ByteBuffer.allocateDirect(bufferSize) : free
+			.poll();
+	}
+
+	private void writeFully(final ByteBuffer buf, long offset)
+		throws IOException
+	{
+		while (buf.hasRemaining()) {
+			offset += channel.write(buf, offset);
+		}
+	}
+
+	/** Waits for a pending write, returning its buffer. */
+	private ByteBuffer await(final Future<ByteBuffer> future)
+		throws IOException
+	{
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HandleException("Interrupted while writing", e);
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			throw new HandleException("Cannot write", cause);
+		}
+	}
+
+	/** Records a write at the file pointer behind the active buffer. */
+	private void addPatch(final byte[] b, final int off, final int len)
+		throws IOException
+	{
+		final byte[] data = new byte[len];
+		System.arraycopy(b, off, data, 0, len);
+		overlay.add(new Patch(fp, data));
+		overlaySize += len;
+		if (overlaySize > MAX_OVERLAY_SIZE) {
+			// NB: Keep the active buffer; only what lies behind it must land first.
+			while (!pending.isEmpty()) {
+				free.add(await(pending.poll()));
+			}
+			for (final Patch patch : overlay) {
+				writeFully(ByteBuffer.wrap(patch.data), patch.offset);
+			}
+			overlay.clear();
+			overlaySize = 0;
+		}
+	}
+
+	private void writeScratch() throws IOException {
+		write(scratch.array(), 0, scratch.position());
+	}
+
+	private ByteBuffer readScratch(final int size) throws IOException {
+		flush();
+		if (fp + size > length) {
+			throw new EOFException(AbstractNIOHandle.EOF_ERROR_MSG);
+		}
+		scratch.clear();
+		read(scratch.array(), 0, size);
+		scratch.limit(size);
+		return scratch;
+	}
+
+	// -- Helper classes --
+
+	/** A write made behind the active buffer. */
+	private static class Patch {
+
+		private final long offset;
+
+		private final byte[] data;
+
+		private Patch(final long offset, final byte[] data) {
+			this.offset = offset;
+			this.data = data;
+		}
+	}
+}
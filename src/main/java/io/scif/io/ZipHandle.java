@@ -34,10 +34,19 @@ import io.scif.common.Constants;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.scijava.Context;
 import org.scijava.plugin.Plugin;
@@ -45,6 +54,13 @@ import org.scijava.plugin.Plugin;
 /**
  * StreamHandle implementation for reading from Zip-compressed files or byte
  * arrays. Instances of ZipHandle are read-only.
+ * <p>
+ * The central directory of the archive is read once, and the backing entry is
+ * then opened directly at its local header offset. STORED entries are read as
+ * a window onto the underlying handle, so seeking within them is free.
+ * DEFLATED entries are inflated on the fly; seeking backwards within them
+ * restarts inflation at the beginning of the entry rather than of the archive.
+ * </p>
  *
  * @see StreamHandle
  * @author Melissa Linkert
@@ -52,16 +68,54 @@ import org.scijava.plugin.Plugin;
 @Plugin(type = IStreamAccess.class)
 public class ZipHandle extends StreamHandle {
 
+	// -- Constants --
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+	private static final int END_SIGNATURE = 0x06054b50;
+
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+	private static final int LOCAL_HEADER_LENGTH = 30;
+
+	private static final int CENTRAL_HEADER_LENGTH = 46;
+
+	private static final int END_LENGTH = 22;
+
+	private static final int ZIP64_LOCATOR_LENGTH = 20;
+
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+
+	/** Maximum length of the end of central directory comment. */
+	private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+	/** Size of the buffer used when inflating DEFLATED entries. */
+	private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
 	// -- Fields --
 
-	private boolean resetStream;
+	/** Entries of the archive, keyed by name, in central directory order. */
+	private Map<String, Entry> entries;
 
-	private RandomAccessInputStream in;
+	/** Handle on the raw archive data. */
+	private IRandomAccess in;
 
-	private ZipInputStream zip;
+	/** Whether the raw handle is mapped, and hence must not be closed. */
+	private boolean mapped;
+
+	private Inflater inflater;
 
 	private String entryName;
 
+	private Entry entry;
+
+	/** Absolute offset of the backing entry's data within the archive. */
+	private long dataOffset = -1;
+
 	private int entryCount;
 
 	// -- Constructor --
@@ -92,11 +146,29 @@ public class ZipHandle extends StreamHandle {
 	 * @throws HandleException if the given file is not a Zip file.
 	 */
 	public ZipHandle(final Context context, final String file,
-		final ZipEntry entry) throws IOException
+		final ZipEntry zipEntry) throws IOException
 	{
 		super(context);
 
-		setFile(file, entry);
+		setFile(file, zipEntry);
+	}
+
+	/**
+	 * Constructs a new ZipHandle corresponding to the named entry of the archive
+	 * backing the given handle. The central directory already read by the given
+	 * handle is reused, so opening many entries of one archive does not require
+	 * reading the directory again.
+	 *
+	 * @throws HandleException if the archive has no such entry.
+	 */
+	public ZipHandle(final ZipHandle archive, final String entryName)
+		throws IOException
+	{
+		super(archive.getContext());
+
+		super.setFile(archive.getFile());
+		entries = archive.entries;
+		setEntry(entryName);
 	}
 
 	// -- IStreamAccess API methods --
@@ -122,6 +194,12 @@ public class ZipHandle extends StreamHandle {
 		return entryName;
 	}
 
+	/** Gets the names of all entries in the archive, in directory order. */
+	public List<String> getEntryNames() {
+		if (entries == null) return Collections.emptyList();
+		return Collections.unmodifiableList(new ArrayList<>(entries.keySet()));
+	}
+
 	/** Returns the DataInputStream corresponding to the backing Zip entry. */
 	public DataInputStream getInputStream() {
 		return getStream();
@@ -140,41 +218,46 @@ public class ZipHandle extends StreamHandle {
 
 	// -- IStreamAccess API methods --
 
-	public void setFile(final String file, final ZipEntry entry)
+	public void setFile(final String file, final ZipEntry zipEntry)
 		throws IOException
 	{
 		super.setFile(file);
 
-		setLength(-1);
-
-		in = openStream(file);
-		zip = new ZipInputStream(in);
-		entryName = entry == null ? null : entry.getName();
-		entryCount = entryName == null ? 0 : 1;
-
-		if (entryName == null) {
-			// strip off .zip extension and directory prefix
-			String innerFile = file.substring(0, file.length() - 4);
-			int slash = innerFile.lastIndexOf(File.separator);
-			if (slash < 0) slash = innerFile.lastIndexOf("/");
-			if (slash >= 0) innerFile = innerFile.substring(slash + 1);
-
-			// look for Zip entry with same prefix as the Zip file itself
-			boolean matchFound = false;
-			while (true) {
-				final ZipEntry ze = zip.getNextEntry();
-				if (ze == null) break;
-				if (entryName == null) entryName = ze.getName();
-				if (!matchFound && ze.getName().startsWith(innerFile)) {
-					// found entry with matching name
-					entryName = ze.getName();
-					matchFound = true;
+		try {
+			entries = readCentralDirectory();
+
+			String name = zipEntry == null ? null : zipEntry.getName();
+			if (name == null) {
+				// strip off .zip extension and directory prefix
+				String innerFile = file.substring(0, file.length() - 4);
+				int slash = innerFile.lastIndexOf(File.separator);
+				if (slash < 0) slash = innerFile.lastIndexOf("/");
+				if (slash >= 0) innerFile = innerFile.substring(slash + 1);
+
+				// look for Zip entry with same prefix as the Zip file itself
+				for (final String entryName : entries.keySet()) {
+					if (name == null) name = entryName;
+					if (entryName.startsWith(innerFile)) {
+						// found entry with matching name
+						name = entryName;
+						break;
+					}
 				}
-				entryCount++;
 			}
-		}
 
-		resetStream();
+			setEntry(name);
+		}
+		catch (final IOException | RuntimeException e) {
+			// NB: Release the raw archive handle opened to read the directory.
+			try {
+				close();
+			}
+			catch (final IOException exc) {
+				e.addSuppressed(exc);
+			}
+			throw e;
+		}
+		entryCount = zipEntry == null ? entries.size() : 1;
 	}
 
 	@Override
@@ -185,79 +268,213 @@ public class ZipHandle extends StreamHandle {
 	@Override
 	public void resetStream() throws IOException {
 		if (getStream() != null) getStream().close();
-		if (in != null) {
-			in.close();
-			in = openStream(getFile());
-		}
-		if (zip != null) zip.close();
-		zip = new ZipInputStream(in);
+		if (inflater != null) inflater.end();
+		inflater = null;
 
-		setStream(new DataInputStream(new BufferedInputStream(zip,
+		final InputStream data = new EntryInputStream(0);
+		if (entry.method == ZipEntry.STORED) {
+			setStream(new DataInputStream(data));
+			return;
+		}
+		if (entry.method != ZipEntry.DEFLATED) {
+			throw new HandleException("Unsupported compression method " +
+				entry.method + " for Zip entry " + entryName);
+		}
+		inflater = new Inflater(true);
+		setStream(new DataInputStream(new BufferedInputStream(
+			new InflaterInputStream(data, inflater, INFLATE_BUFFER_SIZE),
 			RandomAccessInputStream.MAX_OVERHEAD)));
 		getStream().mark(RandomAccessInputStream.MAX_OVERHEAD);
-
-		seekToEntry();
-
-		if (resetStream) resetStream();
 	}
 
 	// -- IRandomAccess API methods --
 
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (entry != null && entry.method == ZipEntry.STORED) {
+			// NB: Stored entries can be repositioned directly.
+			if (getStream() != null) getStream().close();
+			setFp(pos);
+			setStream(new DataInputStream(new EntryInputStream(pos)));
+		}
+		else super.seek(pos);
+	}
+
 	@Override
 	public void close() throws IOException {
+		if (in != null && !mapped) in.close();
+		in = null;
 		super.close();
-		zip = null;
+		if (inflater != null) inflater.end();
+		inflater = null;
+		entries = null;
+		entry = null;
 		entryName = null;
+		dataOffset = -1;
 		setLength(-1);
-		if (in != null) in.close();
-		in = null;
 		entryCount = 0;
 	}
 
 	// -- Helper methods --
 
-	/**
-	 * Seeks to the relevant ZIP entry, populating the stream length accordingly.
-	 */
-	private void seekToEntry() throws IOException {
-		resetStream = false;
-
-		while (true) {
-			final ZipEntry entry = zip.getNextEntry();
-			if (entryName == null || entryName.equals(entry.getName())) {
-				// found the matching entry name (or first entry if the name is
-				// null)
-				if (getLength() < 0) populateLength(entry.getSize());
-				break;
+	/** Selects the named entry as the backing data of this handle. */
+	private void setEntry(final String name) throws IOException {
+		if (entries.isEmpty()) {
+			throw new HandleException(getFile() + " contains no Zip entries.");
+		}
+		entryName = name == null ? entries.keySet().iterator().next() : name;
+		entry = entries.get(entryName);
+		if (entry == null) {
+			throw new HandleException("No such Zip entry: " + entryName);
+		}
+		dataOffset = -1;
+		setLength(entry.size);
+		resetStream();
+	}
+
+	/** Gets the raw archive handle, opening it if needed. */
+	private IRandomAccess raw() throws IOException {
+		if (in == null) {
+			final SCIFIO scifio = new SCIFIO(getContext());
+			mapped = scifio.location().getMappedFile(getFile()) != null;
+			in = scifio.location().getHandle(getFile(), false, false);
+		}
+		return in;
+	}
+
+	/** Gets the offset of the backing entry's data, reading its local header. */
+	private long dataOffset() throws IOException {
+		if (dataOffset < 0) {
+			final byte[] b = new byte[LOCAL_HEADER_LENGTH];
+			readRaw(entry.headerOffset, b, 0, b.length);
+			if (getInt(b, 0) != LOCAL_HEADER_SIGNATURE) {
+				throw new HandleException("Invalid local header for Zip entry " +
+					entryName);
 			}
+			dataOffset = entry.headerOffset + LOCAL_HEADER_LENGTH +
+				getShort(b, 26) + getShort(b, 28);
 		}
+		return dataOffset;
 	}
 
-	/** Sets the stream length, computing it by force if necessary. */
-	private void populateLength(final long size) throws IOException {
-		if (size >= 0) {
-			setLength(size);
-			return;
+	/** Reads the entries listed in the central directory of the archive. */
+	private Map<String, Entry> readCentralDirectory() throws IOException {
+		final IRandomAccess raw = raw();
+		final long length = raw.length();
+
+		// find the end of central directory record
+		final int tailLength =
+			(int) Math.min(length, END_LENGTH + MAX_COMMENT_LENGTH);
+		final byte[] tail = new byte[tailLength];
+		readRaw(length - tailLength, tail, 0, tailLength);
+		int end = tailLength - END_LENGTH;
+		while (end >= 0 && getInt(tail, end) != END_SIGNATURE) {
+			end--;
 		}
-		// size is unknown, so we must read the stream manually
-		long length = 0;
-		final DataInputStream stream = getStream();
-		while (true) {
-			final long skipped = stream.skip(Long.MAX_VALUE);
-			if (skipped == 0) {
-				// NB: End of stream, we hope. Technically there is no contract
-				// for
-				// when skip(long) returns 0, but in practice it seems to be
-				// when end
-				// of stream is reached.
-				break;
+		if (end < 0) {
+			throw new HandleException(getFile() +
+				" has no Zip central directory.");
+		}
+		long count = getShort(tail, end + 10);
+		long cdSize = getInt(tail, end + 12) & 0xffffffffL;
+		long cdOffset = getInt(tail, end + 16) & 0xffffffffL;
+
+		// check for a Zip64 end of central directory record
+		final long locator = length - tailLength + end - ZIP64_LOCATOR_LENGTH;
+		if ((count == 0xffff || cdSize == 0xffffffffL ||
+			cdOffset == 0xffffffffL) && locator >= 0)
+		{
+			final byte[] b = new byte[56];
+			readRaw(locator, b, 0, ZIP64_LOCATOR_LENGTH);
+			if (getInt(b, 0) == ZIP64_LOCATOR_SIGNATURE) {
+				readRaw(getLong(b, 8), b, 0, b.length);
+				if (getInt(b, 0) != ZIP64_END_SIGNATURE) {
+					throw new HandleException("Invalid Zip64 central directory.");
+				}
+				count = getLong(b, 32);
+				cdSize = getLong(b, 40);
+				cdOffset = getLong(b, 48);
 			}
-			length += skipped;
 		}
+		if (cdSize > Integer.MAX_VALUE) {
+			throw new HandleException("Zip central directory is too large.");
+		}
+
+		final byte[] cd = new byte[(int) cdSize];
+		readRaw(cdOffset, cd, 0, cd.length);
+
+		final Map<String, Entry> entries = new LinkedHashMap<>();
+		int p = 0;
+		for (long i = 0; i < count; i++) {
+			if (p + CENTRAL_HEADER_LENGTH > cd.length ||
+				getInt(cd, p) != CENTRAL_HEADER_SIGNATURE)
+			{
+				throw new HandleException("Invalid Zip central directory.");
+			}
+			final int method = getShort(cd, p + 10);
+			long compressedSize = getInt(cd, p + 20) & 0xffffffffL;
+			long size = getInt(cd, p + 24) & 0xffffffffL;
+			final int nameLength = getShort(cd, p + 28);
+			final int extraLength = getShort(cd, p + 30);
+			final int commentLength = getShort(cd, p + 32);
+			long headerOffset = getInt(cd, p + 42) & 0xffffffffL;
+			final String name = new String(cd, p + CENTRAL_HEADER_LENGTH,
+				nameLength, StandardCharsets.UTF_8);
+
+			// Zip64 sizes and offsets are stored in an extra field
+			int x = p + CENTRAL_HEADER_LENGTH + nameLength;
+			final int extraEnd = x + extraLength;
+			while (x + 4 <= extraEnd) {
+				final int id = getShort(cd, x);
+				final int dataLength = getShort(cd, x + 2);
+				int v = x + 4;
+				if (id == ZIP64_EXTRA_ID) {
+					if (size == 0xffffffffL) {
+						size = getLong(cd, v);
+						v += 8;
+					}
+					if (compressedSize == 0xffffffffL) {
+						compressedSize = getLong(cd, v);
+						v += 8;
+					}
+					if (headerOffset == 0xffffffffL) headerOffset = getLong(cd, v);
+				}
+				x += 4 + dataLength;
+			}
+
+			if (!name.endsWith("/")) {
+				entries.put(name, new Entry(method, compressedSize, size,
+					headerOffset));
+			}
+			p += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+		}
+		return entries;
+	}
+
+	/** Reads bytes from the given absolute offset of the raw archive. */
+	private void readRaw(final long offset, final byte[] b, final int off,
+		final int len) throws IOException
+	{
+		final IRandomAccess raw = raw();
+		raw.seek(offset);
+		int n = 0;
+		while (n < len) {
+			final int r = raw.read(b, off + n, len - n);
+			if (r <= 0) throw new EOFException();
+			n += r;
+		}
+	}
+
+	private static int getShort(final byte[] b, final int off) {
+		return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+	}
 
-		setLength(length);
+	private static int getInt(final byte[] b, final int off) {
+		return getShort(b, off) | (getShort(b, off + 2) << 16);
+	}
 
-		resetStream = true;
+	private static long getLong(final byte[] b, final int off) {
+		return (getInt(b, off) & 0xffffffffL) | ((long) getInt(b, off + 4) << 32);
 	}
 
 	private IRandomAccess getHandle(final String file) throws IOException {
@@ -265,10 +482,77 @@ public class ZipHandle extends StreamHandle {
 		return scifio.location().getHandle(file, false, false);
 	}
 
-	private RandomAccessInputStream openStream(final String file)
-		throws IOException
-	{
-		return new RandomAccessInputStream(getContext(), getHandle(file), file);
+	// -- Helper classes --
+
+	/** Central directory record of a single Zip entry. */
+	private static class Entry {
+
+		private final int method;
+
+		private final long compressedSize;
+
+		private final long size;
+
+		private final long headerOffset;
+
+		private Entry(final int method, final long compressedSize,
+			final long size, final long headerOffset)
+		{
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.headerOffset = headerOffset;
+		}
+	}
+
+	/**
+	 * Reads the raw (possibly compressed) data of the backing entry directly
+	 * from the archive handle.
+	 */
+	private class EntryInputStream extends InputStream {
+
+		/** Position relative to the start of the entry data. */
+		private long pos;
+
+		private EntryInputStream(final long pos) {
+			this.pos = pos;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+			throws IOException
+		{
+			final long remaining = entry.compressedSize - pos;
+			if (remaining <= 0) return -1;
+			if (len == 0) return 0;
+			final IRandomAccess raw = raw();
+			final long offset = dataOffset() + pos;
+			if (raw.getFilePointer() != offset) raw.seek(offset);
+			final int r = raw.read(b, off, (int) Math.min(len, remaining));
+			if (r <= 0) return -1;
+			pos += r;
+			return r;
+		}
+
+		@Override
+		public long skip(final long n) {
+			final long skipped =
+				Math.max(0, Math.min(n, entry.compressedSize - pos));
+			pos += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, Math.max(0,
+				entry.compressedSize - pos));
+		}
 	}
 
 }
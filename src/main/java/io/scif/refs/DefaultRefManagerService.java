@@ -31,10 +31,13 @@ package io.scif.refs;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
@@ -42,10 +45,14 @@ import org.scijava.plugin.Plugin;
 import org.scijava.plugin.PluginService;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
-import org.scijava.thread.ThreadService;
 
 /**
  * Default {@link RefManagerService} implementation.
+ * <p>
+ * The {@link RefProvider} plugins are instantiated once, on first use. Managed
+ * referents are tracked in a lock-striped registry, and a single daemon thread
+ * per service cleans up references as they are enqueued.
+ * </p>
  *
  * @author Mark Hiner
  */
@@ -54,10 +61,12 @@ public class DefaultRefManagerService extends AbstractService implements
 	RefManagerService
 {
 
-	// -- Parameters --
+	// -- Constants --
 
-	@Parameter
-	private ThreadService threadService;
+	/** Number of independently locked partitions of the registry. */
+	private static final int STRIPES = 32;
+
+	// -- Parameters --
 
 	@Parameter
 	private PluginService pluginService;
@@ -67,66 +76,47 @@ public class DefaultRefManagerService extends AbstractService implements
 
 	// -- Fields --
 
-	/**
-	 * Flag passed by reference to {@link RefCleaner} instances to indicate when
-	 * this service has been disposed.
-	 */
-	private final boolean[] disposed = new boolean[1];
+	/** All available {@link RefProvider}s, instantiated on first use. */
+	private volatile RefProvider[] providers;
 
 	/**
-	 * Maps managed objects to the reference types which refer to them, ensuring
-	 * individual instances are not managed in the same way.
+	 * Maps managed objects to the {@link RefProvider} types which refer to them,
+	 * ensuring individual instances are not managed in the same way. Each
+	 * referent is kept in the stripe selected by its hash code.
 	 */
-	private final Map<Object, Set<Class<?>>> managed =
-		new WeakHashMap<>();
+	private final Map<Object, Set<Class<?>>>[] managed = createStripes();
 
 	/**
-	 * A list of all managed references.
+	 * All managed references which have not been cleaned up yet.
 	 */
-	private final Set<Reference> knownRefs = new HashSet<>();
+	private final Set<Reference<?>> knownRefs = Collections.newSetFromMap(
+		new ConcurrentHashMap<>());
 
 	/**
-	 * Queue used for all references. This is polled on a separate thread, and
-	 * whenever a reference is pulled from the queue its
+	 * Queue used for all references. This is polled by the {@link RefCleaner},
+	 * and whenever a reference is pulled from the queue its
 	 * {@link CleaningRef#cleanup()} method is called.
 	 */
-	private ReferenceQueue queue;
+	private ReferenceQueue<Object> queue;
+
+	/** Thread polling the queue, started on first use. */
+	private Thread cleaner;
+
+	private boolean disposed;
 
 	// -- RefManagerService API --
 
 	@Override
 	public void manage(final Object toManage, final Object... params) {
 		// Check known RefProviders for all appropriate constructors
-		for (final RefProvider refProvider : pluginService
-			.createInstancesOfType(RefProvider.class))
-		{
-			if (!isManaged(toManage, refProvider.getClass()) &&
-				refProvider.handles(toManage, params))
+		for (final RefProvider refProvider : providers()) {
+			if (refProvider.handles(toManage, params) && claim(toManage,
+				refProvider.getClass()))
 			{
 				// found a match
-				final Reference ref = refProvider.makeRef(toManage, queue, params);
-
-				synchronized (managed) {
-					Set<Class<?>> refs = managed.get(toManage);
-
-					if (refs == null) {
-						refs = new HashSet<>();
-						managed.put(toManage, refs);
-					}
-					refs.add(ref.getClass());
-				}
-
-				synchronized (knownRefs) {
-					knownRefs.add(ref);
-
-					if (knownRefs.size() == 1) {
-						// If this is the first entry in knownRefs, start a
-						// RefCleaner
-						// thread
-						threadService.run(new RefCleaner(queue, knownRefs, logService,
-							disposed));
-					}
-				}
+				final Reference<?> ref = refProvider.makeRef(toManage, queue, params);
+				knownRefs.add(ref);
+				startCleaner();
 			}
 		}
 	}
@@ -134,105 +124,119 @@ public class DefaultRefManagerService extends AbstractService implements
 	// -- Service API --
 
 	/**
-	 * Signal to any active {@link RefCleaner} that this service has been
-	 * disposed. That should trigger an end of polling operations.
+	 * Stops the {@link RefCleaner} and cleans up all remaining references, as
+	 * they may not be enqueued via normal procedures anymore.
 	 */
 	@Override
 	public void dispose() {
-		disposed[0] = false;
+		synchronized (this) {
+			disposed = true;
+			if (cleaner != null) cleaner.interrupt();
+		}
+		for (final Reference<?> ref : knownRefs) {
+			cleanup(ref);
+		}
 	}
 
 	@Override
 	public void initialize() {
 		// Set default values
-		queue = new ReferenceQueue();
-		disposed[0] = true;
+		queue = new ReferenceQueue<>();
 	}
 
 	// -- Helper Methods --
 
-	/**
-	 * @return true iff a {@link RefProvider} of the given class was constructed
-	 *         around the given object
-	 */
-	private boolean isManaged(final Object referent, final Class<?> pClass) {
-		synchronized (managed) {
-			final Set<Class<?>> refs = managed.get(referent);
-			if (refs != null && refs.contains(pClass)) return true;
+	/** Gets the available {@link RefProvider}s, instantiating them once. */
+	private RefProvider[] providers() {
+		RefProvider[] result = providers;
+		if (result == null) {
+			synchronized (this) {
+				result = providers;
+				if (result == null) {
+					final List<RefProvider> list = pluginService.createInstancesOfType(
+						RefProvider.class);
+					result = list.toArray(new RefProvider[list.size()]);
+					providers = result;
+				}
+			}
 		}
-		return false;
+		return result;
 	}
 
-	// -- Helper class --
-
 	/**
-	 * {@link ReferenceQueue} manager for running on a separate thread. As long as
-	 * the set of references provided is not empty, the queue will be polled.
-	 * Removed {@link CleaningRef} instances will have their
-	 * {@link CleaningRef#cleanup()} method invoked, and then will be removed from
-	 * the originally provided {@code RefProvider} set.
-	 * <p>
-	 * NB: make sure that as new refs are added to the provided ref set, they are
-	 * registered with the given queue! Otherwise it's quite possible this thread
-	 * will never die and resources will not properly be cleaned.
-	 * </p>
+	 * Records that a {@link RefProvider} of the given class is constructed
+	 * around the given object.
 	 *
-	 * @author Mark Hiner
+	 * @return false iff this was already recorded
 	 */
-	private static class RefCleaner implements Runnable {
-
-		// -- Fields --
-
-		private final ReferenceQueue queue;
+	private boolean claim(final Object referent, final Class<?> pClass) {
+		final Map<Object, Set<Class<?>>> stripe = managed[(referent.hashCode() &
+			0x7fffffff) % STRIPES];
+		synchronized (stripe) {
+			Set<Class<?>> refs = stripe.get(referent);
+			if (refs == null) {
+				refs = new HashSet<>();
+				stripe.put(referent, refs);
+			}
+			return refs.add(pClass);
+		}
+	}
 
-		private final Set<Reference> refs;
+	/** Starts the {@link RefCleaner} thread, if not running yet. */
+	private synchronized void startCleaner() {
+		if (cleaner != null || disposed) return;
+		cleaner = new Thread(new RefCleaner(), "SCIFIO-RefCleaner-" + context()
+			.hashCode());
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
 
-		private final LogService logService;
+	/** Cleans up the given reference, unless that already happened. */
+	private void cleanup(final Reference<?> ref) {
+		// NB: Only the thread removing the reference cleans it up.
+		if (!knownRefs.remove(ref)) return;
+		try {
+			((CleaningRef) ref).cleanup();
+		}
+		catch (final RuntimeException e) {
+			logService.error("RefCleaner: failed to clean up reference", e);
+		}
+	}
 
-		private final boolean[] run;
+	private static Map<Object, Set<Class<?>>>[] createStripes() {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		final Map<Object, Set<Class<?>>>[] stripes = new Map[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new WeakHashMap<>();
+		}
+		return stripes;
+	}
 
-		// -- Constructor --
+	// -- Helper class --
 
-		public RefCleaner(final ReferenceQueue queue, final Set<Reference> refs,
-			final LogService log, final boolean[] runFlag)
-		{
-			this.queue = queue;
-			this.refs = refs;
-			logService = log;
-			run = runFlag;
-		}
+	/**
+	 * {@link ReferenceQueue} manager for running on a separate thread. Removed
+	 * {@link CleaningRef} instances will have their {@link CleaningRef#cleanup()}
+	 * method invoked, and then will be removed from the known references. Runs
+	 * until the service is disposed.
+	 *
+	 * @author Mark Hiner
+	 */
+	private class RefCleaner implements Runnable {
 
 		// -- Runnable API --
 
 		@Override
 		public void run() {
-			int size = refs.size();
-			while (size > 0 && run[0]) {
-				CleaningRef cleaningRef = null;
+			while (true) {
+				synchronized (DefaultRefManagerService.this) {
+					if (disposed) return;
+				}
 				try {
-					cleaningRef = (CleaningRef) queue.remove(50);
+					cleanup(queue.remove());
 				}
 				catch (final InterruptedException e) {
-					logService.error("RefCleaner: interrupted while polling queue", e);
-				}
-				synchronized (refs) {
-					if (cleaningRef != null) {
-						// When a reference is pulled from the queue, call its
-						// cleanup
-						// method and remove it from the list
-						cleaningRef.cleanup();
-						refs.remove(cleaningRef);
-					}
-					size = refs.size();
-				}
-			}
-			// If the RefManagerService was manually disposed, we should force
-			// cleaning of all known refs, as they may not have been enqueued
-			// via normal procedures.
-			if (!run[0]) {
-				for (final Reference ref : refs) {
-					final CleaningRef cleaningRef = (CleaningRef) ref;
-					cleaningRef.cleanup();
+					// NB: The service is being disposed.
 				}
 			}
 		}
@@ -29,33 +29,50 @@
 
 package io.scif.services;
 
+import io.scif.AbstractChecker;
 import io.scif.Checker;
 import io.scif.DefaultWriter;
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.FormatSignature;
+import io.scif.HasSignatures;
 import io.scif.Metadata;
 import io.scif.Parser;
 import io.scif.Reader;
 import io.scif.Writer;
 import io.scif.app.SCIFIOApp;
 import io.scif.config.SCIFIOConfig;
+import io.scif.io.BlockCache;
+import io.scif.io.BlockCacheHandle;
+import io.scif.io.IRandomAccess;
 import io.scif.io.RandomAccessInputStream;
 import io.scif.util.FormatTools;
+import io.scif.util.SignatureIndex;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.scijava.app.AppService;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.plugin.PluginInfo;
 import org.scijava.plugin.PluginService;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
@@ -72,6 +89,11 @@ public class DefaultFormatService extends AbstractService implements
 	FormatService
 {
 
+	// -- Constants --
+
+	/** Bytes of a dataset shared by checkers running concurrently. */
+	private static final long VIEW_CACHE_SIZE = 4 * 1024 * 1024;
+
 	// -- Parameters --
 
 	@Parameter
@@ -80,6 +102,9 @@ public class DefaultFormatService extends AbstractService implements
 	@Parameter
 	private AppService appService;
 
+	@Parameter
+	private LocationService locationService;
+
 	@Parameter
 	private ThreadService threadService;
 
@@ -132,8 +157,36 @@ public class DefaultFormatService extends AbstractService implements
 
 	private boolean dirtyFormatCache = false;
 
-	// Flag to mark if this service has been initialized or not.
-	private boolean initialized = false;
+	/*
+	 * Index of the signatures declared by Checkers, built on first use.
+	 */
+	private volatile Signatures signatures;
+
+	/*
+	 * Metadata of all available Formats, in priority order. Formats are only
+	 * instantiated when first needed. NB: Suffixes are computed by the Format
+	 * instances rather than declared in this metadata, so candidates cannot be
+	 * pre-filtered by suffix; detection still instantiates all Formats.
+	 */
+	private List<PluginInfo<Format>> formatInfos;
+
+	/*
+	 * Class names of the Formats instantiated so far.
+	 */
+	private Set<String> loadedFormats;
+
+	// Set once a thread has started instantiating all Formats.
+	private final AtomicBoolean loading = new AtomicBoolean();
+
+	// Released once all Formats have been instantiated.
+	private final CountDownLatch loaded = new CountDownLatch(1);
+
+	/*
+	 * Whether Checker classes keep the default AbstractChecker logic to check
+	 * ids, and thus only read the dataset through isFormat(stream).
+	 */
+	private final Map<Class<?>, Boolean> defaultCheckers =
+		new ConcurrentHashMap<>();
 
 	// If this value returns true, the current thread has permission to access
 	// uninitialized data structures.
@@ -171,6 +224,7 @@ public class DefaultFormatService extends AbstractService implements
 				formats().add(format);
 				formatMap().put(format.getClass(), format);
 				addComponents(format);
+				signatures = null;
 			}
 		}
 
@@ -183,6 +237,7 @@ public class DefaultFormatService extends AbstractService implements
 		removeComponents(format);
 		formatMap().remove(format.getClass());
 		dirtyFormatCache = true;
+		signatures = null;
 		return formats().remove(format);
 	}
 
@@ -207,6 +262,17 @@ public class DefaultFormatService extends AbstractService implements
 	@Override
 	@SuppressWarnings("unchecked")
 	public <F extends Format> F getFormatFromClass(final Class<F> formatClass) {
+		if (loaded.getCount() > 0) {
+			// Instantiate only the requested Format, if it is not loaded yet
+			for (final PluginInfo<Format> info : formatInfos) {
+				if (info.getClassName().equals(formatClass.getName())) {
+					synchronized (formats) {
+						loadFormat(info);
+						return (F) formatMap.get(formatClass);
+					}
+				}
+			}
+		}
 		return (F) formatMap().get(formatClass);
 	}
 
@@ -336,13 +402,20 @@ public class DefaultFormatService extends AbstractService implements
 
 		boolean found = false;
 
-		for (final Format format : formats()) {
-			if (!found && format.isEnabled() &&
-				format.createChecker().isFormat(id, config))
-			{
-				// if greedy is true, we can end after finding the first format
-				found = greedy;
-				formatList.add(format);
+		try (final Header header = readHeader(id, config)) {
+			if (config.checkerIsParallel() && config.checkerIsOpen()) {
+				formatList.addAll(getFormatListParallel(id, config, header, greedy));
+			}
+			else {
+				for (final Format format : formats()) {
+					if (!found && format.isEnabled() && isFormat(format, id, config,
+						header, null))
+					{
+						// if greedy is true, we can end after finding the first format
+						found = greedy;
+						formatList.add(format);
+					}
+				}
 			}
 		}
 
@@ -382,10 +455,13 @@ public class DefaultFormatService extends AbstractService implements
 
 		boolean found = false;
 
+		final Set<Format> candidates = candidates(source, config);
+
 		for (final Format format : formats()) {
 			try {
-				if (!found && format.isEnabled() &&
-					format.createChecker().isFormat(source))
+				if (!found && format.isEnabled() && (candidates == null ||
+					candidates.contains(format)) && format.createChecker().isFormat(
+						source))
 				{
 					// if greedy is true, we can end after finding the first format
 					found = greedy;
@@ -427,44 +503,262 @@ public class DefaultFormatService extends AbstractService implements
 
 	@Override
 	public void initialize() {
-		// TODO replace with preload implementation.
-		// See https://github.com/scijava/scijava-common/issues/145
-		threadService.run(() -> {
-			// Allow this thread to bypass the initialization check
-			threadLock.set(true);
-
-			formats = new TreeSet<>();
-			formatMap = new HashMap<>();
-			checkerMap = new HashMap<>();
-			parserMap = new HashMap<>();
-			readerMap = new HashMap<>();
-			writerMap = new HashMap<>();
-			metadataMap = new HashMap<>();
-			formatCache = new WeakHashMap<>();
-
-			// HACK: Wait until the FormatService is available from the context
-			// before initializing all the formats. Otherwise, any Format that
-			// has the FormatService as a parameter will fail to inject.
-			// TODO: Fix this to be less nightmarish.
-			while (context().getService(DefaultFormatService.class) == null) {
-				try {
-					Thread.sleep(50);
+		formats = new TreeSet<>();
+		formatMap = new HashMap<>();
+		checkerMap = new HashMap<>();
+		parserMap = new HashMap<>();
+		readerMap = new HashMap<>();
+		writerMap = new HashMap<>();
+		metadataMap = new HashMap<>();
+		formatCache = new WeakHashMap<>();
+		loadedFormats = new HashSet<>();
+
+		// NB: Only the plugin metadata is read here. The Formats themselves are
+		// instantiated on first use, when this service is available from the
+		// context for injection into them.
+		formatInfos = pluginService.getPluginsOfType(Format.class);
+	}
+
+	// -- Private Methods --
+
+	/**
+	 * Checks whether the given id is in the given format. Checkers which
+	 * override {@link Checker#isFormat(String, SCIFIOConfig)}, e.g. to look for
+	 * companion files, are always asked directly. Otherwise, checkers declaring
+	 * {@link HasSignatures signatures} are evaluated over the shared header, and
+	 * only consult the content if one of their signatures matches; if views are
+	 * given, the content is read through them.
+	 */
+	private boolean isFormat(final Format format, final String id,
+		final SCIFIOConfig config, final Header header, final Views views)
+	{
+		final Checker checker = format.createChecker();
+		final boolean indexed = header != null && header.signatures.formats
+			.contains(format);
+		if (!isDefaultChecker(checker) || (!indexed && views == null)) {
+			return checker.isFormat(id, config);
+		}
+
+		// NB: Same logic as AbstractChecker#isFormat(String, SCIFIOConfig).
+		if (!checker.suffixSufficient() && !config.checkerIsOpen()) return false;
+		if (checker.suffixNecessary() || checker.suffixSufficient()) {
+			final boolean suffixMatch = FormatTools.checkSuffix(id, format
+				.getSuffixes());
+			if (checker.suffixNecessary() && !suffixMatch) return false;
+			if (suffixMatch && checker.suffixSufficient()) return true;
+		}
+		if (!config.checkerIsOpen()) return false;
+		if (indexed && !header.matches.contains(format)) return false;
+		try {
+			if (views == null) {
+				// NB: The header may be shared by concurrent checks.
+				synchronized (header) {
+					header.stream.seek(0);
+					header.stream.order(false);
+					return checker.isFormat(header.stream);
 				}
-				catch (InterruptedException exc) { }
 			}
+			try (final RandomAccessInputStream stream = views.open()) {
+				return checker.isFormat(stream);
+			}
+		}
+		catch (final IOException exc) {
+			logService.debug("", exc);
+			return false;
+		}
+	}
 
-			// Initialize format information
-			for (final Format format : pluginService
-					.createInstancesOfType(Format.class))
-			{
-				addFormat(format);
+	/**
+	 * Checks the enabled formats concurrently. Content checks read independent
+	 * views of one shared cache of the dataset.
+	 *
+	 * @return The matching formats in priority order, as when checking
+	 *         sequentially.
+	 */
+	private List<Format> getFormatListParallel(final String id,
+		final SCIFIOConfig config, final Header header, final boolean greedy)
+		throws FormatException
+	{
+		final List<Format> candidates = new ArrayList<>();
+		for (final Format format : formats()) {
+			if (format.isEnabled()) candidates.add(format);
+		}
+		final int count = candidates.size();
+		Views views = null;
+		try {
+			views = new Views(id);
+		}
+		catch (final IOException exc) {
+			// NB: Let each checker open the dataset by itself.
+			logService.debug("Could not open " + id, exc);
+		}
+
+		// 0 = unchecked, 1 = match, 2 = no match
+		final AtomicIntegerArray results = new AtomicIntegerArray(count);
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger firstMatch = new AtomicInteger(count);
+		final Views v = views;
+		final Runnable worker = () -> {
+			// NB: Formats are claimed in priority order, so all formats before the
+			// first match are always checked.
+			int i;
+			while ((i = next.getAndIncrement()) < count) {
+				if (greedy && i > firstMatch.get()) return;
+				final boolean match = isFormat(candidates.get(i), id, config, header,
+					v);
+				results.set(i, match ? 1 : 2);
+				if (match) firstMatch.accumulateAndGet(i, Math::min);
 			}
+		};
 
-			initialized = true;
+		final int threads = Math.min(count, Runtime.getRuntime()
+			.availableProcessors());
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int t = 1; t < threads; t++) {
+			futures.add(threadService.run(worker));
+		}
+		worker.run();
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final InterruptedException exc) {
+				throw new FormatException(exc);
+			}
+			catch (final ExecutionException exc) {
+				final Throwable cause = exc.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw new FormatException(cause);
+			}
+		}
+
+		final List<Format> formatList = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			if (results.get(i) == 1) {
+				formatList.add(candidates.get(i));
+				if (greedy) break;
+			}
+		}
+		return formatList;
+	}
+
+	/**
+	 * Checks whether the given checker inherits
+	 * {@link AbstractChecker#isFormat(String, SCIFIOConfig)}, and thus only
+	 * reads the dataset via {@link Checker#isFormat(RandomAccessInputStream)}.
+	 */
+	private boolean isDefaultChecker(final Checker checker) {
+		return defaultCheckers.computeIfAbsent(checker.getClass(), c -> {
+			try {
+				return c.getMethod("isFormat", String.class, SCIFIOConfig.class)
+					.getDeclaringClass() == AbstractChecker.class;
+			}
+			catch (final NoSuchMethodException exc) {
+				return false;
+			}
 		});
 	}
 
-	// -- Private Methods --
+	/**
+	 * Opens the given id and matches its header against the signature index.
+	 *
+	 * @return The header, or null if the index cannot be used.
+	 */
+	private Header readHeader(final String id, final SCIFIOConfig config) {
+		if (!config.checkerIsOpen() || !config.checkerIsSignatureIndex()) {
+			return null;
+		}
+		final Signatures sigs = signatures();
+		if (sigs.index.size() == 0) return null;
+		RandomAccessInputStream stream = null;
+		try {
+			stream = new RandomAccessInputStream(getContext(), id);
+			return new Header(sigs, stream, sigs.match(stream));
+		}
+		catch (final IOException exc) {
+			logService.debug("Could not read header of " + id, exc);
+			if (stream != null) {
+				try {
+					stream.close();
+				}
+				catch (final IOException e) {
+					logService.debug("", e);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the formats that may match the given stream, or null if all formats
+	 * need to be checked.
+	 */
+	private Set<Format> candidates(final RandomAccessInputStream source,
+		final SCIFIOConfig config) throws FormatException
+	{
+		if (!config.checkerIsSignatureIndex()) return null;
+		final Signatures sigs = signatures();
+		if (sigs.index.size() == 0) return null;
+		try {
+			final Set<Format> candidates = new HashSet<>(formats());
+			candidates.removeAll(sigs.formats);
+			candidates.addAll(sigs.match(source));
+			return candidates;
+		}
+		catch (final IOException e) {
+			throw new FormatException(e);
+		}
+	}
+
+	/** Gets the signature index, building it if needed. */
+	private Signatures signatures() {
+		Signatures sigs = signatures;
+		if (sigs == null) {
+			final Set<Format> all = formats();
+			synchronized (all) {
+				sigs = signatures;
+				if (sigs == null) {
+					sigs = new Signatures(all);
+					signatures = sigs;
+				}
+			}
+		}
+		return sigs;
+	}
+
+	/** Instantiates all available Formats. */
+	private void loadFormats() {
+		threadLock.set(true);
+		try {
+			for (final PluginInfo<Format> info : formatInfos) {
+				synchronized (formats) {
+					loadFormat(info);
+				}
+			}
+		}
+		finally {
+			threadLock.set(false);
+			loaded.countDown();
+		}
+	}
+
+	/**
+	 * Instantiates and adds the given Format, unless it is already loaded. The
+	 * caller must hold the lock on {@link #formats}.
+	 */
+	private void loadFormat(final PluginInfo<Format> info) {
+		if (!loadedFormats.add(info.getClassName())) return;
+		final boolean bypass = threadLock.get();
+		threadLock.set(true);
+		try {
+			final Format format = pluginService.createInstance(info);
+			if (format != null) addFormat(format);
+		}
+		finally {
+			threadLock.set(bypass);
+		}
+	}
 
 	private Set<Format> formats() {
 		checkLock();
@@ -520,25 +814,120 @@ public class DefaultFormatService extends AbstractService implements
 	 * <ul>
 	 * <li>This thread is given permission to access data structures before
 	 * initialization</li>
-	 * <li>The FormatService is initialized</li>
+	 * <li>All Formats are loaded</li>
 	 * </ul>
-	 * If either is true, returns harmlessly. If not, this thread waits for the
-	 * initialization thread to complete.
+	 * If either is true, returns harmlessly. If not, this thread loads the
+	 * Formats, or waits for the thread already loading them to complete.
 	 */
 	private void checkLock() {
-		if (!(initialized || threadLock.get())) {
-			synchronized (this) {
-				// Double locked to avoid missing signals
-				while (!(initialized || threadLock.get())) {
-					try {
-						// Limit excessive polling
-						Thread.sleep(100);
-					}
-					catch (InterruptedException e) {
-						logService.error("DefaultFormatService: " +
-							"Interrupted while waiting for format initialization.", e);
-					}
+		if (loaded.getCount() == 0 || threadLock.get()) return;
+		if (loading.compareAndSet(false, true)) {
+			loadFormats();
+			return;
+		}
+		while (loaded.getCount() > 0) {
+			try {
+				loaded.await();
+			}
+			catch (final InterruptedException e) {
+				logService.error("DefaultFormatService: " +
+					"Interrupted while waiting for format initialization.", e);
+			}
+		}
+	}
+
+	// -- Helper classes --
+
+	/** The compiled signatures of all formats. */
+	private static final class Signatures {
+
+		/** Index of all signatures. */
+		private final SignatureIndex<Format> index = new SignatureIndex<>();
+
+		/** Formats whose signatures are all in the index. */
+		private final Set<Format> formats;
+
+		private Signatures(final Set<Format> allFormats) {
+			final Set<Format> indexed = new HashSet<>();
+			for (final Format format : allFormats) {
+				final Checker checker = format.createChecker();
+				if (!(checker instanceof HasSignatures)) continue;
+				final FormatSignature[] sigs = ((HasSignatures) checker)
+					.getSignatures();
+				boolean complete = true;
+				for (final FormatSignature sig : sigs) {
+					complete &= index.add(sig, format);
 				}
+				if (complete) indexed.add(format);
+			}
+			formats = Collections.unmodifiableSet(indexed);
+		}
+
+		/** Reads the header of the given stream, and finds matching formats. */
+		private Set<Format> match(final RandomAccessInputStream stream)
+			throws IOException
+		{
+			final byte[] header = new byte[(int) Math.min(index.getHeaderLength(),
+				stream.length())];
+			stream.seek(0);
+			stream.readFully(header);
+			stream.seek(0);
+			return index.match(header, header.length);
+		}
+	}
+
+	/** Independent read-only streams over one shared cache of a dataset. */
+	private final class Views {
+
+		private final BlockCache cache = new BlockCache(VIEW_CACHE_SIZE);
+
+		private final String id;
+
+		private final long length;
+
+		private Views(final String id) throws IOException {
+			this.id = id;
+			final IRandomAccess handle = locationService.getHandle(id);
+			try {
+				length = handle.length();
+			}
+			finally {
+				handle.close();
+			}
+		}
+
+		/** Opens a new stream, which reads missing blocks from its own handle. */
+		private RandomAccessInputStream open() throws IOException {
+			// NB: The cache is private to this detection, so the id identifies it.
+			return new RandomAccessInputStream(getContext(), new BlockCacheHandle(
+				cache, () -> locationService.getHandle(id), id, length, 0), id);
+		}
+	}
+
+	/** A dataset opened once, and shared by all checkers with signatures. */
+	private static final class Header implements AutoCloseable {
+
+		private final Signatures signatures;
+
+		private final RandomAccessInputStream stream;
+
+		private final Set<Format> matches;
+
+		private Header(final Signatures signatures,
+			final RandomAccessInputStream stream, final Set<Format> matches)
+		{
+			this.signatures = signatures;
+			this.stream = stream;
+			this.matches = matches;
+		}
+
+		@Override
+		public void close() {
+			try {
+				stream.close();
+			}
+			catch (final IOException e) {
+				// NB: Only the header was read.
 			}
 		}
 	}
@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import io.scif.io.IOStatistics;
+import io.scif.io.IRandomAccess;
+import io.scif.io.InstrumentedHandle;
+import io.scif.io.NIOFileHandle;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Default {@link IOStatisticsService} implementation.
+ *
+ * @see IOStatisticsService
+ */
+@Plugin(type = Service.class)
+public class DefaultIOStatisticsService extends AbstractService implements
+	IOStatisticsService
+{
+
+	// -- Fields --
+
+	private volatile boolean enabled;
+
+	private final ConcurrentHashMap<String, IOStatistics> statistics =
+		new ConcurrentHashMap<>();
+
+	// -- IOStatisticsService API methods --
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public IRandomAccess instrument(final String id,
+		final IRandomAccess handle)
+	{
+		if (!enabled || handle == null || handle instanceof InstrumentedHandle) {
+			return handle;
+		}
+		final IOStatistics stats = getStatistics(id);
+		if (handle instanceof NIOFileHandle) {
+			((NIOFileHandle) handle).setStatistics(stats);
+		}
+		return new InstrumentedHandle(handle, stats);
+	}
+
+	@Override
+	public IOStatistics getStatistics(final String id) {
+		return statistics.computeIfAbsent(id, IOStatistics::new);
+	}
+
+	@Override
+	public Map<String, IOStatistics> getAllStatistics() {
+		return Collections.unmodifiableMap(new TreeMap<>(statistics));
+	}
+
+	@Override
+	public void reset() {
+		statistics.clear();
+	}
+
+	@Override
+	public String toJSON() {
+		final StringBuilder sb = new StringBuilder("[");
+		for (final IOStatistics stats : getAllStatistics().values()) {
+			if (sb.length() > 1) sb.append(',');
+			sb.append(stats.toJSON());
+		}
+		return sb.append(']').toString();
+	}
+}
@@ -72,6 +72,9 @@ public class DefaultInitializeService extends AbstractService implements
 	@Parameter
 	private LocationService locationService;
 
+	@Parameter(required = false)
+	private MetadataCacheService metadataCacheService;
+
 	// -- InitializeService API Methods --
 
 	@Override
@@ -85,8 +88,12 @@ public class DefaultInitializeService extends AbstractService implements
 	public ReaderFilter initializeReader(final String id,
 		final SCIFIOConfig config) throws FormatException, IOException
 	{
-		final Reader r = formatService.getFormat(id, config).createReader();
+		final Format format = getFormat(id, config);
+		final Reader r = format.createReader();
+		final Metadata cached = getCachedMetadata(id, format, config);
+		if (cached != null) r.setMetadata(cached);
 		r.setSource(id, config);
+		if (cached == null) putCachedMetadata(id, r.getMetadata(), config);
 		return new ReaderFilter(r);
 	}
 
@@ -161,12 +168,46 @@ public class DefaultInitializeService extends AbstractService implements
 	public Metadata parseMetadata(final String id, final SCIFIOConfig config)
 		throws FormatException, IOException
 	{
-		final Format format = formatService.getFormat(id, config);
-		return format.createParser().parse(id, config);
+		final Format format = getFormat(id, config);
+		final Metadata cached = getCachedMetadata(id, format, config);
+		if (cached != null) return cached;
+		final Metadata meta = format.createParser().parse(id, config);
+		putCachedMetadata(id, meta, config);
+		return meta;
 	}
 
 	// -- Helper Methods --
 
+	/** Gets the format of the given dataset, from the cache if possible. */
+	private Format getFormat(final String id, final SCIFIOConfig config)
+		throws FormatException
+	{
+		if (!cacheEnabled()) return formatService.getFormat(id, config);
+		Format format = metadataCacheService.getFormat(id);
+		if (format == null) {
+			format = formatService.getFormat(id, config);
+			metadataCacheService.putFormat(id, format);
+		}
+		return format;
+	}
+
+	private Metadata getCachedMetadata(final String id, final Format format,
+		final SCIFIOConfig config)
+	{
+		if (!cacheEnabled()) return null;
+		return metadataCacheService.getMetadata(id, format, config);
+	}
+
+	private void putCachedMetadata(final String id, final Metadata meta,
+		final SCIFIOConfig config)
+	{
+		if (cacheEnabled()) metadataCacheService.putMetadata(id, meta, config);
+	}
+
+	private boolean cacheEnabled() {
+		return metadataCacheService != null && metadataCacheService.isEnabled();
+	}
+
 	/*
 	 * Hide the suppress warnings in an atomic cast method <p> NB: endType
 	 * parameter is just there to guarantee a return type </p>
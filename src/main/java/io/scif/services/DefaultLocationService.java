@@ -29,12 +29,17 @@
 
 package io.scif.services;
 
+import io.scif.io.BlockCache;
+import io.scif.io.BlockCacheHandle;
+import io.scif.io.FileMetadataCache;
+import io.scif.io.IOStatistics;
 import io.scif.io.IRandomAccess;
 import io.scif.io.IStreamAccess;
 import io.scif.io.NIOFileHandle;
 import io.scif.io.NIOService;
 import io.scif.io.VirtualHandle;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -48,6 +53,7 @@ import org.scijava.plugin.PluginInfo;
 import org.scijava.plugin.PluginService;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 /**
  * Default {@link io.scif.services.LocationService} implementation
@@ -71,6 +77,12 @@ public class DefaultLocationService extends AbstractService implements
 	@Parameter
 	private PluginService pluginService;
 
+	@Parameter(required = false)
+	private IOStatisticsService ioStatisticsService;
+
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	/** Map from given filenames to actual filenames. */
 	private HashMap<String, Object> idMap = new HashMap<>();
 
@@ -94,28 +106,53 @@ public class DefaultLocationService extends AbstractService implements
 	private ConcurrentHashMap<String, ListingsResult> fileListings =
 		new ConcurrentHashMap<>();
 
+	/** Block cache shared by read-only file handles, or null if disabled. */
+	private volatile BlockCache blockCache;
+
+	/** File metadata cache, or null if listings are not cached. */
+	private volatile FileMetadataCache metadataCache;
+
 	// -- Location API methods --
 
 	@Override
 	public void reset() {
 		cacheNanos = 60L * 60L * 1000L * 1000L * 1000L;
 		fileListings.clear();
+		final FileMetadataCache metadata = metadataCache;
+		if (metadata != null) {
+			metadata.clear();
+			metadata.setTimeout(cacheNanos);
+		}
 		getIdMap().clear();
+		final BlockCache cache = blockCache;
+		if (cache != null) cache.clear();
 	}
 
 	@Override
-	public void cacheDirectoryListings(final boolean cache) {
+	public synchronized void cacheDirectoryListings(final boolean cache) {
 		cacheListings = cache;
+		if (cache && metadataCache == null) {
+			metadataCache = new FileMetadataCache(threadService, cacheNanos,
+				FileMetadataCache.DEFAULT_MAX_ENTRIES);
+		}
+		else if (!cache && metadataCache != null) {
+			metadataCache.close();
+			metadataCache = null;
+		}
 	}
 
 	@Override
 	public void setCacheDirectoryTimeout(final double sec) {
 		cacheNanos = (long) (sec * 1000. * 1000. * 1000.);
+		final FileMetadataCache metadata = metadataCache;
+		if (metadata != null) metadata.setTimeout(cacheNanos);
 	}
 
 	@Override
 	public void clearDirectoryListingsCache() {
 		fileListings = new ConcurrentHashMap<>();
+		final FileMetadataCache metadata = metadataCache;
+		if (metadata != null) metadata.clear();
 	}
 
 	@Override
@@ -132,6 +169,23 @@ public class DefaultLocationService extends AbstractService implements
 		}
 	}
 
+	@Override
+	public synchronized void setBlockCacheSize(final long bytes) {
+		if (bytes <= 0) blockCache = null;
+		else if (blockCache == null) blockCache = new BlockCache(bytes);
+		else blockCache.setBudget(bytes);
+	}
+
+	@Override
+	public BlockCache getBlockCache() {
+		return blockCache;
+	}
+
+	@Override
+	public FileMetadataCache getFileMetadataCache() {
+		return metadataCache;
+	}
+
 	@Override
 	public void mapId(final String id, final String filename) {
 		if (id == null) return;
@@ -216,6 +270,21 @@ public class DefaultLocationService extends AbstractService implements
 			}
 
 			try {
+				final BlockCache cache = blockCache;
+				final File file = new File(mapId);
+				if (handle == null && cache != null && !writable && file.isFile()) {
+					// NB: The file is only opened on a cache miss. Its block refills are
+					// recorded against the location, if the handle is instrumented.
+					final IOStatistics stats = ioStatisticsService != null &&
+						ioStatisticsService.isEnabled() ? ioStatisticsService
+							.getStatistics(id) : null;
+					handle = new BlockCacheHandle(cache, () -> {
+						final NIOFileHandle opened = new NIOFileHandle(nioService, file,
+							"r", cache.getBlockSize());
+						opened.setStatistics(stats);
+						return opened;
+					}, file.getCanonicalPath(), file.length(), file.lastModified());
+				}
 				if (handle == null) handle =
 					new NIOFileHandle(nioService, mapId, writable ? "rw" : "r");
 			}
@@ -233,6 +302,9 @@ public class DefaultLocationService extends AbstractService implements
 				return new VirtualHandle(mapId);
 			}
 		}
+		if (ioStatisticsService != null) {
+			handle = ioStatisticsService.instrument(id, handle);
+		}
 		log.trace("Location.getHandle: " + id + " -> " + handle);
 		return handle;
 	}
@@ -253,20 +325,32 @@ public class DefaultLocationService extends AbstractService implements
 		getHandle(id).close();
 	}
 
+	@Deprecated
 	@Override
 	public String[] getCachedListing(final String key) {
-		ListingsResult listingsResult = null;
-		if (cacheListings) {
-			cleanStaleCacheEntries();
-			listingsResult = fileListings.get(key);
+		if (!cacheListings) return null;
+		final ListingsResult listingsResult = fileListings.get(key);
+		if (listingsResult == null) return null;
+		if (listingsResult.time < System.nanoTime() - cacheNanos) {
+			fileListings.remove(key, listingsResult);
+			return null;
 		}
-		return listingsResult == null ? null : listingsResult.listing;
+		return listingsResult.listing;
 	}
 
+	@Deprecated
 	@Override
 	public void putCachedListing(final String key, final String[] listing) {
 		if (cacheListings) {
 			fileListings.put(key, new ListingsResult(listing, System.nanoTime()));
 		}
 	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		final FileMetadataCache metadata = metadataCache;
+		if (metadata != null) metadata.close();
+	}
 }
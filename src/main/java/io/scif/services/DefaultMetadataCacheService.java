@@ -0,0 +1,575 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import io.scif.CacheableMetadata;
+import io.scif.Format;
+import io.scif.FormatException;
+import io.scif.ImageMetadata;
+import io.scif.MetaTable;
+import io.scif.Metadata;
+import io.scif.config.SCIFIOConfig;
+import io.scif.io.RandomAccessInputStream;
+import io.scif.util.FormatTools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.axis.CalibratedAxis;
+import net.imagej.axis.LinearAxis;
+
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Default {@link MetadataCacheService} implementation. Each dataset has one
+ * entry file in the cache directory, named after a hash of its path, which is
+ * replaced atomically when updated.
+ *
+ * @see MetadataCacheService
+ */
+@Plugin(type = Service.class)
+public class DefaultMetadataCacheService extends AbstractService implements
+	MetadataCacheService
+{
+
+	// -- Constants --
+
+	private static final int MAGIC = 0x53434d43; // SCMC
+
+	private static final int VERSION = 2;
+
+	private static final String SUFFIX = ".entry";
+
+	// Table value types
+	private static final int STRING = 0, BOOLEAN = 1, BYTE = 2, SHORT = 3,
+			INT = 4, LONG = 5, FLOAT = 6, DOUBLE = 7;
+
+	// -- Parameters --
+
+	@Parameter
+	private FormatService formatService;
+
+	@Parameter
+	private LocationService locationService;
+
+	@Parameter
+	private LogService log;
+
+	// -- Fields --
+
+	private volatile File directory;
+
+	// -- MetadataCacheService API methods --
+
+	@Override
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	@Override
+	public void setCacheDirectory(final File directory) {
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			log.warn("Could not create metadata cache directory: " + directory);
+			this.directory = null;
+			return;
+		}
+		this.directory = directory;
+	}
+
+	@Override
+	public File getCacheDirectory() {
+		return directory;
+	}
+
+	@Override
+	public Format getFormat(final String id) {
+		final Entry entry = read(id);
+		return entry == null ? null : format(entry.formatClass);
+	}
+
+	@Override
+	public void putFormat(final String id, final Format format) {
+		final File file = file(id);
+		if (file == null) return;
+		final Entry entry = read(id);
+		if (entry != null && entry.formatClass.equals(format.getClass()
+			.getName()))
+		{
+			// NB: Keep the cached metadata, if any.
+			return;
+		}
+		write(file, new Entry(file, format.getClass().getName(), null, null));
+	}
+
+	@Override
+	public Metadata getMetadata(final String id, final Format format,
+		final SCIFIOConfig config)
+	{
+		final Entry entry = read(id);
+		if (entry == null || entry.metadata == null || !entry.formatClass.equals(
+			format.getClass().getName()) || !entry.config.equals(key(config)))
+		{
+			return null;
+		}
+		RandomAccessInputStream stream = null;
+		try {
+			final Metadata meta = format.createMetadata();
+			if (!(meta instanceof CacheableMetadata)) return null;
+			final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(entry.metadata));
+			readImageMetadata(in, meta);
+			stream = new RandomAccessInputStream(getContext(), id);
+			meta.setSource(stream);
+			((CacheableMetadata) meta).readCache(in);
+			return meta;
+		}
+		catch (final IOException | FormatException | RuntimeException e) {
+			log.debug("Discarding metadata cache entry of " + id, e);
+			invalidate(id);
+			if (stream != null) {
+				try {
+					stream.close();
+				}
+				catch (final IOException exc) {
+					log.debug("", exc);
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public void putMetadata(final String id, final Metadata meta,
+		final SCIFIOConfig config)
+	{
+		if (!(meta instanceof CacheableMetadata) ||
+			!((CacheableMetadata) meta).isCacheable())
+		{
+			return;
+		}
+		final File file = file(id);
+		if (file == null) return;
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			writeImageMetadata(out, meta);
+			((CacheableMetadata) meta).writeCache(out);
+			out.flush();
+			write(file, new Entry(file, meta.getFormat().getClass().getName(), key(
+				config), bytes.toByteArray()));
+		}
+		catch (final IOException e) {
+			log.debug("Could not cache metadata of " + id, e);
+		}
+	}
+
+	@Override
+	public void invalidate(final String id) {
+		final File entryFile = entryFile(id);
+		if (entryFile != null) entryFile.delete();
+	}
+
+	@Override
+	public void clear() {
+		final File dir = directory;
+		if (dir == null) return;
+		final File[] entries = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (entries == null) return;
+		for (final File entry : entries) {
+			entry.delete();
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the file behind the given id, or null if it cannot be cached. */
+	private File file(final String id) {
+		if (directory == null) return null;
+		final String path = locationService.getMappedId(id);
+		if (path == null) return null;
+		final File file = new File(path);
+		return file.isFile() ? file.getAbsoluteFile() : null;
+	}
+
+	/** Gets the entry file of the given id, or null if the cache is off. */
+	private File entryFile(final String id) {
+		final File dir = directory;
+		final File file = file(id);
+		if (dir == null || file == null) return null;
+		try {
+			final byte[] hash = MessageDigest.getInstance("SHA-1").digest(file
+				.getPath().getBytes(StandardCharsets.UTF_8));
+			final StringBuilder sb = new StringBuilder();
+			for (final byte b : hash) {
+				sb.append(String.format("%02x", b & 0xff));
+			}
+			return new File(dir, sb.append(SUFFIX).toString());
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the entry of the given id, discarding it if its file has changed.
+	 *
+	 * @return The entry, or null if there is no valid entry.
+	 */
+	private Entry read(final String id) {
+		final File file = file(id);
+		final File entryFile = entryFile(id);
+		if (file == null || entryFile == null || !entryFile.exists()) return null;
+		try (final DataInputStream in = new DataInputStream(
+			new ByteArrayInputStream(Files.readAllBytes(entryFile.toPath()))))
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				entryFile.delete();
+				return null;
+			}
+			final String path = readString(in);
+			final long length = in.readLong();
+			final long lastModified = in.readLong();
+			if (!path.equals(file.getPath()) || length != file.length() ||
+				lastModified != file.lastModified())
+			{
+				// NB: The file has changed since it was cached.
+				entryFile.delete();
+				return null;
+			}
+			final String formatClass = readString(in);
+			if (!in.readBoolean()) {
+				return new Entry(path, length, lastModified, formatClass, null, null);
+			}
+			final String config = readString(in);
+			final byte[] metadata = new byte[in.readInt()];
+			in.readFully(metadata);
+			return new Entry(path, length, lastModified, formatClass, config,
+				metadata);
+		}
+		catch (final IOException e) {
+			log.debug("Could not read metadata cache entry of " + id, e);
+			return null;
+		}
+	}
+
+	/** Replaces the entry file of the given entry. */
+	private void write(final File file, final Entry entry) {
+		final File entryFile = entryFile(file.getPath());
+		if (entryFile == null) return;
+		File tmp = null;
+		try {
+			tmp = File.createTempFile("entry", ".tmp", entryFile.getParentFile());
+			try (final DataOutputStream out = new DataOutputStream(Files
+				.newOutputStream(tmp.toPath())))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeString(out, entry.path);
+				out.writeLong(entry.length);
+				out.writeLong(entry.lastModified);
+				writeString(out, entry.formatClass);
+				out.writeBoolean(entry.metadata != null);
+				if (entry.metadata != null) {
+					writeString(out, entry.config);
+					out.writeInt(entry.metadata.length);
+					out.write(entry.metadata);
+				}
+			}
+			try {
+				Files.move(tmp.toPath(), entryFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (final AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), entryFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (final IOException e) {
+			log.debug("Could not write metadata cache entry of " + file, e);
+			if (tmp != null) tmp.delete();
+		}
+	}
+
+	/** Finds the format with the given class name. */
+	private Format format(final String className) {
+		for (final Format format : formatService.getAllFormats()) {
+			if (format.getClass().getName().equals(className)) return format;
+		}
+		return null;
+	}
+
+	/** Gets the parts of the configuration that affect parsing. */
+	private String key(final SCIFIOConfig config) {
+		return config.parserGetLevel() + "/" + config.parserIsFiltered() + "/" +
+			config.parserIsSaveOriginalMetadata() + "/" + config
+				.parserGetResolutionScale() + "/" + config.groupableIsGroupFiles();
+	}
+
+	private void writeImageMetadata(final DataOutput out, final Metadata meta)
+		throws IOException
+	{
+		out.writeBoolean(meta.isFiltered());
+		writeTable(out, meta.getTable());
+		out.writeInt(meta.getImageCount());
+		for (final ImageMetadata image : meta.getAll()) {
+			out.writeBoolean(image.getName() != null);
+			if (image.getName() != null) writeString(out, image.getName());
+			final List<CalibratedAxis> axes = image.getAxes();
+			out.writeInt(axes.size());
+			for (final CalibratedAxis axis : axes) {
+				writeString(out, axis.type().getLabel());
+				out.writeBoolean(axis.type().isSpatial());
+				out.writeBoolean(axis.unit() != null);
+				if (axis.unit() != null) writeString(out, axis.unit());
+				final boolean linear = axis instanceof LinearAxis;
+				out.writeDouble(linear ? ((LinearAxis) axis).scale() : 1);
+				out.writeDouble(linear ? ((LinearAxis) axis).origin() : 0);
+				out.writeLong(image.getAxisLength(axis));
+			}
+			out.writeInt(image.getPlanarAxisCount());
+			out.writeInt(image.getInterleavedAxisCount());
+			out.writeInt(image.getPixelType());
+			out.writeInt(image.getBitsPerPixel());
+			out.writeBoolean(image.isOrderCertain());
+			out.writeBoolean(image.isLittleEndian());
+			out.writeBoolean(image.isIndexed());
+			out.writeBoolean(image.isFalseColor());
+			out.writeBoolean(image.isMetadataComplete());
+			out.writeBoolean(image.isThumbnail());
+			out.writeLong(image.getThumbSizeX());
+			out.writeLong(image.getThumbSizeY());
+			writeTable(out, image.getTable());
+		}
+	}
+
+	private void readImageMetadata(final DataInput in, final Metadata meta)
+		throws IOException
+	{
+		meta.setFiltered(in.readBoolean());
+		readTable(in, meta.getTable());
+		final int imageCount = in.readInt();
+		meta.createImageMetadata(imageCount);
+		for (int i = 0; i < imageCount; i++) {
+			final ImageMetadata image = meta.get(i);
+			if (in.readBoolean()) image.setName(readString(in));
+			final CalibratedAxis[] axes = new CalibratedAxis[in.readInt()];
+			final long[] lengths = new long[axes.length];
+			for (int a = 0; a < axes.length; a++) {
+				final AxisType type = Axes.get(readString(in), in.readBoolean());
+				final String unit = in.readBoolean() ? readString(in) : null;
+				axes[a] = FormatTools.createAxis(type);
+				FormatTools.calibrate(axes[a], in.readDouble(), in.readDouble(), unit);
+				lengths[a] = in.readLong();
+			}
+			image.setAxes(axes, lengths);
+			image.setPlanarAxisCount(in.readInt());
+			image.setInterleavedAxisCount(in.readInt());
+			image.setPixelType(in.readInt());
+			image.setBitsPerPixel(in.readInt());
+			image.setOrderCertain(in.readBoolean());
+			image.setLittleEndian(in.readBoolean());
+			image.setIndexed(in.readBoolean());
+			image.setFalseColor(in.readBoolean());
+			image.setMetadataComplete(in.readBoolean());
+			image.setThumbnail(in.readBoolean());
+			image.setThumbSizeX(in.readLong());
+			image.setThumbSizeY(in.readLong());
+			readTable(in, image.getTable());
+		}
+	}
+
+	/** Writes the scalar entries of the given table; other entries are lost. */
+	private void writeTable(final DataOutput out, final MetaTable table)
+		throws IOException
+	{
+		int count = 0;
+		for (final Object value : table.values()) {
+			if (type(value) >= 0) count++;
+		}
+		out.writeInt(count);
+		for (final Map.Entry<String, Object> entry : table.entrySet()) {
+			final Object value = entry.getValue();
+			final int type = type(value);
+			if (type < 0) continue;
+			writeString(out, entry.getKey());
+			out.writeByte(type);
+			switch (type) {
+				case STRING:
+					writeString(out, (String) value);
+					break;
+				case BOOLEAN:
+					out.writeBoolean((Boolean) value);
+					break;
+				case BYTE:
+					out.writeByte((Byte) value);
+					break;
+				case SHORT:
+					out.writeShort((Short) value);
+					break;
+				case INT:
+					out.writeInt((Integer) value);
+					break;
+				case LONG:
+					out.writeLong((Long) value);
+					break;
+				case FLOAT:
+					out.writeFloat((Float) value);
+					break;
+				default:
+					out.writeDouble((Double) value);
+			}
+		}
+	}
+
+	private void readTable(final DataInput in, final MetaTable table)
+		throws IOException
+	{
+		final int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			final String key = readString(in);
+			final Object value;
+			switch (in.readByte()) {
+				case STRING:
+					value = readString(in);
+					break;
+				case BOOLEAN:
+					value = in.readBoolean();
+					break;
+				case BYTE:
+					value = in.readByte();
+					break;
+				case SHORT:
+					value = in.readShort();
+					break;
+				case INT:
+					value = in.readInt();
+					break;
+				case LONG:
+					value = in.readLong();
+					break;
+				case FLOAT:
+					value = in.readFloat();
+					break;
+				case DOUBLE:
+					value = in.readDouble();
+					break;
+				default:
+					throw new IOException("Invalid table entry: " + key);
+			}
+			table.put(key, value);
+		}
+	}
+
+	/** Gets the type code of the given table value, or -1 if unsupported. */
+	private int type(final Object value) {
+		if (value instanceof String) return STRING;
+		if (value instanceof Boolean) return BOOLEAN;
+		if (value instanceof Byte) return BYTE;
+		if (value instanceof Short) return SHORT;
+		if (value instanceof Integer) return INT;
+		if (value instanceof Long) return LONG;
+		if (value instanceof Float) return FLOAT;
+		if (value instanceof Double) return DOUBLE;
+		return -1;
+	}
+
+	/** Writes a string of any length. */
+	private static void writeString(final DataOutput out, final String s)
+		throws IOException
+	{
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// -- Helper classes --
+
+	/** The contents of an entry file. */
+	private static final class Entry {
+
+		private final String path;
+
+		private final long length;
+
+		private final long lastModified;
+
+		private final String formatClass;
+
+		private final String config;
+
+		private final byte[] metadata;
+
+		private Entry(final File file, final String formatClass,
+			final String config, final byte[] metadata)
+		{
+			this(file.getPath(), file.length(), file.lastModified(), formatClass,
+				config, metadata);
+		}
+
+		private Entry(final String path, final long length,
+			final long lastModified, final String formatClass, final String config,
+			final byte[] metadata)
+		{
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.formatClass = formatClass;
+			this.config = config;
+			this.metadata = metadata;
+		}
+	}
+}
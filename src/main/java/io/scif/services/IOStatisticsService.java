@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import io.scif.SCIFIOService;
+import io.scif.io.IOStatistics;
+import io.scif.io.IRandomAccess;
+
+import java.util.Map;
+
+/**
+ * Collects opt-in I/O counters for the handles opened through the
+ * {@link LocationService}, aggregated per location. Instrumentation is turned
+ * off by default; while off, handles are not wrapped at all and so carry no
+ * overhead.
+ *
+ * @see IOStatistics
+ * @see io.scif.io.InstrumentedHandle
+ */
+public interface IOStatisticsService extends SCIFIOService {
+
+	/** Returns true if newly opened handles are instrumented. */
+	boolean isEnabled();
+
+	/**
+	 * Turns instrumentation of newly opened handles on or off. Handles which
+	 * are already open are not affected.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Wraps the given handle so that its I/O is recorded against the given
+	 * location. If instrumentation is off, the handle is returned unchanged.
+	 *
+	 * @param id The location the handle was opened for.
+	 * @param handle The handle to instrument.
+	 * @return The instrumented handle.
+	 */
+	IRandomAccess instrument(String id, IRandomAccess handle);
+
+	/**
+	 * Gets the counters of the given location, creating them if needed.
+	 */
+	IOStatistics getStatistics(String id);
+
+	/** Gets the counters of all locations recorded so far. */
+	Map<String, IOStatistics> getAllStatistics();
+
+	/** Discards the counters of all locations. */
+	void reset();
+
+	/** Gets the counters of all locations as a JSON array. */
+	String toJSON();
+}
@@ -30,6 +30,8 @@
 package io.scif.services;
 
 import io.scif.SCIFIOService;
+import io.scif.io.BlockCache;
+import io.scif.io.FileMetadataCache;
 import io.scif.io.IRandomAccess;
 import io.scif.io.VirtualHandle;
 
@@ -86,6 +88,38 @@ public interface LocationService extends SCIFIOService {
 	 */
 	void cleanStaleCacheEntries();
 
+	/**
+	 * Sets the size of the block cache shared by all read-only file handles
+	 * created by this service. When enabled, the blocks read through these
+	 * handles are kept in memory, so repeatedly opening the same file (e.g., to
+	 * read its header during format detection, or once per plane) does not hit
+	 * the file system again. Cached blocks are validated against the file's
+	 * length and modification time. The block cache is disabled by default.
+	 *
+	 * @param bytes - maximum number of bytes to cache, or 0 to disable the
+	 *          cache.
+	 */
+	void setBlockCacheSize(long bytes);
+
+	/**
+	 * Gets the block cache shared by read-only file handles, or null if it is
+	 * disabled.
+	 *
+	 * @see #setBlockCacheSize(long)
+	 */
+	BlockCache getBlockCache();
+
+	/**
+	 * Gets the cache of file attributes and directory listings consulted by
+	 * {@link io.scif.io.Location}, or null if directory listings are not cached.
+	 * Entries expire after the directory cache timeout, and are invalidated
+	 * earlier when the file system reports changes to their directory.
+	 *
+	 * @see #cacheDirectoryListings(boolean)
+	 * @see #setCacheDirectoryTimeout(double)
+	 */
+	FileMetadataCache getFileMetadataCache();
+
 	/**
 	 * Maps the given id to an actual filename on disk. Typically actual filenames
 	 * are used for ids, making this step unnecessary, but in some cases it is
@@ -168,11 +202,20 @@ public interface LocationService extends SCIFIOService {
 
 	/**
 	 * Returns the set of listings for the provided key.
+	 *
+	 * @deprecated {@link io.scif.io.Location#list} no longer uses these
+	 *             listings; directory listings are cached by the
+	 *             {@link #getFileMetadataCache() file metadata cache}, which is
+	 *             invalidated when the directory changes.
 	 */
+	@Deprecated
 	String[] getCachedListing(String key);
 
 	/**
 	 * Maps the set of listings to the provided key.
+	 *
+	 * @deprecated See {@link #getCachedListing(String)}.
 	 */
+	@Deprecated
 	void putCachedListing(String key, String[] listing);
 }
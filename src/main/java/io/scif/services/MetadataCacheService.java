@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import io.scif.Format;
+import io.scif.Metadata;
+import io.scif.SCIFIOService;
+import io.scif.config.SCIFIOConfig;
+
+import java.io.File;
+
+/**
+ * Opt-in persistent cache of detected formats and parsed metadata, for
+ * workflows which open the same files again and again across runs. Entries
+ * are stored in a directory on disk and keyed by the path, length and
+ * modification time of each file, so changing a file invalidates its entry.
+ * <p>
+ * Formats are cached for every file. Metadata is only cached if it implements
+ * {@link io.scif.CacheableMetadata}. The cache is disabled until a cache
+ * directory is set.
+ * </p>
+ */
+public interface MetadataCacheService extends SCIFIOService {
+
+	/** Returns true if a cache directory is set. */
+	boolean isEnabled();
+
+	/**
+	 * Sets the directory in which cache entries are stored, creating it if
+	 * needed.
+	 *
+	 * @param directory The cache directory, or null to disable the cache.
+	 */
+	void setCacheDirectory(File directory);
+
+	/** Gets the directory in which cache entries are stored, or null. */
+	File getCacheDirectory();
+
+	/**
+	 * Gets the cached format of the given dataset.
+	 *
+	 * @return The format, or null if there is no valid entry.
+	 */
+	Format getFormat(String id);
+
+	/** Records the format of the given dataset. */
+	void putFormat(String id, Format format);
+
+	/**
+	 * Restores the cached metadata of the given dataset, opening its source.
+	 *
+	 * @param id The dataset.
+	 * @param format The format of the dataset.
+	 * @param config The configuration the metadata would be parsed with.
+	 * @return The metadata, or null if there is no valid entry for the given
+	 *         format and configuration.
+	 */
+	Metadata getMetadata(String id, Format format, SCIFIOConfig config);
+
+	/**
+	 * Records the metadata of the given dataset, as parsed with the given
+	 * configuration. Does nothing if the metadata is not cacheable.
+	 */
+	void putMetadata(String id, Metadata meta, SCIFIOConfig config);
+
+	/** Discards the entry of the given dataset. */
+	void invalidate(String id);
+
+	/** Discards all entries. */
+	void clear();
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.util;
+
+import io.scif.FormatSignature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compiled index of {@link FormatSignature}s, which finds all values whose
+ * signatures match a header in a single pass per distinct signature offset.
+ * Signatures at the same offset share a trie, so patterns with a common
+ * prefix (e.g., the TIFF byte orders) are compared only once.
+ *
+ * @param <T> Type of the values associated with the signatures.
+ */
+public class SignatureIndex<T> {
+
+	// -- Constants --
+
+	/** Largest header length the index will ask for. */
+	public static final int MAX_HEADER_LENGTH = 64 * 1024;
+
+	// -- Fields --
+
+	/** Root trie node for each signature offset. */
+	private final TreeMap<Integer, Node<T>> roots = new TreeMap<>();
+
+	private int headerLength;
+
+	private int size;
+
+	// -- SignatureIndex methods --
+
+	/**
+	 * Adds a signature to the index.
+	 *
+	 * @return false if the signature lies beyond {@link #MAX_HEADER_LENGTH},
+	 *         and was not indexed.
+	 */
+	public boolean add(final FormatSignature signature, final T value) {
+		final int end = signature.getOffset() + signature.getLength();
+		if (end > MAX_HEADER_LENGTH) return false;
+		Node<T> node = roots.get(signature.getOffset());
+		if (node == null) {
+			node = new Node<>();
+			roots.put(signature.getOffset(), node);
+		}
+		for (int i = 0; i < signature.getLength(); i++) {
+			node = node.child(signature.get(i), true);
+		}
+		if (!node.values.contains(value)) node.values.add(value);
+		headerLength = Math.max(headerLength, end);
+		size++;
+		return true;
+	}
+
+	/** Gets the number of signatures in the index. */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of leading bytes of a dataset needed to match every
+	 * indexed signature.
+	 */
+	public int getHeaderLength() {
+		return headerLength;
+	}
+
+	/**
+	 * Finds the values with at least one signature matching the given header.
+	 *
+	 * @param header The first bytes of the dataset.
+	 * @param length Number of valid bytes in the header; signatures extending
+	 *          beyond it do not match.
+	 * @return The matching values, in the order their signatures were added.
+	 */
+	public Set<T> match(final byte[] header, final int length) {
+		final Set<T> matches = new LinkedHashSet<>();
+		for (final Map.Entry<Integer, Node<T>> root : roots.headMap(length)
+			.entrySet())
+		{
+			Node<T> node = root.getValue();
+			for (int i = root.getKey(); i < length && node != null; i++) {
+				node = node.child(header[i], false);
+				if (node != null) matches.addAll(node.values);
+			}
+		}
+		return matches;
+	}
+
+	// -- Helper classes --
+
+	/** A trie node, with children stored sparsely in sorted arrays. */
+	private static class Node<T> {
+
+		private byte[] keys = new byte[0];
+
+		private Node<T>[] children = newArray(0);
+
+		private final List<T> values = new ArrayList<>(1);
+
+		private Node<T> child(final byte key, final boolean create) {
+			final int index = Arrays.binarySearch(keys, key);
+			if (index >= 0) return children[index];
+			if (!create) return null;
+			final int insert = -index - 1;
+			final byte[] newKeys = new byte[keys.length + 1];
+			final Node<T>[] newChildren = newArray(keys.length + 1);
+			System.arraycopy(keys, 0, newKeys, 0, insert);
+			System.arraycopy(children, 0, newChildren, 0, insert);
+			System.arraycopy(keys, insert, newKeys, insert + 1, keys.length -
+				insert);
+			System.arraycopy(children, insert, newChildren, insert + 1,
+				keys.length - insert);
+			newKeys[insert] = key;
+			newChildren[insert] = new Node<>();
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[insert];
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private static <T> Node<T>[] newArray(final int length) {
+			return new Node[length];
+		}
+	}
+}
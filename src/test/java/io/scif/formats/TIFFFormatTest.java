@@ -31,14 +31,22 @@ package io.scif.formats;
 
 import static org.junit.Assert.*;
 
+import io.scif.SCIFIO;
+import io.scif.config.SCIFIOConfig;
+import io.scif.filters.ReaderFilter;
+import io.scif.formats.tiff.IFD;
+import io.scif.formats.tiff.TiffSaver;
 import io.scif.img.IO;
+import io.scif.util.FormatTools;
 
+import java.io.File;
 import java.net.URL;
 
 import net.imagej.ImgPlus;
 import net.imagej.axis.Axes;
 
 import org.junit.Test;
+import org.scijava.log.LogService;
 
 /**
  * Tests reading of TIFF files without (dimensional) metainformation.
@@ -63,4 +71,62 @@ public class TIFFFormatTest {
 		assertEquals(Axes.UNKNOWN_LABEL, img.axis(2).type().getLabel());
 	}
 
+	/**
+	 * Tests that the levels of a pyramid are read as resolution levels of a
+	 * single image, and that a requested scale selects the coarsest level which
+	 * satisfies it.
+	 */
+	@Test
+	public void testPyramid() throws Exception {
+		final SCIFIO scifio = new SCIFIO();
+		final File file = File.createTempFile("TIFFFormatTest", ".tif");
+		try {
+			final int width = 128, height = 96;
+			final byte[] image = new byte[width * height];
+			for (int i = 0; i < image.length; i++) {
+				image[i] = (byte) (i % width + i / width);
+			}
+			final IFD ifd = new IFD(scifio.getContext().getService(LogService.class));
+			ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+			ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) width);
+			ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) height);
+			ifd.putIFDValue(IFD.TILE_WIDTH, 32L);
+			ifd.putIFDValue(IFD.TILE_LENGTH, 32L);
+			final TiffSaver saver =
+				new TiffSaver(scifio.getContext(), file.getAbsolutePath());
+			saver.setLittleEndian(true);
+			saver.writeHeader();
+			saver.writePyramid(image, ifd, FormatTools.UINT8, 3, true);
+			saver.getStream().close();
+
+			final SCIFIOConfig config =
+				new SCIFIOConfig().parserSetResolutionScale(0.25);
+			final ReaderFilter filter =
+				scifio.initializer().initializeReader(file.getAbsolutePath(), config);
+			final MinimalTIFFFormat.Reader<?> reader =
+				(MinimalTIFFFormat.Reader<?>) filter.getTail();
+			final MinimalTIFFFormat.Metadata meta = reader.getMetadata();
+			assertEquals(4, meta.getResolutionCount(0));
+			assertEquals(2, meta.getResolution(0));
+			assertArrayEquals(new long[] { 32, 24 }, meta.getResolutionLengths(0,
+				2));
+			assertEquals(32, meta.get(0).getAxisLength(Axes.X));
+			assertEquals(24, meta.get(0).getAxisLength(Axes.Y));
+
+			assertArrayEquals(reader.openPlane(0, 0).getBytes(), reader.openPlane(0,
+				0, 2, new long[2], new long[] { 32, 24 }, config).getBytes());
+			assertArrayEquals(image, reader.openPlane(0, 0, 0, new long[2],
+				new long[] { width, height }, config).getBytes());
+			reader.close();
+
+			final ImgPlus<?> img = IO.openImgs(file.getAbsolutePath(), config).get(0);
+			assertEquals(32, img.dimension(0));
+			assertEquals(24, img.dimension(1));
+		}
+		finally {
+			file.delete();
+			scifio.getContext().dispose();
+		}
+	}
+
 }
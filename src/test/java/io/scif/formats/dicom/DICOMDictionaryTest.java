@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.dicom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DICOMDictionary}.
+ */
+public class DICOMDictionaryTest {
+
+	private final DICOMDictionary dict = new DICOMDictionary();
+
+	@Test
+	public void testLookup() {
+		assertTrue(dict.has(0x00020000));
+		assertEquals("File Meta Information Group Length", dict.name(0x00020000));
+		assertEquals("UL", dict.vr(0x00020000));
+
+		assertEquals("Rows", dict.name(0x00280010));
+		assertEquals("US", dict.vr(0x00280010));
+
+		// NB: Entries with trailing comments.
+		assertEquals("Coefficients SDVN", dict.name(0x7FE00020));
+		assertEquals("OW", dict.vr(0x7FE00020));
+
+		// NB: Codes above 0x7FFFFFFF are negative ints.
+		assertEquals("Digital Signatures Sequence", dict.name(0xFFFAFFFA));
+		assertEquals("SQ", dict.vr(0xFFFAFFFA));
+	}
+
+	@Test
+	public void testMissing() {
+		// NB: Commented out in the dictionary, due to its ambiguous VR.
+		assertFalse(dict.has(0x7FE00010));
+		assertNull(dict.name(0x7FE00010));
+		assertNull(dict.vr(0x7FE00010));
+
+		assertFalse(dict.has(0));
+		assertFalse(dict.has(0xFFFFFFFF));
+		assertNull(dict.name(0x00100011));
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.FormatException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.log.LogService;
+
+/**
+ * Tests {@link IFD}.
+ */
+public class IFDTest {
+
+	private Context context;
+
+	private IFD ifd;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+		ifd = new IFD(context.getService(LogService.class));
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	/** Tests that entries behave as they would in a map. */
+	@Test
+	public void testEntries() {
+		ifd.put(IFD.COPYRIGHT, "(c)");
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, 512L);
+		ifd.putIFDValue(IFD.COMPRESSION, 1);
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.BITS_PER_SAMPLE, new int[] { 8, 8, 8 });
+		ifd.putIFDValue(65000, (short) 7);
+
+		assertEquals(6, ifd.size());
+		assertEquals("(c)", ifd.get(IFD.COPYRIGHT));
+		assertEquals(512L, ifd.get(IFD.IMAGE_WIDTH));
+		assertEquals(1, ifd.get(IFD.COMPRESSION));
+		assertEquals(Boolean.TRUE, ifd.get(IFD.LITTLE_ENDIAN));
+		assertEquals((short) 7, ifd.getIFDValue(65000));
+		assertNull(ifd.get(IFD.IMAGE_LENGTH));
+		assertNull(ifd.get("256"));
+
+		// entries are ordered by unsigned tag
+		assertArrayEquals(new Integer[] { IFD.LITTLE_ENDIAN, IFD.IMAGE_WIDTH,
+			IFD.BITS_PER_SAMPLE, IFD.COMPRESSION, IFD.COPYRIGHT, 65000 }, ifd
+				.keySet().toArray(new Integer[0]));
+
+		assertEquals(512L, ifd.put(IFD.IMAGE_WIDTH, 1024));
+		assertEquals(1024, ifd.get(IFD.IMAGE_WIDTH));
+		assertEquals("(c)", ifd.remove(IFD.COPYRIGHT));
+		assertFalse(ifd.containsKey(IFD.COPYRIGHT));
+
+		final Iterator<Map.Entry<Integer, Object>> iter = ifd.entrySet()
+			.iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Integer, Object> entry = iter.next();
+			if (entry.getKey() == IFD.COMPRESSION) entry.setValue(5);
+			if (entry.getKey() == IFD.LITTLE_ENDIAN) iter.remove();
+		}
+		assertEquals(4, ifd.size());
+		assertEquals(5, ifd.get(IFD.COMPRESSION));
+		assertFalse(ifd.containsKey(IFD.LITTLE_ENDIAN));
+
+		final IFD copy = new IFD(ifd, null);
+		assertEquals(ifd, copy);
+		copy.clear();
+		assertTrue(copy.isEmpty());
+		assertEquals(4, ifd.size());
+	}
+
+	/** Tests that clones and deserialized copies are independent of the IFD. */
+	@Test
+	public void testCopies() throws IOException, ClassNotFoundException,
+		FormatException
+	{
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, 512L);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, 10L);
+		ifd.putIFDValue(IFD.ROWS_PER_STRIP, new long[] { 10 });
+		ifd.putIFDValue(IFD.STRIP_OFFSETS, new long[] { 8 });
+		ifd.put(IFD.COPYRIGHT, "(c)");
+		ifd.getStripOffsets();
+
+		final IFD clone = ifd.clone();
+		assertEquals(ifd, clone);
+		clone.putIFDValue(IFD.IMAGE_WIDTH, 256L);
+		clone.putIFDValue(IFD.STRIP_OFFSETS, new long[] { 16 });
+		clone.remove(IFD.COPYRIGHT);
+		assertEquals(512L, ifd.get(IFD.IMAGE_WIDTH));
+		assertArrayEquals(new long[] { 8 }, ifd.getStripOffsets());
+		assertEquals("(c)", ifd.get(IFD.COPYRIGHT));
+		assertArrayEquals(new long[] { 16 }, clone.getStripOffsets());
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(ifd);
+		}
+		final IFD copy;
+		try (final ObjectInputStream in = new ObjectInputStream(
+			new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			copy = (IFD) in.readObject();
+		}
+		assertEquals(ifd.keySet(), copy.keySet());
+		assertEquals("(c)", copy.get(IFD.COPYRIGHT));
+		assertArrayEquals(new long[] { 8 }, copy.getStripOffsets());
+		copy.putIFDValue(IFD.BITS_PER_SAMPLE, new int[] { 8 });
+		assertEquals(6, copy.size());
+		assertEquals(5, ifd.size());
+	}
+
+	/** Tests that decoded strip offsets follow changes to the IFD. */
+	@Test
+	public void testStripOffsets() throws FormatException {
+		final long[] offsets = { 8, 108, 208, 0xfffffff0L };
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, 10L);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, 40L);
+		ifd.putIFDValue(IFD.ROWS_PER_STRIP, new long[] { 10 });
+		ifd.putIFDValue(IFD.STRIP_BYTE_COUNTS, new long[] { 100, 100, 100, 100 });
+		ifd.putIFDValue(IFD.STRIP_OFFSETS, new int[] { 8, 108, 208, -16 });
+
+		assertArrayEquals(offsets, ifd.getStripOffsets());
+		assertEquals(4, ifd.getStripCount());
+		assertEquals(208, ifd.getStripOffset(2));
+		assertEquals(100, ifd.getStripByteCount(3));
+
+		// returned arrays are copies
+		ifd.getStripOffsets()[0] = -1;
+		assertEquals(8, ifd.getStripOffset(0));
+
+		ifd.putIFDValue(IFD.STRIP_OFFSETS, new long[] { 1, 2, 3, 4 });
+		assertArrayEquals(new long[] { 1, 2, 3, 4 }, ifd.getStripOffsets());
+		ifd.putIFDValue(IFD.ROWS_PER_STRIP, 20L);
+		assertArrayEquals(new long[] { 20 }, ifd.getRowsPerStrip());
+
+		// changes to stored arrays are seen, as with any map value
+		final long[] stored = { 5, 6, 7, 8 };
+		final int[] counts = { 10, 20 };
+		ifd.putIFDValue(IFD.STRIP_OFFSETS, stored);
+		ifd.putIFDValue(IFD.STRIP_BYTE_COUNTS, counts);
+		assertEquals(6, ifd.getStripOffset(1));
+		assertEquals(20, ifd.getStripByteCount(1));
+		stored[1] = 60;
+		counts[1] = 200;
+		assertEquals(60, ifd.getStripOffset(1));
+		assertEquals(60, ifd.getStripOffsets()[1]);
+		assertEquals(200, ifd.getStripByteCount(1));
+		assertEquals(200, ifd.getStripByteCounts()[1]);
+	}
+
+	/** Tests that keys which are not TIFF tags are kept, as in a hash map. */
+	@Test
+	public void testOtherKeys() {
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, 512L);
+		assertNull(ifd.put(-1, "negative"));
+		assertNull(ifd.put(0x10000, "large"));
+		assertNull(ifd.put(null, "null"));
+		ifd.putIFDValue(-2, 7L);
+
+		assertEquals(5, ifd.size());
+		assertEquals("negative", ifd.get(-1));
+		assertEquals("large", ifd.getIFDValue(0x10000));
+		assertEquals("null", ifd.get(null));
+		assertEquals(7L, ifd.get(-2));
+		assertTrue(ifd.containsKey(null));
+		assertEquals(5, ifd.entrySet().size());
+		assertEquals(ifd, ifd.clone());
+
+		assertEquals("negative", ifd.remove(-1));
+		final Iterator<Integer> iter = ifd.keySet().iterator();
+		while (iter.hasNext()) {
+			if (iter.next() == null) iter.remove();
+		}
+		assertFalse(ifd.containsKey(null));
+		assertEquals(3, ifd.size());
+		ifd.clear();
+		assertTrue(ifd.isEmpty());
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.scif.io.RandomAccessInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link OnDemandLongArray}.
+ */
+public class OnDemandLongArrayTest {
+
+	private static final int SIZE = 10000;
+
+	private static final int HEADER = 3;
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testLongBigEndian() throws IOException {
+		assertEntries(8, false);
+	}
+
+	@Test
+	public void testLongLittleEndian() throws IOException {
+		assertEntries(8, true);
+	}
+
+	@Test
+	public void testIntBigEndian() throws IOException {
+		assertEntries(4, false);
+	}
+
+	@Test
+	public void testIntLittleEndian() throws IOException {
+		assertEntries(4, true);
+	}
+
+	// -- Helper methods --
+
+	private void assertEntries(final int bytesPerEntry,
+		final boolean littleEndian) throws IOException
+	{
+		final long[] expected = new long[SIZE];
+		final ByteBuffer bytes = ByteBuffer.allocate(HEADER + SIZE *
+			bytesPerEntry);
+		bytes.order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		bytes.position(HEADER);
+		for (int i = 0; i < SIZE; i++) {
+			// NB: Exercise the high bit of each entry width.
+			expected[i] = bytesPerEntry == 4 ? 0xffff0000L + i : -1000L * i;
+			if (bytesPerEntry == 4) bytes.putInt((int) expected[i]);
+			else bytes.putLong(expected[i]);
+		}
+
+		final RandomAccessInputStream in = new RandomAccessInputStream(context,
+			bytes.array());
+		in.order(littleEndian);
+		in.seek(HEADER);
+		final OnDemandLongArray array = new OnDemandLongArray(in, bytesPerEntry);
+		array.setSize(SIZE);
+		in.seek(1);
+
+		for (final int i : new int[] { 0, 1, 4095, 4096, 9999, 17, 5000 }) {
+			assertEquals(expected[i], array.get(i));
+		}
+		final long[] actual = new long[SIZE];
+		array.get(actual, 0, SIZE);
+		assertArrayEquals(expected, actual);
+
+		final long[] range = new long[5000];
+		array.get(range, 4000, range.length);
+		for (int i = 0; i < range.length; i++) {
+			assertEquals(expected[4000 + i], range[i]);
+		}
+
+		// the stream position is left unchanged
+		assertEquals(1, in.getFilePointer());
+		in.close();
+	}
+
+}
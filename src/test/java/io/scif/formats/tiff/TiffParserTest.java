@@ -0,0 +1,405 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.FormatException;
+import io.scif.io.RandomAccessInputStream;
+import io.scif.util.FormatTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.log.LogService;
+
+/**
+ * Tests {@link TiffParser}.
+ */
+public class TiffParserTest {
+
+	private static final int WIDTH = 128;
+
+	private static final int HEIGHT = 96;
+
+	/** Pixel type, channels, and whether tiled, planar and differenced. */
+	private static final int[][] LAYOUTS = { { FormatTools.UINT8, 3, 1, 0, 0 },
+		{ FormatTools.UINT16, 1, 1, 0, 0 }, { FormatTools.UINT8, 3, 0, 1, 0 },
+		{ FormatTools.UINT16, 1, 0, 0, 1 } };
+
+	private Context context;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		file = File.createTempFile("TiffParserTest", ".tif");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		context.dispose();
+	}
+
+	/**
+	 * Tests that decoding tiles concurrently yields the same samples as decoding
+	 * them sequentially, for every compression scheme which can be written.
+	 */
+	@Test
+	public void testParallelDecoding() throws FormatException, IOException {
+		int tested = 0;
+		for (final TiffCompression compression : TiffCompression.values()) {
+			for (final int[] layout : LAYOUTS) {
+				if (!write(compression, layout[0], layout[1], layout[2] == 1,
+					layout[3] == 1, layout[4] == 1))
+				{
+					continue;
+				}
+				assertParallelDecoding(compression);
+				tested++;
+			}
+		}
+		assertTrue(tested > 0);
+	}
+
+	/**
+	 * Tests that IFD offsets are found correctly in stacks with runs of equally
+	 * spaced IFDs.
+	 */
+	@Test
+	public void testIFDOffsets() throws IOException {
+		for (final int[] stack : new int[][] { { 1, 0 }, { 5, 0 }, { 6, 6 },
+			{ 300, 0 }, { 300, 123 }, { 300, 299 } })
+		{
+			writeStack(stack[0], stack[1]);
+			try (final RandomAccessInputStream in = new RandomAccessInputStream(
+				context, file.getAbsolutePath()))
+			{
+				final TiffParser parser = new TiffParser(context, in);
+				parser.setInferUniformIFDs(true);
+				final long[] offsets = parser.getIFDOffsets();
+				assertEquals(stack[0], offsets.length);
+				assertArrayEquals(walkIFDs(in), offsets);
+			}
+		}
+	}
+
+	/**
+	 * Tests that IFD offsets are found correctly by default when one IFD in the
+	 * middle of a run of equally spaced IFDs has been rewritten elsewhere, as
+	 * libtiff's TIFFRewriteDirectory does.
+	 */
+	@Test
+	public void testRelinkedIFD() throws IOException {
+		writeStack(300, 0);
+		final byte[] data = Files.readAllBytes(file.toPath());
+		final ByteBuffer bytes = ByteBuffer.wrap(data).order(
+			ByteOrder.LITTLE_ENDIAN);
+		final int ifdSize = 6 + 4 * TiffConstants.BYTES_PER_ENTRY;
+		long[] offsets;
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, file.getAbsolutePath()))
+		{
+			offsets = walkIFDs(in);
+		}
+		bytes.putInt((int) offsets[143] + ifdSize - 4, data.length);
+		final byte[] relinked = Arrays.copyOf(data, data.length + ifdSize);
+		System.arraycopy(data, (int) offsets[144], relinked, data.length,
+			ifdSize);
+		Files.write(file.toPath(), relinked);
+
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, file.getAbsolutePath()))
+		{
+			offsets = new TiffParser(context, in).getIFDOffsets();
+			assertEquals(300, offsets.length);
+			assertEquals(data.length, offsets[144]);
+			assertArrayEquals(walkIFDs(in), offsets);
+		}
+	}
+
+	/** Tests that lazily created IFDs are read on first access. */
+	@Test
+	public void testLazyIFD() throws FormatException, IOException {
+		writeStack(3, 1);
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, file.getAbsolutePath()))
+		{
+			final TiffParser parser = new TiffParser(context, in);
+			final long[] offsets = parser.getIFDOffsets();
+			final IFD ifd = parser.getLazyIFD(offsets[1]);
+			assertFalse(ifd.isLoaded());
+			assertEquals(offsets[1], ifd.getOffset());
+			in.seek(5);
+			assertEquals(16, ifd.getImageWidth());
+			assertTrue(ifd.isLoaded());
+			assertEquals(5, in.getFilePointer());
+			assertEquals(parser.getIFD(offsets[1]).keySet(), ifd.keySet());
+			assertArrayEquals(parser.getIFD(offsets[1]).getStripOffsets(), ifd
+				.getStripOffsets());
+		}
+	}
+
+	/**
+	 * Tests that rows of contiguous uncompressed strips are read as they are
+	 * stored, and that a view of them is offered only if no decoding is needed.
+	 */
+	@Test
+	public void testContiguousStrips() throws FormatException, IOException {
+		write(TiffCompression.UNCOMPRESSED, FormatTools.UINT16, 1, false, false,
+			false);
+		final byte[] data = Files.readAllBytes(file.toPath());
+		final int rowBytes = WIDTH * 2;
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, file.getAbsolutePath()))
+		{
+			final TiffParser parser = new TiffParser(context, in);
+			final IFD ifd = parser.getFirstIFD();
+			assertTrue(ifd.getStripOffsets().length > 1);
+			final int offset = (int) ifd.getStripOffsets()[0];
+			for (final int[] rows : new int[][] { { 0, HEIGHT }, { 13, 50 } }) {
+				final byte[] expected = Arrays.copyOfRange(data, offset + rows[0] *
+					rowBytes, offset + (rows[0] + rows[1]) * rowBytes);
+				assertArrayEquals(expected, parser.getSamples(ifd,
+					new byte[expected.length], 0, rows[0], WIDTH, rows[1]));
+
+				final ByteBuffer view = parser.getSamplesBuffer(ifd, rows[0], rows[1]);
+				assertTrue(view.isReadOnly());
+				assertEquals(ifd.isLittleEndian(),
+					view.order() == ByteOrder.LITTLE_ENDIAN);
+				final byte[] viewed = new byte[view.remaining()];
+				view.get(viewed);
+				assertArrayEquals(expected, viewed);
+			}
+			assertNull(parser.getSamplesBuffer(parser.getFirstIFD(), 0, HEIGHT +
+				1));
+		}
+
+		write(TiffCompression.UNCOMPRESSED, FormatTools.UINT16, 1, false, false,
+			true);
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, file.getAbsolutePath()))
+		{
+			final TiffParser parser = new TiffParser(context, in);
+			assertNull(parser.getSamplesBuffer(parser.getFirstIFD(), 0, HEIGHT));
+		}
+	}
+
+	/**
+	 * Tests that tiles decoded for one region are reused for overlapping
+	 * regions, with and without parallel decoding.
+	 */
+	@Test
+	public void testTileCache() throws FormatException, IOException {
+		assertTrue(write(TiffCompression.LZW, FormatTools.UINT8, 3, true, false,
+			false));
+		final int[][] regions = { { 0, 0, 64, 64 }, { 16, 16, 64, 64 },
+			{ 0, 0, WIDTH, HEIGHT } };
+		for (final boolean parallel : new boolean[] { false, true }) {
+			try (final RandomAccessInputStream in = new RandomAccessInputStream(
+				context, file.getAbsolutePath()))
+			{
+				final TiffParser parser = new TiffParser(context, in);
+				parser.setParallelDecoding(parallel);
+				parser.setTileCacheSize(1024 * 1024);
+				final IFD ifd = parser.getFirstIFD();
+				for (final int[] r : regions) {
+					final byte[] samples = parser.getSamples(ifd, new byte[r[2] * r[3] *
+						3], r[0], r[1], r[2], r[3]);
+					assertArrayEquals(read(false, r), samples);
+				}
+				// 4 tiles, then 4 of 9, then 9 of 12
+				assertEquals(13, parser.getTileCacheHits());
+				assertEquals(12, parser.getTileCacheMisses());
+
+				// changing the codec options discards the decoded tiles
+				parser.setCodecOptions(parser.getCodecOptions());
+				parser.getSamples(ifd, new byte[64 * 64 * 3], 0, 0, 64, 64);
+				assertEquals(13, parser.getTileCacheHits());
+				assertEquals(16, parser.getTileCacheMisses());
+
+				// a cache too small for a single tile is never hit
+				parser.setTileCacheSize(1024);
+				parser.getSamples(ifd, new byte[32 * 32 * 3], 0, 0, 32, 32);
+				assertEquals(13, parser.getTileCacheHits());
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Writes a little-endian stack of 8-bit planes, each IFD followed by its
+	 * samples. The first planes are narrower, and have an extra entry.
+	 */
+	private void writeStack(final int planes, final int narrow)
+		throws IOException
+	{
+		final ByteBuffer bytes = ByteBuffer.allocate(8 + planes * (6 + 5 *
+			TiffConstants.BYTES_PER_ENTRY + 16 * 8)).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.put((byte) TiffConstants.LITTLE).put((byte) TiffConstants.LITTLE);
+		bytes.putShort((short) TiffConstants.MAGIC_NUMBER).putInt(8);
+		for (int i = 0; i < planes; i++) {
+			final int width = i < narrow ? 8 : 16;
+			final int nEntries = i < narrow ? 5 : 4;
+			final int samples = bytes.position() + 6 + nEntries *
+				TiffConstants.BYTES_PER_ENTRY;
+			final int next = i == planes - 1 ? 0 : samples + width * 8;
+			bytes.putShort((short) nEntries);
+			putEntry(bytes, IFD.IMAGE_WIDTH, width);
+			putEntry(bytes, IFD.IMAGE_LENGTH, 8);
+			putEntry(bytes, IFD.STRIP_OFFSETS, samples);
+			if (i < narrow) putEntry(bytes, IFD.ROWS_PER_STRIP, 8);
+			putEntry(bytes, IFD.STRIP_BYTE_COUNTS, width * 8);
+			bytes.putInt(next);
+			bytes.position(samples + width * 8);
+		}
+		Files.write(file.toPath(), Arrays.copyOf(bytes.array(), bytes
+			.position()));
+	}
+
+	private void putEntry(final ByteBuffer bytes, final int tag,
+		final int value)
+	{
+		bytes.putShort((short) tag).putShort((short) IFDType.LONG.getCode());
+		bytes.putInt(1).putInt(value);
+	}
+
+	/** Follows the IFD chain of a little-endian TIFF, one IFD at a time. */
+	private long[] walkIFDs(final RandomAccessInputStream in)
+		throws IOException
+	{
+		long[] offsets = new long[0];
+		in.order(true);
+		in.seek(4);
+		long offset = in.readInt() & 0xffffffffL;
+		while (offset != 0) {
+			offsets = Arrays.copyOf(offsets, offsets.length + 1);
+			offsets[offsets.length - 1] = offset;
+			in.seek(offset);
+			in.skipBytes(in.readUnsignedShort() * TiffConstants.BYTES_PER_ENTRY);
+			offset = in.readInt() & 0xffffffffL;
+		}
+		return offsets;
+	}
+
+
+	/**
+	 * Writes a single plane with the given layout.
+	 *
+	 * @return False if the given compression scheme cannot be written.
+	 */
+	private boolean write(final TiffCompression compression,
+		final int pixelType, final int channels, final boolean tiled,
+		final boolean planar, final boolean predictor) throws IOException
+	{
+		file.delete();
+		final int bytes = FormatTools.getBytesPerPixel(pixelType);
+		final byte[] buf = new byte[WIDTH * HEIGHT * channels * bytes];
+		final Random random = new Random(0xdecaf);
+		for (int i = 0; i < buf.length; i++) {
+			// NB: Smooth ramps with some noise, so that each codec has work to do.
+			buf[i] = (byte) (i / (channels * bytes) % WIDTH + random.nextInt(4));
+		}
+
+		final IFD ifd = new IFD(context.getService(LogService.class));
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) WIDTH);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) HEIGHT);
+		ifd.putIFDValue(IFD.COMPRESSION, compression.getCode());
+		ifd.putIFDValue(IFD.PLANAR_CONFIGURATION, planar ? 2 : 1);
+		if (predictor) ifd.putIFDValue(IFD.PREDICTOR, 2);
+		if (tiled) {
+			ifd.putIFDValue(IFD.TILE_WIDTH, 32L);
+			ifd.putIFDValue(IFD.TILE_LENGTH, 32L);
+		}
+		else ifd.putIFDValue(IFD.ROWS_PER_STRIP, new long[] { 8 });
+
+		final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+		try {
+			saver.setLittleEndian(true);
+			saver.writeHeader();
+			saver.writeImage(buf, ifd, 0, pixelType, true);
+			return true;
+		}
+		catch (final FormatException exc) {
+			return false;
+		}
+		finally {
+			saver.getStream().close();
+		}
+	}
+
+	/**
+	 * Reads the whole plane and a region of it, with and without parallel
+	 * decoding.
+	 */
+	private void assertParallelDecoding(final TiffCompression compression)
+		throws FormatException, IOException
+	{
+		final int[][] regions = { { 0, 0, WIDTH, HEIGHT }, { 17, 23, 50, 40 } };
+		for (final int[] r : regions) {
+			assertArrayEquals(compression.getCodecName(), read(false, r), read(true,
+				r));
+		}
+	}
+
+	private byte[] read(final boolean parallel, final int[] region)
+		throws FormatException, IOException
+	{
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, file.getAbsolutePath()))
+		{
+			final TiffParser parser = new TiffParser(context, in);
+			parser.setParallelDecoding(parallel);
+			final IFD ifd = parser.getFirstIFD();
+			final int size = region[2] * region[3] * ifd.getSamplesPerPixel() * ifd
+				.getBytesPerSample()[0];
+			return parser.getSamples(ifd, new byte[size], region[0], region[1],
+				region[2], region[3]);
+		}
+	}
+
+}
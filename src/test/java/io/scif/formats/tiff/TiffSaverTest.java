@@ -0,0 +1,461 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.formats.tiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.scif.FormatException;
+import io.scif.io.RandomAccessInputStream;
+import io.scif.util.FormatTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.log.LogService;
+import org.scijava.util.Bytes;
+
+/**
+ * Tests {@link TiffSaver}.
+ */
+public class TiffSaverTest {
+
+	private Context context;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context();
+		file = File.createTempFile("TiffSaverTest", ".tif");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+		context.dispose();
+	}
+
+	/**
+	 * Tests that compressing strips concurrently writes the same file as
+	 * compressing them sequentially, for every compression scheme which can be
+	 * written.
+	 */
+	@Test
+	public void testParallelCompression() throws FormatException, IOException {
+		final byte[] image = createImage(256, 192, 3);
+		int tested = 0;
+		for (final TiffCompression compression : TiffCompression.values()) {
+			for (final boolean tiled : new boolean[] { false, true }) {
+				if (!write(image, 256, 192, 3, compression, tiled, false)) continue;
+				final byte[] expected = Files.readAllBytes(file.toPath());
+				assertTrue(write(image, 256, 192, 3, compression, tiled, true));
+				assertArrayEquals(compression.getCodecName(), expected, Files
+					.readAllBytes(file.toPath()));
+				tested++;
+			}
+		}
+		assertTrue(tested > 0);
+	}
+
+	/**
+	 * Tests that a pyramid written in bands has the expected resolution levels,
+	 * each the 2x2 average of the previous one.
+	 */
+	@Test
+	public void testPyramid() throws FormatException, IOException {
+		final int width = 100, height = 75, channels = 2, levels = 3;
+		final Random random = new Random(0xdecaf);
+		final short[] image = new short[width * height * channels];
+		for (int i = 0; i < image.length; i++) {
+			image[i] = (short) (i / channels % width * 600 + random.nextInt(64));
+		}
+
+		final IFD ifd = new IFD(context.getService(LogService.class));
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) width);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) height);
+		ifd.putIFDValue(IFD.COMPRESSION, TiffCompression.LZW.getCode());
+		ifd.putIFDValue(IFD.TILE_WIDTH, 32L);
+		ifd.putIFDValue(IFD.TILE_LENGTH, 32L);
+		final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+		try {
+			saver.setLittleEndian(true);
+			saver.setParallelCompression(true);
+			saver.writeHeader();
+			final byte[] bytes = Bytes.fromShorts(image, true);
+			final int rowBytes = width * channels * 2;
+			for (int y = 0; y < height; y += 10) {
+				final int h = Math.min(10, height - y);
+				final byte[] band = new byte[h * rowBytes];
+				System.arraycopy(bytes, y * rowBytes, band, 0, band.length);
+				saver.writePyramidRows(band, ifd, FormatTools.UINT16, y, h, levels,
+					true);
+			}
+		}
+		finally {
+			saver.getStream().close();
+		}
+
+		final TiffParser parser = new TiffParser(context, file.getAbsolutePath());
+		try {
+			final IFDList ifds = parser.getIFDs();
+			assertEquals(levels + 1, ifds.size());
+			assertEquals(levels, ifds.get(0).getIFDLongArray(IFD.SUB_IFD).length);
+			short[] expected = image;
+			int w = width, h = height;
+			for (int l = 0; l <= levels; l++) {
+				if (l > 0) {
+					expected = reduce(expected, w, h, channels);
+					w = (w + 1) / 2;
+					h = (h + 1) / 2;
+					assertEquals(1, ifds.get(l).getIFDIntValue(IFD.NEW_SUBFILE_TYPE));
+				}
+				assertEquals(w, ifds.get(l).getImageWidth());
+				assertEquals(h, ifds.get(l).getImageLength());
+				final byte[] samples = new byte[w * h * channels * 2];
+				parser.getSamples(ifds.get(l), samples);
+				// NB: Samples are read with one channel after the other.
+				assertArrayEquals("level " + l, Bytes.fromShorts(deinterleave(
+					expected, channels), true), samples);
+			}
+		}
+		finally {
+			parser.getStream().close();
+		}
+	}
+
+	/**
+	 * Tests that a pyramid is abandoned when a band cannot be written, so that
+	 * the next band starts a new pyramid.
+	 */
+	@Test
+	public void testPyramidFailure() throws FormatException, IOException {
+		final int width = 40, height = 30;
+		final IFD ifd = new IFD(context.getService(LogService.class));
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) width);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) height);
+		final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+		try {
+			saver.setLittleEndian(true);
+			saver.writeHeader();
+			final byte[] band = new byte[10 * width];
+			saver.writePyramidRows(band, ifd, FormatTools.UINT8, 0, 10, 1, true);
+			try {
+				saver.writePyramidRows(band, ifd, FormatTools.UINT8, 20, 10, 1,
+					true);
+				fail("Expected FormatException");
+			}
+			catch (final FormatException exc) {
+				// NB: Rows written out of order.
+			}
+			final byte[] image = new byte[height * width];
+			saver.writePyramidRows(image, ifd, FormatTools.UINT8, 0, height, 1,
+				true);
+		}
+		finally {
+			saver.getStream().close();
+		}
+	}
+
+	/**
+	 * Tests that strips and tiles are packed from interleaved and planar images
+	 * of each sample size, with partial tiles padded at the edges.
+	 */
+	@Test
+	public void testStripPacking() throws FormatException, IOException {
+		final int width = 100, height = 75, channels = 3;
+		for (final int pixelType : new int[] { FormatTools.UINT8,
+			FormatTools.UINT16, FormatTools.UINT32 })
+		{
+			final int bytes = FormatTools.getBytesPerPixel(pixelType);
+			final byte[] image = createImage(width * bytes, height, channels);
+			for (final boolean planar : new boolean[] { false, true }) {
+				for (final boolean tiled : new boolean[] { false, true }) {
+					writeUncompressed(image, width, height, channels, pixelType, planar,
+						tiled);
+					final TiffParser parser = new TiffParser(context, file
+						.getAbsolutePath());
+					try {
+						final byte[] samples = parser.getSamples(parser.getFirstIFD(),
+							new byte[image.length]);
+						assertArrayEquals(planar ? image : deinterleave(image,
+							channels * bytes, bytes), samples);
+					}
+					finally {
+						parser.getStream().close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that tiles are written into an IFD whose tile offsets are read on
+	 * demand, as they are when parsing with equal strips assumed.
+	 */
+	@Test
+	public void testOnDemandOffsets() throws FormatException, IOException {
+		final int width = 100, height = 75;
+		final byte[] image = createImage(width, height, 1);
+		final IFD ifd = new IFD(context.getService(LogService.class));
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) width);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) height);
+		ifd.putIFDValue(IFD.TILE_WIDTH, 32L);
+		ifd.putIFDValue(IFD.TILE_LENGTH, 32L);
+		final int tiles = (int) (ifd.getTilesPerRow() * ifd.getTilesPerColumn());
+		try (final RandomAccessInputStream in = new RandomAccessInputStream(
+			context, new byte[4 * tiles]))
+		{
+			in.order(true);
+			final OnDemandLongArray offsets = new OnDemandLongArray(in, 4);
+			offsets.setSize(tiles);
+			ifd.putIFDValue(IFD.TILE_OFFSETS, offsets);
+			ifd.putIFDValue(IFD.TILE_BYTE_COUNTS, new long[tiles]);
+
+			final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+			try {
+				saver.setLittleEndian(true);
+				saver.writeHeader();
+				saver.writeImage(image, ifd, 0, FormatTools.UINT8, 0, 0, width,
+					height, true, 1, false);
+			}
+			finally {
+				saver.getStream().close();
+			}
+		}
+		final TiffParser parser = new TiffParser(context, file.getAbsolutePath());
+		try {
+			assertArrayEquals(image, parser.getSamples(parser.getFirstIFD(),
+				new byte[image.length]));
+		}
+		finally {
+			parser.getStream().close();
+		}
+	}
+
+	/**
+	 * Measures the write throughput of large compressed images, with and
+	 * without parallel compression.
+	 * <p>
+	 * NB: not annotated as a unit test due to length of execution.
+	 * </p>
+	 */
+//	@Test
+	public void benchmarkWrite() throws FormatException, IOException {
+		final int width = 4096, height = 4096;
+		final byte[] image = createImage(width, height, 1);
+		final TiffCompression[] compressions = { TiffCompression.LZW,
+			TiffCompression.DEFLATE, TiffCompression.JPEG };
+		final LogService log = context.getService(LogService.class);
+		for (int round = 0; round < 3; round++) {
+			for (final TiffCompression compression : compressions) {
+				for (final boolean parallel : new boolean[] { false, true }) {
+					final long start = System.nanoTime();
+					write(image, width, height, 1, compression, true, parallel);
+					final long micros = (System.nanoTime() - start) / 1000;
+					log.info("round " + round + ", " + compression + ", parallel " +
+						parallel + ": " + image.length / micros + " MB/s");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Measures the write throughput of large uncompressed 16-bit images, which
+	 * is bound by the packing of strips and tiles.
+	 * <p>
+	 * NB: not annotated as a unit test due to length of execution.
+	 * </p>
+	 */
+//	@Test
+	public void benchmarkStripPacking() throws FormatException, IOException {
+		final int width = 4096, height = 4096, channels = 3;
+		final byte[] image = createImage(width * 2, height, channels);
+		final LogService log = context.getService(LogService.class);
+		for (int round = 0; round < 3; round++) {
+			for (final boolean planar : new boolean[] { false, true }) {
+				for (final boolean tiled : new boolean[] { false, true }) {
+					final long start = System.nanoTime();
+					writeUncompressed(image, width, height, channels,
+						FormatTools.UINT16, planar, tiled);
+					final long micros = (System.nanoTime() - start) / 1000;
+					log.info("round " + round + ", planar " + planar + ", tiled " +
+						tiled + ": " + image.length / micros + " MB/s");
+				}
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Creates smooth ramps with some noise, so that each codec has work. */
+	private byte[] createImage(final int width, final int height,
+		final int channels)
+	{
+		final byte[] image = new byte[width * height * channels];
+		final Random random = new Random(0xdecaf);
+		for (int i = 0; i < image.length; i++) {
+			image[i] = (byte) (i / channels % width + random.nextInt(4));
+		}
+		return image;
+	}
+
+	/** Averages the given unsigned 16-bit image 2x2, clamping at the edges. */
+	private short[] reduce(final short[] image, final int width,
+		final int height, final int channels)
+	{
+		final int w = (width + 1) / 2, h = (height + 1) / 2;
+		final short[] reduced = new short[w * h * channels];
+		for (int y = 0; y < h; y++) {
+			final int y0 = 2 * y, y1 = Math.min(y0 + 1, height - 1);
+			for (int x = 0; x < w; x++) {
+				final int x0 = 2 * x, x1 = Math.min(x0 + 1, width - 1);
+				for (int c = 0; c < channels; c++) {
+					final int sum = sample(image, width, channels, x0, y0, c) +
+						sample(image, width, channels, x1, y0, c) +
+						sample(image, width, channels, x0, y1, c) +
+						sample(image, width, channels, x1, y1, c);
+					reduced[(y * w + x) * channels + c] = (short) ((sum + 2) / 4);
+				}
+			}
+		}
+		return reduced;
+	}
+
+	private short[] deinterleave(final short[] image, final int channels) {
+		final int pixels = image.length / channels;
+		final short[] planar = new short[image.length];
+		for (int i = 0; i < image.length; i++) {
+			planar[i % channels * pixels + i / channels] = image[i];
+		}
+		return planar;
+	}
+
+	/** Separates the given interleaved pixels into planes of samples. */
+	private byte[] deinterleave(final byte[] image, final int pixelBytes,
+		final int bytes)
+	{
+		final int pixels = image.length / pixelBytes;
+		final byte[] planar = new byte[image.length];
+		for (int i = 0; i < image.length; i++) {
+			final int pixel = i / pixelBytes, c = i % pixelBytes / bytes;
+			planar[(c * pixels + pixel) * bytes + i % bytes] = image[i];
+		}
+		return planar;
+	}
+
+	private int sample(final short[] image, final int width,
+		final int channels, final int x, final int y, final int c)
+	{
+		return image[(y * width + x) * channels + c] & 0xffff;
+	}
+
+	/**
+	 * Writes the given 8-bit image as a single plane.
+	 *
+	 * @return False if the given compression scheme cannot be written.
+	 */
+	private boolean write(final byte[] image, final int width, final int height,
+		final int channels, final TiffCompression compression,
+		final boolean tiled, final boolean parallel) throws IOException
+	{
+		file.delete();
+		final IFD ifd = new IFD(context.getService(LogService.class));
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) width);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) height);
+		ifd.putIFDValue(IFD.COMPRESSION, compression.getCode());
+		if (tiled) {
+			ifd.putIFDValue(IFD.TILE_WIDTH, 64L);
+			ifd.putIFDValue(IFD.TILE_LENGTH, 64L);
+		}
+		else ifd.putIFDValue(IFD.ROWS_PER_STRIP, new long[] { 16 });
+
+		final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+		try {
+			saver.setLittleEndian(true);
+			saver.setParallelCompression(parallel);
+			saver.writeHeader();
+			saver.writeImage(image, ifd, 0, FormatTools.UINT8, true);
+			return true;
+		}
+		catch (final FormatException exc) {
+			return false;
+		}
+		finally {
+			saver.getStream().close();
+		}
+	}
+
+	/**
+	 * Writes the given image as a single uncompressed plane, in strips of 8 rows
+	 * or in tiles of 32x32 pixels.
+	 */
+	private void writeUncompressed(final byte[] image, final int width,
+		final int height, final int channels, final int pixelType,
+		final boolean planar, final boolean tiled) throws FormatException,
+		IOException
+	{
+		file.delete();
+		final IFD ifd = new IFD(context.getService(LogService.class));
+		ifd.put(IFD.LITTLE_ENDIAN, Boolean.TRUE);
+		ifd.putIFDValue(IFD.IMAGE_WIDTH, (long) width);
+		ifd.putIFDValue(IFD.IMAGE_LENGTH, (long) height);
+		ifd.putIFDValue(IFD.PLANAR_CONFIGURATION, planar ? 2 : 1);
+		if (tiled) {
+			ifd.putIFDValue(IFD.TILE_WIDTH, 32L);
+			ifd.putIFDValue(IFD.TILE_LENGTH, 32L);
+		}
+		else ifd.putIFDValue(IFD.ROWS_PER_STRIP, new long[] { 8 });
+
+		final TiffSaver saver = new TiffSaver(context, file.getAbsolutePath());
+		try {
+			saver.setLittleEndian(true);
+			saver.writeHeader();
+			saver.writeImage(image, ifd, 0, pixelType, 0, 0, width, height, true,
+				channels, false);
+		}
+		finally {
+			saver.getStream().close();
+		}
+	}
+
+}
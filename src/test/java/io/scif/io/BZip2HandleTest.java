@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for random access into multi-block {@link BZip2Handle}s.
+ *
+ * @see io.scif.io.BZip2Handle
+ */
+public class BZip2HandleTest {
+
+	// -- Constants --
+
+	/** Enough data for several 100k blocks. */
+	private static final int LENGTH = 450000;
+
+	// -- Fields --
+
+	private byte[] data;
+
+	private BZip2Handle fileHandle;
+
+	private Context context;
+
+	// -- Setup methods --
+
+	@Before
+	public void setup() throws IOException, InterruptedException {
+		final Random r = new Random(0xbeef);
+		data = new byte[LENGTH];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (r.nextInt(3) == 0 ? r.nextInt(256) : i / 1000);
+		}
+
+		final File file = File.createTempFile("BZip2HandleTest", ".dat");
+		final FileOutputStream out = new FileOutputStream(file);
+		out.write(data);
+		out.close();
+		final Process p = Runtime.getRuntime().exec(new String[] { "bzip2", "-1",
+			file.getAbsolutePath() });
+		p.waitFor();
+
+		final File bz2 = new File(file.getAbsolutePath() + ".bz2");
+		bz2.deleteOnExit();
+		context = new Context();
+		fileHandle = new BZip2Handle(context, bz2.getAbsolutePath());
+	}
+
+	// -- Test methods --
+
+	@Test
+	public void testIndex() throws IOException {
+		assertEquals(LENGTH, fileHandle.length());
+		assertTrue(fileHandle.getBlockCount() > 1);
+	}
+
+	@Test
+	public void testSequentialRead() throws IOException {
+		final byte[] b = new byte[LENGTH];
+		fileHandle.readFully(b);
+		assertArrayEquals(data, b);
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		final Random r = new Random(0xcafe);
+		for (int i = 0; i < 50; i++) {
+			final int off = r.nextInt(LENGTH - 1000);
+			final int len = r.nextInt(1000) + 1;
+			fileHandle.seek(off);
+			final byte[] b = new byte[len];
+			assertEquals(len, fileHandle.read(b));
+			assertEquals(off + len, fileHandle.getFilePointer());
+			for (int j = 0; j < len; j++) {
+				assertEquals(data[off + j], b[j]);
+			}
+		}
+	}
+
+	@Test
+	public void testSmallCache() throws IOException {
+		fileHandle.setBlockCacheSize(1);
+		fileHandle.seek(LENGTH - 1);
+		assertEquals(data[LENGTH - 1], fileHandle.readByte());
+		fileHandle.seek(1);
+		assertEquals(data[1], fileHandle.readByte());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testEOF() throws IOException {
+		fileHandle.seek(LENGTH);
+		fileHandle.readByte();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		fileHandle.close();
+		context.dispose();
+	}
+}
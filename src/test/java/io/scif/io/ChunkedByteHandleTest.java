@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ChunkedByteHandle} features not covered by the
+ * generic handle tests.
+ *
+ * @see io.scif.io.ChunkedByteHandle
+ */
+public class ChunkedByteHandleTest {
+
+	@Test
+	public void testGrowthAcrossChunks() throws IOException {
+		final ChunkedByteHandle handle = new ChunkedByteHandle(16, false);
+		handle.setOrder(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < 100; i++) {
+			handle.writeLong(i * 0x0101010101L);
+		}
+		assertEquals(800, handle.length());
+		handle.seek(4);
+		handle.writeInt(-1); // spans no chunk boundary
+		handle.seek(14);
+		handle.writeInt(0x12345678); // spans a chunk boundary
+		handle.seek(14);
+		assertEquals(0x12345678, handle.readInt());
+		handle.seek(99 * 8);
+		assertEquals(99 * 0x0101010101L, handle.readLong());
+	}
+
+	@Test
+	public void testSparseRegionsReadAsZero() throws IOException {
+		final ChunkedByteHandle handle = new ChunkedByteHandle(8, true);
+		handle.seek(100);
+		handle.writeByte(7);
+		assertEquals(101, handle.length());
+		handle.seek(0);
+		final byte[] b = new byte[101];
+		handle.readFully(b);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(0, b[i]);
+		}
+		assertEquals(7, b[100]);
+	}
+
+	@Test
+	public void testTruncate() throws IOException {
+		final ChunkedByteHandle handle = new ChunkedByteHandle(8, false);
+		handle.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+		handle.setLength(3);
+		handle.setLength(10);
+		handle.seek(0);
+		final byte[] b = new byte[10];
+		handle.readFully(b);
+		assertArrayEquals(new byte[] { 1, 2, 3, 0, 0, 0, 0, 0, 0, 0 }, b);
+	}
+
+	@Test
+	public void testReadOnlyView() throws IOException {
+		final ChunkedByteHandle handle = new ChunkedByteHandle(4, false);
+		handle.write(new byte[] { 1, 2, 3, 4, 5, 6 });
+
+		final ChunkedByteHandle view = handle.asReadOnly();
+		assertTrue(view.isReadOnly());
+		assertEquals(6, view.length());
+		assertEquals(0, view.getFilePointer());
+		assertEquals(0x01020304, view.readInt());
+		assertEquals(6, handle.getFilePointer());
+
+		try {
+			view.writeByte(0);
+			throw new AssertionError("Expected HandleException");
+		}
+		catch (final HandleException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testWriteTo() throws IOException {
+		final ChunkedByteHandle handle = new ChunkedByteHandle(4, true);
+		handle.write(new byte[] { 1, 2, 3, 4, 5 });
+		handle.seek(8);
+		handle.writeByte(9);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		handle.writeTo(new DataOutputStream(bytes));
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 0, 0, 0, 9 }, bytes
+			.toByteArray());
+	}
+}
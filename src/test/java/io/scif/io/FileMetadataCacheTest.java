@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FileMetadataCache}.
+ *
+ * @see io.scif.io.FileMetadataCache
+ */
+public class FileMetadataCacheTest {
+
+	// -- Fields --
+
+	private File dir;
+
+	private FileMetadataCache cache;
+
+	// -- Setup methods --
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("FileMetadataCacheTest").toFile();
+		Files.write(new File(dir, "a.dat").toPath(), new byte[10]);
+		Files.write(new File(dir, "b.dat").toPath(), new byte[20]);
+		new File(dir, "sub").mkdir();
+		cache = new FileMetadataCache(null, TimeUnit.HOURS.toNanos(1), 100);
+	}
+
+	@After
+	public void tearDown() {
+		cache.close();
+		for (final File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	// -- Tests --
+
+	@Test
+	public void testListingCachesAttributes() throws IOException {
+		final String[] list = cache.list(dir);
+		Arrays.sort(list);
+		assertArrayEquals(new String[] { "a.dat", "b.dat", "sub" }, list);
+		assertEquals(4, cache.size());
+
+		// attributes were read along with the listing
+		Files.write(new File(dir, "a.dat").toPath(), new byte[30]);
+		final FileMetadataCache.Attributes a = cache.getAttributes(new File(dir,
+			"a.dat"));
+		assertTrue(a.exists());
+		assertTrue(a.isFile());
+		assertFalse(a.isDirectory());
+		assertEquals(10, a.length());
+		assertTrue(cache.getAttributes(new File(dir, "sub")).isDirectory());
+		assertEquals(4, cache.size());
+
+		assertSame(list, cache.list(dir));
+	}
+
+	@Test
+	public void testMissingFile() {
+		final File missing = new File(dir, "missing.dat");
+		final FileMetadataCache.Attributes attrs = cache.getAttributes(missing);
+		assertFalse(attrs.exists());
+		assertFalse(attrs.isFile());
+		assertEquals(0, attrs.length());
+		assertNull(cache.list(missing));
+	}
+
+	@Test
+	public void testInvalidate() throws IOException {
+		final File a = new File(dir, "a.dat");
+		assertEquals(10, cache.getAttributes(a).length());
+		assertEquals(3, cache.list(dir).length);
+		a.delete();
+		assertTrue(cache.getAttributes(a).exists());
+		cache.invalidate(a);
+		assertFalse(cache.getAttributes(a).exists());
+		assertEquals(2, cache.list(dir).length);
+	}
+
+	@Test
+	public void testTimeout() {
+		final File b = new File(dir, "b.dat");
+		assertEquals(20, cache.getAttributes(b).length());
+		b.delete();
+		cache.setTimeout(0);
+		assertFalse(cache.getAttributes(b).exists());
+	}
+
+	@Test
+	public void testEviction() {
+		cache = new FileMetadataCache(null, TimeUnit.HOURS.toNanos(1), 2);
+		cache.list(dir);
+		assertEquals(2, cache.size());
+		for (int i = 0; i < 10; i++) {
+			cache.getAttributes(new File(dir, "missing" + i));
+		}
+		assertEquals(2, cache.size());
+	}
+}
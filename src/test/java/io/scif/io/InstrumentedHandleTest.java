@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link InstrumentedHandle} and {@link IOStatistics}.
+ *
+ * @see io.scif.io.InstrumentedHandle
+ */
+public class InstrumentedHandleTest {
+
+	@Test
+	public void testCounters() throws IOException {
+		final IOStatistics stats = new IOStatistics("test");
+		final IRandomAccess handle = new InstrumentedHandle(new ByteArrayHandle(
+			new byte[1024]), stats);
+
+		handle.readInt();
+		handle.seek(100);
+		handle.readFully(new byte[300]);
+		handle.writeShort(7);
+		handle.write(new byte[10]);
+
+		assertEquals(304, stats.getBytesRead());
+		assertEquals(12, stats.getBytesWritten());
+		assertEquals(2, stats.getReadCount());
+		assertEquals(2, stats.getWriteCount());
+		assertEquals(1, stats.getSeekCount());
+		assertTrue(stats.getBlockedNanos() >= 0);
+
+		final long[] histogram = stats.getReadSizeHistogram();
+		assertEquals(1, histogram[3]); // 4 bytes
+		assertEquals(1, histogram[9]); // 300 bytes
+
+		handle.seek(0);
+		handle.write(ByteBuffer.wrap(new byte[16]));
+		assertEquals(28, stats.getBytesWritten());
+	}
+
+	@Test
+	public void testFileChannel() throws IOException {
+		final File file = File.createTempFile("instrumented", ".dat");
+		file.deleteOnExit();
+		final Context context = new Context(NIOService.class);
+		final NIOService nioService = context.getService(NIOService.class);
+		final IOStatistics stats = new IOStatistics("test");
+		final IRandomAccess handle = new InstrumentedHandle(new NIOFileHandle(
+			nioService, file, "rw"), stats);
+		try {
+			assertNotNull(StreamTools.getFileChannel(handle));
+
+			final RandomAccessOutputStream out = new RandomAccessOutputStream(
+				handle);
+			out.write(new byte[] { 1, 2, 3, 4 });
+			out.force();
+			assertEquals(4, file.length());
+
+			final RandomAccessInputStream in = new RandomAccessInputStream(context,
+				handle);
+			final ByteBuffer view = in.getView(1, 2);
+			assertTrue(view.isDirect());
+			assertEquals(2, view.get(0));
+			assertEquals(3, view.get(1));
+		}
+		finally {
+			handle.close();
+			context.dispose();
+		}
+	}
+
+	@Test
+	public void testJSON() {
+		final IOStatistics stats = new IOStatistics("a\"b");
+		stats.countRead(1, 5);
+		stats.countSeek();
+		final String json = stats.toJSON();
+		assertTrue(json.startsWith("{\"id\":\"a\\\"b\",\"bytesRead\":1,"));
+		assertTrue(json.contains("\"seekCount\":1"));
+		assertTrue(json.contains("\"readSizeHistogram\":[0,1,0"));
+
+		stats.reset();
+		assertEquals(0, stats.getReadCount());
+		assertEquals(0, stats.getReadSizeHistogram()[1]);
+	}
+}
@@ -30,6 +30,9 @@
 package io.scif.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.services.LocationService;
 
 import java.io.File;
 import java.io.IOException;
@@ -207,6 +210,18 @@ public class LocationTest {
 		}
 	}
 
+	@Test
+	public void testListingInvalidation() throws IOException {
+		context.getService(LocationService.class).cacheDirectoryListings(true);
+		final Location dir = files[2];
+		final int count = dir.list().length;
+		final Location created = new Location(context, dir, "created");
+		assertTrue(created.createNewFile());
+		assertEquals(count + 1, dir.list().length);
+		assertTrue(created.delete());
+		assertEquals(count, dir.list().length);
+	}
+
 	@Test
 	public void testToURL() throws IOException {
 		for (final Location file : files) {
@@ -29,14 +29,19 @@
 
 package io.scif.io;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
+import io.scif.common.Constants;
 import io.scif.io.providers.IRandomAccessProvider;
 import io.scif.io.providers.IRandomAccessProviderFactory;
 import io.scif.services.LocationService;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.junit.After;
@@ -152,6 +157,44 @@ public class RandomAccessInputStreamTest {
 		}
 	}
 
+	@Test
+	public void testFindString() throws IOException {
+		stream.seek(0);
+		final String s = stream.findString(2, "\u0014\u0018");
+		assertEquals(new String(PAGE, 0, 7, Constants.ENCODING), s);
+		assertEquals(7, stream.getFilePointer());
+	}
+
+	@Test
+	public void testFindStringOffset() throws IOException {
+		stream.seek(1);
+		assertEquals(10, stream.findStringOffset(3, "\u0030", "\u0028\u002c"));
+		assertEquals(12, stream.getFilePointer());
+	}
+
+	@Test
+	public void testFindStringOffsetNoMatch() throws IOException {
+		stream.seek(0);
+		assertEquals(-1, stream.findStringOffset("\u0001"));
+		assertEquals(PAGE.length, stream.getFilePointer());
+	}
+
+	@Test
+	public void testView() throws IOException {
+		final ByteBuffer view = stream.getView(4, 16);
+		assertTrue(view.isReadOnly());
+		assertEquals(20, stream.getFilePointer());
+		final byte[] buf = new byte[view.remaining()];
+		view.get(buf);
+		assertArrayEquals(Arrays.copyOfRange(PAGE, 4, 20), buf);
+		// NB: Views of file backed handles are mapped rather than copied.
+		if (provider.equals("NIOFileHandle") ||
+			provider.equals("BlockCacheHandle"))
+		{
+			assertTrue(view.isDirect());
+		}
+	}
+
 	@After
 	public void tearDown() throws IOException {
 		stream.close();
@@ -52,10 +52,14 @@ public class TestParameters {
 			asSet("readLineTest") },
 		{ "NewByteArrayHandle", true, false, asSet("writeTests") },
 		{ "ExistingByteArrayHandle", false, false, asSet("writeTests") },
+		{ "BlockCacheHandle", false, true, asSet("readTests") },
+		{ "ChunkedByteHandle", false, true, asSet("readTests", "writeTests") },
+		{ "NewChunkedByteHandle", true, false, asSet("writeTests") },
 		{ "BZip2Handle", false, true, asSet("readTests"), asSet("readLineTest") },
 		{ "GZipHandle", false, true, asSet("readTests"), asSet("readLineTest") },
 		{ "NIOFileHandle", false, true, asSet("readTests", "writeTests") },
 		{ "URLHandle", false, true, asSet("readTests"), asSet("readLineTest") },
+		{ "WriteBehindHandle", false, true, asSet("readTests", "writeTests") },
 		{ "ZipHandle", false, true, asSet("readTests"), asSet("readLineTest") } };
 
 	private final static <T> Set<T> asSet(final T... values) {
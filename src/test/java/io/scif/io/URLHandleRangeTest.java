@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link URLHandle} range requests against an embedded HTTP server.
+ *
+ * @see io.scif.io.URLHandle
+ */
+public class URLHandleRangeTest {
+
+	// -- Constants --
+
+	private static final int LENGTH = 100000;
+
+	private static final int BLOCK_SIZE = 4096;
+
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+	// -- Fields --
+
+	private final byte[] data = new byte[LENGTH];
+
+	private final AtomicInteger gets = new AtomicInteger();
+
+	private HttpServer server;
+
+	private Context context;
+
+	// -- Setup methods --
+
+	@Before
+	public void setup() throws IOException {
+		new Random(0x1234).nextBytes(data);
+		server = HttpServer.create(new InetSocketAddress(InetAddress
+			.getLoopbackAddress(), 0), 0);
+		server.createContext("/ranged", exchange -> serve(exchange, true));
+		server.createContext("/plain", exchange -> serve(exchange, false));
+		server.start();
+		context = new Context();
+	}
+
+	// -- Test methods --
+
+	@Test
+	public void testLength() throws IOException {
+		final URLHandle handle = open("/ranged");
+		assertTrue(handle.isRanged());
+		assertEquals(LENGTH, handle.length());
+		assertEquals(0, gets.get());
+		handle.close();
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		final URLHandle handle = open("/ranged");
+		final Random r = new Random(0x5678);
+		for (int i = 0; i < 50; i++) {
+			final int off = r.nextInt(LENGTH - 10000);
+			final int len = r.nextInt(10000) + 1;
+			handle.seek(off);
+			final byte[] b = new byte[len];
+			assertEquals(len, handle.read(b));
+			assertArrayEquals(Arrays.copyOfRange(data, off, off + len), b);
+		}
+		handle.close();
+	}
+
+	@Test
+	public void testBackwardSeekIsCached() throws IOException {
+		final URLHandle handle = open("/ranged");
+		handle.seek(LENGTH - 8);
+		handle.readLong();
+		handle.seek(10);
+		handle.readInt();
+		final int requests = gets.get();
+		assertEquals(2, requests);
+
+		handle.seek(LENGTH - 4);
+		handle.readInt();
+		handle.seek(20);
+		handle.readInt();
+		assertEquals(requests, gets.get());
+		handle.close();
+	}
+
+	@Test
+	public void testSmallCache() throws IOException {
+		final URLHandle handle = open("/ranged");
+		handle.setCacheCapacity(1);
+		final byte[] b = new byte[LENGTH];
+		handle.readFully(b);
+		assertArrayEquals(data, b);
+		handle.close();
+	}
+
+	@Test
+	public void testNoRanges() throws IOException {
+		final URLHandle handle = open("/plain");
+		assertFalse(handle.isRanged());
+		assertEquals(LENGTH, handle.length());
+		handle.seek(LENGTH - 1);
+		assertEquals(data[LENGTH - 1], handle.readByte());
+		handle.seek(1);
+		assertEquals(data[1], handle.readByte());
+		handle.close();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		context.dispose();
+	}
+
+	// -- Helper methods --
+
+	private URLHandle open(final String path) throws IOException {
+		final URLHandle handle = new URLHandle(context);
+		handle.setBlockSize(BLOCK_SIZE);
+		handle.setURL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+		return handle;
+	}
+
+	private void serve(final HttpExchange exchange, final boolean ranges)
+		throws IOException
+	{
+		if (ranges) exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+		if (exchange.getRequestMethod().equals("HEAD")) {
+			exchange.getResponseHeaders().set("Content-Length", "" + LENGTH);
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+			return;
+		}
+		gets.incrementAndGet();
+		int start = 0, end = LENGTH - 1;
+		final String range = exchange.getRequestHeaders().getFirst("Range");
+		if (ranges && range != null) {
+			final Matcher m = RANGE.matcher(range);
+			if (m.matches()) {
+				start = Integer.parseInt(m.group(1));
+				end = Math.min(Integer.parseInt(m.group(2)), LENGTH - 1);
+			}
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + start +
+				"-" + end + "/" + LENGTH);
+			exchange.sendResponseHeaders(206, end - start + 1);
+		}
+		else exchange.sendResponseHeaders(200, LENGTH);
+		final OutputStream out = exchange.getResponseBody();
+		out.write(data, start, end - start + 1);
+		out.close();
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Unit tests for {@link WriteBehindHandle}.
+ *
+ * @see io.scif.io.WriteBehindHandle
+ */
+public class WriteBehindHandleTest {
+
+	// -- Fields --
+
+	private Context context;
+
+	private File file;
+
+	private File expectedFile;
+
+	// -- Setup methods --
+
+	@Before
+	public void setup() throws IOException {
+		context = new Context(ThreadService.class);
+		file = File.createTempFile("WriteBehindHandleTest", ".dat");
+		file.deleteOnExit();
+		expectedFile = File.createTempFile("WriteBehindHandleTest", ".expected");
+		expectedFile.deleteOnExit();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+		file.delete();
+		expectedFile.delete();
+	}
+
+	// -- Tests --
+
+	@Test
+	public void testPatchedHeader() throws IOException {
+		final WriteBehindHandle handle = new WriteBehindHandle(threadService(),
+			file, 64, 2);
+		handle.writeInt(0); // placeholder
+		final byte[] data = new byte[1000];
+		new Random(0xbeef).nextBytes(data);
+		handle.write(data);
+		handle.seek(0);
+		handle.writeInt(data.length);
+		handle.seek(handle.length());
+		handle.writeShort(-1);
+		handle.close();
+
+		final byte[] bytes = Files.readAllBytes(file.toPath());
+		assertEquals(1006, bytes.length);
+		final RandomAccessInputStream in = new RandomAccessInputStream(context,
+			bytes);
+		assertEquals(1000, in.readInt());
+		final byte[] b = new byte[1000];
+		in.readFully(b);
+		assertArrayEquals(data, b);
+		assertEquals(-1, in.readShort());
+		in.close();
+	}
+
+	@Test
+	public void testFlushMakesDataVisible() throws IOException {
+		final WriteBehindHandle handle = new WriteBehindHandle(threadService(),
+			file, 1024, 4);
+		handle.write(new byte[] { 1, 2, 3 });
+		handle.flush();
+		assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file
+			.toPath()));
+		handle.close();
+	}
+
+	@Test
+	public void testRandomWrites() throws IOException {
+		final Random r = new Random(0x5eed);
+		final WriteBehindHandle handle = new WriteBehindHandle(threadService(),
+			file, 32, 3);
+		final RandomAccessFile expected = new RandomAccessFile(expectedFile, "rw");
+		long end = 0;
+		for (int i = 0; i < 2000; i++) {
+			final int op = r.nextInt(10);
+			final long pos;
+			if (op < 6) pos = end; // append
+			else if (op < 9) pos = end == 0 ? 0 : (long) r.nextInt((int) end);
+			else pos = end + r.nextInt(100); // skip ahead
+			final byte[] b = new byte[r.nextInt(op < 6 ? 80 : 8) + 1];
+			r.nextBytes(b);
+			handle.seek(pos);
+			handle.write(b);
+			expected.seek(pos);
+			expected.write(b);
+			end = Math.max(end, pos + b.length);
+			assertEquals(end, handle.length());
+		}
+		handle.close();
+		expected.close();
+		assertArrayEquals(Files.readAllBytes(expectedFile.toPath()), Files
+			.readAllBytes(file.toPath()));
+	}
+
+	// -- Helper methods --
+
+	private ThreadService threadService() {
+		return context.getService(ThreadService.class);
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for direct entry access in {@link ZipHandle}.
+ *
+ * @see io.scif.io.ZipHandle
+ */
+public class ZipHandleTest {
+
+	// -- Fields --
+
+	private byte[] deflated;
+
+	private byte[] stored;
+
+	private String file;
+
+	private Context context;
+
+	// -- Setup methods --
+
+	@Before
+	public void setup() throws IOException {
+		final Random r = new Random(0xf00d);
+		deflated = new byte[200000];
+		for (int i = 0; i < deflated.length; i++) {
+			deflated[i] = (byte) (i % 17 + r.nextInt(2));
+		}
+		stored = new byte[5000];
+		r.nextBytes(stored);
+
+		final File f = File.createTempFile("ZipHandleTest", ".zip");
+		f.deleteOnExit();
+		file = f.getAbsolutePath();
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+		out.putNextEntry(new ZipEntry("deflated.bin"));
+		out.write(deflated);
+		out.closeEntry();
+		final ZipEntry entry = new ZipEntry("stored.bin");
+		final CRC32 crc = new CRC32();
+		crc.update(stored);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(stored.length);
+		entry.setCompressedSize(stored.length);
+		entry.setCrc(crc.getValue());
+		out.putNextEntry(entry);
+		out.write(stored);
+		out.closeEntry();
+		out.close();
+
+		context = new Context();
+	}
+
+	// -- Test methods --
+
+	@Test
+	public void testEntryNames() throws IOException {
+		final ZipHandle handle = new ZipHandle(context, file);
+		assertEquals(Arrays.asList("deflated.bin", "stored.bin"), handle
+			.getEntryNames());
+		assertEquals("deflated.bin", handle.getEntryName());
+		handle.close();
+	}
+
+	@Test
+	public void testDeflatedEntry() throws IOException {
+		final ZipHandle handle = new ZipHandle(context, file, new ZipEntry(
+			"deflated.bin"));
+		assertEntry(handle, deflated);
+		handle.close();
+	}
+
+	@Test
+	public void testStoredEntry() throws IOException {
+		final ZipHandle archive = new ZipHandle(context, file);
+		final ZipHandle handle = new ZipHandle(archive, "stored.bin");
+		assertEntry(handle, stored);
+		handle.close();
+		archive.close();
+	}
+
+	@Test(expected = HandleException.class)
+	public void testMissingEntry() throws IOException {
+		new ZipHandle(context, file, new ZipEntry("missing.bin"));
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	// -- Helper methods --
+
+	private void assertEntry(final ZipHandle handle, final byte[] expected)
+		throws IOException
+	{
+		assertEquals(expected.length, handle.length());
+
+		final byte[] all = new byte[expected.length];
+		handle.readFully(all);
+		assertArrayEquals(expected, all);
+
+		final Random r = new Random(0xabc);
+		for (int i = 0; i < 20; i++) {
+			final int off = r.nextInt(expected.length - 100);
+			handle.seek(off);
+			final byte[] b = new byte[100];
+			assertEquals(100, handle.read(b));
+			assertArrayEquals(Arrays.copyOfRange(expected, off, off + 100), b);
+		}
+	}
+}
@@ -47,10 +47,15 @@ public class IRandomAccessProviderFactory {
 		providers.put("ExistingByteArrayHandle",
 			new ExistingByteArrayHandleProvider());
 		providers.put("ByteArrayHandle", new ByteArrayHandleProvider());
+		providers.put("BlockCacheHandle", new BlockCacheHandleProvider());
+		providers.put("ChunkedByteHandle", new ChunkedByteHandleProvider());
+		providers.put("NewChunkedByteHandle",
+			new NewChunkedByteHandleProvider());
 		providers.put("BZip2Handle", new BZip2HandleProvider());
 		providers.put("GZipHandle", new GZipHandleProvider());
 		providers.put("NIOFileHandle", new NIOFileHandleProvider());
 		providers.put("URLHandle", new URLHandleProvider());
+		providers.put("WriteBehindHandle", new WriteBehindHandleProvider());
 		providers.put("ZipHandle", new ZipHandleProvider());
 	}
 
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.refs;
+
+import static org.junit.Assert.assertEquals;
+
+import io.scif.AbstractSCIFIOPlugin;
+import io.scif.config.SCIFIOConfig;
+import io.scif.config.SCIFIOConfig.ImgMode;
+import io.scif.img.ImgOpener;
+import io.scif.img.SCIFIOImgPlus;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.log.LogService;
+import org.scijava.plugin.PluginInfo;
+import org.scijava.plugin.PluginService;
+
+/**
+ * Tests {@link RefManagerService}.
+ */
+public class RefManagerServiceTest {
+
+	private Context context;
+
+	private RefManagerService refManagerService;
+
+	@Before
+	public void setUp() {
+		context = new Context(RefManagerService.class);
+		context.getService(PluginService.class).addPlugin(new PluginInfo<>(
+			CountingProvider.class, RefProvider.class));
+		refManagerService = context.getService(RefManagerService.class);
+	}
+
+	@After
+	public void tearDown() {
+		if (context != null) context.dispose();
+	}
+
+	/**
+	 * Tests that a referent is only managed once by each provider, and that
+	 * disposing the service cleans up all references.
+	 */
+	@Test
+	public void testManageOnce() {
+		final Object referent = new Object();
+		final AtomicInteger cleanups = new AtomicInteger();
+		refManagerService.manage(referent, cleanups);
+		refManagerService.manage(referent, cleanups);
+		refManagerService.manage(new Object(), cleanups);
+		assertEquals(0, cleanups.get());
+
+		context.dispose();
+		context = null;
+		assertEquals(2, cleanups.get());
+	}
+
+	/**
+	 * Measures the time to load every cell of a cell image, which manages two
+	 * references per cell.
+	 * <p>
+	 * NB: not annotated as a unit test due to length of execution.
+	 * </p>
+	 */
+//	@Test
+	public void benchmarkCellLoad() throws Exception {
+		final String id = "cells&axes=X,Y,Z&lengths=64,64,20000.fake";
+		final SCIFIOConfig config = new SCIFIOConfig().imgOpenerSetImgModes(
+			ImgMode.CELL);
+		final Context fullContext = new Context();
+		try {
+			final LogService log = fullContext.getService(LogService.class);
+			for (int round = 0; round < 5; round++) {
+				final SCIFIOImgPlus<?> img = new ImgOpener(fullContext).openImgs(id,
+					config).get(0);
+				final long start = System.nanoTime();
+				@SuppressWarnings("unchecked")
+				final Cursor<? extends RealType<?>> cursor = ((SCIFIOImgPlus<
+					? extends RealType<?>>) img).cursor();
+				double sum = 0;
+				while (cursor.hasNext()) {
+					sum += cursor.next().getRealDouble();
+				}
+				final long millis = (System.nanoTime() - start) / 1000000;
+				log.info("round " + round + ": " + millis + " ms (" + sum + ")");
+				img.dispose();
+			}
+		}
+		finally {
+			fullContext.dispose();
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Counts cleanups of objects managed with an {@link AtomicInteger}. */
+	public static class CountingProvider extends AbstractSCIFIOPlugin implements
+		RefProvider
+	{
+
+		@Override
+		public boolean handles(final Object referent, final Object... params) {
+			return params.length == 1 && params[0] instanceof AtomicInteger;
+		}
+
+		@Override
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public Reference makeRef(final Object referent, final ReferenceQueue queue,
+			final Object... params)
+		{
+			return new CountingRef(referent, queue, (AtomicInteger) params[0]);
+		}
+	}
+
+	private static class CountingRef extends PhantomReference<Object> implements
+		CleaningRef
+	{
+
+		private final AtomicInteger cleanups;
+
+		private CountingRef(final Object referent,
+			final ReferenceQueue<Object> queue,
+			final AtomicInteger cleanups)
+		{
+			super(referent, queue);
+			this.cleanups = cleanups;
+		}
+
+		@Override
+		public void cleanup() {
+			cleanups.incrementAndGet();
+		}
+	}
+}
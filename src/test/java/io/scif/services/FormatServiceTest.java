@@ -30,14 +30,27 @@
 package io.scif.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.Reader;
+import io.scif.config.SCIFIOConfig;
+import io.scif.formats.NRRDFormat;
 import io.scif.formats.StratecPQCTFormat;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -46,6 +59,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.scijava.Context;
+import org.scijava.log.LogService;
 import org.scijava.thread.ThreadService;
 
 /**
@@ -135,4 +149,232 @@ public class FormatServiceTest {
 		assertEquals(threads, count[0]);
 	}
 
+	/**
+	 * Tests that the signature index does not change the outcome of format
+	 * detection.
+	 */
+	@Test
+	public void testSignatureIndex() throws IOException {
+		final File dir = Files.createTempDirectory("FormatServiceTest").toFile();
+		try {
+			for (final File file : createCorpus(dir, 1)) {
+				final String id = file.getAbsolutePath();
+				assertEquals(id, detect(id, false), detect(id, true));
+			}
+		}
+		finally {
+			deleteCorpus(dir);
+		}
+	}
+
+	/**
+	 * Tests that the signature index still consults checkers which look for
+	 * companion files, by detecting a NRRD data file through its header file.
+	 */
+	@Test
+	public void testSignatureIndexCompanion() throws IOException,
+		FormatException
+	{
+		final File dir = Files.createTempDirectory("FormatServiceTest").toFile();
+		try {
+			final File data = new File(dir, "image.raw");
+			Files.write(data.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+			Files.write(new File(dir, "image.nhdr").toPath(), ("NRRD0004\n" +
+				"data file: image.raw\n").getBytes());
+
+			final String id = data.getAbsolutePath();
+			final SCIFIOConfig config = new SCIFIOConfig().checkerSetOpen(true)
+				.checkerSetSignatureIndex(true);
+			final Format nrrd = formatService.getFormatFromClass(NRRDFormat.class);
+			assertTrue(formatService.getFormatList(id, config, false).contains(
+				nrrd));
+			assertEquals(detect(id, false), detect(id, true));
+		}
+		finally {
+			deleteCorpus(dir);
+		}
+	}
+
+	/**
+	 * Tests that checking formats concurrently detects the same formats, in the
+	 * same order, as checking them sequentially.
+	 */
+	@Test
+	public void testParallelCheck() throws IOException, FormatException {
+		final File dir = Files.createTempDirectory("FormatServiceTest").toFile();
+		try {
+			for (final File file : createCorpus(dir, 1)) {
+				final String id = file.getAbsolutePath();
+				final SCIFIOConfig serial = new SCIFIOConfig().checkerSetOpen(true);
+				final SCIFIOConfig parallel = new SCIFIOConfig(serial)
+					.checkerSetParallel(true);
+				assertEquals(id, detect(id, serial), detect(id, parallel));
+				if (!detect(id, serial).equals("none")) {
+					assertSame(id, formatService.getFormat(id, serial), formatService
+						.getFormat(id, parallel));
+				}
+			}
+		}
+		finally {
+			deleteCorpus(dir);
+		}
+	}
+
+	/**
+	 * Measures format detection latency over a mixed corpus, with and without
+	 * the signature index.
+	 * <p>
+	 * NB: not annotated as a unit test due to length of execution.
+	 * </p>
+	 */
+//	@Test
+	public void benchmarkSignatureIndex() throws IOException {
+		final File dir = Files.createTempDirectory("FormatServiceTest").toFile();
+		try {
+			final LogService log = formatService.getContext().getService(
+				LogService.class);
+			final List<File> corpus = createCorpus(dir, 100);
+			for (int round = 0; round < 5; round++) {
+				for (final boolean index : new boolean[] { false, true }) {
+					final long start = System.nanoTime();
+					for (final File file : corpus) {
+						detect(file.getAbsolutePath(), index);
+					}
+					final long micros = (System.nanoTime() - start) / 1000 / corpus
+						.size();
+					log.info("round " + round + ", index " + index + ": " + micros +
+						" us/file");
+				}
+			}
+		}
+		finally {
+			deleteCorpus(dir);
+		}
+	}
+
+	/**
+	 * Tests that a Format requested by class before any detection is the same
+	 * instance as the one later used for detection.
+	 */
+	@Test
+	public void testGetFormatFromClass() throws FormatException {
+		final Context context = new Context(FormatService.class);
+		try {
+			final FormatService service = context.getService(FormatService.class);
+			final StratecPQCTFormat format = service.getFormatFromClass(
+				StratecPQCTFormat.class);
+			assertNotNull(format);
+			assertTrue(service.getAllFormats().contains(format));
+			assertSame(format, service.getFormatFromClass(StratecPQCTFormat.class));
+		}
+		finally {
+			context.dispose();
+		}
+	}
+
+	/**
+	 * Measures the time from context creation to the first opened plane.
+	 * <p>
+	 * NB: not annotated as a unit test due to length of execution. Only the
+	 * first round reflects a fresh JVM.
+	 * </p>
+	 */
+//	@Test
+	public void benchmarkStartup() throws FormatException, IOException {
+		final String id = "8bit-signed&pixelType=int8&lengths=64,64&axes=X,Y.fake";
+		for (int round = 0; round < 5; round++) {
+			final long start = System.nanoTime();
+			final Context context = new Context(InitializeService.class);
+			final long contextTime = System.nanoTime();
+			try {
+				final Reader reader = context.getService(InitializeService.class)
+					.initializeReader(id);
+				final long readerTime = System.nanoTime();
+				reader.openPlane(0, 0);
+				final long planeTime = System.nanoTime();
+				reader.close();
+				context.getService(LogService.class).info("round " + round +
+					": context " + millis(start, contextTime) + " ms, reader " + millis(
+						contextTime, readerTime) + " ms, plane " + millis(readerTime,
+							planeTime) + " ms");
+			}
+			finally {
+				context.dispose();
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	private long millis(final long start, final long end) {
+		return (end - start) / 1000000;
+	}
+
+	/** Detects all formats of the given file, or the failure to do so. */
+	private String detect(final String id, final boolean index) {
+		return detect(id, new SCIFIOConfig().checkerSetOpen(true)
+			.checkerSetSignatureIndex(index));
+	}
+
+	/** Detects all formats of the given file, or the failure to do so. */
+	private String detect(final String id, final SCIFIOConfig config) {
+		try {
+			final List<String> names = new ArrayList<>();
+			for (final Format format : formatService.getFormatList(id, config,
+				false))
+			{
+				names.add(format.getFormatName());
+			}
+			return names.toString();
+		}
+		catch (final FormatException exc) {
+			return "none";
+		}
+	}
+
+	/**
+	 * Writes files with the headers of several formats, each with a matching
+	 * and a misleading suffix.
+	 */
+	private List<File> createCorpus(final File dir, final int copies)
+		throws IOException
+	{
+		final Map<String, byte[]> headers = new LinkedHashMap<>();
+		headers.put("png", new byte[] { (byte) 0x89, 0x50, 0x4e, 0x47, 0x0d, 0x0a,
+			0x1a, 0x0a });
+		headers.put("mng", new byte[] { (byte) 0x8a, 0x4d, 0x4e, 0x47, 0x0d, 0x0a,
+			0x1a, 0x0a });
+		headers.put("tif", new byte[] { 0x49, 0x49, 0x2a, 0, 8, 0, 0, 0 });
+		headers.put("gif", "GIF89a".getBytes());
+		headers.put("bmp", "BM".getBytes());
+		headers.put("nrrd", "NRRD0004\n".getBytes());
+		headers.put("pcx", new byte[] { 10, 5, 1, 8 });
+		headers.put("pgm", "P5\n2 2\n255\n".getBytes());
+		headers.put("isq", "CTDATA-HEADER_V1".getBytes());
+		headers.put("raw", new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		final Random random = new Random(0xdecaf);
+		final List<File> files = new ArrayList<>();
+		for (int i = 0; i < copies; i++) {
+			for (final Map.Entry<String, byte[]> entry : headers.entrySet()) {
+				final byte[] data = new byte[4096];
+				random.nextBytes(data);
+				final byte[] header = entry.getValue();
+				System.arraycopy(header, 0, data, 0, header.length);
+				for (final String suffix : new String[] { entry.getKey(), "dat" }) {
+					final File file = new File(dir, entry.getKey() + i + "." + suffix);
+					Files.write(file.toPath(), data);
+					files.add(file);
+				}
+			}
+		}
+		return files;
+	}
+
+	private void deleteCorpus(final File dir) {
+		for (final File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
 }
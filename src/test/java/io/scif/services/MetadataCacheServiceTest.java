@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.Format;
+import io.scif.ImageMetadata;
+import io.scif.Metadata;
+import io.scif.Reader;
+import io.scif.config.SCIFIOConfig;
+import io.scif.formats.TIFFFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Tests {@link MetadataCacheService}.
+ */
+public class MetadataCacheServiceTest {
+
+	private Context context;
+
+	private MetadataCacheService cacheService;
+
+	private InitializeService initializeService;
+
+	private File dir;
+
+	private String id;
+
+	@Before
+	public void setUp() throws IOException {
+		context = new Context(MetadataCacheService.class, InitializeService.class);
+		cacheService = context.getService(MetadataCacheService.class);
+		initializeService = context.getService(InitializeService.class);
+		dir = Files.createTempDirectory("scifio-cache").toFile();
+		final File tiff = new File(dir, "tiny-10x10x3.tif");
+		try (final InputStream in = TIFFFormat.class.getResourceAsStream(
+			"tiny-10x10x3.tif"))
+		{
+			Files.copy(in, tiff.toPath());
+		}
+		id = tiff.getAbsolutePath();
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+		for (final File file : dir.listFiles()) {
+			if (file.isDirectory()) {
+				for (final File entry : file.listFiles()) {
+					entry.delete();
+				}
+			}
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	/** Tests that nothing is cached until a cache directory is set. */
+	@Test
+	public void testDisabled() throws Exception {
+		assertTrue(!cacheService.isEnabled());
+		initializeService.parseMetadata(id);
+		assertNull(cacheService.getFormat(id));
+	}
+
+	/** Tests that cached metadata reads the same as freshly parsed metadata. */
+	@Test
+	public void testRoundTrip() throws Exception {
+		cacheService.setCacheDirectory(new File(dir, "cache"));
+		final Metadata parsed = initializeService.parseMetadata(id);
+		final Format format = cacheService.getFormat(id);
+		assertEquals(parsed.getFormat().getClass(), format.getClass());
+
+		final Metadata cached = cacheService.getMetadata(id, format,
+			new SCIFIOConfig());
+		assertNotNull(cached);
+		assertEquals(parsed.getImageCount(), cached.getImageCount());
+		final ImageMetadata expected = parsed.get(0);
+		final ImageMetadata actual = cached.get(0);
+		assertArrayEquals(expected.getAxesLengths(), actual.getAxesLengths());
+		for (int i = 0; i < expected.getAxes().size(); i++) {
+			assertEquals(expected.getAxis(i).type(), actual.getAxis(i).type());
+		}
+		assertEquals(expected.getPixelType(), actual.getPixelType());
+		assertEquals(expected.isLittleEndian(), actual.isLittleEndian());
+		cached.close();
+		parsed.close();
+
+		final Reader fresh = format.createReader();
+		fresh.setSource(id);
+		final Reader reader = initializeService.initializeReader(id);
+		assertArrayEquals(fresh.openPlane(0, 2).getBytes(), reader.openPlane(0, 2)
+			.getBytes());
+		reader.close();
+		fresh.close();
+	}
+
+	/** Tests that entries are discarded when their file changes. */
+	@Test
+	public void testStale() throws Exception {
+		cacheService.setCacheDirectory(new File(dir, "cache"));
+		initializeService.parseMetadata(id);
+		assertNotNull(cacheService.getFormat(id));
+
+		final File file = new File(id);
+		assertTrue(file.setLastModified(file.lastModified() + 10000));
+		assertNull(cacheService.getFormat(id));
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * SCIFIO library for reading and converting scientific file formats.
+ * %%
+ * Copyright (C) 2011 - 2017 SCIFIO developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package io.scif.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.FormatSignature;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SignatureIndex}.
+ */
+public class SignatureIndexTest {
+
+	@Test
+	public void testMatch() {
+		final SignatureIndex<String> index = new SignatureIndex<>();
+		index.add(new FormatSignature(0, "II*"), "tiff");
+		index.add(new FormatSignature(0, "MM"), "tiff");
+		index.add(new FormatSignature(0, "II"), "ii");
+		index.add(new FormatSignature(128, "DICM"), "dicom");
+		index.add(new FormatSignature(0, "GIF"), "gif");
+		assertEquals(5, index.size());
+		assertEquals(132, index.getHeaderLength());
+
+		assertEquals(set("tiff", "ii"), index.match(bytes("II*\0"), 4));
+		assertEquals(set("ii"), index.match(bytes("II+\0"), 4));
+		assertEquals(set("tiff"), index.match(bytes("MM\0*"), 4));
+		assertEquals(set("gif"), index.match(bytes("GIF89a"), 6));
+		assertEquals(set(), index.match(bytes("GI"), 2));
+
+		final byte[] dicom = new byte[132];
+		System.arraycopy(bytes("DICM"), 0, dicom, 128, 4);
+		assertEquals(set("dicom"), index.match(dicom, 132));
+		// signatures beyond the valid length do not match
+		assertEquals(set(), index.match(dicom, 131));
+	}
+
+	@Test
+	public void testMaxHeaderLength() {
+		final SignatureIndex<String> index = new SignatureIndex<>();
+		assertFalse(index.add(new FormatSignature(
+			SignatureIndex.MAX_HEADER_LENGTH, "X"), "far"));
+		assertTrue(index.add(new FormatSignature(
+			SignatureIndex.MAX_HEADER_LENGTH - 1, "X"), "near"));
+		assertEquals(1, index.size());
+		assertEquals(SignatureIndex.MAX_HEADER_LENGTH, index.getHeaderLength());
+	}
+
+	// -- Helper methods --
+
+	private static byte[] bytes(final String s) {
+		return s.getBytes();
+	}
+
+	private static Set<String> set(final String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}